@@ -1,11 +1,8 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.ServerSocket;
-import java.net.SocketTimeoutException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+import telemServer.WebServer;
 import telemServer.WebServiceProcess;
 import telemetry.PayloadDbStore;
 import common.Config;
@@ -19,6 +16,9 @@ import common.Log;
  * Verion 0.9
  * T0 Analysis added as a service
  * 
+ * Version 1.01
+ * NIO HTTP/1.1 server with keep-alive, cached health pages and per command statistics
+ * 
  */
 public class FoxService {
 
@@ -75,39 +75,16 @@ public class FoxService {
 		Log.println("Fox Webservice starting up on port " + port + ": " + WebServiceProcess.version);
 		Log.println("(press ctrl-c to exit)");
 
-		ServerSocket serverSocket = null;
-        boolean listening = true;
-        ExecutorService pool = null;
-
-        try {
-        	serverSocket = new ServerSocket(port);
-        	pool = Executors.newFixedThreadPool(poolSize);
-        } catch (IOException e) {
-        	Log.println("Could not listen on port: " + port);
-        	System.exit(-1);
-        }
-
-        while (listening) {
-        	try {
-        		//process = new ServerProcess(serverSocket.accept(), sequence++);
-        		Log.println("Waiting for WebService connection ...");
-        		pool.execute(new WebServiceProcess(initPayloadDB(u,p,db),serverSocket.accept(),port));
-        	}  catch (SocketTimeoutException s) {
-        		Log.println("Socket timed out! - trying to continue	");
-        	} catch (IOException e) {
-        		// TODO Auto-generated catch block
-        		e.printStackTrace(Log.getWriter());
-        	}
-        }
-
-        try {
-			serverSocket.close();
-			pool.shutdown();
+		// The web server reads and writes the sockets on one thread and passes complete requests to a pool
+		// of workers, each with its own database connection.  Connections are kept alive between requests.
+		WebServer server = new WebServer(port, poolSize, u, p, db);
+		try {
+			server.start();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace(Log.getWriter());
+			Log.println("Could not listen on port: " + port);
+			System.exit(-1);
 		}
-
+		server.run();
 	}
 	
 	public static PayloadDbStore initPayloadDB(String u, String p, String db) {	
@@ -0,0 +1,411 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import common.Config;
+import common.Log;
+import decoder.ChannelSource;
+import decoder.Channelizer;
+import decoder.HeadlessDecoder;
+import decoder.SourceAudio;
+import decoder.SourceIQ;
+import decoder.SourceSoundCardAudio;
+import decoder.SourceWav;
+
+/**
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Runs FoxTelem decoders on a station with no screen.  The sources and decoders are set in a config file rather than
+ * in the GUI.  The rest of FoxTelem is as normal: the settings, payload store, pass manager and server upload queue
+ * are read from the FoxTelem directory, so a station can be set up with the GUI and then run as a daemon.  No Swing
+ * class is loaded, so it uses less memory and CPU than the GUI.
+ *
+ * The status of each decoder and the upload queue can be read from a socket on the local machine, e.g. with
+ * "nc localhost 8081".  It is sent as text and the socket is closed.
+ *
+ * The daemon exits once all of its decoders have finished, e.g. at the end of a recording.  The exit status is 2 if
+ * any of them failed, which includes a decoder that stopped reading a sound card, so a supervisor can restart it.
+ *
+ * Config file, in properties format:
+ *   logFileDir=/home/fox/FoxTelem - optional, the FoxTelem directory, otherwise .FoxTelem in the home directory
+ *   statusPort=8081 - optional, 0 for no status socket
+ *   decoders=2
+ *   decoder1.source=USB Audio - the sound card name as listed by -list, or file:pass.wav to decode a recording
+ *   decoder1.mode=DUV - DUV, HS or PSK
+ *   decoder1.iq=false - true if the source is IQ data
+ *   decoder1.sampleRate=48000 - optional, the sound card rate
+ *   decoder1.frequency=20000 - optional for IQ, the offset in Hz from the center of the IQ data to tune to
+ *   decoder1.channelizer=false - optional for an IQ sound card, true to split it into a channel for each decoder
+ *
+ * Decoders with the same source share it, each on its own channel.  The iq, sampleRate and channelizer settings of
+ * the first decoder of a source are used for all of its decoders.  IQ decoders tune to their frequency, or if it is
+ * not set to the frequency saved in the FoxTelem settings.
+ *
+ * A wideband IQ source, such as an Airspy, can watch several downlinks at once.  With channelizer=true the source is
+ * read once and a Channelizer splits it into a narrow channel around the frequency of each decoder, so each decoder
+ * only processes its own channel.  Each decoder then needs a frequency.
+ *
+ */
+public class FoxTelemDaemon implements Runnable {
+
+	public static final int DEFAULT_STATUS_PORT = 8081;
+	public static final int EXIT_DECODER_FAILED = 2;
+	public static final long UPLOAD_TIMEOUT = 60000; // ms to wait at the end for the upload queue to empty
+	public static final String FILE_PREFIX = "file:";
+	static String usage = "Usage: FoxTelemDaemon [-h][-v][-list] configFile\n"
+			+ "-h show this help\n"
+			+ "-v display version information\n"
+			+ "-list list the sound cards that can be used as a source\n";
+
+	public static final int MIN_CHANNEL_RATE = 192000; // the lowest IQ rate that the decoders are run at from a sound card
+
+	List<HeadlessDecoder> decoders = new ArrayList<HeadlessDecoder>();
+	Map<String, Channelizer> channelizers = new LinkedHashMap<String, Channelizer>();
+	int statusPort = DEFAULT_STATUS_PORT;
+	long startTime = System.currentTimeMillis();
+
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.out.println(usage);
+			System.exit(1);
+		}
+		if (args[0].equalsIgnoreCase("-h") || args[0].equalsIgnoreCase("-help")) {
+			System.out.println(usage);
+			System.exit(0);
+		}
+		if (args[0].equalsIgnoreCase("-v") || args[0].equalsIgnoreCase("-version")) {
+			System.out.println("AMSAT Fox Telemetry Decoder Daemon. Version " + Config.VERSION);
+			System.exit(0);
+		}
+		Log.showGuiDialogs = false;
+		if (args[0].equalsIgnoreCase("-list")) {
+			String[] sources = SourceSoundCardAudio.getAudioSources();
+			for (int i=SourceAudio.OFFSET; i < sources.length; i++)
+				System.out.println(sources[i]);
+			System.exit(0);
+		}
+
+		Properties properties = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(args[0]);
+			properties.load(in);
+		} catch (IOException e) {
+			System.err.println("FATAL: Could not read the config file: " + args[0] + "\n" + e.getMessage());
+			System.exit(1);
+		} finally {
+			try { if (in != null) in.close(); } catch (IOException e) { }
+		}
+
+		String logFileDir = properties.getProperty("logFileDir");
+		if (logFileDir == null)
+			Config.homeDirectory = System.getProperty("user.home") + File.separator + ".FoxTelem";
+		else
+			Config.homeDirectory = logFileDir;
+		if (Config.missing())
+			Config.setHome(); // the default settings are saved by Config.init()
+		Log.init("FoxTelemDaemon");
+		Config.currentDir = System.getProperty("user.dir");
+		Config.init(logFileDir);
+		Config.autoDecodeSpeed = false; // the decoders must not try to switch the view in the input tab.  Not saved.
+		Log.println("************************************************************");
+		Log.println("AMSAT Fox Telemetry Decoder Daemon. " + Config.VERSION + "\nCurrentDir is: " + Config.currentDir);
+		Log.println("************************************************************");
+		Log.println("LogFileDir is:" + Config.logFileDirectory);
+
+		FoxTelemDaemon daemon = new FoxTelemDaemon();
+		try {
+			daemon.setup(properties);
+		} catch (IllegalArgumentException e) {
+			System.err.println("FATAL: " + e.getMessage());
+			Log.println("FATAL: " + e.getMessage());
+			System.exit(1);
+		}
+		daemon.start();
+		if (daemon.statusPort > 0) {
+			Thread status = new Thread(daemon);
+			status.setName("Status");
+			status.setDaemon(true); // so that it does not keep us running once the decoders have finished
+			status.setUncaughtExceptionHandler(Log.uncaughtExHandler);
+			status.start();
+		}
+		// The threads that Config.init() starts never end, so we exit ourselves.  A supervisor can then restart us
+		System.exit(daemon.waitForDecoders());
+	}
+
+	/**
+	 * Create the sources and decoders in the config file.  Decoders that name the same source share it.
+	 * @param properties
+	 */
+	void setup(Properties properties) {
+		try {
+			statusPort = Integer.parseInt(properties.getProperty("statusPort", "" + DEFAULT_STATUS_PORT).trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid statusPort: " + properties.getProperty("statusPort"));
+		}
+		int count = 0;
+		try {
+			count = Integer.parseInt(properties.getProperty("decoders", "0").trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number of decoders: " + properties.getProperty("decoders"));
+		}
+		if (count <= 0)
+			throw new IllegalArgumentException("No decoders in the config file");
+
+		// Group the decoders by source so that we know how many channels each source needs
+		Map<String, List<Integer>> sources = new LinkedHashMap<String, List<Integer>>();
+		for (int d=1; d <= count; d++) {
+			String source = properties.getProperty("decoder" + d + ".source");
+			if (source == null)
+				throw new IllegalArgumentException("Missing decoder" + d + ".source");
+			source = source.trim();
+			List<Integer> users = sources.get(source);
+			if (users == null) {
+				users = new ArrayList<Integer>();
+				sources.put(source, users);
+			}
+			users.add(d);
+		}
+
+		for (Map.Entry<String, List<Integer>> entry : sources.entrySet()) {
+			String sourceName = entry.getKey();
+			List<Integer> users = entry.getValue();
+			int first = users.get(0);
+			boolean iq = Boolean.parseBoolean(properties.getProperty("decoder" + first + ".iq", "false").trim());
+			int rate = Config.scSampleRate;
+			String r = properties.getProperty("decoder" + first + ".sampleRate");
+			if (r != null)
+				try {
+					rate = Integer.parseInt(r.trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid decoder" + first + ".sampleRate: " + r);
+				}
+			boolean channelize = Boolean.parseBoolean(properties.getProperty("decoder" + first + ".channelizer", "false").trim());
+			if (channelize && !iq)
+				throw new IllegalArgumentException("Only an IQ source can be split into channels: " + sourceName);
+			if (channelize && sourceName.startsWith(FILE_PREFIX))
+				throw new IllegalArgumentException("Only a sound card can be split into channels: " + sourceName);
+			SourceAudio source = openSource(sourceName, rate, iq, channelize ? 1 : users.size());
+			Channelizer channelizer = null;
+			if (channelize) {
+				channelizer = new Channelizer(source, 0, MIN_CHANNEL_RATE);
+				channelizers.put(sourceName, channelizer);
+			}
+			for (int chan=0; chan < users.size(); chan++) {
+				int d = users.get(chan);
+				int mode = parseMode(properties.getProperty("decoder" + d + ".mode", "DUV").trim());
+				String f = properties.getProperty("decoder" + d + ".frequency");
+				HeadlessDecoder decoder;
+				if (channelizer != null) {
+					if (f == null)
+						throw new IllegalArgumentException("Missing decoder" + d + ".frequency, which is needed for a channel");
+					double freq = parseFrequency(d, f);
+					ChannelSource channel = channelizer.addChannel(freq, channelizer.getChannelSampleRate() * 4);
+					decoder = new HeadlessDecoder("decoder" + d, sourceName + " " + (long)freq + " Hz", channel, 0, true, mode);
+					// The channel is centered on the nearest FFT bin, so tune to the rest of the offset
+					decoder.setFrequency(channel.getResidualFrequency());
+				} else {
+					decoder = new HeadlessDecoder("decoder" + d, sourceName, source, chan, iq, mode);
+					if (f != null)
+						decoder.setFrequency(parseFrequency(d, f));
+				}
+				decoders.add(decoder);
+			}
+		}
+	}
+
+	private static double parseFrequency(int d, String f) {
+		try {
+			return Double.parseDouble(f.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid decoder" + d + ".frequency: " + f);
+		}
+	}
+
+	private static int parseMode(String mode) {
+		if (mode.equalsIgnoreCase("DUV")) return SourceIQ.MODE_FSK_DUV;
+		if (mode.equalsIgnoreCase("HS")) return SourceIQ.MODE_FSK_HS;
+		if (mode.equalsIgnoreCase("PSK")) return SourceIQ.MODE_PSK_NC;
+		throw new IllegalArgumentException("Unknown mode: " + mode + ", use DUV, HS or PSK");
+	}
+
+	/**
+	 * Open a sound card by name, or a recording if the name starts with file:.  A recording is decoded as fast as
+	 * possible and then its decoders stop.
+	 * @param name
+	 * @param rate - the sound card sample rate
+	 * @param iq
+	 * @param channels - the number of decoders that read from this source
+	 * @return
+	 */
+	private SourceAudio openSource(String name, int rate, boolean iq, int channels) {
+		if (name.startsWith(FILE_PREFIX)) {
+			if (channels > 1)
+				throw new IllegalArgumentException("Only one decoder can read a file: " + name);
+			try {
+				SourceWav wav = new SourceWav(name.substring(FILE_PREFIX.length()), iq);
+				wav.setPullMode(true);
+				return wav;
+			} catch (UnsupportedAudioFileException e) {
+				throw new IllegalArgumentException("Could not open " + name + ": " + e.getMessage());
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Could not open " + name + ": " + e.getMessage());
+			}
+		}
+		String[] cards = SourceSoundCardAudio.getAudioSources();
+		int position = 0;
+		for (int i=SourceAudio.OFFSET; i < cards.length; i++)
+			if (cards[i].equalsIgnoreCase(name)) {
+				position = i;
+				break;
+			}
+		if (position == 0)
+			for (int i=SourceAudio.OFFSET; i < cards.length; i++)
+				if (cards[i].toLowerCase().contains(name.toLowerCase())) {
+					position = i;
+					break;
+				}
+		if (position == 0)
+			throw new IllegalArgumentException("Sound card not found: " + name + ".  Use -list to see the sound cards");
+		try {
+			return new SourceSoundCardAudio(rate * 4, rate, position, channels > 1 ? channels : 0, iq);
+		} catch (LineUnavailableException e) {
+			throw new IllegalArgumentException("Could not open " + name + ": " + e.getMessage());
+		}
+	}
+
+	void start() {
+		for (HeadlessDecoder d : decoders) {
+			Log.println("Starting " + d.getStatus());
+			d.start();
+		}
+		// Start the channelizers once their decoders are reading, so nothing is dropped at the start
+		for (Channelizer c : channelizers.values())
+			c.start();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				Log.println("Stopping the decoders");
+				for (HeadlessDecoder d : decoders)
+					d.stop();
+				for (Channelizer c : channelizers.values())
+					c.stop();
+			}
+		});
+	}
+
+	/**
+	 * @return the status of each decoder and the upload queue, one item per line
+	 */
+	String getStatus() {
+		Runtime rt = Runtime.getRuntime();
+		StringBuilder s = new StringBuilder();
+		s.append("FoxTelem Daemon " + Config.VERSION + ", up " + (System.currentTimeMillis() - startTime) / 1000 + " s\n");
+		for (HeadlessDecoder d : decoders)
+			s.append(d.getStatus() + "\n");
+		for (Map.Entry<String, Channelizer> entry : channelizers.entrySet()) {
+			Channelizer c = entry.getValue();
+			s.append("Channelizer " + entry.getKey() + ": " + c.getNumberOfChannels() + " channels at " + c.getChannelSampleRate()
+					+ " Hz, " + c.getSharedCpuNanos() / 1000000 + " ms in the shared FFT\n");
+		}
+		s.append("Frames decoded: " + Config.totalFrames + "\n");
+		if (Config.rawFrameQueue != null)
+			s.append("Upload queue: " + Config.rawFrameQueue.getSize() + " frames" + (Config.uploadToServer ? "" : ", upload is off") + "\n");
+		s.append("Memory: " + (rt.totalMemory() - rt.freeMemory()) / (1024*1024) + " MB used of " + rt.maxMemory() / (1024*1024) + " MB\n");
+		return s.toString();
+	}
+
+	/**
+	 * Wait for the decoders to finish, which they only do at the end of a recording or if they fail.  Then let the
+	 * payload store write what it holds and give the upload queue a chance to empty.  The queue is saved to disk as
+	 * frames are added, so anything still in it is sent the next time we run.
+	 * @return the exit status, 0 if all of the decoders finished normally or EXIT_DECODER_FAILED
+	 */
+	int waitForDecoders() {
+		for (HeadlessDecoder d : decoders)
+			while (d.isRunning())
+				sleep(1000);
+		int status = 0;
+		for (HeadlessDecoder d : decoders)
+			if (d.hasFailed()) {
+				Log.println("ERROR: " + d.getStatus());
+				status = EXIT_DECODER_FAILED;
+			}
+		Log.println("The decoders have finished, flushing the payload store and the upload queue");
+		while (Config.payloadStore.hasQueuedFrames() || Config.payloadStore.hasQueuedMeasurements())
+			sleep(100);
+		if (Config.rawFrameQueue != null) {
+			long end = System.currentTimeMillis() + UPLOAD_TIMEOUT;
+			while (Config.uploadToServer && Config.rawFrameQueue.getSize() > 0 && System.currentTimeMillis() < end)
+				sleep(1000);
+			Config.rawFrameQueue.stopProcessing();
+		}
+		Log.println("FoxTelemDaemon exit with status " + status);
+		Log.close();
+		return status;
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			e.printStackTrace(Log.getWriter());
+		}
+	}
+
+	/**
+	 * Answer status requests on the local machine.  Each connection gets the status and is closed.  This runs on its
+	 * own thread while the main thread waits for the decoders.
+	 */
+	@Override
+	public void run() {
+		ServerSocket serverSocket = null;
+		try {
+			serverSocket = new ServerSocket(statusPort, 5, InetAddress.getLoopbackAddress());
+		} catch (IOException e) {
+			Log.println("FATAL: Could not listen for status requests on port: " + statusPort + " " + e.getMessage());
+			System.err.println("FATAL: Could not listen for status requests on port: " + statusPort + " " + e.getMessage());
+			System.exit(1);
+		}
+		Log.println("Status available on localhost port " + statusPort);
+		while (true) {
+			Socket socket = null;
+			try {
+				socket = serverSocket.accept();
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+				out.print(getStatus());
+				out.flush();
+			} catch (IOException e) {
+				Log.println("ERROR: Status request failed: " + e.getMessage());
+			} finally {
+				try { if (socket != null) socket.close(); } catch (IOException e) { }
+			}
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.awt.Frame;
 import java.awt.Toolkit;
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import javax.swing.JFrame;
@@ -16,6 +17,8 @@ import javax.swing.UIManager;
 
 import common.Config;
 import common.Log;
+import decoder.BatchDecoder;
+import decoder.SourceIQ;
 //import decoder.FoxDecoder;
 
 /**
@@ -504,12 +507,22 @@ public class FoxTelemMain {
 
 	public static String HELP = "AMSAT Fox Telemetry Decoder. Version " + Config.VERSION +"\n\n"
 			+ "Usage: FoxTelem [-h][-v][-s] [logFileDir]\n"
+			+ "       FoxTelem -decode [-iq] [-hs|-psk] [-threads n] [logFileDir] file.wav ...\n"
 			+ "-h show this help\n"
 			+ "-v display version information\n"
 			+ "-s automatically start the decoder\n"
+			+ "-decode decode the recordings without the GUI, as fast as possible, and exit\n"
+			+ "   -iq the recordings are IQ files\n"
+			+ "   -hs decode high speed, -psk decode BPSK, otherwise DUV\n"
+			+ "   -threads the number of files to decode at once, default is one per processor\n"
 			+ "logFileDir - Start the decoder in this directory and use the settings stored there\n\n";
 	static String seriousErrorMsg;
 	static String logFileDir = null;
+	static boolean batchDecode = false;
+	static boolean batchIQ = false;
+	static int batchMode = SourceIQ.MODE_FSK_DUV;
+	static int batchThreads = 0;
+	static ArrayList<String> batchFiles = new ArrayList<String>();
 	
 	static int REQUIRED_JAVA_VERSION = 8;
 	
@@ -526,8 +539,6 @@ public class FoxTelemMain {
 			; // Failure to check the version is not fatal.  Ignore and hope the user got it right
 		}
 		
-		ProgressPanel initProgress = new ProgressPanel(MainWindow.frame, "Initializing AMSAT FoxTelem, please wait ...", false);
-		initProgress.setVisible(true);
 		int arg = 0;
 		while (arg < args.length) {
 			if (args[arg].startsWith("-")) { // this is a switch
@@ -543,7 +554,22 @@ public class FoxTelemMain {
 				Log.println("Command Line Switch: STARTED");
 				Config.startButtonPressed = true;
 			}
+			if (args[arg].equalsIgnoreCase("-decode")) batchDecode = true;
+			if (args[arg].equalsIgnoreCase("-iq")) batchIQ = true;
+			if (args[arg].equalsIgnoreCase("-hs")) batchMode = SourceIQ.MODE_FSK_HS;
+			if (args[arg].equalsIgnoreCase("-psk")) batchMode = SourceIQ.MODE_PSK_NC;
+			if (args[arg].equalsIgnoreCase("-threads") && arg+1 < args.length) {
+				arg++;
+				try {
+					batchThreads = Integer.parseInt(args[arg]);
+				} catch (NumberFormatException e) {
+					System.out.println("Invalid number of threads: " + args[arg]);
+					System.exit(1);
+				}
+			}
 			
+			} else if (batchDecode && !new File(args[arg]).isDirectory()) {
+				batchFiles.add(args[arg]);
 			} else {
 				// we have no more switches, so start reading command line paramaters
 				Log.println("Command Line Param LogFileDir: " + args[arg]);
@@ -552,6 +578,19 @@ public class FoxTelemMain {
 			arg++;
 		}
 		
+		if (batchDecode) {
+			if (batchFiles.size() == 0) {
+				System.out.println(HELP);
+				System.exit(1);
+			}
+			Log.showGuiDialogs = false; // nobody to click on them
+		}
+		ProgressPanel initProgress = null;
+		if (!batchDecode) {
+			initProgress = new ProgressPanel(MainWindow.frame, "Initializing AMSAT FoxTelem, please wait ...", false);
+			initProgress.setVisible(true);
+		}
+
 		if (logFileDir == null)
 			Config.homeDirectory = System.getProperty("user.home") + File.separator + ".FoxTelem";
 		else
@@ -561,7 +600,7 @@ public class FoxTelemMain {
 		if (Config.missing()) {
 			// Then this is the first time we have run FoxTelem on this computer
 			Config.setHome();
-			if (logFileDir == null)
+			if (logFileDir == null && !batchDecode)
 				m.initialRun();
 		}
 		
@@ -576,6 +615,14 @@ public class FoxTelemMain {
 		
 		Log.println("LogFileDir is:" + Config.logFileDirectory);
 
+		if (batchDecode) {
+			// These are not saved, as we never call Config.save()
+			Config.iq = batchIQ;
+			Config.autoDecodeSpeed = false; // otherwise the decoders try to switch the view on the input tab
+			BatchDecoder batch = new BatchDecoder(batchFiles, batchIQ, batchMode, batchThreads);
+			int failed = batch.decodeAll();
+			System.exit(failed == 0 ? 0 : 2);
+		}
 		
 		invokeGUI();
 		initProgress.updateProgress(100);
@@ -1,16 +1,27 @@
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.SocketTimeoutException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import telemServer.DuplicateFrameCache;
 import telemServer.ImageProcess;
+import telemServer.Metrics;
+import telemServer.MetricsServer;
 import telemServer.ServerConfig;
 import telemServer.ServerProcess;
+import telemServer.SpoolManager;
 import telemServer.StpFileProcessException;
+import telemServer.StpFileRsDecodeException;
 import telemetry.Frame;
 import telemetry.PayloadDbStore;
 import common.Config;
@@ -50,11 +61,17 @@ public class FoxTelemServer {
 	static final String usage = "FoxServer user database [-vr] [-s dir] [-f dir]\n-v - Version Information\n"
 			+ "-s <dir> - Process all of the stp files in the specified directory and load them into the db\n"
 			+ "-f <dir> - Read the stp files in the specified directory and fix the STP_HEADER table db\n"
+			+ "-x <yyyyMMdd> - Process the spooled stp files for that UTC day that are unprocessed or were exceptions\n"
 			+ "-r - Reprocess the radiation data and generate the secondary payloads\n"
 			+ "-hpk - Reprocess the Herci High Speed data and generate the packet payloads\n";
 	
 	static Thread imageThread;
 	static ImageProcess imageProcess;
+	static Thread metricsThread;
+	static SpoolManager spool;
+	
+	static final Metrics.Counter connections = Metrics.counter("foxserver_connections_total", "STP connections accepted");
+	static final Metrics.Counter acceptErrors = Metrics.counter("foxserver_accept_errors_total", "Errors or timeouts waiting for an STP connection");
 	
 	public static void main(String[] args) throws IOException {
 		if (args.length == 1) {
@@ -137,6 +154,23 @@ public class FoxTelemServer {
 				Log.println("AMSAT Fox Server. \nSTP FILE fix: " + dir);
 				fixStp(dir);
 				System.exit(0);
+			} else
+
+			if ((args[2].equalsIgnoreCase("-x")) ) {
+				Log.println("AMSAT Fox Server. \nSPOOL REPROCESS: " + args[3]);
+				SimpleDateFormat dayFormat = new SimpleDateFormat("yyyyMMdd");
+				dayFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+				Date day = null;
+				try {
+					day = dayFormat.parse(args[3]);
+				} catch (ParseException e) {
+					System.out.println(usage);
+					System.exit(1);
+				}
+				spool = new SpoolManager(ServerConfig.spoolDir);
+				reprocessSpool(u,p,db, day, new Date(day.getTime() + 24*60*60*1000L - 1), 
+						(1 << SpoolManager.NEW) | (1 << SpoolManager.EXCEPTION));
+				System.exit(0);
 			} else {
 				System.out.println(usage);
 				System.exit(1);
@@ -163,6 +197,18 @@ public class FoxTelemServer {
         //ServerProcess process = null;
         //Thread processThread;
         
+        startMetrics(pool);
+        
+        try {
+        	spool = new SpoolManager(ServerConfig.spoolDir);
+        } catch (IOException e) {
+        	Log.println("FATAL: Could not open the spool: " + e.getMessage());
+        	Log.alert("FATAL: Could not open the spool: " + e.getMessage());
+        }
+        // Anything from the last day that is still NEW was received but not imported when the server stopped
+        Date now = new Date();
+        reprocessSpool(u,p,db, new Date(now.getTime() - 24*60*60*1000L), now, 1 << SpoolManager.NEW);
+        
         // Start the background image processing thread
         imageProcess = new ImageProcess(initPayloadDB(u,p,db));
         imageThread = new Thread(imageProcess);
@@ -175,15 +221,18 @@ public class FoxTelemServer {
         	try {
         		//process = new ServerProcess(serverSocket.accept(), sequence++);
         		Log.println("Waiting for connection ...");
-        		pool.execute(new ServerProcess(u,p,db, serverSocket.accept(), sequence++));
+        		pool.execute(new ServerProcess(u,p,db, spool, serverSocket.accept(), sequence++));
+        		connections.inc();
         		retries = 0;
         	}  catch (SocketTimeoutException s) {
         		Log.println("Socket timed out! - trying to continue	");
+        		acceptErrors.inc();
         		retries++;
         		try { Thread.sleep(1000); } catch (InterruptedException e1) {	}
         	} catch (IOException e) {
         		e.printStackTrace(Log.getWriter());
         		Log.println("Socket Error: waiting to see if we recover: " + e.getMessage());
+        		acceptErrors.inc();
         		retries++;
         		try { Thread.sleep(1000); } catch (InterruptedException e1) {	}
         	}
@@ -203,6 +252,34 @@ public class FoxTelemServer {
 		}
     }
 	
+	/**
+	 * Register the gauges for the connection thread pool and start the local metrics endpoint
+	 * @param pool
+	 */
+	private static void startMetrics(ExecutorService pool) {
+		if (pool instanceof ThreadPoolExecutor) {
+			final ThreadPoolExecutor tpe = (ThreadPoolExecutor)pool;
+			Metrics.register(new Metrics.Gauge("foxserver_pool_active_threads") {
+				public double value() { return tpe.getActiveCount(); }
+			}, "STP connection threads that are busy");
+			Metrics.register(new Metrics.Gauge("foxserver_pool_size") {
+				public double value() { return tpe.getMaximumPoolSize(); }
+			}, "Maximum number of STP connection threads");
+			Metrics.register(new Metrics.Gauge("foxserver_pool_queue_depth") {
+				public double value() { return tpe.getQueue().size(); }
+			}, "STP connections waiting for a thread");
+		}
+		Metrics.register(new Metrics.Gauge("foxserver_duplicate_cache_size") {
+			public double value() { return DuplicateFrameCache.size(); }
+		}, "Frames held in the duplicate frame cache");
+		if (ServerConfig.metricsPort > 0) {
+			metricsThread = new Thread(new MetricsServer(ServerConfig.metricsPort));
+			metricsThread.setDaemon(true);
+			metricsThread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
+			metricsThread.start();
+		}
+	}
+	
 	public static PayloadDbStore initPayloadDB(String u, String p, String db) {	
 		return new PayloadDbStore(u,p,db);
 		
@@ -220,6 +297,32 @@ public class FoxTelemServer {
 		}
 	}
 
+	/**
+	 * Import the spooled STP files received between from and to that have one of the statuses in the mask
+	 */
+	private static void reprocessSpool(final String u, final String p, final String db, Date from, Date to, int statusMask) {
+		try {
+			int count = spool.scan(from, to, statusMask, new SpoolManager.Visitor() {
+				public void entry(SpoolManager.Entry e, byte[] stp) {
+					try {
+						Frame f = Frame.importStp(u,p,db, e.toString(), new ByteArrayInputStream(stp));
+						spool.mark(e, f == null ? SpoolManager.NULL : SpoolManager.PROCESSED);
+					} catch (StpFileRsDecodeException rs) {
+						Log.println("STP FILE Could not be decoded: " + rs.getMessage());
+						spool.mark(e, SpoolManager.NULL);
+					} catch (StpFileProcessException ex) {
+						Log.println("STP IMPORT ERROR: " + ex.getMessage());
+						spool.mark(e, SpoolManager.EXCEPTION);
+					}
+				}
+			});
+			Log.println("Spooled files processed: " + count);
+		} catch (IOException e) {
+			Log.println("ERROR: Could not read the spool: " + e.getMessage());
+			e.printStackTrace(Log.getWriter());
+		}
+	}
+
 	private static void processRadData(String u, String p, String db) {
 		Config.payloadStore = initPayloadDB(u,p,db);
 		Config.payloadStore.initRad2();
@@ -926,16 +926,13 @@ public class Config {
 		//Log.println("Could not read properties file. Likely Corrupt.");
 		Object[] options = {"Yes",
         "Exit"};
-		int n = JOptionPane.showOptionDialog(
-				MainWindow.frame,
+		int n = Log.optionDialog(
+				"Error Loading " + Config.homeDirectory + File.separator + propertiesFileName,
 				"Could not read properties file. If this is a new release then the format has probablly been extended.\n"
 				+ "Should I create a new properties file after reading as much as possible from the existing one?",
-				"Error Loading " + Config.homeDirectory + File.separator + propertiesFileName,
-			    JOptionPane.YES_NO_OPTION,
 			    JOptionPane.ERROR_MESSAGE,
-			    null,
 			    options,
-			    options[0]);
+			    0);
 					
 		if (n == JOptionPane.YES_OPTION) {
 			save();
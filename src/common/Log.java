@@ -7,11 +7,17 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JOptionPane;
 
@@ -38,6 +44,17 @@ import javax.swing.JOptionPane;
  *
  * Save messages from the GUI to a log file for later analysis.  This is a static class and new should not be called
  *
+ * Messages are not written on the caller's thread.  println() puts the message and the time on a bounded queue and
+ * returns, and a single writer thread formats the time stamp, writes the file, echoes to stdout and updates the log
+ * panel.  The writer takes all of the messages waiting in the queue and flushes once per batch, so verbose debug
+ * output no longer flushes the file for every line from the decoder.  If the queue is full the message is dropped
+ * and counted, and the writer logs how many were lost, so a burst of logging can never block the decoder.
+ *
+ * The writer rolls to a new file at midnight UTC and when the file reaches MAX_LOG_SIZE.  alert() and flush() wait
+ * until everything queued before them is on disk, so the last lines before an ALERT are always in the log.  An
+ * ALERT is never dropped: if the queue is full, alert() waits for room.  close() stops the writer before it closes
+ * the file.
+ *
  *
  */
 public class Log {
@@ -52,6 +69,46 @@ public class Log {
 	public static boolean showGuiDialogs = true;  // if true popup windows are shown for serious errors.  If false ALERTs are written.
 	public static boolean alertsAreFatal = true;
 	
+	public static final int QUEUE_SIZE = 16384; // messages waiting to be written
+	public static final long MAX_LOG_SIZE = 50 * 1024 * 1024; // roll to a new file once the log is this big
+	static final long WRITER_CHECK = 1000; // ms between checks that the writer is still running while we wait for it
+	static final long DAY = 24*60*60*1000L;
+	
+	private static ArrayBlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(QUEUE_SIZE);
+	private static AtomicLong dropped = new AtomicLong();
+	private static Thread writerThread;
+	private static PrintWriter queueWriter; // returned by getWriter() so stack traces go through the queue
+	private static String baseName; // the log file path without the date
+	private static String logDay; // the date of the file we are writing to
+	private static long logDayEnd; // midnight UTC at the end of logDay
+	private static int logPart; // incremented each time we roll because of the size
+	private static long logSize;
+	
+	/**
+	 * A message waiting to be written.  The time is taken when the message is logged, not when it is written
+	 */
+	static class Entry {
+		static final int LINE = 0; // time stamp, message and a new line
+		static final int TEXT = 1; // just the text
+		static final int FLUSH = 2; // release the latch once everything before this is on disk
+		static final int TRACE = 3; // text from getWriter(), which only goes to the file
+		static final int STOP = 4; // stop the writer once everything before this is on disk
+		
+		final int type;
+		final long time;
+		final String text;
+		final boolean toFile;
+		final CountDownLatch flushed;
+		
+		Entry(int type, String text, boolean toFile, CountDownLatch flushed) {
+			this.type = type;
+			this.time = System.currentTimeMillis();
+			this.text = text;
+			this.toFile = toFile;
+			this.flushed = flushed;
+		}
+	}
+	
 	/**
 	 * Initialise the logger and create a logfile with the passed name
 	 * @param file
@@ -59,31 +116,31 @@ public class Log {
 	 */
 	public static void init(String logFile) {
 		
-		Log.logFile = rollLog(logFile);
 		if (Config.logging) {
-			try {
-				if (!Config.logFileDirectory.equalsIgnoreCase("")) {
-					Log.logFile = Config.logFileDirectory + File.separator + Log.logFile;
-				} 
-				File aFile = new File(Log.logFile);
-				if(!aFile.exists()){
-					aFile.createNewFile();
-				}
-
-				//use buffering and append to the existing file if it is there
-				output = new PrintWriter(new FileWriter(aFile, true));
-			} catch (IOException e) {
-				System.err.println("FATAL ERROR: Cannot write log file: FoxTelemDecoder.log\n"
-						+ "Perhaps the disk is full or the directory is not writable:\n" + Config.logFileDirectory);
+			synchronized (Log.class) {
+				try {
+					baseName = logFile;
+					if (!Config.logFileDirectory.equalsIgnoreCase("")) {
+						baseName = Config.logFileDirectory + File.separator + logFile;
+					} 
+					logPart = 0;
+					openLog(System.currentTimeMillis());
+				} catch (IOException e) {
+					System.err.println("FATAL ERROR: Cannot write log file: FoxTelemDecoder.log\n"
+							+ "Perhaps the disk is full or the directory is not writable:\n" + Config.logFileDirectory);
 
-				e.printStackTrace();
-		        Log.errorDialog("FATAL ERROR", "Cannot write log file: FoxTelemDecoder.log\n"
-		        		+ "Perhaps the disk is full or the directory is not writable:\n" + Config.logFileDirectory + "\n\n"
-		        				+ "You can reset FoxTelem by deleting the settings file (might want to back it up first):\n"
-		        				+ Config.homeDirectory+ File.separator+"FoxTelem.properties");
-		        System.exit(1);
+					e.printStackTrace();
+					Log.errorDialog("FATAL ERROR", "Cannot write log file: FoxTelemDecoder.log\n"
+							+ "Perhaps the disk is full or the directory is not writable:\n" + Config.logFileDirectory + "\n\n"
+							+ "You can reset FoxTelem by deleting the settings file (might want to back it up first):\n"
+							+ Config.homeDirectory+ File.separator+"FoxTelem.properties");
+					System.exit(1);
+				}
 			}
+		} else {
+			Log.logFile = rollLog(logFile);
 		}
+		startWriter();
 		uncaughtExHandler = new Thread.UncaughtExceptionHandler() {
 		    public void uncaughtException(Thread th, Throwable ex) {
 		    	
@@ -96,6 +153,66 @@ public class Log {
 		};
 	}
 	
+	/**
+	 * Open the log file for this time, appending to it if it exists.  If the file for today is already full then
+	 * we move on to the next part.  Called with the lock on Log.class held, or from the writer thread.
+	 * @param now
+	 * @throws IOException
+	 */
+	private static void openLog(long now) throws IOException {
+		String day = dayName(now);
+		if (!day.equals(logDay)) logPart = 0;
+		File aFile = new File(partName(day, logPart));
+		while (aFile.length() >= MAX_LOG_SIZE) {
+			aFile = new File(partName(day, ++logPart));
+		}
+		if(!aFile.exists()){
+			aFile.createNewFile();
+		}
+		//use buffering and append to the existing file if it is there
+		PrintWriter out = new PrintWriter(new FileWriter(aFile, true));
+		PrintWriter old = output;
+		output = out;
+		if (old != null)
+			old.close();
+		logDay = day;
+		logDayEnd = (now / DAY + 1) * DAY;
+		logSize = aFile.length();
+		Log.logFile = aFile.getPath();
+	}
+	
+	private static String partName(String day, int part) {
+		if (part == 0)
+			return baseName + day + ".log";
+		return baseName + day + "." + part + ".log";
+	}
+	
+	private static String dayName(long time) {
+		synchronized (logDateName) {
+			logDateName.setTimeZone(TimeZone.getTimeZone("UTC"));
+			return logDateName.format(new Date(time));
+		}
+	}
+	
+	private static synchronized void startWriter() {
+		if (writerThread != null) return;
+		queueWriter = new PrintWriter(new QueueWriter(), true);
+		writerThread = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		});
+		writerThread.setName("Log");
+		writerThread.setDaemon(true);
+		writerThread.start();
+		// Write anything still in the queue when we exit
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				flush();
+			}
+		});
+	}
+	
 	public static String makeShortTrace(StackTraceElement[] elements) {
 		String stacktrace = "";  
         int limit = 8;
@@ -107,16 +224,17 @@ public class Log {
         return stacktrace;
 	}
 	
+	/**
+	 * Return the name of today's log file for this base name.  The writer rolls to a new file when the date changes.
+	 */
 	public static String rollLog(String logFile) {
-		Date today = Calendar.getInstance().getTime();
-		logDateName.setTimeZone(TimeZone.getTimeZone("UTC"));
-		String reportDate = logDateName.format(today);
-		return logFile + reportDate + ".log";
+		return logFile + dayName(System.currentTimeMillis()) + ".log";
 	}
 	
 	public static void alert(String message) {
 		try {
-			println("ALERT: " + message); // put as last item in the log too
+			// put as last item in the log too, and make sure it is on disk before we write the alert and exit
+			printlnDurable("ALERT: " + message);
 			String alertFile = Log.logFile + ".ALERT";
 			File aFile = new File(alertFile);
 			if(!aFile.exists()){
@@ -148,40 +266,197 @@ public class Log {
 	public static void setLogging(boolean on) { Config.logging = on; }
 	public static void setStdoutEcho(boolean on) { echoToStdout = on; }
 	public static PrintWriter getWriter() { 
-		if (output != null)
-			return output;
+		if (output != null && queueWriter != null)
+			return queueWriter;
 		else
 			return new PrintWriter(System.err);
 	}
 	
+	/**
+	 * The number of messages that were dropped because the queue was full
+	 */
+	public static long getDropped() { return dropped.get(); }
+	
 	public static void setGUILog(SourceTab panel) {
 		logPanel = panel;
 	}
 	
 	public static void print(String s) {
-		if (Config.logging) {
-			if (output == null) init(logFile);
-			output.write(s);
-			if (logPanel != null) logPanel.log(s);
-			flush();
-		}
-		if (echoToStdout) {
-			System.out.print(s);
-		}
-
+		if (Config.logging && output == null) init(logFile);
+		enqueue(Entry.TEXT, s);
 	}
 
 	public static void println(String s) {
-		if (Config.logging) {
-			if (output == null) init("FoxTelemDecoder");
-			output.write(fileDateStamp() + s + System.getProperty("line.separator") );
-			if (logPanel != null) logPanel.log(s);
+		if (Config.logging && output == null) init("FoxTelemDecoder");
+		enqueue(Entry.LINE, s);
+	}
+	
+	private static void enqueue(int type, String s) {
+		if (!Config.logging && (!echoToStdout || type == Entry.TRACE)) return;
+		if (writerThread == null) startWriter();
+		if (!queue.offer(new Entry(type, s, Config.logging, null)))
+			dropped.incrementAndGet();
+	}
+	
+	/**
+	 * Log a line that must not be dropped, such as an ALERT.  Rather than drop it if the queue is full, we wait for
+	 * room, and then wait until it is on disk.  If called from the writer thread, which can not wait for itself, the
+	 * line is written directly.
+	 */
+	private static void printlnDurable(String s) {
+		if (Config.logging && output == null) init("FoxTelemDecoder");
+		if (!Config.logging && !echoToStdout) return;
+		if (writerThread == null) startWriter();
+		Thread writer = writerThread;
+		if (Thread.currentThread() == writer) {
+			synchronized (Log.class) {
+				if (Config.logging && output != null) {
+					output.write(fileDateStamp() + s + System.getProperty("line.separator"));
+					output.flush();
+				}
+			}
+			if (echoToStdout)
+				System.out.println(s);
+			return;
+		}
+		if (put(new Entry(Entry.LINE, s, Config.logging, null), writer))
 			flush();
+	}
+	
+	/**
+	 * Wait for room in the queue for as long as the writer is running
+	 * @return false if the writer stopped before there was room
+	 */
+	private static boolean put(Entry e, Thread writer) {
+		try {
+			while (!queue.offer(e, WRITER_CHECK, TimeUnit.MILLISECONDS))
+				if (!writer.isAlive()) return false;
+			return true;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
-		if (echoToStdout) {
-			System.out.println(s);
+	}
+	
+	/**
+	 * Collects the text written by one thread, e.g. a stack trace, and queues it a line at a time so that lines from
+	 * different threads are not mixed together
+	 */
+	static class QueueWriter extends Writer {
+		private ThreadLocal<StringBuilder> line = new ThreadLocal<StringBuilder>() {
+			protected StringBuilder initialValue() { return new StringBuilder(); }
+		};
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			StringBuilder b = line.get();
+			for (int i=off; i < off+len; i++) {
+				b.append(cbuf[i]);
+				if (cbuf[i] == '\n') {
+					enqueue(Entry.TRACE, b.toString());
+					b.setLength(0);
+				}
+			}
+		}
+		
+		@Override
+		public void flush() {
+			StringBuilder b = line.get();
+			if (b.length() > 0) {
+				enqueue(Entry.TRACE, b.toString());
+				b.setLength(0);
+			}
+		}
+		
+		@Override
+		public void close() {
+			flush();
+		}
+	}
+	
+	/**
+	 * The writer thread.  Take everything that is waiting, write it to the file in one go, then flush once
+	 */
+	private static void writeLoop() {
+		DateFormat stamp = new SimpleDateFormat("yyyyMMddHHmmss");
+		stamp.setTimeZone(TimeZone.getTimeZone("UTC"));
+		long stampSecond = -1;
+		String stampText = "";
+		String nl = System.getProperty("line.separator");
+		ArrayList<Entry> batch = new ArrayList<Entry>();
+		StringBuilder file = new StringBuilder();
+		StringBuilder echo = new StringBuilder();
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				continue;
+			}
+			queue.drainTo(batch);
+			long lost = dropped.getAndSet(0);
+			if (lost > 0)
+				batch.add(0, new Entry(Entry.LINE, "WARNING: " + lost + " log messages were dropped because the log queue was full", true, null));
+			file.setLength(0);
+			echo.setLength(0);
+			long last = 0;
+			for (Entry e : batch) {
+				if (e.type == Entry.FLUSH || e.type == Entry.STOP) continue;
+				last = e.time;
+				if (e.toFile) {
+					if (e.type == Entry.LINE) {
+						// Most lines arrive in the same second as the one before, so only format the time when it changes
+						if (e.time / 1000 != stampSecond) {
+							stampSecond = e.time / 1000;
+							stampText = stamp.format(new Date(e.time)) + ": ";
+						}
+						file.append(stampText).append(e.text).append(nl);
+					} else
+						file.append(e.text);
+					if (logPanel != null && e.type != Entry.TRACE) logPanel.log(e.text);
+				}
+				if (echoToStdout && e.type != Entry.TRACE) {
+					echo.append(e.text);
+					if (e.type == Entry.LINE) echo.append(nl);
+				}
+			}
+			synchronized (Log.class) {
+				if (output != null) {
+					if (file.length() > 0) {
+						rollIfNeeded(last);
+						output.write(file.toString());
+						logSize += file.length();
+					}
+					output.flush();
+				}
+			}
+			if (echo.length() > 0) {
+				System.out.print(echo);
+				System.out.flush();
+			}
+			boolean stop = false;
+			for (Entry e : batch) {
+				if (e.flushed != null)
+					e.flushed.countDown();
+				if (e.type == Entry.STOP)
+					stop = true;
+			}
+			batch.clear();
+			if (stop) return;
+		}
+	}
+	
+	private static void rollIfNeeded(long time) {
+		if (baseName == null) return; // we did not open the file, so we do not know how to name the next one
+		boolean newDay = time >= logDayEnd;
+		if (newDay || logSize >= MAX_LOG_SIZE) {
+			if (!newDay) logPart++;
+			try {
+				openLog(time);
+			} catch (IOException e) {
+				// Keep writing to the file we have
+				System.err.println("ERROR: Could not roll the log file: " + e.getMessage());
+			}
 		}
-
 	}
 	
 	public static int optionYNdialog(String title, String message) {
@@ -189,16 +464,22 @@ public class Log {
 			return 1; // Default is no if a dialog is called from server
 		Object[] options = {"Yes",
         "No"};
-		int n = JOptionPane.showOptionDialog(
-				MainWindow.frame,
-				message.toString(),
-				title,
-				JOptionPane.YES_NO_OPTION, 
-			    JOptionPane.QUESTION_MESSAGE,
-			    null,
-			    options,
-			    options[1]);
-		return n;
+		return GuiDialogs.option(title, message, JOptionPane.QUESTION_MESSAGE, options, 1);
+	}
+	
+	/**
+	 * Ask the user to pick one of the options.  If there is no GUI then the default is returned.
+	 * @param title
+	 * @param message
+	 * @param type - e.g. JOptionPane.ERROR_MESSAGE
+	 * @param options
+	 * @param defaultOption - the position of the option that is selected when the dialog opens
+	 * @return the position of the option chosen
+	 */
+	public static int optionDialog(String title, String message, int type, Object[] options, int defaultOption) {
+		if (!showGuiDialogs)
+			return defaultOption;
+		return GuiDialogs.option(title, message, type, options, defaultOption);
 	}
 	
 	public static void errorDialog(String title, String message) {
@@ -212,10 +493,7 @@ public class Log {
 	private static void dialog(String title, String message, int type) {
 		try {
 		if (showGuiDialogs)
-		JOptionPane.showMessageDialog(MainWindow.frame,
-				message.toString(),
-				title,
-			    type) ;
+			GuiDialogs.message(title, message, type);
 		else Log.println(title + " " + message.toString());
 		} catch (Exception e) {
 			// catch all exceptions at this point, to avoid popping up messages in a loop
@@ -226,20 +504,87 @@ public class Log {
 	
 	
 	
+	/**
+	 * The Swing calls are kept in this class so that it is only loaded when a dialog is shown.  Otherwise the class
+	 * verifier loads the Swing classes with Log, even when there is no GUI.
+	 */
+	private static class GuiDialogs {
+		static int option(String title, String message, int type, Object[] options, int defaultOption) {
+			return JOptionPane.showOptionDialog(
+					MainWindow.frame,
+					message.toString(),
+					title,
+					JOptionPane.YES_NO_OPTION, 
+				    type,
+				    null,
+				    options,
+				    options[defaultOption]);
+		}
+		
+		static void message(String title, String message, int type) {
+			JOptionPane.showMessageDialog(MainWindow.frame,
+					message.toString(),
+					title,
+				    type) ;
+		}
+	}
+	
 	public static String fileDateStamp() {	
 		Date today = Calendar.getInstance().getTime();  
-		fileDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-		String reportDate = fileDateFormat.format(today) + ": ";
-		return reportDate;
+		synchronized (fileDateFormat) {
+			fileDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+			String reportDate = fileDateFormat.format(today) + ": ";
+			return reportDate;
+		}
 	}
 
+	/**
+	 * Wait until everything logged before this call has been written and flushed to disk.  We wait for as long as
+	 * the writer is running, so nothing that is queued is lost, however long the queue.
+	 */
 	public static void flush() {
-		if (Config.logging && output != null)
-			output.flush();
+		waitForWriter(Entry.FLUSH);
+	}
+	
+	private static void waitForWriter(int type) {
+		Thread writer = writerThread;
+		if (writer == null) return;
+		if (Thread.currentThread() == writer) {
+			synchronized (Log.class) {
+				if (output != null) output.flush();
+			}
+			return;
+		}
+		CountDownLatch done = new CountDownLatch(1);
+		if (!put(new Entry(type, null, false, done), writer)) return;
+		try {
+			while (!done.await(WRITER_CHECK, TimeUnit.MILLISECONDS))
+				if (!writer.isAlive()) return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt(); // give up waiting, the writer will still write it
+		}
 	}
 	
+	/**
+	 * Write everything that is queued, stop the writer and then close the file, so the writer is never part way
+	 * through a batch when the file is closed.  Anything logged after this starts a new writer.
+	 */
 	public static void close() {
-		if (Config.logging && output != null)
-			output.close();
+		Thread writer = writerThread;
+		if (writer != null && Thread.currentThread() != writer) {
+			waitForWriter(Entry.STOP);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (Log.class) {
+				if (writerThread == writer) writerThread = null;
+			}
+		}
+		synchronized (Log.class) {
+			if (Config.logging && output != null)
+				output.close();
+		}
 	}
 }
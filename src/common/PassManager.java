@@ -673,7 +673,7 @@ public class PassManager implements Runnable {
 				for (int s=0; s < Config.satManager.spacecraftList.size(); s++) {
 					Spacecraft sat = Config.satManager.spacecraftList.get(s);
 					if (sat.track) atLeastOneTracked = true;
-					if (MainWindow.inputTab != null) {
+					if (Config.mainWindow != null && MainWindow.inputTab != null) { // check mainWindow first so a daemon does not load the GUI
 						if (trackSpacecraft(sat)) {
 							oneSatUp = true;
 							MainWindow.inputTab.startDecoding();
@@ -708,11 +708,11 @@ public class PassManager implements Runnable {
 
 					}
 				}
-				if (MainWindow.inputTab != null && !oneSatUp) {
+				if (Config.mainWindow != null && MainWindow.inputTab != null && !oneSatUp) {
 					MainWindow.inputTab.stopDecoding();
 				}
 				if (Config.whenAboveHorizon && !atLeastOneTracked) {
-					if (MainWindow.inputTab != null) {
+					if (Config.mainWindow != null && MainWindow.inputTab != null) {
 						MainWindow.inputTab.rdbtnFindSignal.setSelected(false);
 						Config.whenAboveHorizon = false;
 						Log.errorDialog("NO SPACECRAFT TRACKED", "You have paused the decoder waiting for a spacecraft above the horizon,\n"
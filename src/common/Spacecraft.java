@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Writer;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -124,6 +125,8 @@ public abstract class Spacecraft implements Comparable<Spacecraft> {
 	public String[] lookupTableFilename;
 	//public String[] lookupTableName;
 	public LookUpTable[] lookupTable;
+	// The tables found by getLookupTableByName, because the conversions look them up for every value
+	private ConcurrentHashMap<String, LookUpTable> lookupTableCache = new ConcurrentHashMap<String, LookUpTable>();
 	
 	public String measurementsFileName;
 	public String passMeasurementsFileName;
@@ -183,9 +186,13 @@ public abstract class Spacecraft implements Comparable<Spacecraft> {
 	}
 
 	public LookUpTable getLookupTableByName(String name) {
+		LookUpTable table = lookupTableCache.get(name);
+		if (table != null) return table;
 		int i = getLookupIdxByName(name);
-		if (i != ERROR_IDX)
-				return lookupTable[i];
+		if (i != ERROR_IDX) {
+			lookupTableCache.put(name, lookupTable[i]);
+			return lookupTable[i];
+		}
 		return null;
 	}
 
@@ -390,6 +397,7 @@ public abstract class Spacecraft implements Comparable<Spacecraft> {
 			numberOfLookupTables = Integer.parseInt(getProperty("numberOfLookupTables"));
 			lookupTableFilename = new String[numberOfLookupTables];
 			lookupTable = new LookUpTable[numberOfLookupTables];
+			lookupTableCache.clear();
 			for (int i=0; i < numberOfLookupTables; i++) {
 				lookupTableFilename[i] = getProperty("lookupTable"+i+".filename");
 				lookupTable[i] = new LookUpTable(lookupTableFilename[i]);
@@ -0,0 +1,264 @@
+package decoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import common.Config;
+import common.Log;
+import decoder.FoxBPSK.FoxBPSKCostasDecoder;
+import decoder.FoxBPSK.FoxBPSKDotProdDecoder;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Decodes a list of recorded WAV or IQ files without the GUI, as fast as the CPU allows.  This is used to run archived
+ * passes through the decoder again when it has been improved.
+ *
+ * Each file is decoded on its own thread.  The SourceWav and the SourceIQ are put in pull mode, so the decoder reads
+ * the file and demodulates the IQ data itself as it needs more samples, rather than waiting on the threads that do
+ * this for live audio.  There is no sleep anywhere in the chain and the files are decoded in parallel, one per core.
+ *
+ * The size of the SourceIQ FFT is held in static fields and depends on the sample rate, so the files are grouped by
+ * sample rate and each group is decoded before the next one starts.  Decoded frames are stored and uploaded in the
+ * same way as for the GUI.
+ *
+ * For each file we report the frames decoded, the RS corrections and erasures and how many times faster than real
+ * time it was decoded.
+ *
+ */
+public class BatchDecoder {
+	boolean iq;
+	int mode; // SourceIQ.MODE_FSK_DUV, MODE_FSK_HS or MODE_PSK_NC
+	int threads;
+	List<String> fileNames;
+
+	/**
+	 * The outcome of decoding one file
+	 */
+	static class Result {
+		String fileName;
+		int frames = 0;
+		long corrections = 0;
+		long erasures = 0;
+		double audioSeconds = 0;
+		double wallSeconds = 0;
+		String error = null;
+
+		Result(String fileName) {
+			this.fileName = fileName;
+		}
+
+		public String toString() {
+			DecimalFormat d1 = new DecimalFormat("0.0"); // not thread safe and the workers report as they finish
+			if (error != null)
+				return fileName + ": ERROR " + error;
+			return fileName + ": " + frames + " frames, " + corrections + " RS corrections, " + erasures + " erasures, "
+					+ d1.format(audioSeconds) + "s of audio in " + d1.format(wallSeconds) + "s, "
+					+ d1.format(wallSeconds > 0 ? audioSeconds / wallSeconds : 0) + "x real time";
+		}
+	}
+
+	/**
+	 * @param fileNames - the recordings to decode
+	 * @param iq - true if the recordings are IQ files
+	 * @param mode - SourceIQ.MODE_FSK_DUV, MODE_FSK_HS or MODE_PSK_NC
+	 * @param threads - the number of files to decode at once, or 0 for one per processor
+	 */
+	public BatchDecoder(List<String> fileNames, boolean iq, int mode, int threads) {
+		this.fileNames = fileNames;
+		this.iq = iq;
+		this.mode = mode;
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		this.threads = threads;
+	}
+
+	/**
+	 * Decode all of the files and print a line for each one and then the totals
+	 * @return the number of files that could not be decoded
+	 */
+	public int decodeAll() {
+		long start = System.nanoTime();
+		List<Result> results = new ArrayList<Result>();
+		Map<Integer, List<String>> groups = new LinkedHashMap<Integer, List<String>>();
+		for (String fileName : fileNames) {
+			try {
+				AudioFileFormat format = AudioSystem.getAudioFileFormat(new File(fileName));
+				int rate = (int)format.getFormat().getSampleRate();
+				List<String> group = groups.get(rate);
+				if (group == null) {
+					group = new ArrayList<String>();
+					groups.put(rate, group);
+				}
+				group.add(fileName);
+			} catch (UnsupportedAudioFileException e) {
+				Result r = new Result(fileName);
+				r.error = e.getMessage();
+				report(r);
+				results.add(r);
+			} catch (IOException e) {
+				Result r = new Result(fileName);
+				r.error = e.getMessage();
+				report(r);
+				results.add(r);
+			}
+		}
+
+		for (List<String> group : groups.values()) {
+			ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, group.size()));
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final String fileName : group)
+				futures.add(pool.submit(new Callable<Result>() {
+					public Result call() {
+						Thread.currentThread().setName("Batch Decoder");
+						Result r = decodeFile(fileName);
+						report(r);
+						return r;
+					}
+				}));
+			pool.shutdown();
+			for (int i=0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (InterruptedException e) {
+					e.printStackTrace(Log.getWriter());
+				} catch (ExecutionException e) {
+					Result r = new Result(group.get(i));
+					r.error = e.getCause().toString();
+					e.getCause().printStackTrace(Log.getWriter());
+					report(r);
+					results.add(r);
+				}
+			}
+		}
+
+		// The payload store writes to disk on its own thread, so let it finish before we report and the caller exits
+		while (Config.payloadStore.hasQueuedFrames() || Config.payloadStore.hasQueuedMeasurements())
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				e.printStackTrace(Log.getWriter());
+			}
+
+		int frames = 0;
+		int failed = 0;
+		long corrections = 0;
+		long erasures = 0;
+		double audioSeconds = 0;
+		for (Result r : results) {
+			if (r.error != null) failed++;
+			frames += r.frames;
+			corrections += r.corrections;
+			erasures += r.erasures;
+			audioSeconds += r.audioSeconds;
+		}
+		double wallSeconds = (System.nanoTime() - start) / 1E9;
+		DecimalFormat d1 = new DecimalFormat("0.0");
+		String total = "TOTAL: " + results.size() + " files, " + failed + " failed, " + frames + " frames, "
+				+ corrections + " RS corrections, " + erasures + " erasures, " + d1.format(audioSeconds) + "s of audio in "
+				+ d1.format(wallSeconds) + "s, " + d1.format(wallSeconds > 0 ? audioSeconds / wallSeconds : 0) + "x real time";
+		Log.println(total);
+		System.out.println(total);
+		return failed;
+	}
+
+	private static synchronized void report(Result r) {
+		Log.println("Batch Decode " + r);
+		System.out.println(r);
+	}
+
+	/**
+	 * Decode one file on this thread.  Returns when the end of the file is reached.
+	 * @param fileName
+	 * @return
+	 */
+	Result decodeFile(String fileName) {
+		Result r = new Result(fileName);
+		long start = System.nanoTime();
+		try {
+			SourceWav wav = new SourceWav(fileName, iq);
+			wav.setPullMode(true);
+			double sampleRate = wav.getAudioFormat().getSampleRate();
+			long totalFrames = wav.totalFrames;
+			SourceAudio source = wav;
+			SourceIQ iqSource = null;
+			if (iq) {
+				iqSource = new SourceIQ((int)sampleRate*4, 0, mode == SourceIQ.MODE_FSK_HS);
+				iqSource.setAudioSource(wav, 0);
+				iqSource.setPullMode(true);
+				source = iqSource;
+			}
+			Decoder decoder = makeDecoder(source, 0, iqSource, mode);
+			decoder.process();
+			r.frames = decoder.getFramesDecoded();
+			r.corrections = decoder.getRsCorrections();
+			r.erasures = decoder.getRsErasures();
+			if (sampleRate > 0)
+				r.audioSeconds = totalFrames / sampleRate;
+		} catch (UnsupportedAudioFileException e) {
+			r.error = e.getMessage();
+		} catch (IOException e) {
+			r.error = e.getMessage();
+			e.printStackTrace(Log.getWriter());
+		}
+		r.wallSeconds = (System.nanoTime() - start) / 1E9;
+		return r;
+	}
+
+	/**
+	 * Pick the decoder in the same way as the SourceTab does when auto decode speed is off
+	 * @param source - the audio source, or the SourceIQ for IQ data
+	 * @param chan - the channel of the audio source to read
+	 * @param iqSource - the SourceIQ or null for AF audio.  Its mode is set to match the decoder
+	 * @param mode - SourceIQ.MODE_FSK_DUV, MODE_FSK_HS or MODE_PSK_NC
+	 */
+	static Decoder makeDecoder(SourceAudio source, int chan, SourceIQ iqSource, int mode) {
+		if (mode == SourceIQ.MODE_PSK_NC || mode == SourceIQ.MODE_PSK_COSTAS) {
+			if (Config.useCostas) {
+				if (iqSource != null) {
+					iqSource.setMode(SourceIQ.MODE_PSK_COSTAS);
+					return new FoxBPSKCostasDecoder(source, chan, FoxBPSKCostasDecoder.AUDIO_MODE);
+				} else
+					return new FoxBPSKCostasDecoder(source, chan, FoxBPSKCostasDecoder.PSK_MODE);
+			}
+			if (iqSource != null)
+				iqSource.setMode(SourceIQ.MODE_PSK_NC);
+			return new FoxBPSKDotProdDecoder(source, chan, FoxBPSKCostasDecoder.AUDIO_MODE);
+		} else if (mode == SourceIQ.MODE_FSK_HS) {
+			if (iqSource != null)
+				iqSource.setMode(SourceIQ.MODE_FSK_HS);
+			return new Fox9600bpsDecoder(source, chan);
+		}
+		if (iqSource != null)
+			iqSource.setMode(SourceIQ.MODE_FSK_DUV);
+		return new Fox200bpsDecoder(source, chan);
+	}
+}
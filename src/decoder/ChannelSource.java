@@ -0,0 +1,118 @@
+package decoder;
+
+import common.Config;
+import common.Log;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * One channel of a Channelizer.  The channelizer writes the decimated IQ data for the channel into the circular
+ * buffer and a SourceIQ reads it, as it would from a USB source.  Nothing runs in this source, so the thread that
+ * SourceIQ starts for it exits at once.  Stopping the channel removes it from the channelizer.
+ *
+ */
+public class ChannelSource extends SourceAudio {
+	private Channelizer channelizer;
+	private double offsetFreq; // Hz from the center frequency
+	private boolean mirrored; // true if I and Q are swapped, so the signal is at -offsetFreq in the data
+	volatile int bin; // the FFT bin that the channelizer moves to zero Hz
+	double[] channelData; // the inverse FFT for this channel, only used by the channelizer thread
+	private volatile long cpuNanos = 0;
+	private volatile long samplesWritten = 0;
+	private int errorCount = 0;
+
+	ChannelSource(Channelizer c, int circularBufferSize) {
+		super("Channel", circularBufferSize, 0, true);
+		channelizer = c;
+		sampleRate = c.getChannelSampleRate();
+		audioFormat = SourceUSB.makeAudioFormat(sampleRate);
+		channelData = new double[c.channelFftSize*2];
+	}
+
+	/**
+	 * Move the channel to this offset from the center frequency.  The channel is centered on the nearest FFT bin.
+	 * If I and Q are swapped then the spectrum of the data is the mirror image, so the channel is taken from the
+	 * mirror image bin and is put the right way round when the SourceIQ swaps I and Q.
+	 * @param offsetHz
+	 */
+	public void setOffsetFrequency(double offsetHz) {
+		offsetFreq = offsetHz;
+		mirrored = Config.swapIQ;
+		bin = channelizer.getBin(mirrored ? -offsetHz : offsetHz);
+		name = "Channel " + (long)offsetHz;
+	}
+
+	public double getOffsetFrequency() { return offsetFreq; }
+
+	/**
+	 * @return the offset of the wanted frequency from the center of the channel, in Hz
+	 */
+	public double getResidualFrequency() {
+		return offsetFreq - (mirrored ? -bin : bin) * channelizer.getBinBandwidth();
+	}
+
+	/**
+	 * Add the IQ samples from positions from to to in the data, multiplied by sign.  Called by the channelizer.  The
+	 * data is the channel's own inverse FFT, so it is changed in place.  If the SourceIQ is not keeping up then the
+	 * block is dropped, as SourceUSB does.
+	 */
+	void write(double[] data, int from, int to, double sign) {
+		if (sign != 1)
+			for (int i=from; i < to; i++)
+				data[i] = sign*data[i];
+		if (write(0, data, from, to - from))
+			samplesWritten += (to - from) / 2;
+		else {
+			errorCount++;
+			if (Config.debugAudioGlitches && errorCount % 100 == 0)
+				Log.println(name + ": can't keep up with the channelizer, doubles dropped: " + getOverruns());
+		}
+	}
+
+	void addCpuNanos(long n) {
+		cpuNanos += n;
+	}
+
+	/**
+	 * @return the time in ns that the channelizer has spent on this channel, not including the shared forward FFT
+	 */
+	public long getCpuNanos() { return cpuNanos; }
+
+	/**
+	 * @return the time spent on this channel as a fraction of the time covered by the samples it has produced
+	 */
+	public double getCpuLoad() {
+		long samples = samplesWritten;
+		if (samples == 0) return 0;
+		double seconds = samples / (double)sampleRate;
+		return cpuNanos / 1E9 / seconds;
+	}
+
+	@Override
+	public void run() {
+		Thread.currentThread().setName(name);
+		done = false;
+		// nothing to run as the channelizer writes the data
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		channelizer.removeChannel(this);
+		done = true;
+	}
+}
@@ -0,0 +1,261 @@
+package decoder;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+
+import common.Config;
+import common.Log;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Splits a wideband IQ source, such as an Airspy, into any number of narrow channels.  Each SourceIQ reads the full
+ * rate IQ data and runs its own FFT, so two decoders on one dongle cost twice as much and more than two are not
+ * possible.  The channelizer reads the IQ data once and runs one forward FFT per block for all of the channels.
+ *
+ * Each channel takes the FFT bins around its frequency, applies a flat topped taper and runs a short inverse FFT.
+ * This moves the channel to zero Hz and decimates it in one step.  The blocks overlap by half and only the middle half
+ * of each inverse FFT is kept (overlap save), so the output is continuous.  The channel is a ChannelSource, which
+ * looks like any other IQ audio source, so a SourceIQ reads from it and a decoder reads from the SourceIQ as usual.
+ * The SourceIQ then runs at the decimated rate, which is much cheaper.
+ *
+ * The channel is centered on the nearest bin.  The remainder, less than half a bin, is left in the channel and can
+ * be read with getResidualFrequency() so that the SourceIQ can be tuned to it.
+ *
+ * Channels can be added and removed while the channelizer is running.  The time spent on each channel is measured,
+ * as is the time for the shared forward FFT.
+ *
+ */
+public class Channelizer implements Runnable {
+	public static final double MAX_RATE_ERROR = 0.01; // the decimated rate must give the audio rate to within 1%
+	public static final double MIN_BIN_BANDWIDTH = 100; // Hz, sets the size of the FFT
+	public static final double PASSBAND = 0.8; // the fraction of the channel that is flat, the rest is the taper
+
+	SourceAudio upstreamAudioSource;
+	int upstreamChannel;
+	Thread upstreamAudioReadThread;
+
+	final int iqSampleRate;
+	final int decimation; // IQ sample rate / channel sample rate
+	final int fftSize; // N, complex points in the forward FFT
+	final int channelFftSize; // N / decimation, complex points in each inverse FFT
+	final double binBandwidth;
+
+	private DoubleFFT_1D fft;
+	private DoubleFFT_1D channelFft;
+	private double[] taper; // channelFftSize points, in FFT order with zero Hz at 0, and includes the scaling
+	private double[] input; // the last fftSize IQ samples
+	private double[] readBuffer; // the new half block
+	private double[] spectrum;
+	private long blocks = 0; // count of blocks processed, used to keep the phase of odd bins continuous
+
+	private CopyOnWriteArrayList<ChannelSource> channels = new CopyOnWriteArrayList<ChannelSource>();
+	private volatile boolean running = true;
+	private volatile boolean done = false;
+	private long fftNanos = 0;
+
+	/**
+	 * Create a channelizer for an IQ source.  The decimation is the largest power of 2 that leaves each channel with at
+	 * least minChannelRate samples per second and a rate that is close to a whole multiple of the audio rate, which the
+	 * SourceIQ needs.
+	 * @param as - the IQ source
+	 * @param chan - the channel of the IQ source to read
+	 * @param minChannelRate - e.g. 4 times the audio sample rate
+	 */
+	public Channelizer(SourceAudio as, int chan, int minChannelRate) {
+		upstreamAudioSource = as;
+		upstreamChannel = chan;
+		iqSampleRate = (int)as.getAudioFormat().getSampleRate();
+		int afRate = Config.afSampleRate;
+		int d = 1;
+		while (iqSampleRate / (d*2) >= minChannelRate && rateError(iqSampleRate / (double)(d*2), afRate) <= MAX_RATE_ERROR)
+			d = d * 2;
+		decimation = d;
+		int n = 1024;
+		while (iqSampleRate / (double)n > MIN_BIN_BANDWIDTH || n / decimation < 256)
+			n = n * 2;
+		fftSize = n;
+		channelFftSize = fftSize / decimation;
+		binBandwidth = iqSampleRate / (double)fftSize;
+		fft = new DoubleFFT_1D(fftSize);
+		channelFft = new DoubleFFT_1D(channelFftSize);
+		input = new double[fftSize*2];
+		readBuffer = new double[fftSize];
+		spectrum = new double[fftSize*2];
+		initTaper();
+		Log.println("Channelizer: IQ rate " + iqSampleRate + " FFT " + fftSize + " decimation " + decimation
+				+ " channel rate " + getChannelSampleRate());
+	}
+
+	private static double rateError(double rate, int afRate) {
+		double factor = rate / afRate;
+		if (factor < 1) return 1;
+		return (factor - Math.floor(factor)) / factor;
+	}
+
+	/**
+	 * The channel filter, flat over the PASSBAND and with a cosine taper to the edge of the channel.  The forward FFT
+	 * is not scaled and the inverse FFT is scaled by 1/channelFftSize, so we also divide by the decimation.
+	 */
+	private void initTaper() {
+		taper = new double[channelFftSize];
+		int half = channelFftSize / 2;
+		int flat = (int)(half * PASSBAND);
+		for (int k=0; k < channelFftSize; k++) {
+			int dist = k < half ? k : channelFftSize - k; // distance from zero Hz in bins
+			double w;
+			if (dist <= flat)
+				w = 1;
+			else
+				w = 0.5 * (1 + Math.cos(Math.PI * (dist - flat) / (double)(half - flat)));
+			taper[k] = w / decimation;
+		}
+	}
+
+	public int getChannelSampleRate() { return iqSampleRate / decimation; }
+	public double getBinBandwidth() { return binBandwidth; }
+	public int getIqSampleRate() { return iqSampleRate; }
+
+	/**
+	 * Add a channel at this offset from the center frequency.  This can be called while the channelizer is running.
+	 * @param offsetHz
+	 * @param circularBufferSize - size of the channel buffer in doubles
+	 * @return the source for the channel, to pass to SourceIQ.setAudioSource()
+	 */
+	public ChannelSource addChannel(double offsetHz, int circularBufferSize) {
+		ChannelSource c = new ChannelSource(this, circularBufferSize);
+		c.setOffsetFrequency(offsetHz);
+		channels.add(c);
+		Log.println("Channelizer: added channel at " + offsetHz + " Hz, " + channels.size() + " channels");
+		return c;
+	}
+
+	/**
+	 * Stop sending data to this channel.  Called by ChannelSource.stop()
+	 * @param c
+	 */
+	public void removeChannel(ChannelSource c) {
+		if (channels.remove(c))
+			Log.println("Channelizer: removed channel at " + c.getOffsetFrequency() + " Hz, " + channels.size() + " channels");
+	}
+
+	public int getNumberOfChannels() { return channels.size(); }
+
+	/**
+	 * @return the nearest bin to this offset, limited so that the whole channel is inside the IQ bandwidth
+	 */
+	int getBin(double offsetHz) {
+		int bin = (int)Math.round(offsetHz / binBandwidth);
+		int limit = fftSize/2 - channelFftSize/2;
+		if (bin > limit) bin = limit;
+		if (bin < -limit) bin = -limit;
+		return bin;
+	}
+
+	/**
+	 * @return the time in ns spent on the forward FFT that all of the channels share
+	 */
+	public long getSharedCpuNanos() { return fftNanos; }
+
+	/**
+	 * Start the channelizer and the source that it reads from
+	 */
+	public void start() {
+		running = true;
+		if (!(upstreamAudioSource instanceof SourceUSB)) {
+			upstreamAudioReadThread = new Thread(upstreamAudioSource);
+			upstreamAudioReadThread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
+			upstreamAudioReadThread.start();
+		}
+		Thread t = new Thread(this);
+		t.setName("Channelizer");
+		t.setUncaughtExceptionHandler(Log.uncaughtExHandler);
+		t.start();
+	}
+
+	public void stop() {
+		running = false;
+		upstreamAudioSource.stop();
+		for (ChannelSource c : channels)
+			c.stop();
+	}
+
+	public boolean isDone() { return done; }
+
+	@Override
+	public void run() {
+		done = false;
+		Log.println("Channelizer START");
+		while (running) {
+			int read = upstreamAudioSource.read(readBuffer, upstreamChannel);
+			if (read != readBuffer.length) {
+				if (upstreamAudioSource.isPullMode())
+					break; // the end of the recording
+				if (Config.debugAudioGlitches) Log.println("ERROR: Channelizer could not read sufficient data from audio source");
+				continue;
+			}
+			// Keep the last half block and add the new one
+			System.arraycopy(input, fftSize, input, 0, fftSize);
+			System.arraycopy(readBuffer, 0, input, fftSize, fftSize);
+			processBlock();
+		}
+		done = true;
+		Log.println("Channelizer EXIT");
+	}
+
+	/**
+	 * Run the forward FFT on the current block and send each channel its part of the spectrum
+	 */
+	void processBlock() {
+		blocks++;
+		if (channels.isEmpty()) return;
+		long start = System.nanoTime();
+		// I and Q are passed on as they were captured, because the SourceIQ that reads the channel swaps them if needed
+		System.arraycopy(input, 0, spectrum, 0, input.length);
+		fft.complexForward(spectrum);
+		fftNanos += System.nanoTime() - start;
+		for (ChannelSource c : channels) {
+			start = System.nanoTime();
+			processChannel(c);
+			c.addCpuNanos(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Take the bins either side of the channel bin, move them to zero Hz and return to the time domain at the lower
+	 * rate.  Moving by an odd number of bins flips the phase of every other block, because each block starts half an
+	 * FFT after the last one, so we flip it back.
+	 */
+	private void processChannel(ChannelSource c) {
+		double[] data = c.channelData;
+		int bin = c.bin;
+		int half = channelFftSize / 2;
+		for (int k=0; k < channelFftSize; k++) {
+			int offset = k < half ? k : k - channelFftSize; // from -half to half-1
+			int src = bin + offset;
+			if (src < 0) src += fftSize;
+			data[2*k] = spectrum[2*src] * taper[k];
+			data[2*k+1] = spectrum[2*src+1] * taper[k];
+		}
+		channelFft.complexInverse(data, true);
+		double sign = ((bin & 1) != 0 && (blocks & 1) != 0) ? -1 : 1;
+		// The filter is zero phase, so it wraps around both ends of the block.  Keep the middle half, which is clear of
+		// both ends, and as each block starts half an FFT after the last one these follow on from each other
+		c.write(data, channelFftSize/2, 3*channelFftSize/2, sign);
+	}
+}
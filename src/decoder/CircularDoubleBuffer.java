@@ -31,8 +31,8 @@ import common.Log;
 public class CircularDoubleBuffer {
 	double[] doubles;
 	int bufferSize = 0;; 
-	int startPointer = 0;
-	int endPointer = 0;
+	volatile int startPointer = 0; // only moved by the reader
+	volatile int endPointer = 0; // only moved by the writer
 	public static final int DEFAULT_SIZE = 48000*2; // 1 second of stereo data
 	int statusCount = 0;
 	
@@ -99,6 +99,54 @@ public class CircularDoubleBuffer {
 		return true;
 	}
 	
+	/**
+	 * @return the number of doubles that can be added before the end pointer reaches the start pointer
+	 */
+	public int free() {
+		return bufferSize - 1 - size();
+	}
+
+	/**
+	 * Add a block of data from the end pointer.  The data is copied before the end pointer is moved, so a reader on
+	 * another thread never sees part of the block.  If the whole block does not fit then nothing is added.
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @return false if there was not room for the block
+	 */
+	public boolean add(double[] data, int off, int len) {
+		if (len > free())
+			return false;
+		int e = endPointer;
+		int first = Math.min(len, bufferSize - e);
+		System.arraycopy(data, off, doubles, e, first);
+		if (len > first)
+			System.arraycopy(data, off + first, doubles, 0, len - first);
+		endPointer = incPointer(e, len);
+		statusCount += len;
+		return true;
+	}
+
+	/**
+	 * Copy up to len doubles from the start of the virtual array and consume them by moving the start pointer.
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @return the number of doubles copied, 0 if the buffer is empty
+	 */
+	public int read(double[] data, int off, int len) {
+		int n = Math.min(len, size());
+		if (n <= 0)
+			return 0;
+		int s = startPointer;
+		int first = Math.min(n, bufferSize - s);
+		System.arraycopy(doubles, s, data, off, first);
+		if (n > first)
+			System.arraycopy(doubles, 0, data, off + first, n - first);
+		startPointer = incPointer(s, n);
+		return n;
+	}
+
 	private int incPointer(int pointer, int amount) {
 		int p = pointer + amount;
 		if (p >= bufferSize) {
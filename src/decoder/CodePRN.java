@@ -12,6 +12,10 @@ public class CodePRN {
 	public static final int SHORT_CORRELATION_THRESHOLD = 11;  // Accept the SYNC VECTOR if this correlation - 13 = 1 bit missed 11 = 2, 9 = 3 missed, 7 = 4
 	public static final int FAIL = -99999;
 	
+	// The SYNC vectors packed into a long, first bit in the msb, in the same order as FoxBitStream.binToInt()
+	public static final long SHORT_FRAME_PRN_WORD = toWord(SHORT_FRAME_PRN);
+	public static final long LONG_FRAME_PRN_WORD = toWord(LONG_FRAME_PRN);
+	
 	public static final int getSyncWordLength() {
 		//int len = SHORT_FRAME_PRN.length;
 		//if (Config.useLongPRN)
@@ -39,6 +43,35 @@ public class CodePRN {
 		return sum;
 	}
 	
+	/**
+	 * Pack up to 64 bits into a long with the first bit in the msb
+	 * @param bits
+	 * @return
+	 */
+	public static long toWord(boolean[] bits) {
+		long word = 0;
+		for (int i=0; i<bits.length; i++) {
+			word = word << 1;
+			if (bits[i]) word = word | 1;
+		}
+		return word;
+	}
+	
+	/**
+	 * The same correlation as simpleBinaryCorrelation() but for the last length bits of two packed words.  Every bit
+	 * that matches adds one and every bit that differs takes one away, so this is the length less twice the number
+	 * of bits that differ, which is the bit count of word1 XOR word2.
+	 * @param word1
+	 * @param word2
+	 * @param length
+	 * @return
+	 */
+	public static int correlation(long word1, long word2, int length) {
+		long mask = -1L;
+		if (length < 64) mask = (1L << length) - 1;
+		return length - 2 * Long.bitCount((word1 ^ word2) & mask);
+	}
+	
 	/**
 	 * Test function to treat the PRN SYNC as though it is a classic frame marker. Requires an exact match
 	 * @param word1
@@ -65,16 +98,23 @@ public class CodePRN {
 	 * @return
 	 */
 	public static final boolean probabllyFrameMarker(boolean[] word) {
-		//boolean[] FRAME_PRN = SHORT_FRAME_PRN;
+		if (word.length != LONG_FRAME_PRN.length) return false;
+		return probabllyFrameMarker(toWord(word));
+	}
+	
+	/**
+	 * Check if the last bits of the passed word correlate with the SYNC Vector.  The bits are packed with the first
+	 * bit in the msb, as they are when shifted into a register one by one from the bit stream.  Bits above the length
+	 * of the SYNC Vector are ignored.
+	 * @param word
+	 * @return
+	 */
+	public static final boolean probabllyFrameMarker(long word) {
+		//long FRAME_PRN = SHORT_FRAME_PRN_WORD;
 		//int threshold = SHORT_CORRELATION_THRESHOLD;
 		//if (Config.useLongPRN) {
-		boolean[] FRAME_PRN = LONG_FRAME_PRN;
-		int threshold = LONG_CORRELATION_THRESHOLD;
-
-		if (simpleBinaryCorrelation(word, FRAME_PRN) > threshold) 
+		if (correlation(word, LONG_FRAME_PRN_WORD, LONG_FRAME_PRN.length) > LONG_CORRELATION_THRESHOLD) 
 			return true;
-	//	if (simpleBinaryCorrelation(word, NOT_FRAME_PRN) > CORRELATION_THRESHOLD) 
-	//		return true;
 		return false;
 	}
 	
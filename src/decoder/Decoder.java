@@ -5,7 +5,6 @@ import java.util.Arrays;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
-import javax.swing.JOptionPane;
 
 import measure.RtMeasurement;
 import measure.SatMeasurementStore;
@@ -19,7 +18,6 @@ import decoder.FoxBPSK.FoxBPSKCostasDecoder;
 import decoder.FoxBPSK.FoxBPSKDecoder;
 import decoder.FoxBPSK.FoxBPSKDotProdDecoder;
 import filter.Filter;
-import gui.MainWindow;
 import telemetry.Frame;
 import telemetry.FramePart;
 import telemetry.Header;
@@ -129,6 +127,8 @@ public abstract class Decoder implements Runnable {
    // private int windowNumber = 0;
     
     protected int framesDecoded = 0;
+    protected long rsCorrections = 0; // total for the frames we have stored, e.g. to report on a recording
+    protected long rsErasures = 0;
 
     private boolean squelch = true;
     private boolean tooLoud = false;
@@ -163,6 +163,8 @@ public abstract class Decoder implements Runnable {
 	public AudioFormat getAudioFormat() { return audioSource.getAudioFormat(); }
 	public int getCurrentSampleRate() { return currentSampleRate; }
 	public int getFramesDecoded() { return framesDecoded; }
+	public long getRsCorrections() { return rsCorrections; }
+	public long getRsErasures() { return rsErasures; }
 	public int getBitsPerSample() { return bitsPerSample; }
 	public int getSampleWindowLength() { return SAMPLE_WINDOW_LENGTH; }
 	
@@ -257,6 +259,7 @@ public abstract class Decoder implements Runnable {
 	 * this is an IQDecoder, in which case it needs to be started in all cases
 	 */
 	protected void startAudioThread() {
+		if (audioSource.isPullMode()) return; // the source is read on this thread
 		if (audioChannel == 0 || audioSource instanceof SourceIQ) {
 			if (audioReadThread != null) { 
 				audioSource.stop(); 
@@ -365,15 +368,9 @@ public abstract class Decoder implements Runnable {
 		try {
 			process();
 		} catch (UnsupportedAudioFileException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"ERROR",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("ERROR", e.toString());
 		} catch (IOException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"ERROR",
-					JOptionPane.ERROR_MESSAGE) ;	
+			Log.errorDialog("ERROR", e.toString());
 		} catch (NullPointerException e) {
 			// CATCH THIS IN PRODUCTION VERSION	
 	    	String stacktrace = Log.makeShortTrace(e.getStackTrace());  
@@ -391,6 +388,13 @@ public abstract class Decoder implements Runnable {
 		int nBytesRead = 0;
 		//Log.println("Reading bytes from channel: " + audioChannel);
 		nBytesRead = audioSource.read(abData, audioChannel);	
+		if (audioSource.isPullMode() && nBytesRead < abData.length) {
+			// The end of the recording.  The last block is usually short, so pad it with silence and decode it.  The
+			// decode loop still processes the buffer when we return -1, so that is silence too
+			Arrays.fill(abData, nBytesRead, abData.length, 0);
+			if (nBytesRead == 0)
+				return -1;
+		}
 		return nBytesRead;
 	}
 	
@@ -686,6 +690,8 @@ public abstract class Decoder implements Runnable {
 	}
 	
 	protected void addMeasurements(Header header, Frame frame, int lastErrorsNumber, int lastErasureNumber) {
+		rsCorrections += lastErrorsNumber;
+		rsErasures += lastErasureNumber;
 		// Pass Measurements
 		if (Config.passManager.isNewPass()) {
 			Log.println("Setting reset/uptime for new pass");
@@ -913,7 +919,7 @@ public abstract class Decoder implements Runnable {
 		byte b2 = b[1];
 		int value =  ((b2 & 0xff) << 8)
 		     | ((b1 & 0xff) << 0);
-		if (value > (Math.pow(2,bitsPerSample-1)-1)) value = (int) (-1*Math.pow(2,bitsPerSample) + value);
+		if (value > (1 << (bitsPerSample-1)) - 1) value = value - (1 << bitsPerSample); // called for every sample, so no Math.pow()
 		return value;
 	}
 
@@ -1,6 +1,7 @@
 package decoder;
 
 import common.Config;
+import filter.FastAtan2;
 
 /**
  * 
@@ -82,26 +83,16 @@ public class FmDemodulator {
 		i[0] = in;
 		q[0] = qn;
 		
-		if (I == 0) {
-			I=1E-20f; // small value to prevent divide by zero error
-			//angle = 0;
-		} 
 		/**
 		 * Use the arc-tangent of imaginary (q) divided by real (i) to
 		 * get the phase angle (+/-) which was directly manipulated by the
 		 * original message waveform during the modulation.  This value now
 		 * serves as the instantaneous amplitude of the demodulated signal
+		 * 
+		 * The polynomial atan2 gives the same quadrants as atan(Q/I) corrected by the signs of I and Q, and I == 0
+		 * gives +-PI/2 without a divide by zero
 		 */
-		double denominator = 1.0f / I;
-		angle = (double) Math.atan( (double)Q * denominator );
-
-		// If both real and imaginary parts are negative, need to subtract PI radians
-		if (I < 0 && Q < 0) {
-			angle = (double) (angle - Math.PI);
-		}
-		if (I < 0 && Q >= 0) {
-			angle = (double) (angle + Math.PI);
-		}
+		angle = FastAtan2.atan2(Q, I);
 
 		return angle * gain;
 	}
@@ -178,14 +169,54 @@ public class FmDemodulator {
 	}
 	
 	/**
-	 * FIXME:  Very inefficient limiter for testing...
+	 * Demodulate a block of samples.  This gives exactly the same values as calling demodulate() for each sample, but
+	 * the last samples are kept in locals rather than shifted down the arrays for every sample
+	 * @param in - the i values
+	 * @param qn - the q values
+	 * @param out - the demodulated audio
+	 * @param len - the number of samples
+	 */
+	public void demodulate(double[] in, double[] qn, double[] out, int len) {
+		if (Config.useLimiter) {
+			for (int n=0; n < len; n++)
+				out[n] = demodulate(in[n], qn[n]);
+			return;
+		}
+		double i0 = i[0], q0 = q[0];
+		double i1 = i[1], q1 = q[1];
+		double i2 = i[2], q2 = q[2];
+		double gain = 0.5f; // magic number of 1/2 seems to work best
+		for (int n=0; n < len; n++) {
+			i0 = i1; q0 = q1;
+			i1 = i2; q1 = q2;
+			i2 = in[n]; q2 = qn[n];
+			double num = i1 * ( q2 - q0 ) - q1 * ( i2 - i0 );
+			double den = (i1*i1 + q1*q1); 
+			double deltafreq =  gain* (num/den);
+			if (Double.isNaN(deltafreq))
+				deltafreq = 0; // make sure we don't get locked in a bad position
+			out[n] = deltafreq;
+		}
+		// leave the state as demodulate() would
+		i[0] = i0; q[0] = q0;
+		i[1] = i1; q[1] = q1;
+		i[2] = i2; q[2] = q2;
+	}
+	
+	/**
+	 * Scale the sample to unit magnitude.  This is the cos and sin of its angle, without calculating the angle
 	 * @param i
 	 * @param q
 	 */
 	private void limiter(double i, double q) {
-		double f = (double) Math.atan2(q, i);
-		limiti = (double) Math.cos(f);
-		limitq = (double) Math.sin(f);
+		double mag = Math.sqrt(i*i + q*q);
+		if (mag == 0) {
+			limiti = 1; // the angle is 0
+			limitq = 0;
+		} else {
+			limiti = i / mag;
+			limitq = q / mag;
+		}
 	}
 
 }
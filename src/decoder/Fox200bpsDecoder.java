@@ -51,12 +51,30 @@ public class Fox200bpsDecoder extends FoxDecoder {
 		updateFilter();
 	}
 	
+	/**
+	 * Keep the filter length in the range allowed for the selected filter.  This is here rather than in the FilterPanel
+	 * so that the decoder does not load the GUI classes when there is no GUI.  The constants are inlined.
+	 */
+	public static void checkFilterParams() {
+		if (Config.useFilterNumber == FilterPanel.RAISED_COSINE) {
+			if (Config.filterLength > FilterPanel.RC_LEN_MAX) {
+				Config.filterLength = FilterPanel.RC_LEN_MAX;
+			}
+		
+		} else if (Config.useFilterNumber == FilterPanel.WINDOWED_SINC){
+			if (Config.filterLength < FilterPanel.WS_LEN_MIN) {
+				Config.filterLength = FilterPanel.WS_LEN_MIN;
+			}
+		
+		} 
+	}
+	
 	/**
 	 * Called if any of the filter params have changed
 	 */
 	private void updateFilter() {
 		// Get the params that were set by the GUI
-		FilterPanel.checkFilterParams();
+		checkFilterParams();
 		//Log.println("UPDATE filter len: " + Config.filterLength);
 		currentFilterLength = Config.filterLength;
 		currentFilterFreq = Config.filterFrequency;
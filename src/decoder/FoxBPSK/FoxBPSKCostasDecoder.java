@@ -20,9 +20,8 @@ import gui.MainWindow;
 import telemetry.Frame;
 import telemetry.FoxBPSK.FoxBPSKFrame;
 import telemetry.FoxBPSK.FoxBPSKHeader;
-import filter.Complex;
-import filter.ComplexOscillator;
 import filter.IirFilter;
+import filter.NCO;
 import filter.RaisedCosineFilter;
 import filter.RootRaisedCosineFilter;
 
@@ -37,7 +36,7 @@ public class FoxBPSKCostasDecoder extends Decoder {
 
 	DcRemoval audioDcFilter;
 
-	ComplexOscillator nco = new ComplexOscillator(currentSampleRate, 1200);
+	NCO nco = new NCO(currentSampleRate, 1200);
 
 	RaisedCosineFilter dataFilter;
 	//RaisedCosineFilter iFilter;
@@ -392,16 +391,18 @@ public class FoxBPSKCostasDecoder extends Decoder {
 						e.printStackTrace(Log.getWriter());
 					}
 				framesDecoded++;
-				try {
-					SwingUtilities.invokeAndWait(new Runnable() {
-						public void run() { MainWindow.setTotalDecodes();}
-					});
-				} catch (InvocationTargetException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
-				} catch (InterruptedException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
+				if (Config.mainWindow != null) { // no window when decoding from the command line or as a daemon
+					try {
+						SwingUtilities.invokeAndWait(new Runnable() {
+							public void run() { MainWindow.setTotalDecodes();}
+						});
+					} catch (InvocationTargetException e1) {
+						// TODO Auto-generated catch block
+						e1.printStackTrace();
+					} catch (InterruptedException e1) {
+						// TODO Auto-generated catch block
+						e1.printStackTrace();
+					}
 				}
 				Performance.endTimer("Store");
 			} else {
@@ -416,14 +417,12 @@ public class FoxBPSKCostasDecoder extends Decoder {
 	public double getFrequency() { return nco.getFrequency(); }
 	public double getLockLevel() { return avgLockLevel; }
 	
-	Complex c;
 	private double costasLoop(double i, double q, int bucketNumber, int sample) {
-		c = nco.nextSample();
-		c.normalize();
+		nco.step();
 		// Mix 
 		double iFil = dataFilter.filterDouble(i);
-		iMix = iFil * c.geti(); // + q*c.getq();
-		qMix = iFil * -1*c.getq(); // - i*c.getq();
+		iMix = iFil * nco.geti(); // + q*nco.getq();
+		qMix = iFil * -1*nco.getq(); // - i*nco.getq();
 		// Filter
 		fi = iFilter.filterDouble(iMix);
 		fq = qFilter.filterDouble(qMix);
@@ -13,17 +13,14 @@ import decoder.CodePRN;
 import decoder.Decoder;
 import decoder.SourceAudio;
 import filter.AGCFilter;
-import filter.Complex;
 import filter.DcRemoval;
 import gui.MainWindow;
 import telemetry.Frame;
 import telemetry.FoxBPSK.FoxBPSKFrame;
 import telemetry.FoxBPSK.FoxBPSKHeader;
-import filter.ComplexOscillator;
-import filter.CosOscillator;
 import filter.DotProduct;
+import filter.NCO;
 import filter.RootRaisedCosineFilter;
-import filter.SinOscillator;
 
 /**
  * This program is free software: you can redistribute it and/or modify
@@ -75,11 +72,10 @@ public class FoxBPSKDotProdDecoder extends Decoder {
 	
 	//CosOscillator cos = new CosOscillator(currentSampleRate, (int)Carrier);
 	//SinOscillator sin = new SinOscillator(currentSampleRate, (int)Carrier);
-	ComplexOscillator nco = new ComplexOscillator(currentSampleRate, (int)CENTER_CARRIER);
+	NCO nco = new NCO(currentSampleRate, (int)CENTER_CARRIER);
 
 
-	CosOscillator ftcos = new CosOscillator(currentSampleRate, (int)CENTER_CARRIER);
-	SinOscillator ftsin = new SinOscillator(currentSampleRate, (int)CENTER_CARRIER);
+	NCO ft = new NCO(currentSampleRate, (int)CENTER_CARRIER); // for the frequency tracker
 	
 //	double freq = 100.0;  //////////////// legacy value, REMOVE
 	
@@ -96,7 +92,6 @@ public class FoxBPSKDotProdDecoder extends Decoder {
 	int Symbols_demodulated; // total symbols demodulated
 //	double Gain = 128; // Heuristically, this seems about optimum
 	public int samples_processed = 0;
-	Complex c;
 	double[] phasorData;
 
 	/**
@@ -282,16 +277,12 @@ public class FoxBPSKDotProdDecoder extends Decoder {
 		nco.setPhase(cphase);
 		
 		int eyeValue = 0;
+		nco.mixReal(abBufferDoubleFiltered, baseband_i, baseband_q, BUFFER_SIZE);
+		for(int i=0; i < BUFFER_SIZE; i++)
+			baseband_q[i] = -1*baseband_q[i];
+		dataFilterI.filterBlock(baseband_i, baseband_i);
+		dataFilterQ.filterBlock(baseband_q, baseband_q);
 	    for(int i=0; i < BUFFER_SIZE; i++){
-	    	c = nco.nextSample();
-			c.normalize();
-			
-			baseband_i[i] = abBufferDoubleFiltered[i] * c.geti();
-			baseband_q[i] = abBufferDoubleFiltered[i] * -1*c.getq();
-			
-			baseband_i[i] = dataFilterI.filterDouble(baseband_i[i]);
-			baseband_q[i] = dataFilterQ.filterDouble(baseband_q[i]);
-
 			// This shows the input buffer.  Need to restrict to samples_processed at end of chunk to see actual
 			double mag = Math.sqrt(baseband_i[i]*baseband_i[i] + baseband_q[i]*baseband_q[i]);
 			//double phase = Math.atan2(baseband_i[i], baseband_q[i])/3;
@@ -407,17 +398,12 @@ public class FoxBPSKDotProdDecoder extends Decoder {
 		double cpt;
 		int Ntaps = matchedFilter.getNumOfTaps();
 
-		ftcos.setPhaseIncrement(cphase_inc);
-		ftsin.setPhaseIncrement(cphase_inc);
+		ft.setPhaseIncrement(cphase_inc);
 		// reset each time to do the search
-		ftcos.setPhase(0);
-		ftsin.setPhase(0);
+		ft.setPhase(0);
 
 		// Downconvert chunk of samples to baseband 
-		for(i=0; i < BUFFER_SIZE; i++){
-			baseband_i[i] = samples[i] * ftcos.nextSample();
-			baseband_q[i] = samples[i] * ftsin.nextSample();
-		}
+		ft.mixReal(samples, baseband_i, baseband_q, BUFFER_SIZE);
 		// Perform demodulation with specified symbol timing, computing sum of cross products
 		cpt = 0;
 		tlast_i = tlast_q = 0;
@@ -568,16 +554,18 @@ public class FoxBPSKDotProdDecoder extends Decoder {
 						e.printStackTrace(Log.getWriter());
 					}
 				framesDecoded++;
-				try {
-					SwingUtilities.invokeAndWait(new Runnable() {
-						public void run() { MainWindow.setTotalDecodes();}
-					});
-				} catch (InvocationTargetException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
-				} catch (InterruptedException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
+				if (Config.mainWindow != null) { // no window when decoding from the command line or as a daemon
+					try {
+						SwingUtilities.invokeAndWait(new Runnable() {
+							public void run() { MainWindow.setTotalDecodes();}
+						});
+					} catch (InvocationTargetException e1) {
+						// TODO Auto-generated catch block
+						e1.printStackTrace();
+					} catch (InterruptedException e1) {
+						// TODO Auto-generated catch block
+						e1.printStackTrace();
+					}
 				}
 				Performance.endTimer("Store");
 			} else {
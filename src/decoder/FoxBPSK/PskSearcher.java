@@ -1,8 +1,7 @@
 package decoder.FoxBPSK;
 
-import filter.CosOscillator;
 import filter.DotProduct;
-import filter.SinOscillator;
+import filter.NCO;
 
 /**
  * This program is free software: you can redistribute it and/or modify
@@ -40,8 +39,7 @@ public class PskSearcher implements Runnable {
 	
 	DotProduct matchedFilter;
 	
-	CosOscillator cos;
-	SinOscillator sin;
+	NCO nco;
 	
 	boolean running = true;
 	public boolean done = false;
@@ -58,8 +56,7 @@ public class PskSearcher implements Runnable {
 		matchedFilter = new DotProduct();
 		Ntaps = matchedFilter.getNumOfTaps();
 		
-		cos = new CosOscillator(sampleRate, cphase_inc_start);
-		sin = new SinOscillator(sampleRate, cphase_inc_start);
+		nco = new NCO(sampleRate, cphase_inc_start);
 		
 		//Log.println("SEARCHER STARTED: Start Freq: " + cos.getFrequency());
 		//Log.println("  searching: " + nfreq + " steps");
@@ -90,16 +87,11 @@ public class PskSearcher implements Runnable {
 		symphase = -1; // to keep compiler happy about uninitialized variables
 		for(j=0,cphase_inc = cphase_inc_start; j < nfreq; j++,cphase_inc += cphase_inc_step){
 			int i,offset;
-			cos.setPhaseIncrement(cphase_inc);
-			sin.setPhaseIncrement(cphase_inc);
+			nco.setPhaseIncrement(cphase_inc);
 
 			// Downconvert chunk of samples to baseband 
-			cos.setPhase(0);
-			sin.setPhase(0);
-			for(i=0; i < BUFFER_SIZE; i++){
-				baseband_i[i] = samples[i] * cos.nextSample();
-				baseband_q[i] = samples[i] * sin.nextSample();
-			}	
+			nco.setPhase(0);
+			nco.mixReal(samples, baseband_i, baseband_q, BUFFER_SIZE);
 
 			// Perform demodulation for all possible symbol timings
 			// looking for maximum energy
@@ -131,7 +123,7 @@ public class PskSearcher implements Runnable {
 					this.cphase_inc = cphase_inc;
 					this.energy = offsetEnergy;
 					this.symphase = offset;
-					this.frequency = cos.getFrequency();
+					this.frequency = nco.getFrequency();
 					//Log.println("  Searcher Inc:"+this.cphase_inc +" E:" + energy + " O:" + symphase);
 				}
 			}
@@ -59,8 +59,9 @@ public abstract class FoxBitStream extends BitStream {
 	
 	protected static int SYNC_WORD_BIT_TOLERANCE = 0; // if we are within this many bits, then try to decode the frame.  Set by Constructor
 	
-	protected int syncWordbitPosition = 0; // The position in the 10 bit word when we are searching for SYNC words bit by bit
-	protected boolean[] syncWord = new boolean[SYNC_WORD_LENGTH]; // The SYNC_WORD_LENGTH bit word used to find SYNC words, selected from the end of the bitStream
+	protected int syncWordbitPosition = 0; // The number of bits in the sync register, up to SYNC_WORD_LENGTH, when we are searching for SYNC words bit by bit
+	protected long syncRegister = 0; // The last bits from the end of the bitStream, newest in the lsb, used to find SYNC words
+	protected long syncWordMask = (1L << SYNC_WORD_LENGTH) - 1; // The SYNC_WORD_LENGTH bits of the register that are the SYNC word
 	protected boolean alreadyTriedToFlipBits = false; // only try to flip the bits once, otherwise we willl try to double process every failed RS word
 	
 	public int lastErasureNumber;
@@ -76,7 +77,7 @@ public abstract class FoxBitStream extends BitStream {
 		super(size, dec);
 		SYNC_WORD_LENGTH = syncWordLength;
 		DATA_WORD_LENGTH = wordLength;
-		syncWord = new boolean[syncWordLength];
+		syncWordMask = (1L << syncWordLength) - 1;
 	}
 	
 	/**
@@ -90,32 +91,42 @@ public abstract class FoxBitStream extends BitStream {
 		boolean found = false;
 		if (this.size() < SYNC_WORD_LENGTH) return false;
 		for (int i=this.size()-windowLength; i < this.size(); i++) {
-			syncWord[syncWordbitPosition++] = this.get(i);
-			if (syncWordbitPosition > SYNC_WORD_LENGTH-1) {
-				syncWordbitPosition = SYNC_WORD_LENGTH-1;
-				// Check the last SYNC_WORD_LENGTH bits in the bit stream for the end of frame market
-				int word = binToInt(syncWord);
-				if ((findFramesWithPRN && CodePRN.probabllyFrameMarker(syncWord ) ) ||
-				//if ((findFramesWithPRN && (word == CodePRN.FRAME )) ||
-				//if ((findFramesWithPRN && CodePRN.equals(syncWord ) ) ||
-				!findFramesWithPRN && (word == Code8b10b.FRAME || word == Code8b10b.NOT_FRAME)) {
-					found = true;
-					//if (!haveSyncWordAtBit(i+1)) {
-						syncWords.add(i+1);
-						if (Config.debugFrames) {
-							Log.println("SYNC WORD "+ syncWords.size() + " ADDED AT: "+ (i+1) + " total:" + (totalBits + i + 1));
-							printBitArray(syncWord);
-						}
-					//}
-				} 
-				// now shift the bits and continue looking for frame marker
-				for (int k=1; k<SYNC_WORD_LENGTH; k++)
-					syncWord[k-1] = syncWord[k];
+			if (shiftSyncRegister(this.get(i))) {
+				// The last SYNC_WORD_LENGTH bits in the bit stream are the end of frame marker
+				found = true;
+				//if (!haveSyncWordAtBit(i+1)) {
+					syncWords.add(i+1);
+					if (Config.debugFrames) {
+						Log.println("SYNC WORD "+ syncWords.size() + " ADDED AT: "+ (i+1) + " total:" + (totalBits + i + 1));
+						printBitArray(longToBin(syncRegister, SYNC_WORD_LENGTH));
+					}
+				//}
 			} 
 		}
 		return found;
 	}
 	
+	/**
+	 * Shift the next bit from the bit stream into the sync register and check if the last SYNC_WORD_LENGTH bits are
+	 * a SYNC word.  For the PRN this is a correlation, which is the XOR of the register and the SYNC vector and a bit
+	 * count, rather than a comparison of each bit.
+	 * @param bit
+	 * @return true if we have a SYNC word
+	 */
+	protected boolean shiftSyncRegister(boolean bit) {
+		syncRegister = syncRegister << 1;
+		if (bit) syncRegister = syncRegister | 1;
+		if (syncWordbitPosition < SYNC_WORD_LENGTH) {
+			syncWordbitPosition++;
+			if (syncWordbitPosition < SYNC_WORD_LENGTH) return false;
+		}
+		long word = syncRegister & syncWordMask;
+		if (findFramesWithPRN)
+			return CodePRN.probabllyFrameMarker(word);
+		//if (findFramesWithPRN && CodePRN.equals(syncWord ) )
+		return word == Code8b10b.FRAME || word == Code8b10b.NOT_FRAME;
+	}
+	
 	/**
 	 * Original Find Frames, called in conjunction with findSyncMarkers
 	 * @return
@@ -141,17 +152,21 @@ public abstract class FoxBitStream extends BitStream {
 
 		Performance.startTimer("findFrames:decode");
 
+		int shortLen = SYNC_WORD_DISTANCE;
+		if (Config.insertMissingBits)
+			shortLen = SYNC_WORD_DISTANCE - SYNC_WORD_BIT_TOLERANCE;
+		
+		// The SYNC words are in order, so for each start we only need to look at the end words that are a frame
+		// length away, rather than at every pair
 		for (int i=0; i<syncWords.size()-1; i++ ) {
 			start = syncWords.get(i);
-			for (int e=i+1; e<syncWords.size(); e++) {
+			for (int e=firstSyncWordFrom(i+1, start+shortLen); e<syncWords.size(); e++) {
 				end = syncWords.get(e);
-				if (end >= this.size()) end = start; // this is off the end of the array, so we don't want to process it
+				if (end-start > SYNC_WORD_DISTANCE) break;
+				if (end >= this.size()) break; // this is off the end of the array, so we don't want to process it
 				if (start != FRAME_PROCESSED) {
 					int missedBits = 0;
 					int repairPosition = 0;
-					int shortLen = SYNC_WORD_DISTANCE;
-					if (Config.insertMissingBits)
-						shortLen = SYNC_WORD_DISTANCE - SYNC_WORD_BIT_TOLERANCE;
 					
 					if (end-start >= shortLen && end-start <= SYNC_WORD_DISTANCE) {
 						missedBits = SYNC_WORD_DISTANCE - (end-start);
@@ -220,37 +235,25 @@ public abstract class FoxBitStream extends BitStream {
 		
 		ArrayList<Frame> frames = null;
 		syncWordbitPosition = 0;
-		syncWord = new boolean[SYNC_WORD_LENGTH]; // re-init each search
+		syncRegister = 0; // re-init each search
 		
 		// We look for a new sync word in the current window of bits.  We add each bit one by one
 		// and see if the previous N bits are the sync word.  We might have just the last bit in this window
 		for (int i=this.size()-windowLength-SYNC_WORD_LENGTH; i < this.size(); i++) {
-			syncWord[syncWordbitPosition++] = this.get(i);
-			if (syncWordbitPosition > SYNC_WORD_LENGTH-1) {
-				syncWordbitPosition = SYNC_WORD_LENGTH-1;
-				// Check the last SYNC_WORD_LENGTH bits in the bit stream for the end of frame market
-				int word = binToInt(syncWord);
-				if ((findFramesWithPRN && CodePRN.probabllyFrameMarker(syncWord ) ) ||
-				//if ((findFramesWithPRN && (word == CodePRN.FRAME )) ||
-				//if ((findFramesWithPRN && CodePRN.equals(syncWord ) ) ||
-						!findFramesWithPRN && (word == Code8b10b.FRAME || word == Code8b10b.NOT_FRAME)) {
-					// We found a sync word
-					if (Config.debugFrames) {
-						Log.println("SYNC WORD "+ syncWords.size() + " ADDED AT: "+ (i+1) + " total:" + (totalBits + i + 1));
-						int last = 0;
-						for (int s : syncWords) {
-							Log.print(s + "-" + (s-last)+", ");
-							last = s;
-						}
-						Log.println("");
-						printBitArray(syncWord);
+			if (shiftSyncRegister(this.get(i))) {
+				// We found a sync word
+				if (Config.debugFrames) {
+					Log.println("SYNC WORD "+ syncWords.size() + " ADDED AT: "+ (i+1) + " total:" + (totalBits + i + 1));
+					int last = 0;
+					for (int s : syncWords) {
+						Log.print(s + "-" + (s-last)+", ");
+						last = s;
 					}
-					frames = tryToProcessFrames(i+1);
-					// we do not exit as we have to add the remaining bits in the window, which are the start of the next frame
-				} 
-				// now shift the bits and continue looking for frame marker
-				for (int k=1; k<SYNC_WORD_LENGTH; k++)
-					syncWord[k-1] = syncWord[k];
+					Log.println("");
+					printBitArray(longToBin(syncRegister, SYNC_WORD_LENGTH));
+				}
+				frames = tryToProcessFrames(i+1);
+				// we do not exit as we have to add the remaining bits in the window, which are the start of the next frame
 			} 
 		}
 //		if (frames !=null && frames.size() > 1) { // then reverse the order or the timestamps are back to front
@@ -436,24 +439,41 @@ public abstract class FoxBitStream extends BitStream {
 	protected void checkMissingMiddleSYNC() {
 		int start = 0;
 		int end = 0;
-		int syncs = syncWords.size();
-		for (int i=0; i<syncs-1; i++ ) {
+		for (int i=0; i<syncWords.size()-1; i++ ) {
 			start = syncWords.get(i);
-			for (int e=i+1; e<syncs; e++) {
-				end = syncWords.get(e);
-				if (start != FRAME_PROCESSED) {
-					if (end-start == SYNC_WORD_DISTANCE*2 ) 
-						if (!haveSyncWordAtBit(end-SYNC_WORD_DISTANCE)) { // make sure we have not already added this
-							if (Config.debugFrames) 
-								Log.println("DOUBLE LENGTH FRAME from bits " + start + " to " + end);
-							syncWords.add(e, end-SYNC_WORD_DISTANCE);
-							
-						}
-				}
+			if (start != FRAME_PROCESSED) {
+				end = start + SYNC_WORD_DISTANCE*2;
+				if (haveSyncWordAtBit(end))
+					if (!haveSyncWordAtBit(end-SYNC_WORD_DISTANCE)) { // make sure we have not already added this
+						if (Config.debugFrames) 
+							Log.println("DOUBLE LENGTH FRAME from bits " + start + " to " + end);
+						syncWords.add(firstSyncWordFrom(i+1, end-SYNC_WORD_DISTANCE), end-SYNC_WORD_DISTANCE);
+					}
 			}
 		}
 
 	}
+	
+	/**
+	 * The SYNC words are held in order of their bit position.  Return the index of the first one from fromIndex that is
+	 * at or after bit, or the number of SYNC words if there is none.  This is also where a SYNC word at bit should be
+	 * inserted to keep them in order.
+	 * @param fromIndex
+	 * @param bit
+	 * @return
+	 */
+	protected int firstSyncWordFrom(int fromIndex, int bit) {
+		int lo = fromIndex;
+		int hi = syncWords.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (syncWords.get(mid) < bit)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
 
 	/**
 	 * Decode the 10b word that starts at position j and extends to j+9
@@ -501,9 +521,8 @@ public abstract class FoxBitStream extends BitStream {
 	}
 	
 	public boolean haveSyncWordAtBit(int b) {
-		for (int i=0; i< syncWords.size(); i++)
-			if (syncWords.get(i) == b) return true;
-		return false;
+		int i = firstSyncWordFrom(0, b);
+		return i < syncWords.size() && syncWords.get(i) == b;
 	}
 	
 	/**
@@ -584,6 +603,19 @@ public abstract class FoxBitStream extends BitStream {
 		return b;
 	}
 	
+	/**
+	 * Unpack the last len bits of a word, msb in position 0, so it prints in the right order
+	 * @param word
+	 * @param len
+	 * @return
+	 */
+	public static boolean[] longToBin(long word, int len) {
+		boolean b[] = new boolean[len];
+		for (int i=0; i<len; i++)
+			b[len-1-i] = ((word >> i) & 0x01) == 1;
+		return b;
+	}
+
 	public static boolean[] intToBin10(int word) {
 		boolean b[] = new boolean[10];
 		for (int i=0; i<10; i++) {
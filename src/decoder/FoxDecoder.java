@@ -174,16 +174,18 @@ public abstract class FoxDecoder extends Decoder {
 					e.printStackTrace(Log.getWriter());
 				}
 			framesDecoded++;
-			try {
-				SwingUtilities.invokeAndWait(new Runnable() {
-				    public void run() { MainWindow.setTotalDecodes();}
-				});
-			} catch (InvocationTargetException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			} catch (InterruptedException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
+			if (Config.mainWindow != null) { // no window when decoding from the command line or as a daemon
+				try {
+					SwingUtilities.invokeAndWait(new Runnable() {
+					    public void run() { MainWindow.setTotalDecodes();}
+					});
+				} catch (InvocationTargetException e1) {
+					// TODO Auto-generated catch block
+					e1.printStackTrace();
+				} catch (InterruptedException e1) {
+					// TODO Auto-generated catch block
+					e1.printStackTrace();
+				}
 			}
 			Performance.endTimer("Store");
 		} else {
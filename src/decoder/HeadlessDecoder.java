@@ -0,0 +1,132 @@
+package decoder;
+
+import java.text.DecimalFormat;
+
+import common.Log;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * One decoder run by the daemon, without the SourceTab.  This holds the audio source, the SourceIQ if the source
+ * is IQ data, and the decoder and its thread, and reports their status in one line.
+ *
+ * Several decoders can read from the same source, on different channels of it, in the same way as the two decoders
+ * do when the GUI decodes both speeds at once.
+ *
+ */
+public class HeadlessDecoder {
+	String name;
+	String sourceName;
+	int mode;
+	SourceAudio source;
+	SourceIQ iqSource;
+	Decoder decoder;
+	Thread decoderThread;
+	volatile boolean stopped = false; // true once stop() is called
+	volatile boolean failed = false; // true if the decoder thread died with an exception
+
+	/**
+	 * @param name - e.g. decoder1, used for the thread and the status
+	 * @param sourceName - the sound card or file, for the status
+	 * @param source - the audio source
+	 * @param chan - the channel of the audio source that this decoder reads
+	 * @param iq - true if the source is IQ data
+	 * @param mode - SourceIQ.MODE_FSK_DUV, MODE_FSK_HS or MODE_PSK_NC
+	 */
+	public HeadlessDecoder(String name, String sourceName, SourceAudio source, int chan, boolean iq, int mode) {
+		this.name = name;
+		this.sourceName = sourceName;
+		this.source = source;
+		this.mode = mode;
+		if (iq) {
+			iqSource = new SourceIQ((int)source.getAudioFormat().getSampleRate()*4, 0, mode == SourceIQ.MODE_FSK_HS);
+			iqSource.setAudioSource(source, chan);
+			iqSource.setPullMode(source.isPullMode());
+			decoder = BatchDecoder.makeDecoder(iqSource, 0, iqSource, mode);
+		} else
+			decoder = BatchDecoder.makeDecoder(source, chan, null, mode);
+	}
+
+	public void start() {
+		decoderThread = new Thread(decoder);
+		decoderThread.setName(name);
+		decoderThread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			public void uncaughtException(Thread th, Throwable ex) {
+				failed = true;
+				Log.uncaughtExHandler.uncaughtException(th, ex);
+			}
+		});
+		decoderThread.start();
+	}
+
+	public void stop() {
+		stopped = true;
+		if (decoderThread != null && decoderThread.isAlive())
+			decoder.stopProcessing();
+	}
+
+	/**
+	 * Tune the SourceIQ to this offset in Hz from the center of the IQ data, rather than the frequency in the
+	 * settings.  Ignored if the source is not IQ
+	 * @param offsetHz
+	 */
+	public void setFrequency(double offsetHz) {
+		if (iqSource != null)
+			iqSource.setOwnFrequency(offsetHz);
+	}
+
+	/**
+	 * A decoder that reads a recording finishes at the end of it, but one that reads a sound card should run until
+	 * it is stopped
+	 * @return true if the decoder died with an exception, or stopped reading a sound card by itself
+	 */
+	public boolean hasFailed() {
+		if (failed) return true;
+		return !isRunning() && !stopped && !source.isPullMode();
+	}
+
+	public boolean isRunning() { return decoderThread != null && decoderThread.isAlive(); }
+	public Decoder getDecoder() { return decoder; }
+
+	/**
+	 * @return one line with the state of the decoder, the frames it has decoded and the signal
+	 */
+	public String getStatus() {
+		DecimalFormat d1 = new DecimalFormat("0.0");
+		String modeName = "DUV";
+		if (mode == SourceIQ.MODE_FSK_HS) modeName = "HS";
+		else if (mode == SourceIQ.MODE_PSK_NC || mode == SourceIQ.MODE_PSK_COSTAS) modeName = "PSK";
+		String s = name + " " + modeName + (iqSource != null ? " IQ" : " AF") + " " + sourceName + ": "
+				+ (isRunning() ? "running" : "stopped") + ", " + decoder.getFramesDecoded() + " frames, "
+				+ decoder.getRsCorrections() + " RS corrections, " + decoder.getRsErasures() + " erasures";
+		EyeData eye = decoder.eyeData;
+		if (eye != null)
+			s = s + ", bit SNR " + d1.format(eye.bitSNR);
+		if (iqSource != null) {
+			RfData rf = iqSource.getRfData();
+			if (rf != null)
+				s = s + ", RF SNR " + d1.format(rf.rfSNRInFilterWidth) + " dB";
+		}
+		if (!source.isPullMode()) {
+			int size = decoder.getAudioBufferSize();
+			if (size > 0)
+				s = s + ", audio buffer " + (100 * (size - decoder.getAudioBufferCapacity()) / size) + "% full";
+			s = s + ", " + source.getOverruns() + " doubles dropped";
+		}
+		return s;
+	}
+}
@@ -42,7 +42,9 @@ public class RfData extends DataMeasure {
     SourceIQ iqSource;
     
     public RfData(SourceIQ iq) {
-    	AVERAGE_PERIOD = 100; //1000 = 1 sec average time.  Each FFT window is processed in 2ms
+    	// Each average used to take about 20 readings, one from every 5ms block.  We now get SPECTRUM_RATE readings a second,
+    	// so average over the same number of readings to keep the noise in the averages where it was
+    	AVERAGE_PERIOD = 20 * 1000 / SourceIQ.SPECTRUM_RATE; //1000 = 1 sec average time
     	MEASURES = 6;
     	iqSource = iq;
     	init();
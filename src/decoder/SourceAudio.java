@@ -2,6 +2,7 @@ package decoder;
 
 import javax.sound.sampled.AudioFormat;
 
+import common.Config;
 import common.Log;
 
 /**
@@ -31,15 +32,21 @@ import common.Log;
  * audio sources, so that all sources look the same to the decoder.
  * 
  * The read method blocks until enough bytes are available.  It is effectively waiting for the run method to fill the
- * buffer
+ * buffer.  The reader copies whole blocks out of the buffer and, when it is empty, waits on a lock until the run method
+ * signals that the samples it wants have been written.  Nothing spins while it waits.
  * 
- * The run method for a real time source should be implemented so that it writes data to the buffer as fast as it is
- * available and it should throw an exception if the end pointer reaches the start pointer.  This indicates that the
- * decoder can not keep up with the arrival of real time data and data was lost.  For a file source, the run method can block
- * until space is available in the circular buffer, as no data will be lost.
+ * The run method for a real time source should write data to the buffer in blocks with write() as fast as it is
+ * available.  If the buffer is full the block is dropped and counted as an overrun.  This indicates that the
+ * decoder can not keep up with the arrival of real time data and data was lost.  For a file source, the run method can wait
+ * with waitForRoom() until space is available in the circular buffer, as no data will be lost.  The reader signals it
+ * when it has made room.
  * 
  * An audio source can have multiple channels that read from the same hardware.  This allows one soundcard to be shared by multiple decoders.
  * 
+ * A source that reads a recording can also run in pull mode.  The run method is not used and the read method calls fill()
+ * on the reader's thread when the buffer is empty, so a file can be decoded as fast as the decoder can process it,
+ * without a thread that polls for room in the buffer.
+ * 
  * @author chris.e.thompson
  *
  */
@@ -63,6 +70,16 @@ public abstract class SourceAudio implements Runnable {
 	protected CircularDoubleBuffer[] circularDoubleBuffer;
 	public AudioFormat getAudioFormat() { return audioFormat; }
 	public boolean storeStereo = false; // set to true if we want to store both channels (such as for IQ) otherwise we save space and make processing easier with mono buffer
+	protected boolean pullMode = false; // true if read() fills the buffer itself rather than waiting for the run method
+
+	public static final int WAIT_TIMEOUT = 100; // ms, a thread waiting on the buffer checks this often that we are still running
+	private final Object bufferLock = new Object(); // the reader waits on this for data and the run method for room
+	private int[] dataWanted; // for each channel, the doubles the reader is waiting for, or 0.  Guarded by bufferLock
+	private int[] roomWanted; // for each channel, the space the run method is waiting for, or 0.  Guarded by bufferLock
+	private volatile long underruns = 0; // times a reader found the buffer empty and had to wait
+	private volatile long overruns = 0; // doubles dropped because the buffer was full
+	private byte[] ia = new byte[2];
+	private byte[] ib = new byte[2];
 
 	public SourceAudio(String n, int circularBufferSize, int channels, boolean stereo) {
 		name = n;
@@ -75,6 +92,8 @@ public abstract class SourceAudio implements Runnable {
 		for (int i=0; i< channels; i++)
 			circularDoubleBuffer[i] = new CircularDoubleBuffer(circularBufferSize);
 		}
+		dataWanted = new int[circularDoubleBuffer.length];
+		roomWanted = new int[circularDoubleBuffer.length];
 		this.channels = channels;
 		storeStereo = stereo;
 	}
@@ -88,36 +107,179 @@ public abstract class SourceAudio implements Runnable {
 	}
 
 	public int read(double[] abData, int chan) {
-		//int bytesRead = 0; 
+		CircularDoubleBuffer buffer = circularDoubleBuffer[chan];
 		int doublesRead = 0;
 
-		// We block until we have read abData length bytes, assuming we are still running
-		while (running && doublesRead < abData.length) { // 2 bytes for each sample
-			if (circularDoubleBuffer[chan].size() > 2) {// if we have at least one set of bytes, then read them
-				try {
-					
-					abData[doublesRead] = circularDoubleBuffer[chan].get(0);
-					circularDoubleBuffer[chan].incStartPointer(1);
-					doublesRead+=1;
-				} catch (IndexOutOfBoundsException e) {
-					// If this happens, we are in an unusual situation.  We waited until the circularBuffer contains abData.length of data
-					// then we started to read it one byte at a time.  However, we have moved the read (start) pointer as far as the end
-					// pointer, so we have run out of data.
-					Log.errorDialog(name + ": AUDIO BUFFER READ ERROR on channel: " + chan, e.getMessage() + "\nTry starting the decoder again.");
-					Log.println(name + ": threw error:");
-					e.printStackTrace(Log.getWriter());
-				}
-			} else {
-				try {
-					Thread.sleep(0, 1);
-				} catch (InterruptedException e) {
-					e.printStackTrace(Log.getWriter());
-				}
-			}
+		// We block until we have read abData length doubles, assuming we are still running.  Once the run method has
+		// stopped we still return what is left in the buffer, so the end of a file is decoded
+		while (doublesRead < abData.length) {
+			int n = buffer.read(abData, doublesRead, abData.length - doublesRead);
+			if (n > 0) {
+				doublesRead += n;
+				signalRoom(chan);
+			} else if (!running) {
+				break;
+			} else if (pullMode) {
+				if (!fill()) break; // the end of the recording
+			} else
+				waitForData(chan, abData.length - doublesRead);
 		}
 		return doublesRead;
 	}
 
+	/**
+	 * Wait until the run method has written this many doubles to the channel, or half the buffer if that is less, so
+	 * that the reader can copy them in one go.
+	 */
+	private void waitForData(int chan, int wanted) {
+		CircularDoubleBuffer buffer = circularDoubleBuffer[chan];
+		if (wanted > buffer.bufferSize / 2)
+			wanted = buffer.bufferSize / 2; // otherwise a block that does not fit could leave us waiting
+		synchronized (bufferLock) {
+			if (buffer.size() > 0) return;
+			underruns++;
+			dataWanted[chan] = wanted;
+			try {
+				while (running && buffer.size() < wanted)
+					bufferLock.wait(WAIT_TIMEOUT);
+			} catch (InterruptedException e) {
+				e.printStackTrace(Log.getWriter());
+			} finally {
+				dataWanted[chan] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Wake the reader of this channel if it now has the data it is waiting for
+	 */
+	private void signalData(int chan) {
+		synchronized (bufferLock) {
+			int wanted = dataWanted[chan];
+			if (wanted > 0 && circularDoubleBuffer[chan].size() >= wanted)
+				bufferLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Called from the run method of a source that must not lose data, such as a file.  Wait until there is room for
+	 * this many doubles in the channel or until we are stopped.
+	 */
+	protected void waitForRoom(int chan, int room) {
+		CircularDoubleBuffer buffer = circularDoubleBuffer[chan];
+		synchronized (bufferLock) {
+			roomWanted[chan] = room;
+			try {
+				while (running && buffer.free() < room)
+					bufferLock.wait(WAIT_TIMEOUT);
+			} catch (InterruptedException e) {
+				e.printStackTrace(Log.getWriter());
+			} finally {
+				roomWanted[chan] = 0;
+			}
+		}
+	}
+
+	private void signalRoom(int chan) {
+		synchronized (bufferLock) {
+			int room = roomWanted[chan];
+			if (room > 0 && circularDoubleBuffer[chan].free() >= room)
+				bufferLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Add a block of doubles to one channel and wake the reader if it is waiting for them.  If the channel does not
+	 * have room for the whole block then it is dropped and counted as an overrun.
+	 * @return false if the block was dropped
+	 */
+	protected boolean write(int chan, double[] data, int off, int len) {
+		boolean added = circularDoubleBuffer[chan].add(data, off, len);
+		if (!added)
+			overruns += len;
+		signalData(chan);
+		return added;
+	}
+
+	/**
+	 * Add the same block of doubles to every channel
+	 * @return false if the block was dropped from any channel
+	 */
+	protected boolean write(double[] data, int len) {
+		boolean added = true;
+		for (int chan=0; chan < circularDoubleBuffer.length; chan++)
+			if (!write(chan, data, 0, len))
+				added = false;
+		return added;
+	}
+
+	/**
+	 * Convert 16 bit audio bytes into the doubles that we store.  For stereo that we store, such as IQ, each frame gives
+	 * a pair of doubles, otherwise we take the channel that the user selected.
+	 * @param bytes
+	 * @param nBytes
+	 * @param samples - must hold 2 doubles for each frame
+	 * @return the number of doubles
+	 */
+	protected int bytesToDoubles(byte[] bytes, int nBytes, double[] samples) {
+		int frameSize = audioFormat.getFrameSize();
+		int bits = audioFormat.getSampleSizeInBits();
+		boolean bigEndian = audioFormat.isBigEndian();
+		double a, b = 0;
+		int k = 0;
+		for (int i=0; i + frameSize <= nBytes; i+=frameSize) {
+			ia[0] = bytes[i];
+			ia[1] = bytes[i+1];
+			if (bigEndian)
+				a = Decoder.bigEndian2(ia, bits)/ 32768.0;
+			else
+				a = Decoder.littleEndian2(ia, bits)/ 32768.0;
+			if (frameSize == 4) {  // STEREO DATA because 4 bytes and 2 bytes are used for each channel
+				ib[0] = bytes[i+2];
+				ib[1] = bytes[i+3];
+				if (bigEndian)
+					b = Decoder.bigEndian2(ib, bits)/ 32768.0;
+				else
+					b = Decoder.littleEndian2(ib, bits)/ 32768.0;
+			}
+			if (frameSize == 4 && storeStereo) {
+				samples[k++] = a;
+				samples[k++] = b;
+			} else { // we have only mono and we need to know which channel to take the data from
+				if (frameSize == 4 && !Config.useLeftStereoChannel)
+					a = b; // use the audio from the right channel
+				samples[k++] = a;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * @return the number of times a reader found the buffer empty and had to wait for the run method
+	 */
+	public long getUnderruns() { return underruns; }
+
+	/**
+	 * @return the number of doubles dropped because the reader was not keeping up
+	 */
+	public long getOverruns() { return overruns; }
+
+	/**
+	 * In pull mode the data is read on the thread that calls read() and the run method is not started.  Only sources
+	 * that read from a recording support this.
+	 * @param pull
+	 */
+	public void setPullMode(boolean pull) { pullMode = pull; }
+	public boolean isPullMode() { return pullMode; }
+
+	/**
+	 * Called by read() in pull mode when the buffer is empty.  Add the next block of data to the buffer.
+	 * @return false at the end of the data
+	 */
+	protected boolean fill() {
+		return false;
+	}
+
 	public int getAudioBufferCapacity() { return circularDoubleBuffer[0].getCapacity(); }
 	public int getAudioBufferCapacity(int chan) { return circularDoubleBuffer[chan].getCapacity(); }
 	public int getAudioBufferSize() { return circularDoubleBuffer[0].bufferSize; }
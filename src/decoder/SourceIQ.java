@@ -1,15 +1,16 @@
 package decoder;
 
+import java.util.Arrays;
+
 import javax.sound.sampled.AudioFormat;
 
 import org.jtransforms.fft.DoubleFFT_1D;
 
 import common.Config;
 import common.Log;
-import filter.Complex;
-import filter.ComplexOscillator;
 import filter.DcRemoval;
 import filter.IirFilter;
+import filter.NCO;
 import filter.PolyPhaseFilter;
 
 /**
@@ -56,7 +57,17 @@ public class SourceIQ extends SourceAudio {
 	private double[] psdAvg = null; //new double[FFT_SAMPLES*2+1];;
 	int psdAvgCount = 0;
 	int PSD_AVG_LEN = 3;
-	double[] overlap = null; //new double[2*FFT_SAMPLES - (samplesToRead/2)];
+	double[] iqHistory = null; // the last FFT_SAMPLES IQ samples, oldest first.  Each block slides in at the end
+	double[] spectrum = null; // the Blackman windowed spectrum of iqHistory, for the PSD and the RF measurements
+	static final int SPECTRUM_RATE = 30; // measurements per second, about the rate the FFT panel is drawn
+	int spectrumBlocks = 1; // so we measure the spectrum once in this many blocks
+	int spectrumCount = 0;
+	// The RF measurements are made as they always were, on one block of rfBlock IQ samples that starts FFT_SAMPLES/64 into
+	// a Blackman window the length of the FFT.  The thresholds in PassManager and the FFTPanel were set against that, so
+	// the SNR and the signal levels keep their meaning.  The PSD display windows the whole history instead
+	int rfBlock = 960;
+	double[] rfWindow = null; // the part of the Blackman window that covers the block
+	double blackman0, blackman1, blackman2; // the display window as a five point convolution in frequency, see initSpectrumWindow
 	
 	double[] outputData = null;
 	double[] fcdData = null; //new double[samplesToRead];
@@ -66,12 +77,17 @@ public class SourceIQ extends SourceAudio {
 	double centerFreq; // The frequency that the dongle is set to in kHz for historical reasons.  Multiply by 1000 for Hz
 	
 	double binBandwidth = 0;
+	double psdOffset = 0; // 20*log10(binBandwidth)
 	int filterWidth = 0 ; //We FFT filter +- this number of bins 64 bins is 3000 Hz for 4096 FFT samples, Normal FM channel is 16kHz = +-8kHz = 170
 	int filterWidthHz = 4000; //If we use NCO, this is the width of the IF in Hz
 	
-	double[] blackmanWindow = null; //new double[FFT_SAMPLES+1];
 	double[] blackmanFilterShape;
 	double[] tukeyFilterShape;
+	double[] filterResponse = null; // complex frequency response of the FFT filter, centered on bin filterWidth
+	int filterDelay = 0; // the FFT filter impulse response runs from -filterDelay to +filterDelay samples
+	int designedFilterWidth = 0; // the filterWidth and shape that filterResponse was designed for
+	boolean designedBlackman = false;
+	long filterPhase = 0; // the phase of the FFT filter frequency shift at the start of the block, in 2PI/FFT_SAMPLES
 	
 	DoubleFFT_1D fft;
 	FmDemodulator fm;
@@ -93,10 +109,6 @@ public class SourceIQ extends SourceAudio {
 	PolyPhaseFilter polyFilter;
 	PolyPhaseFilter polyFilter2;
 	
-	boolean fftDataFresh = false;
-	public boolean offsetFFT = true;
-	int dist = 0; // the offset distance
-	
 	// Only needed for Legacy NCO
 	private static final int SINCOS_SIZE = 256;
 	private double[] sinTab = new double[SINCOS_SIZE];
@@ -200,7 +212,19 @@ public class SourceIQ extends SourceAudio {
 		freq = f;
 		if (nco != null && mode != MODE_PSK_COSTAS)
 			nco.setFrequency(freq);
-		Config.selectedFrequency = freq;
+		if (!ownFrequency)
+			Config.selectedFrequency = freq;
+	}
+	
+	/**
+	 * Tune to this offset frequency in Hz and keep it, rather than starting from the frequency in the settings and
+	 * storing it there.  This is for a SourceIQ that is one of several on the same capture, e.g. on a channel of a
+	 * Channelizer, where each is tuned to its own frequency
+	 * @param f
+	 */
+	public void setOwnFrequency(double f) {
+		ownFrequency = true;
+		setSelectedFrequency(f);
 	}
 	
 	public double getSelectedFrequency() {
@@ -286,37 +310,39 @@ public class SourceIQ extends SourceAudio {
 	/**
 	 * 47Hz resolution has worked well in FoxTelem for the FCD.  ie 4096 length FFT.  To preserve that fidelity we calculate the nearest 
 	 * power of 2 that gives that resolution, given a sampleRate, up to a maximum of 2^16
+	 * 
+	 * When we filter with the FFT each block of samplesToRead/2 IQ samples is 45/64 of the FFT, which leaves the rest for the
+	 * filter impulse response.  45 * 2^n samples still divides by all of the decimation factors
+	 * 
+	 * The RF measurements use the block length that the FFT filter used to have, 15/64 of the FFT, or 1920 samples
+	 * when the FFT would be shorter than 4096
 	 */
 	private void setFFTsize() {
+		boolean fftFilter = !(mode == MODE_PSK_NC || mode == MODE_PSK_COSTAS || Config.useNCO);
 		
 		if (Config.isRasperryPi()) {
 			FFT_SAMPLES=2048;
-			samplesToRead = 3840 /2;
-			return;
-		}
-		if (mode == MODE_PSK_NC || mode == MODE_PSK_COSTAS || Config.useNCO) {
+			rfBlock = 960;
+		} else if (!fftFilter) {
 			FFT_SAMPLES=4096;
-			samplesToRead = 3840 /2;
-			return;			
-		}
-		for (int f=0; f<17; f++) {
-			int len = (int)Math.pow(2, f);
-			if (IQ_SAMPLE_RATE / len < 47) {
-				int factor = len / 4096;
-				if (factor == 0 ) {
-					// Set to default
-					FFT_SAMPLES=4096;
-					samplesToRead = 3840;
-					return;
+			rfBlock = 960;
+		} else {
+			// Default to max
+			FFT_SAMPLES = 4096 * 16;
+			rfBlock = 960 * 16;
+			for (int f=0; f<17; f++) {
+				int len = (int)Math.pow(2, f);
+				if (IQ_SAMPLE_RATE / len < 47) {
+					FFT_SAMPLES = Math.max(len, 4096);
+					rfBlock = len < 4096 ? 1920 : 960 * len / 4096;
+					break;
 				}
-				FFT_SAMPLES = len; 
-				samplesToRead = 3840 * factor/2;
-				return;
 			}
 		}
-		// Default to max
-		FFT_SAMPLES = 4096 * 16;
-		samplesToRead = 3840 * 16/2;
+		if (fftFilter)
+			samplesToRead = 2 * (FFT_SAMPLES * 45 / 64);
+		else
+			samplesToRead = 3840 /2;
 	}
 	
 	private void init() {	
@@ -324,17 +350,19 @@ public class SourceIQ extends SourceAudio {
 		IQ_SAMPLE_RATE = (int)upstreamAudioFormat.getSampleRate();
 	
 		setFFTsize();
+		initSpectrumWindow();
 		fft = new DoubleFFT_1D(FFT_SAMPLES);
 		fm = new FmDemodulator();
-		blackmanWindow = initBlackmanWindow(FFT_SAMPLES); 
-
 		fftData = new double[FFT_SAMPLES*2];
+		iqHistory = new double[fftData.length];
+		spectrum = new double[fftData.length];
 		psdAvg = new double[FFT_SAMPLES*2+1];;
 		newData = new double[fftData.length]; // make a new array to copy so we can store the section we want
 
 		decimationFactor = IQ_SAMPLE_RATE / AF_SAMPLE_RATE;
 		if (decimationFactor == 0) decimationFactor = 1;  // User has chosen the wrong rate most likely
 		binBandwidth = IQ_SAMPLE_RATE/(double)FFT_SAMPLES;
+		psdOffset = 20*Math.log10(binBandwidth);
 		
 			
 		if (mode == MODE_FSK_HS) {
@@ -350,10 +378,9 @@ public class SourceIQ extends SourceAudio {
 				setFilterWidth(5000); // 5kHz deviation, 3kHz audio on Fox
 			//mode = MODE_NFM;
 		}
-		if (offsetFFT) // only needed for FFT Filter
-			dist = 128*FFT_SAMPLES/4096; // offset puts the data outside the taper of the window function and gives better audio, but at the expense of dynamic range
-
-		overlap = new double[2*FFT_SAMPLES - (samplesToRead)]; // we only use part of this, but this is the maximum it could be
+		filterDelay = (FFT_SAMPLES - samplesToRead/2) / 2;
+		filterResponse = null;
+		spectrumBlocks = Math.max(1, (int)Math.round(IQ_SAMPLE_RATE / (samplesToRead/2.0) / SPECTRUM_RATE));
 		
 		fcdData = new double[samplesToRead]; // this is the data block we read from the IQ source and pass to the FFT
 		demodAudio = new double[samplesToRead/2];
@@ -368,8 +395,8 @@ public class SourceIQ extends SourceAudio {
 		
 		polyFilter = new PolyPhaseFilter(IQ_SAMPLE_RATE, filterWidthHz, decimationFactor, 13*decimationFactor);
 		polyFilter2 = new PolyPhaseFilter(IQ_SAMPLE_RATE, filterWidthHz, decimationFactor, 13*decimationFactor);
-		in = new double[decimationFactor];
-		in2 = new double[decimationFactor];
+		mixI = new double[samplesToRead/2];
+		mixQ = new double[samplesToRead/2];
 
 		audioDcFilter = new DcRemoval(0.9999d);
 
@@ -377,9 +404,10 @@ public class SourceIQ extends SourceAudio {
 		qDcFilter = new DcRemoval(0.9999d);
 		
 ///		setSelectedBin(Config.selectedBin);
-		freq = Config.selectedFrequency;
+		if (!ownFrequency)
+			freq = Config.selectedFrequency;
 		// Costas Loop or NCO downconvert
-		nco = new ComplexOscillator(IQ_SAMPLE_RATE, (int) freq);
+		nco = new NCO(IQ_SAMPLE_RATE, (int) freq);
 		// Costas
 		
 		// 4 pole cheb at fc = 0.025 = 1200Kz at 48k.  Ch 20 Eng and Sci guide to DSP
@@ -416,53 +444,64 @@ public class SourceIQ extends SourceAudio {
 		Log.println("IQ Source START. Running="+running);
 		init();
 		while (running) {
-			int nBytesRead = 0;
-			if (circularDoubleBuffer[channel].getCapacity() > fcdData.length) {
-				nBytesRead = upstreamAudioSource.read(fcdData, upstreamChannel);
-				if (nBytesRead != fcdData.length)
-					if (Config.debugAudioGlitches) Log.println("ERROR: IQ Source could not read sufficient data from audio source");
-				if (mode == MODE_PSK_COSTAS)
-					outputData = processPSKBytes(fcdData);
-				else if (mode == MODE_PSK_NC)
-					outputData = processBytes(fcdData);
-				else if (Config.useNCO)
-					outputData = processNCOBytes(fcdData);
-				else
-					outputData = processBytes(fcdData);
-		////		Log.println("IQ Source writing data to audio thread");
-				/** 
-				 * Simulate a slower computer for testing
-				 
-				try {
-					Thread.sleep(10);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				*/
-				for(int i=0; i < outputData.length; i+=2) {	
-			// FUDGE		
-					if (i+2 > outputData.length) {
-						//Log.println("Only added: "+i +" of " + outputData.length);
-						break;
-					}
-					circularDoubleBuffer[channel].add(outputData[i],outputData[i+1]);
-				}
-			} else {
-				try {
-					Thread.sleep(0,1);
-				} catch (InterruptedException e) {
-					e.printStackTrace(Log.getWriter());
-				}
-			}
+			waitForRoom(channel, fcdData.length); // the decoder signals when it has read enough
+			if (!running) break;
+			int nBytesRead = upstreamAudioSource.read(fcdData, upstreamChannel);
+			if (nBytesRead != fcdData.length)
+				if (Config.debugAudioGlitches) Log.println("ERROR: IQ Source could not read sufficient data from audio source");
+			processBlock();
 		}
 		rfData.stopProcessing();
 		Log.println("IQ Source EXIT.  Running="+running);
 
 	}
 
+	/**
+	 * Demodulate the IQ data that has been read into fcdData and add the audio to the buffer
+	 */
+	private void processBlock() {
+		if (mode == MODE_PSK_COSTAS)
+			outputData = processPSKBytes(fcdData);
+		else if (mode == MODE_PSK_NC)
+			outputData = processBytes(fcdData);
+		else if (Config.useNCO)
+			outputData = processNCOBytes(fcdData);
+		else
+			outputData = processBytes(fcdData);
+////		Log.println("IQ Source writing data to audio thread");
+		/** 
+		 * Simulate a slower computer for testing
+		 
+		try {
+			Thread.sleep(10);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		*/
+		write(channel, outputData, 0, outputData.length & ~1); // FUDGE, whole pairs only
+	}
+
+	/**
+	 * Read and demodulate the next block from the upstream source on the decoder's thread.  Used in pull mode, where
+	 * run() is not called, so we initialize here the first time.
+	 */
+	@Override
+	protected boolean fill() {
+		if (fcdData == null) init();
+		int nBytesRead = upstreamAudioSource.read(fcdData, upstreamChannel);
+		if (nBytesRead != fcdData.length) {
+			running = false; // the end of the recording, the part block is not used
+			return false;
+		}
+		processBlock();
+		return true;
+	}
+
 	@Override
 	public void stop() {
 		running = false;
+		if (pullMode && rfData != null)
+			rfData.stopProcessing(); // run() would have done this
 		upstreamAudioSource.stop();
 		while (!upstreamAudioSource.isDone())
 			try {
@@ -480,9 +519,8 @@ public class SourceIQ extends SourceAudio {
 	double gain = 1;
 	static final double DESIRED_RANGE = 0.7; // from -0.5 to +0.5
 	
-	int decimateCount = 0;
-	double[] in ;
-	double[] in2 ;
+	double[] mixI ; // the mixed I and Q for a block in processNCOBytes, decimated in place by the polyphase filters, or the filtered I and Q in processBytes
+	double[] mixQ ;
 
 	/**
 	 * Process IQ bytes and return a set of 48K audio bytes that can be processed by the decoder as normal
@@ -490,8 +528,13 @@ public class SourceIQ extends SourceAudio {
 	 * @return
 	 */
 	protected double[] processNCOBytes(double[] fcdData) {
-		zeroFFT();
-		int i = 0;
+		int i = slideHistory(fcdData.length/2);
+		int samples = fcdData.length/2;
+		if (ncoCos == null || ncoCos.length != samples) {
+			ncoCos = new double[samples];
+			ncoSin = new double[samples];
+		}
+		nco.nextSamples(ncoCos, ncoSin, samples); // the NCO does not change during the block
 		
 		// Loop through the 192k data, sample size 2 because we read doubles from the audio source buffer
 		for (int j=0; j < fcdData.length; j+=2 ) { // sample size is 2, 1 double per channel
@@ -503,39 +546,29 @@ public class SourceIQ extends SourceAudio {
 			id = iDcFilter.filter(id);
 			qd = qDcFilter.filter(qd);
 			
-			c = nco.nextSample();
-			c.normalize();
 			// Mix 
-			double iMix = gain*id * c.geti() + gain*qd*c.getq();
-			double qMix = gain*qd * c.geti() - gain*id*c.getq();
+			double iMix = gain*id * ncoCos[j/2] + gain*qd*ncoSin[j/2];
+			double qMix = gain*qd * ncoCos[j/2] - gain*id*ncoSin[j/2];
 
-			in[decimateCount] = iMix;
-			in2[decimateCount] = qMix;
-			
-			decimateCount++;
-			if (decimateCount >= decimationFactor-1) {
-				decimateCount = 0;
-				double value = polyFilter.filterDouble(in);
-				double value2 = polyFilter2.filterDouble(in2);
-				audioData[j/(2*decimationFactor)] = fm.demodulate(value, value2);
-			}
+			mixI[j/2] = iMix;
+			mixQ[j/2] = qMix;
 			
 			// i and q go into consecutive spaces in the complex FFT data input
 			if (Config.swapIQ) {
-				fftData[i+dist] = qd;
-				fftData[i+1+dist] = id;
+				iqHistory[i] = qd;
+				iqHistory[i+1] = id;
 			} else {
-				fftData[i+dist] = id;
-				fftData[i+1+dist] = qd;
+				iqHistory[i] = id;
+				iqHistory[i+1] = qd;
 			}
 			i+=2;
 		}
-		runFFT(fftData); // results back in fftData
-		fftDataFresh = false;	
-		if (!Config.showIF) calcPsd();
-		fftDataFresh = true;
-		filterFFTWindow(fftData); // do this regardless because it also calculates the SNR
-		if (Config.showIF) calcPsd();
+		// Decimate the whole block and then demodulate the samples we kept
+		polyFilter.filterBlock(mixI, mixI);
+		polyFilter2.filterBlock(mixQ, mixQ);
+		fm.demodulate(mixI, mixQ, audioData, audioData.length);
+
+		measureSpectrum(false);
 
 		return audioData; 
 	}
@@ -544,8 +577,7 @@ protected double[] processPSKBytes(double[] fcdData) {
 		
 		double maxValue = 0;
 		double minValue = 0;
-		zeroFFT();
-		int i = 0;
+		int i = slideHistory(fcdData.length/2);
 		int d=0;
 		int k = 0;
 		sumLockLevel = 0;
@@ -565,24 +597,16 @@ protected double[] processPSKBytes(double[] fcdData) {
 			sumLockLevel += lockLevel;
 			// i and q go into consecutive spaces in the complex FFT data input
 			if (Config.swapIQ) {
-				fftData[i+dist] = qd;
-				fftData[i+1+dist] = id;
+				iqHistory[i] = qd;
+				iqHistory[i+1] = id;
 			} else {
-				fftData[i+dist] = id;
-				fftData[i+1+dist] = qd;
+				iqHistory[i] = id;
+				iqHistory[i+1] = qd;
 			}
 			i+=2;
 		}
 		avgLockLevel = sumLockLevel / (double)(fcdData.length/2.0);
-		runFFT(fftData); // results back in fftData
-
-		if (!Config.showIF) calcPsd();
-
-		filterFFTWindow(fftData); // do this regardless because it also calculates the SNR
-			
-		fftDataFresh = false;	
-		if (Config.showIF) calcPsd();
-		fftDataFresh = true;	
+		measureSpectrum(false);
 		
 		gain = DESIRED_RANGE / (1.0f * (maxValue-minValue));
 		
@@ -627,8 +651,7 @@ protected double[] processBytes(double[] fcdData) {
 		return new double[0];
 	}
 
-	zeroFFT();
-	int i = 0;
+	int i = slideHistory(fcdData.length/2);
 	
 	// DC Filter the incoming data
 	for (int j=0; j < fcdData.length; j+=2 ) { // sample size is 2, 1 double per channel
@@ -639,54 +662,45 @@ protected double[] processBytes(double[] fcdData) {
 		fcdData[j] = iDcFilter.filter(id);
 		fcdData[j+1] = qDcFilter.filter(qd);
 		
-		
-	}
-	
-//	if (Config.useNCO) {
-//			 ncoDecimate(fcdData, fcdData2);
-//	}
-
-	// Loop through the 192k data, sample size 2 because we read doubles from the audio source buffer
-	for (int j=0; j < fcdData.length; j+=2 ) { // sample size is 2, 1 double per channel
-		double id, qd;
-		id = fcdData[j];
-		qd = fcdData[j+1];
-		
-		// filter out any DC from I/Q signals
-//		id = iDcFilter.filter(id);
-//		qd = qDcFilter.filter(qd);
-
 		// i and q go into consecutive spaces in the complex FFT data input
 		if (Config.swapIQ) {
-			fftData[i+dist] = qd;
-			fftData[i+1+dist] = id;
+			iqHistory[i] = fcdData[j+1];
+			iqHistory[i+1] = fcdData[j];
 		} else {
-			fftData[i+dist] = id;
-			fftData[i+1+dist] = qd;
+			iqHistory[i] = fcdData[j];
+			iqHistory[i+1] = fcdData[j+1];
 		}
 		i+=2;
 	}
-
-	runFFT(fftData); // results back in fftData
-	fftDataFresh = false;	
-	if (!Config.showIF) calcPsd();
-	fftDataFresh = true;
-
-	filterFFTWindow(fftData); // do this regardless because it also calculates the SNR
-
-	if (Config.showIF) calcPsd();
-
-	if (mode == MODE_PSK_NC) 
-		;
-	else
-		inverseFFT(fftData);
+	
 	int d=0;
-	// loop through the raw Audio array, which has 2 doubles for each entry - i and q
-	for (int j=0; j < fcdData.length; j +=2 ) { // data size is 2 
-		if (mode == MODE_PSK_NC)
+	if (mode == MODE_PSK_NC) {
+		measureSpectrum(false);
+		// loop through the raw Audio array, which has 2 doubles for each entry - i and q
+		for (int j=0; j < fcdData.length; j +=2 ) // data size is 2 
 			demodAudio[d++] = ncoDownconvert(fcdData[j], fcdData[j+1]);
-		else
-			demodAudio[d++] = fm.demodulate(fftData[j+dist], fftData[j+1+dist]);	
+	} else {
+		// Overlap-save.  Filter the whole history and keep the part of the result where the filter only saw real samples.
+		// That is the middle of the FFT, so it is this block delayed by the rest of the history
+		System.arraycopy(iqHistory, 0, fftData, 0, fftData.length);
+		fft.complexForward(fftData);
+		measureSpectrum(true);
+		int shift = getFilterShift();
+		filterSpectrum(fftData, newData, shift);
+		fft.complexInverse(newData, true);
+
+		// Moving the spectrum by shift bins mixes each FFT with a phase that starts from zero, so we correct the phase
+		// at the start of each block to keep the mixing continuous from block to block
+		double angle = -2 * Math.PI * filterPhase / FFT_SAMPLES;
+		double cos = Math.cos(angle);
+		double sin = Math.sin(angle);
+		int from = 2 * filterDelay;
+		for (int j=from; j < from + fcdData.length; j +=2 ) { // data size is 2 
+			mixI[d] = newData[j] * cos - newData[j+1] * sin;
+			mixQ[d++] = newData[j] * sin + newData[j+1] * cos;
+		}
+		fm.demodulate(mixI, mixQ, demodAudio, d);
+		filterPhase = (filterPhase + (long)shift * (fcdData.length/2)) % FFT_SAMPLES;
 	}
 	
 	int k = 0;
@@ -718,27 +732,86 @@ protected double[] processBytes(double[] fcdData) {
 	return audioData; 
 }
 
-	private void zeroFFT() {
-		for (int i=0; i< FFT_SAMPLES*2; i++) {
-			fftData[i] = 0.0;
+	/**
+	 * Slide the IQ history along to make room for a new block at the end
+	 * @param samples - the number of IQ samples in the new block
+	 * @return the position in iqHistory of the first new sample
+	 */
+	private int slideHistory(int samples) {
+		int keep = iqHistory.length - 2*samples;
+		System.arraycopy(iqHistory, 2*samples, iqHistory, 0, keep);
+		return keep;
+	}
+
+	/**
+	 * Make the window for the RF measurements and the scale of the PSD display.  The display windows all of the history,
+	 * which lets in more noise than the window of one block, so we scale it by the square root of the ratio of the two
+	 * window energies.  That depends on the FFT size and the block length, and keeps the noise floor of the display where
+	 * the RF measurements see it.
+	 */
+	private void initSpectrumWindow() {
+		double[] window = initBlackmanWindow(FFT_SAMPLES);
+		int start = FFT_SAMPLES / 64;
+		rfWindow = new double[rfBlock];
+		double energy = 0;
+		double blockEnergy = 0;
+		for (int n=0; n < FFT_SAMPLES; n++) {
+			energy += window[n] * window[n];
+			if (n >= start && n < start + rfBlock) {
+				rfWindow[n - start] = window[n];
+				blockEnergy += window[n] * window[n];
+			}
 		}
+		double scale = Math.sqrt(blockEnergy / energy);
+		blackman0 = 0.42 * scale;
+		blackman1 = -0.25 * scale;
+		blackman2 = 0.04 * scale;
 	}
-	
-	private void runFFT(double[] fftData) {
-		
-		// calculating the fft of the data, so we will have spectral power of each frequency component
-		// fft resolution (number of bins) is samplesNum, because we initialized with that value
-		//if (Config.applyBlackmanWindow)
-		for (int s=0; s<fftData.length-1; s+=2) {
-			fftData[s] = blackmanWindow[s/2] * fftData[s];
-			fftData[s+1] = blackmanWindow[s/2] * fftData[s+1];
+
+	/**
+	 * Measure the spectrum of the IQ history for the PSD and the RF measurements.  These are averaged and displayed at
+	 * about SPECTRUM_RATE per second, so we skip the blocks in between.
+	 * 
+	 * The spectrum is taken without a window, which is what the FFT filter needs.  A Blackman window in time is a five
+	 * point convolution in frequency, so we window the spectrum that we have for the display rather than take a second FFT.
+	 * The RF measurements take their own FFT of the newest block, see rfWindow.
+	 * @param haveSpectrum - true if fftData already holds the FFT of iqHistory, otherwise we calculate it
+	 */
+	private void measureSpectrum(boolean haveSpectrum) {
+		if (++spectrumCount < spectrumBlocks) return;
+		spectrumCount = 0;
+		if (!haveSpectrum) {
+			System.arraycopy(iqHistory, 0, fftData, 0, fftData.length);
+			fft.complexForward(fftData);
 		}
-		fft.complexForward(fftData);
+		int len = fftData.length;
+		for (int s=0; s < len; s+=2) {
+			int m1 = (s + len - 2) % len;
+			int p1 = (s + 2) % len;
+			int m2 = (s + len - 4) % len;
+			int p2 = (s + 4) % len;
+			spectrum[s] = blackman0 * fftData[s] + blackman1 * (fftData[m1] + fftData[p1]) + blackman2 * (fftData[m2] + fftData[p2]);
+			spectrum[s+1] = blackman0 * fftData[s+1] + blackman1 * (fftData[m1+1] + fftData[p1+1]) + blackman2 * (fftData[m2+1] + fftData[p2+1]);
+		}
+		Arrays.fill(newData, 0);
+		int from = iqHistory.length - 2 * rfBlock;
+		int to = 2 * (FFT_SAMPLES / 64);
+		for (int n=0; n < rfBlock; n++) {
+			newData[to + 2*n] = rfWindow[n] * iqHistory[from + 2*n];
+			newData[to + 2*n + 1] = rfWindow[n] * iqHistory[from + 2*n + 1];
+		}
+		fft.complexForward(newData);
+		measureRfData(newData);
+		if (Config.showIF) {
+			filterSpectrum(spectrum, newData, getFilterShift());
+			calcPsd(newData);
+		} else
+			calcPsd(spectrum);
 	}
 
 	boolean firstRun = true;
 	double psd;
-	private void calcPsd() {
+	private void calcPsd(double[] fftData) {
 		// Calculate power spectral density (PSD) so that we can display it
 		// This is the magnitude of the complex signal, so it is sqrt(i^2 + q^2)
 		// divided by the bin bandwidth  
@@ -754,10 +827,9 @@ protected double[] processBytes(double[] fcdData) {
 	}
 	
 	private double psd(double i, double q) {
-		// 10*log (x^2 + y^2) == 20 * log(sqrt(x^2 + y^2)) so we can avoid the sqrt
-		return (20*Math.log10(Math.sqrt((i*i) + (q*q))/binBandwidth));	// Compute PSD
-		//psd[s/2] = 10*Math.log10( ((fftData[s]*fftData[s]) + (fftData[s+1]*fftData[s+1]) )/binBandwidth);	// Compute PSD
-		
+		// 10*log (x^2 + y^2) == 20 * log(sqrt(x^2 + y^2)) so we can avoid the sqrt, and the division by the bin
+		// bandwidth is a constant offset in dB
+		return 10*Math.log10((i*i) + (q*q)) - psdOffset;	// Compute PSD
 	}
 	
 	public static double average (double avg, double new_sample, int N) {
@@ -766,38 +838,77 @@ protected double[] processBytes(double[] fcdData) {
 		return avg;
 	}
 	
-	private void inverseFFT(double[] fftData) {
-		fft.complexInverse(fftData, true); // true means apply scaling - but it does not work?
-	
-		// Add the last overlap.  
-		// We have iq data, so the FFTData buffer is actually FFT_SAMPLES * 2 in length
-		// We request samplesToRead bytes from the source
-		// That data becomes 2 iq samples
+	/**
+	 * The number of bins that we move the spectrum down by to filter it.  The bin filterWidth below the selected bin goes to
+	 * bin 0, so the selected frequency ends up at bin filterWidth
+	 */
+	private int getFilterShift() {
+		int shift = (getBinFromOffsetFreqHz(freq) - filterWidth) % FFT_SAMPLES;
+		if (shift < 0) shift += FFT_SAMPLES;
+		return shift;
+	}
 
-		int overlapLength = filterWidth*2; // te amount of overlap we need is equal to the length of the filter
-		overlapLength = 0;
-			
-		for (int o=0; o < overlapLength; o++) {
-			fftData[o+dist] += overlap[o]; ///// ADDING THE OVERLAP causes distortion unless we get it just right.  The data is offset, so add from the offset distance
+	/**
+	 * Design the FFT filter.  This is the Tukey or blackman window over +- filterWidth bins that we use to select the
+	 * segment of the spectrum that we want.  We use the window so that we do not have the high frequency effects from a
+	 * square window.
+	 * 
+	 * For overlap-save the impulse response has to be shorter than the part of the FFT that is not the new block, so we
+	 * take the impulse response of the window, taper it to +- filterDelay samples and use the spectrum of that.
+	 */
+	private void designFilter() {
+		double[] shape = Config.applyBlackmanWindow ? blackmanFilterShape : tukeyFilterShape;
+		// center the window on bin 0 so that the impulse response is centered on sample 0
+		double[] centered = new double[FFT_SAMPLES*2];
+		for (int k=-filterWidth; k <= filterWidth; k++) {
+			int bin = (k + FFT_SAMPLES) % FFT_SAMPLES;
+			centered[2*bin] = Math.abs(shape[k+filterWidth]);
 		}
-
-		// capture this overlap
-		// We start right after the data, which runs from dist to samplesToRead+dist
-		for (int o=samplesToRead+dist; o < samplesToRead+dist+overlapLength; o++) {
-			overlap[o-samplesToRead-dist] = fftData[o];
+		fft.complexInverse(centered, true);
+		for (int n=0; n < FFT_SAMPLES; n++) {
+			int t = n <= FFT_SAMPLES/2 ? n : n - FFT_SAMPLES; // samples from the center of the impulse response
+			double taper = 0;
+			if (t >= -filterDelay && t <= filterDelay)
+				taper = 0.5 + 0.5 * Math.cos(Math.PI * t / (filterDelay + 1));
+			centered[2*n] *= taper;
+			centered[2*n+1] *= taper;
 		}
+		fft.complexForward(centered);
+		// and move it back so that it starts at bin 0, where we move the segment of the spectrum that we want
+		double[] response = new double[centered.length];
+		for (int k=0; k < FFT_SAMPLES; k++) {
+			int bin = (k + filterWidth) % FFT_SAMPLES;
+			response[2*bin] = centered[2*k];
+			response[2*bin+1] = centered[2*k+1];
+		}
+		filterResponse = response;
+		designedFilterWidth = filterWidth;
+		designedBlackman = Config.applyBlackmanWindow;
+	}
 
+	/**
+	 * Move the spectrum down by shift bins, so the selected frequency is at bin filterWidth, and multiply it by the filter
+	 * @param fftData - the spectrum
+	 * @param out - the filtered spectrum
+	 * @param shift - the bin that goes to bin 0
+	 */
+	private void filterSpectrum(double[] fftData, double[] out, int shift) {
+		if (filterResponse == null || designedFilterWidth != filterWidth || designedBlackman != Config.applyBlackmanWindow)
+			designFilter();
+		int len = fftData.length;
+		int from = 2 * shift;
+		for (int k=0; k < len; k+=2) {
+			double id = fftData[from];
+			double qd = fftData[from+1];
+			out[k] = id * filterResponse[k] - qd * filterResponse[k+1];
+			out[k+1] = id * filterResponse[k+1] + qd * filterResponse[k];
+			from += 2;
+			if (from == len) from = 0;
+		}
 	}
 
 	/**
-	 * Apply a Tukey or blackman window to the segment of the spectrum that we want, then move the selected frequency to zero
-	 * We have selected a bin.  This is the FFT bin from 0 to FFT_SAMPLES.  It could be positive or negative.
-	 * 
-	 * We use the window so that we do not have the high frequency effects from a square window.  These will alias
-	 * due to the gibbs effect and cause issues.  However, we are also limited because we can only make a course move otherwise phase
-	 * discontinuities give us issues:
-	 * 
-	 * We also calculate the RF Measurements:
+	 * Calculate the RF Measurements from the Blackman windowed spectrum:
 	 * As of v1.06g we have clarified the names and meanings of the values as follows:
 	 * 
 	 * PEAK_SIGNAL_IN_FILTER_WIDTH: the bin of the strongest signal in the pass band is set as the peak Signal, 
@@ -806,9 +917,7 @@ protected double[] processBytes(double[] fcdData) {
 	 *  
 	 * @param fftData
 	 */
-	private void filterFFTWindow(double[] fftData) {
-		for (int z=0; z<fftData.length; z++) newData[z] = 0.0;
-
+	private void measureRfData(double[] fftData) {
 		int binOfPeakSignalInFilterWidth = 0;  // the peak signal bin
 		double peakSignalInFilterWidth = -999999;
 		double strongestSigInSatBand = -999999;
@@ -856,12 +965,6 @@ protected double[] processBytes(double[] fcdData) {
 			spansDcSpike = true;
 		}
 		
-		// Selected frequencies part
-		int dcOffset=0; // must be even
-		int k=dcOffset;
-		double iAvg = 0;
-		double qAvg = 0;
-
 		int noiseStart = start - filterBins;
 		if (noiseStart < 0 ) noiseStart = 0;
 		int noiseEnd = end + filterBins;
@@ -901,13 +1004,6 @@ protected double[] processBytes(double[] fcdData) {
 		}
 //		double sigList[] = new double[(end-start+2)/2];
 		for (int i = start; i <= end; i+=2) {
-			if (Config.applyBlackmanWindow) {
-				newData[k] = fftData[i] * Math.abs(blackmanFilterShape[k/2-dcOffset/2]) ;
-				newData[k+1] = fftData[i + 1] * Math.abs(blackmanFilterShape[k/2-dcOffset/2]);	
-			} else {
-				newData[k] = fftData[i] * Math.abs(tukeyFilterShape[k/2-dcOffset/2]) ;
-				newData[k+1] = fftData[i + 1] * Math.abs(tukeyFilterShape[k/2-dcOffset/2]);
-			}
 			sig = psd(fftData[i], fftData[i+1]);
 			if (fromBin*2 < i && i < toBin*2
 					|| (spansDcSpike && fromBin*2 < i && i < fftData.length-2) || (spansDcSpike && 0 < i && i < toBin*2)) {
@@ -925,10 +1021,6 @@ protected double[] processBytes(double[] fcdData) {
 			avgSigInFilterWidth += sig;
 			//			sigList[sigReading] = sig;
 			sigReading++;
-
-			iAvg += newData[k];
-			qAvg += newData[k+1];
-			k+=2;
 		}
 		for (int n=end; n < noiseEnd; n+=2) {
 			sig = psd(fftData[n], fftData[n+1]);
@@ -955,13 +1047,6 @@ protected double[] processBytes(double[] fcdData) {
 		}
 
 
-		//		fftData[0] = 0;
-		//		fftData[1] = 0;
-		// Write the DC bins - seem to need this for the blackman filter
-		if (Config.applyBlackmanWindow) {
-			newData[0] = iAvg / (filterBins * 2);
-			newData[1] = qAvg / (filterBins * 2);
-		}
 		avgSigInFilterWidth = avgSigInFilterWidth / (double)sigReading;
 		noiseOutsideFilterWidth = noiseOutsideFilterWidth / (double)noiseReading;
 		//		if (Config.debugSignalFinder) {
@@ -978,12 +1063,6 @@ protected double[] processBytes(double[] fcdData) {
 
 		// store the strongest sigs - STRONGEST_SIGNAL_IN_SAT_BAND
 		rfData.setStrongestSignal(strongestSigInSatBand, binOfStrongestSigInSatBand);
-
-		for (int i = 0; i < fftData.length; i+=1) {
-			fftData[i] = newData[i];			
-		}
-
-		//return newData;
 	}
 
 
@@ -1241,11 +1320,10 @@ protected double[] processBytes(double[] fcdData) {
 
 	private double ncoDownconvert(double i, double q) {
 		nco.setFrequency(freq+2000); // ssboffset
-		c = nco.nextSample();
-		c.normalize();
+		nco.step();
 		// Mix 
-		iMix = i * c.geti() + q*c.getq();
-		qMix = q * c.geti() - i*c.getq();
+		iMix = i * nco.geti() + q*nco.getq();
+		qMix = q * nco.geti() - i*nco.getq();
 		return iMix + qMix;
 	}
 	
@@ -1285,7 +1363,8 @@ protected double[] processBytes(double[] fcdData) {
 		return psk;
 	}
 	
-	ComplexOscillator nco;
+	NCO nco;
+	double[] ncoCos, ncoSin; // the NCO for the current block in processNCOBytes
 	//RaisedCosineFilter idataFilter;
 	//RaisedCosineFilter qdataFilter;
 	IirFilter iFilter;
@@ -1296,6 +1375,7 @@ protected double[] processBytes(double[] fcdData) {
 	double iMix, qMix;
 	double fi, fq;
 	double freq; // this is the frequency of the carrier we tune to the side for ssb
+	boolean ownFrequency = false; // true if freq is not stored in the settings, see setOwnFrequency()
 	double costasLoopFreq; // this is the actual frequency NCO is tuned to for costas
 	double error;
 	double alpha = 0.1; //the feedback coeff  0 - 4.  But typical range is 0.01 and smaller.  
@@ -1309,13 +1389,11 @@ protected double[] processBytes(double[] fcdData) {
 	public double getError() { return error; }
 	public double getCostasFrequency() { return costasLoopFreq; }
 	
-	Complex c;
 	private double costasLoop(double i, double q, int sample) {
-		c = nco.nextSample();
-		c.normalize();
+		nco.step();
 		// Mix 
-		iMix = i * c.geti() + q*c.getq();
-		qMix = q * c.geti() - i*c.getq();
+		iMix = i * nco.geti() + q*nco.getq();
+		qMix = q * nco.geti() - i*nco.getq();
 		// Filter
 		fi = iFilter.filterDouble(iMix);
 		fq = qFilter.filterDouble(qMix);;
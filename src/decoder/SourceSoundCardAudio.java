@@ -42,7 +42,7 @@ public class SourceSoundCardAudio extends SourceAudio implements Runnable {
 	TargetDataLine targetDataLine = null;
 	int errorCount = 0;
 	byte[] readBuffer;
-	double a,b;
+	double[] samples; // the doubles converted from the readBuffer, at most one for each byte
 	
 	boolean skippedOneByte = false;
 	int channels = 0;
@@ -62,6 +62,7 @@ public class SourceSoundCardAudio extends SourceAudio implements Runnable {
 		sampleRate = rate;
 		setDevice(device);
 		readBuffer = new byte[DEFAULT_READ_BUFFER_SIZE];
+		samples = new double[readBuffer.length];
 	}
 
 	
@@ -250,61 +251,32 @@ public class SourceSoundCardAudio extends SourceAudio implements Runnable {
 			audioBufferPeriodCounter++;
 			if (audioBufferPeriodCounter == audioBufferPeriod) {
 				audioBufferPeriodCounter = 0;
-				MainWindow.setAudioMissed((errorCount + lastErrorCount) / 2);  // divide by 2 to average and 10 to get to %
+				if (Config.mainWindow != null)
+					MainWindow.setAudioMissed((errorCount + lastErrorCount) / 2);  // divide by 2 to average and 10 to get to %
 				lastErrorCount = errorCount;
 				errorCount = 0;
 			}
 			if (targetDataLine != null) {
-				while (running && targetDataLine.available() < targetDataLine.getBufferSize()*0.5)
+				int wanted = (int)(targetDataLine.getBufferSize()*0.5);
+				double bytesPerMs = Math.max(1, audioFormat.getFrameRate() * audioFormat.getFrameSize() / 1000.0);
+				int available;
+				while (running && (available = targetDataLine.available()) < wanted)
 					try {
-						Thread.sleep(0, 1);  // without this, the audio will be choppy
+						// without this, the audio will be choppy.  Sleep for the time the sound card takes to fill the line
+						Thread.sleep(1 + (long)((wanted - available) / bytesPerMs));
 					} catch (InterruptedException e) {
 						e.printStackTrace(Log.getWriter());
 					} 
 				//boolean readBoth = false;
 				int nBytesRead = targetDataLine.read(readBuffer, 0, readBuffer.length);
 				
-				try {
-					for(int i=0; i< nBytesRead; i+=audioFormat.getFrameSize()) {
-						byte[] ia = {readBuffer[i],readBuffer[i+1]};
-						if (audioFormat.isBigEndian()) {
-							a = Decoder.bigEndian2(ia, audioFormat.getSampleSizeInBits())/ 32768.0;
-						} else {
-							a = Decoder.littleEndian2(ia, audioFormat.getSampleSizeInBits())/ 32768.0;
-						}
-						//a = SourceAudio.getDoubleFromBytes(readBuffer[i],readBuffer[i+1],audioFormat);
-						
-						if (audioFormat.getFrameSize() == 4) {  // STEREO DATA because 4 bytes and 2 bytes are used for each channel
-							byte[] ib = {readBuffer[i+2],readBuffer[i+3]};
-							if (audioFormat.isBigEndian()) {
-								b = Decoder.bigEndian2(ib, audioFormat.getSampleSizeInBits())/ 32768.0;
-							} else {
-								b = Decoder.littleEndian2(ib, audioFormat.getSampleSizeInBits())/ 32768.0;
-							}
-							//b = SourceAudio.getDoubleFromBytes(readBuffer[i+2],readBuffer[i+3], audioFormat);
-						}
-						if (audioFormat.getFrameSize() == 4 && storeStereo) {
-							if (channels == 0)
-								circularDoubleBuffer[0].add(a,b);
-							else
-								for (int chan=0; chan < channels; chan++)
-									circularDoubleBuffer[chan].add(a,b);
-						} else { // we have only mono and we need to know which channel to take the data from
-							if (!Config.useLeftStereoChannel)
-								a = b; // use the audio from the right channel
-							if (channels == 0)
-								circularDoubleBuffer[0].add(a);
-							else
-								for (int chan=0; chan < channels; chan++)
-									circularDoubleBuffer[chan].add(a);
-						}
-					}
-				} catch (IndexOutOfBoundsException e) {
+				int n = bytesToDoubles(readBuffer, nBytesRead, samples);
+				if (n > 0 && !write(samples, n)) {
 //						Log.errorDialog("Sound Card Error", "Missed Audio");
-					// We get this error if the circularBuffer is not being emptied fast enough.  We are filling it by reading data from the sound card
-					// as fast as it is available (real time).  The decoder is reading it and processing it.  The circularBuffer throws the IndexOutOfBounds
-					// error from the add method only when end pointer had reached the start pointer.  This means the circularBuffer is full and the next 
-					// write would destroy data.  We choose to throw away this data rather than overwrite the older data.  Is does not matter
+					// The circularBuffer is not being emptied fast enough.  We are filling it by reading data from the sound card
+					// as fast as it is available (real time).  The decoder is reading it and processing it.  The block is only
+					// added if it fits, so when the circularBuffer is full the write would destroy data.  We choose to throw away this
+					// data rather than overwrite the older data and it is counted as an overrun.  Is does not matter
 					// We do not pop up a message to the user unless we accumulate a number of these issues
 					errorCount++;
 					if (Config.debugAudioGlitches) {
@@ -313,7 +285,7 @@ public class SourceSoundCardAudio extends SourceAudio implements Runnable {
 							//	
 							//}
 							if (errorCount % 100 == 0) {
-								Log.println("Cant keep up with audio from soundcard: " + e.getMessage());
+								Log.println("Cant keep up with audio from soundcard, doubles dropped: " + getOverruns());
 								//if (Config.debugAudioGlitches)
 								//Log.errorDialog("Sound Card Error", "Cant keep up with audio from soundcard.  Perhaps the sample rate\n"
 								//		+ "is wrong or mismatched with the source it is reading from?");
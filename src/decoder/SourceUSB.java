@@ -17,31 +17,21 @@ public class SourceUSB extends SourceAudio implements Listener<float[]>, Runnabl
 	}
 
 	//byte[] readBuffer;
-	float a,b,c,d;
+	double[] samples = new double[0]; // the float samples from the device as doubles
 	int lastErrorCount = 0;
 	int audioBufferPeriodCounter = 0;
 	int audioBufferPeriod = 100; // After this many loops, average the audio buffer errors
 	public void receive(float[] realSamples) {
-		try {
-			int bytesPerSample = 2;
-			for(int i=0; i< realSamples.length; i+=bytesPerSample) {
-
-				a = realSamples[i];
-				b = realSamples[i+1];
-
-				if (channels == 0)
-					circularDoubleBuffer[0].add(a,b);
-				else
-					for (int chan=0; chan < channels; chan++)
-						circularDoubleBuffer[chan].add(a,b);
-
-			}
-		} catch (IndexOutOfBoundsException e) {
-			//	Log.println("Missed Audio due to:" + e.getMessage());
-			// We get this error if the circularBuffer is not being emptied fast enough.  We are filling it by reading data from the sound card
-			// as fast as it is available (real time).  The decoder is reading it and processing it.  The circularBuffer throws the IndexOutOfBounds
-			// error from the add method only when end pointer had reached the start pointer.  This means the circularBuffer is full and the next 
-			// write would destroy data.  We choose to throw away this data rather than overwrite the older data.  Is does not matter
+		if (samples.length < realSamples.length)
+			samples = new double[realSamples.length];
+		int n = realSamples.length & ~1; // whole IQ pairs
+		for(int i=0; i< n; i++)
+			samples[i] = realSamples[i];
+		if (!write(samples, n)) {
+			// The circularBuffer is not being emptied fast enough.  We are filling it by reading data from the device
+			// as fast as it is available (real time).  The decoder is reading it and processing it.  The block is only
+			// added if it fits, so when the circularBuffer is full the write would destroy data.  We choose to throw away this
+			// data rather than overwrite the older data and it is counted as an overrun.  Is does not matter
 			// We do not pop up a message to the user unless we accumulate a number of these issues
 			errorCount++;
 			if (Config.debugAudioGlitches) {
@@ -50,7 +40,7 @@ public class SourceUSB extends SourceAudio implements Listener<float[]>, Runnabl
 					//	
 					//}
 					if (errorCount % 100 == 0) {
-						Log.println("Cant keep up with audio from soundcard: " + e.getMessage());
+						Log.println("Cant keep up with audio from soundcard, doubles dropped: " + getOverruns());
 						//if (Config.debugAudioGlitches)
 						//Log.errorDialog("Sound Card Error", "Cant keep up with audio from soundcard.  Perhaps the sample rate\n"
 						//		+ "is wrong or mismatched with the source it is reading from?");
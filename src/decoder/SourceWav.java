@@ -38,11 +38,12 @@ public class SourceWav extends SourceAudio implements Runnable {
 	int frameSize = 0;
 	long bytesRead = 0;
 	long framesProcessed = 0;
-	double a, b;
 
 	//boolean fileDone = false;
 	byte[] readBuffer;
+	double[] samples; // the doubles converted from the readBuffer, at most one for each byte
 	public static final int DEFAULT_READ_BUFFER_SIZE = 512 * 4; // about 5 ms at 48k sample rate;
+	public static final int PULL_READ_BUFFER_SIZE = 512 * 128; // in pull mode the decoder is waiting, so read more at once
 	
 	AudioInputStream audioStream = null; // The object used to read the stream of data from the wave file
 	
@@ -54,7 +55,8 @@ public class SourceWav extends SourceAudio implements Runnable {
 	}
 
 	private void initWav() throws UnsupportedAudioFileException, IOException {
-		readBuffer = new byte[DEFAULT_READ_BUFFER_SIZE];
+		readBuffer = new byte[pullMode ? PULL_READ_BUFFER_SIZE : DEFAULT_READ_BUFFER_SIZE];
+		samples = new double[readBuffer.length];
 //		circularDoubleBuffer = new CircularByteBuffer(67200*3);
 	    Log.println("Wavefile: " + fileName);
 		File soundFile = null;
@@ -75,6 +77,13 @@ public class SourceWav extends SourceAudio implements Runnable {
         framesProcessed = 0;
 	}
 	
+	@Override
+	public void setPullMode(boolean pull) {
+		super.setPullMode(pull);
+		readBuffer = new byte[pullMode ? PULL_READ_BUFFER_SIZE : DEFAULT_READ_BUFFER_SIZE];
+		samples = new double[readBuffer.length];
+	}
+
 	public void stop() {
 		running = false;
 		cleanup();
@@ -89,7 +98,7 @@ public class SourceWav extends SourceAudio implements Runnable {
 			e.printStackTrace(Log.getWriter());
 		}
 		// Give the decoder time to finish - not sure this makes any difference though??
-		if (circularDoubleBuffer[0].size() > 0) {
+		if (!pullMode && circularDoubleBuffer[0].size() > 0) {
 			try {
 				Thread.sleep(100);
 			} catch (InterruptedException e) {
@@ -99,8 +108,34 @@ public class SourceWav extends SourceAudio implements Runnable {
 		done = true;
 	}
 	
+	/**
+	 * Read the next block from the file on the decoder's thread.  Used in pull mode
+	 */
+	@Override
+	protected boolean fill() {
+		if (audioStream == null) return false;
+		int nBytesRead = -1;
+		try {
+			nBytesRead = audioStream.read(readBuffer, 0, readBuffer.length);
+		} catch (IOException e) {
+			Log.errorDialog("ERROR", "Failed to read from file " + fileName) ;
+			e.printStackTrace(Log.getWriter());
+		}
+		if (nBytesRead <= 0) {
+			framesProcessed = totalFrames;
+			running = false;
+			cleanup();
+			return false;
+		}
+		bytesRead = bytesRead + nBytesRead;
+		framesProcessed = framesProcessed + nBytesRead/frameSize;
+		addSamples(nBytesRead);
+		return true;
+	}
+
 	@Override
 	public void run() {
+		if (pullMode) return; // the decoder reads the file with fill()
 		Thread.currentThread().setName("SourceWav");
 		running = true;
 		done = false;
@@ -122,7 +157,8 @@ public class SourceWav extends SourceAudio implements Runnable {
 //			Log.println("wav running");
 			if (audioStream != null) {
 					int nBytesRead = 0;
-					if (circularDoubleBuffer[0].getCapacity() > readBuffer.length) {
+					waitForRoom(0, readBuffer.length); // the decoder signals when it has read enough
+					if (running) {
 						try {
 							nBytesRead = audioStream.read(readBuffer, 0, readBuffer.length);
 							bytesRead = bytesRead + nBytesRead;
@@ -133,48 +169,8 @@ public class SourceWav extends SourceAudio implements Runnable {
 							Log.errorDialog("ERROR", "Failed to read from file " + fileName) ;
 							e.printStackTrace(Log.getWriter());
 						}
-					} else {
-						try {
-							Thread.sleep(1);
-						} catch (InterruptedException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-						//Log.println("No room in Buffer");
-					}
-					for(int i=0; i< nBytesRead; i+=audioFormat.getFrameSize()) {
-						//circularDoubleBuffer.add(readBuffer[i]);
-						if (audioFormat.getFrameSize() == 4) {  // STEREO DATA because 4 bytes and 2 bytes are used for each channel
-							byte[] ib = {readBuffer[i+2],readBuffer[i+3]};
-							if (audioFormat.isBigEndian()) {
-								b = Decoder.bigEndian2(ib, audioFormat.getSampleSizeInBits())/ 32768.0;
-							} else {
-								b = Decoder.littleEndian2(ib, audioFormat.getSampleSizeInBits())/ 32768.0;
-							}
-						}
-						byte[] ia = {readBuffer[i],readBuffer[i+1]};
-						if (audioFormat.isBigEndian()) {
-							a = Decoder.bigEndian2(ia, audioFormat.getSampleSizeInBits())/ 32768.0;
-						} else {
-							a = Decoder.littleEndian2(ia, audioFormat.getSampleSizeInBits())/ 32768.0;
-						}
-						if (audioFormat.getFrameSize() == 4 && storeStereo) {
-							if (channels == 0)
-								circularDoubleBuffer[0].add(a,b);
-							else
-								for (int chan=0; chan < channels; chan++)
-									circularDoubleBuffer[chan].add(a,b);
-						} else { // we have only mono and we need to know which channel to take the data from
-							if (!Config.useLeftStereoChannel)
-								a = b; // use the audio from the right channel
-							if (channels == 0)
-								circularDoubleBuffer[0].add(a);
-							else
-								for (int chan=0; chan < channels; chan++)
-									circularDoubleBuffer[chan].add(a);
-						}
 					}
-
+					addSamples(nBytesRead);
 			}
 		}
 		framesProcessed = totalFrames;
@@ -188,6 +184,16 @@ public class SourceWav extends SourceAudio implements Runnable {
 		Log.println("WAV Source EXIT");
 	}
 
+	/**
+	 * Convert the bytes read from the file into doubles and add them to the buffer
+	 * @param nBytesRead
+	 */
+	private void addSamples(int nBytesRead) {
+		int n = bytesToDoubles(readBuffer, nBytesRead, samples);
+		if (n > 0)
+			write(samples, n);
+	}
+
 	public int getPercentProgress() {
 		//System.out.println(framesProcessed + " " +  totalFrames);
 		int percent = 0;
@@ -9,7 +9,7 @@ import javax.sound.sampled.AudioFormat;
  */
 public class CICDecimationFilter extends Filter {
 
-	protected double[] xv;
+	protected DelayLine compensationLine; // delayed values for the compensation filter
 	double GAIN = 1;
 	double previousOutput[];
 	
@@ -166,7 +166,7 @@ public class CICDecimationFilter extends Filter {
 		delayLine = new double[Q][];
 		for (int i=0; i<Q; i++)
 			delayLine = new double[i][D/R];
-		xv = new double[M+1];
+		compensationLine = new DelayLine(M+1);
 		setDecimationFactor(R);
 	}
 	
@@ -210,15 +210,8 @@ public class CICDecimationFilter extends Filter {
 	}
 	
 	public double filterDouble(double in) {
-		double sum; 
-		int i;
-		for (i = 0; i < M; i++) 
-			xv[i] = xv[i+1];
-		xv[M] = in * GAIN;
-		sum = 0.0;
-		for (i = 0; i <= M; i++) 
-			sum += (xcoeffs[i] * xv[i]);
-		return sum;
+		compensationLine.add(in * GAIN);
+		return compensationLine.dotProduct(xcoeffs);
 	}
 
 	@Override
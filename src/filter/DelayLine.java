@@ -0,0 +1,53 @@
+package filter;
+
+/**
+ * The delayed values for an FIR filter, held in a circular buffer that is twice the length of the filter.  Each value
+ * is written twice, once in each half, so the last len values are always next to each other in the buffer, from the
+ * oldest at line[pos] to the newest at line[pos+len-1].  The dot product is then taken over one contiguous run without
+ * moving every value down the line for each new sample.
+ *
+ * The values are in the same order as the shifted delay line, so the dot product sums the same terms in the same
+ * order and gives exactly the same result.
+ */
+public class DelayLine {
+	private double[] line;
+	private int len;
+	private int pos = 0; // position of the oldest value
+
+	public DelayLine(int len) {
+		this.len = len;
+		line = new double[2*len];
+	}
+
+	public int getLength() { return len; }
+
+	/**
+	 * Add a new value to the line, dropping the oldest
+	 * @param in
+	 */
+	public void add(double in) {
+		line[pos] = in;
+		line[pos+len] = in;
+		pos++;
+		if (pos == len) pos = 0;
+	}
+
+	/**
+	 * @return the oldest value in the line
+	 */
+	public double oldest() {
+		return line[pos];
+	}
+
+	/**
+	 * Multiply the values by the coefficients, oldest value first, and sum them.  coeffs must be len long
+	 * @param coeffs
+	 * @return
+	 */
+	public double dotProduct(double[] coeffs) {
+		double sum = 0.0;
+		for (int i = 0; i < len; i++)
+			sum += (coeffs[i] * line[pos+i]);
+		return sum;
+	}
+}
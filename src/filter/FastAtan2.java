@@ -0,0 +1,40 @@
+package filter;
+
+/**
+ * An atan2 that is a polynomial rather than a call to Math.atan2.  The argument is reduced to 0 to 1 by swapping y and
+ * x when |y| > |x|, then atan is the 15th order odd polynomial from Abramowitz and Stegun 4.4.49, which is within 2E-8
+ * radians of atan over that range.  Rounding of the published coefficients takes the error of atan2 to just under
+ * 4E-8 radians.  The quadrant is put back from the signs of y and x.
+ *
+ * atan2(0, 0) is 0, as it is for Math.atan2.
+ */
+public class FastAtan2 {
+	public static final double MAX_ERROR = 4E-8; // radians
+	private static final double HALF_PI = Math.PI / 2;
+
+	private static final double A1 = 0.9999993329;
+	private static final double A3 = -0.3332985605;
+	private static final double A5 = 0.1994653599;
+	private static final double A7 = -0.1390853351;
+	private static final double A9 = 0.0964200441;
+	private static final double A11 = -0.0559098861;
+	private static final double A13 = 0.0218612288;
+	private static final double A15 = -0.0040540580;
+
+	/**
+	 * @return the angle of (x, y) from -PI to PI
+	 */
+	public static double atan2(double y, double x) {
+		double ax = Math.abs(x);
+		double ay = Math.abs(y);
+		if (ax == 0 && ay == 0) return 0;
+		boolean swap = ay > ax;
+		double r = swap ? ax / ay : ay / ax;
+		double r2 = r * r;
+		double angle = r * (A1 + r2 * (A3 + r2 * (A5 + r2 * (A7 + r2 * (A9 + r2 * (A11 + r2 * (A13 + r2 * A15)))))));
+		if (swap) angle = HALF_PI - angle;
+		if (x < 0) angle = Math.PI - angle;
+		if (y < 0) angle = -angle;
+		return angle;
+	}
+}
@@ -208,6 +208,18 @@ public abstract class Filter {
 	}
 
 	public abstract double filterDouble(double abBuffer);
+
+	/**
+	 * Filter in.length samples into out, one at a time with filterDouble(), without the DC filter, overlap or AGC that
+	 * filter() applies to a buffer.  The input and output can be the same array.  If this is a decimation filter then
+	 * the values that are not needed are zero, as they are from filterDouble().
+	 * @param in
+	 * @param out
+	 */
+	public void filterBlock(double[] in, double[] out) {
+		for (int i = 0; i < in.length; i++)
+			out[i] = filterDouble(in[i]);
+	}
 	
 	protected abstract int getFilterLength();
 	
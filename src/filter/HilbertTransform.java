@@ -4,14 +4,14 @@ public class HilbertTransform {
 
 	double coeffs[];
 	
-	double[] xv;  // This array holds the delayed values
+	DelayLine xv;  // This holds the delayed values
 	double gain = 1;
 	int M; // The number of taps, the length of the filter
 	
 	public HilbertTransform(double sampleRate, int len) {
 		init(sampleRate, len);
 		M = len-1;
-		xv = new double[len];
+		xv = new DelayLine(len);
 	}
 	
 	private void init(double sampleRate, int len) {
@@ -39,14 +39,17 @@ public class HilbertTransform {
 	}
 	
 	public double filter(double in) {
-		double sum; 
-		int i;
-		for (i = 0; i < M; i++) 
-			xv[i] = xv[i+1];
-		xv[M] = in;
-		sum = 0.0;
-		for (i = 0; i <= M; i++) 
-			sum += (coeffs[i] * xv[i]);
-		return sum;
+		xv.add(in);
+		return xv.dotProduct(coeffs);
+	}
+
+	/**
+	 * Filter in.length samples into out.  The input and output can be the same array.
+	 * @param in
+	 * @param out
+	 */
+	public void filterBlock(double[] in, double[] out) {
+		for (int i = 0; i < in.length; i++)
+			out[i] = filter(in[i]);
 	}
 }
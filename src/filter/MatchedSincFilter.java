@@ -38,7 +38,7 @@ public class MatchedSincFilter extends Filter {
 
 	//private static int NZEROS = 960;
 
-	protected double[] xv;
+	protected DelayLine delayLine;
 	int M = 0; 
 	double GAIN = 1;
 
@@ -54,7 +54,7 @@ public class MatchedSincFilter extends Filter {
 		int pulseLength = (int) (sampleRate/freq);  // e.g. 48000/9600 = 5
 		M = len; // needs to be twice the pulse length
 		xcoeffs = new double[M+1]; 
-		xv = new double[M+1];
+		delayLine = new DelayLine(M+1);
 		double sumofsquares = 0;
 		
 		// We have a filter length M+1 with a pulse in the middle length pulseLength.
@@ -85,15 +85,8 @@ public class MatchedSincFilter extends Filter {
 
 	@Override
 	public double filterDouble(double in) {
-		double sum; 
-		int i;
-		for (i = 0; i < M; i++) 
-			xv[i] = xv[i+1];
-		xv[M] = in * GAIN;
-		sum = 0.0;
-		for (i = 0; i <= M; i++) 
-			sum += (xcoeffs[i] * xv[i]);
-		return sum;
+		delayLine.add(in * GAIN);
+		return delayLine.dotProduct(xcoeffs);
 	}
 
 	@Override
@@ -0,0 +1,133 @@
+package filter;
+
+/**
+ * A complex NCO that steps the cos and the sin together from one phase accumulator and looks both up in tables
+ * that are shared by every NCO.  This is the same oscillator as a CosOscillator and a SinOscillator with the same
+ * phase increment, and it gives the same values, but there is one phase to step and no Complex object for each sample.
+ *
+ * Whole blocks can be generated with nextSamples() or mixed with mixReal(), which is how the downconverters use it.
+ * A loop that changes the phase or frequency on every sample, such as a Costas loop, calls step() and then reads
+ * geti() and getq().
+ *
+ * The table values are already of unit magnitude, so there is no need to normalize them.
+ */
+public class NCO {
+
+	public static final int TABLE_SIZE = 9600;
+	private static final double[] COS_TABLE = new double[TABLE_SIZE];
+	private static final double[] SIN_TABLE = new double[TABLE_SIZE];
+	static {
+		for (int n=0; n<TABLE_SIZE; n++) {
+			COS_TABLE[n] = Math.cos(n*2.0*Math.PI/(double)TABLE_SIZE);
+			SIN_TABLE[n] = Math.sin(n*2.0*Math.PI/(double)TABLE_SIZE);
+		}
+	}
+	private static final double TWO_PI = 2 * Math.PI;
+
+	private int samplesPerSecond = 0;
+	private double frequency = 0;
+	private double phase = 0;
+	private double phaseIncrement = 0;
+	private double i, q; // the current sample, set by step()
+
+	public NCO(int samples, int freq) {
+		this.samplesPerSecond = samples;
+		setFrequency(freq);
+	}
+
+	public NCO(int samples, double phaseInc) {
+		this.samplesPerSecond = samples;
+		setPhaseIncrement(phaseInc);
+	}
+
+	public void changePhase(double phaseIncrement) {
+		incPhase(phaseIncrement);
+	}
+
+	private void incPhase(double phaseIncrement) {
+		if ((phaseIncrement < TWO_PI) && (phaseIncrement > -TWO_PI)) {
+			phase = phase + phaseIncrement;
+			if (phase >= TWO_PI)
+				phase = phase - TWO_PI;
+			if (phase <= 0)
+				phase = phase + TWO_PI;
+		}
+	}
+
+	/**
+	 * The table position for the phase, which is from 0 to 2 PI.  This is calculated in the same order as Oscillator
+	 * does, so that it rounds the same way.
+	 */
+	private int index() {
+		int idx = (int)(phase * (double)TABLE_SIZE/TWO_PI);
+		if (idx >= TABLE_SIZE) idx -= TABLE_SIZE;
+		return idx;
+	}
+
+	public void setFrequency(double freq) {
+		if (frequency != freq) { // avoid the calculation if they are the same
+			frequency = freq;
+			phaseIncrement = TWO_PI * frequency / (double)samplesPerSecond;
+		}
+	}
+
+	/**
+	 * Note that this is (phase % 2) * PI, as it is in Oscillator.  The PSK decoders were tuned with it like this.
+	 * @param phase
+	 */
+	public void setPhase(double phase) {
+		this.phase = phase % 2*Math.PI;
+	}
+
+	public void setPhaseIncrement(double phaseInc) {
+		if (phaseIncrement != phaseInc) { // avoid the calculation if they are the same
+			frequency = phaseInc * samplesPerSecond / TWO_PI;
+			phaseIncrement = phaseInc;
+		}
+	}
+
+	public double getFrequency() { return frequency; }
+	public double getPhase() { return phase; }
+	public double getPhaseIncrement() { return phaseIncrement; }
+
+	/**
+	 * Move to the next sample.  The cos and sin are then read with geti() and getq()
+	 */
+	public void step() {
+		incPhase(phaseIncrement);
+		int idx = index();
+		i = COS_TABLE[idx];
+		q = SIN_TABLE[idx];
+	}
+
+	public double geti() { return i; }
+	public double getq() { return q; }
+
+	/**
+	 * Put the cos and sin of the next len samples into cos and sin
+	 */
+	public void nextSamples(double[] cos, double[] sin, int len) {
+		for (int n=0; n < len; n++) {
+			incPhase(phaseIncrement);
+			int idx = index();
+			cos[n] = COS_TABLE[idx];
+			sin[n] = SIN_TABLE[idx];
+		}
+		if (len > 0) {
+			i = cos[len-1];
+			q = sin[len-1];
+		}
+	}
+
+	/**
+	 * Mix len samples of a real signal with the NCO.  outI gets in * cos and outQ gets in * sin.
+	 */
+	public void mixReal(double[] in, double[] outI, double[] outQ, int len) {
+		for (int n=0; n < len; n++) {
+			incPhase(phaseIncrement);
+			int idx = index();
+			outI[n] = in[n] * COS_TABLE[idx];
+			outQ[n] = in[n] * SIN_TABLE[idx];
+		}
+	}
+}
@@ -92,6 +92,25 @@ public class PolyPhaseFilter {
 			sum += subFilters[i].filter(in[i]);
 		return sum;
 	}
+
+	/**
+	 * Decimate a block.  Each group of R inputs gives one output, so out gets in.length/R values.  Only the outputs
+	 * that are kept are calculated, with each input going through just one of the sub filters.  in.length should be
+	 * a multiple of R.  The input and output can be the same array.
+	 * @param in
+	 * @param out
+	 */
+	public void filterBlock(double[] in, double[] out) {
+		if (subFilters == null) return;
+		int outputs = in.length / R;
+		for (int k = 0; k < outputs; k++) {
+			double sum = 0.0;
+			int start = k * R;
+			for (int i = 0; i < R; i++)
+				sum += subFilters[i].filter(in[start + i]);
+			out[k] = sum;
+		}
+	}
 	
 	public static void main(String[] args) {
 		PolyPhaseFilter f = new PolyPhaseFilter(48000, 12000, 4, 12);
@@ -104,24 +123,17 @@ public class PolyPhaseFilter {
 	private class SubFilter {
 		int M; // length of the sub filter
 		double[] coeff;
-		double[] xv;  // This array holds the delayed values
+		DelayLine xv;  // This holds the delayed values
 
 		SubFilter (double[] taps) {
 			coeff = taps;
 			M = taps.length-1;
-			xv = new double[M+1];
+			xv = new DelayLine(M+1);
 		}
 
 		public double filter(double in) {
-			double sum; 
-			int i;
-			for (i = 0; i < M; i++) 
-				xv[i] = xv[i+1];
-			xv[M] = in;
-			sum = 0.0;
-			for (i = 0; i <= M; i++) 
-				sum += (coeff[i] * xv[i]);
-			return sum;
+			xv.add(in);
+			return xv.dotProduct(coeff);
 		}
 		
 	}
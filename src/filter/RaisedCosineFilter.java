@@ -33,7 +33,7 @@ public class RaisedCosineFilter extends Filter {
 	
 	//private static int NZEROS = 960;
 
-	protected double[] xv;
+	protected DelayLine delayLine;
 
 	int M = 0; // length sets the roll off.  Should be approx 4/Bandwidth as fraction of Sampling freq
 	double GAIN = 1;
@@ -52,7 +52,7 @@ public class RaisedCosineFilter extends Filter {
 		M = len;
 		xcoeffs = new double[M+1];
 		Fc = freq/sampleRate;
-		xv = new double[M+1];
+		delayLine = new DelayLine(M+1);
 		
 		double sumofsquares = 0;
 		double[] tempCoeffs = new double[M+1];
@@ -87,16 +87,9 @@ public class RaisedCosineFilter extends Filter {
 	
 	@Override
 	public double filterDouble(double in) {
-		double sum; 
-		int i;
-		for (i = 0; i < M; i++) 
-			xv[i] = xv[i+1];
-		xv[M] = in;
+		delayLine.add(in);
 		if (calculateNow()) {
-		sum = 0.0;
-		for (i = 0; i <= M; i++) 
-			sum += (xcoeffs[i] * xv[i]);
-		return sum;
+			return delayLine.dotProduct(xcoeffs);
 		}
 		return 0;  // return zero for all the values we don't need when decimating.  Ignored after decimation
 	}
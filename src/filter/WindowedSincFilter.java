@@ -32,7 +32,7 @@ public class WindowedSincFilter extends Filter {
 	
 	//private static int NZEROS = 960;
 
-	protected double[] xv;
+	protected DelayLine delayLine;
 
 	int M = 0; // length sets the roll off.  Should be approx 4/Bandwidth as fraction of Sampling freq
 	double GAIN = 1;
@@ -60,7 +60,7 @@ public class WindowedSincFilter extends Filter {
 			}
 			sumofsquares += xcoeffs[i]*xcoeffs[i];
 		}
-		xv = new double[M+1];
+		delayLine = new DelayLine(M+1);
 		GAIN = Math.sqrt(sumofsquares)/xcoeffs.length;
 		Log.println("Windowed Sinc Filter GAIN: " + GAIN);
 		super.init((double)sampleRate, (double)freq, len);
@@ -69,16 +69,9 @@ public class WindowedSincFilter extends Filter {
 	
 	@Override
 	public double filterDouble(double in) {
-		double sum; 
-		int i;
-		for (i = 0; i < M; i++) 
-			xv[i] = xv[i+1];
-		xv[M] = in * GAIN;
+		delayLine.add(in * GAIN);
 		if (calculateNow()) {
-			sum = 0.0;
-			for (i = 0; i <= M; i++) 
-				sum += (xcoeffs[i] * xv[i]);
-			return sum;
+			return delayLine.dotProduct(xcoeffs);
 		}
 		return 0;  // return zero for all the values we don't need when decimating.  Ignored after decimation
 	}
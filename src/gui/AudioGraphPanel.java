@@ -8,7 +8,6 @@ import javax.swing.JPanel;
 import javax.swing.JLabel;
 
 import common.Config;
-import common.Log;
 import decoder.Decoder;
 import decoder.SourceIQ;
 import decoder.FoxBPSK.FoxBPSKCostasDecoder;
@@ -40,12 +39,11 @@ import decoder.FoxBPSK.FoxBPSKDotProdDecoder;
  * 
  */
 @SuppressWarnings("serial")
-public class AudioGraphPanel extends JPanel implements Runnable {
+public class AudioGraphPanel extends JPanel implements FrameScheduler.Animated {
 
 //	JLabel lblIqbalance;
 	String fileName = null;
 	boolean running = true;
-	boolean done = false;
 	int centerFreqX = 220;
 	Decoder foxDecoder;
 	double[] audioData = null;
@@ -128,50 +126,38 @@ public class AudioGraphPanel extends JPanel implements Runnable {
 		showFilteredAudio = false;
 	}
 	
+	public int getFrameRate() { return 60; } // approx 1/60 sec refresh
+	public boolean isRunning() { return running; }
+
+	/**
+	 * Called by the FrameScheduler.  Copy the latest audio from the decoder and repaint
+	 */
 	@Override
-	public void run() {
-		Thread.currentThread().setName("AudioGraphPanel");
-		done = false;
-		running = true;
-//		int bytesRead =0;
-//		int decimate=0;
-		currentDataPosition = 0;
-		//int border = 5;
-		//int AUDIO_DATA_SIZE = getWidth() - border*2;
+	public void nextFrame(boolean showing) {
+		if (!showing) return;
+		double[] buffer;
+		if (foxDecoder != null) {
+			if (showFilteredAudio)
+				buffer = foxDecoder.getFilteredData();
+			else
+				buffer = foxDecoder.getAudioData();
 		
-		while(running) {
-			
-			try {
-				Thread.sleep(1000/60); // approx 1/60 sec refresh
-			} catch (InterruptedException e) {
-				Log.println("ERROR: Audiograph thread interrupted");
-				//e.printStackTrace();
-			} 
-			
-			double[] buffer;
-			if (foxDecoder != null) {
-				if (showFilteredAudio)
-					buffer = foxDecoder.getFilteredData();
-				else
-					buffer = foxDecoder.getAudioData();
-			
-				if (buffer != null) {
-					audioData = buffer;		
-					if (foxDecoder instanceof FoxBPSKDecoder) 
-						pskAudioData = ((FoxBPSKDecoder)foxDecoder).getBasebandData();	
-					if (foxDecoder instanceof FoxBPSKCostasDecoder ) {
-						pskAudioData = ((FoxBPSKCostasDecoder)foxDecoder).getBasebandData();
-						pskQAudioData = ((FoxBPSKCostasDecoder)foxDecoder).getBasebandQData();	
-					}
-					if (foxDecoder instanceof FoxBPSKDotProdDecoder) {
-						pskAudioData = ((FoxBPSKDotProdDecoder)foxDecoder).getBasebandData();
-						pskQAudioData = ((FoxBPSKDotProdDecoder)foxDecoder).getBasebandQData();	
-					}
+			if (buffer != null) {
+				audioData = buffer;		
+				if (foxDecoder instanceof FoxBPSKDecoder) 
+					pskAudioData = ((FoxBPSKDecoder)foxDecoder).getBasebandData();	
+				if (foxDecoder instanceof FoxBPSKCostasDecoder ) {
+					pskAudioData = ((FoxBPSKCostasDecoder)foxDecoder).getBasebandData();
+					pskQAudioData = ((FoxBPSKCostasDecoder)foxDecoder).getBasebandQData();	
+				}
+				if (foxDecoder instanceof FoxBPSKDotProdDecoder) {
+					pskAudioData = ((FoxBPSKDotProdDecoder)foxDecoder).getBasebandData();
+					pskQAudioData = ((FoxBPSKDotProdDecoder)foxDecoder).getBasebandQData();	
 				}
-
-				this.repaint();
 			}
-		}			
+
+			this.repaint();
+		}
 	}
 	
 	public void startProcessing(Decoder decoder1) {
@@ -41,6 +41,7 @@ import javax.swing.plaf.basic.BasicSplitPaneUI;
 import telemetry.CameraJpeg;
 import telemetry.FoxFramePart;
 import telemetry.SortedJpegList;
+import telemetry.UpdateBus;
 import common.Config;
 import common.Log;
 import common.FoxSpacecraft;
@@ -128,6 +129,9 @@ public class CameraTab extends FoxTelemTab implements Runnable, MouseListener, I
 	private static final String PIC_DATE = "Captured: ";
 	
 	int actualThumbnails = 0;
+	// The picture in the main panel, so it is only read again if lines have been added or another one is selected
+	private String displayedFile;
+	private long displayedLength;
 	
 	CameraTab(FoxSpacecraft sat) {
 		
@@ -295,9 +299,10 @@ public class CameraTab extends FoxTelemTab implements Runnable, MouseListener, I
 
 	
 	/**
-	 * Load the thumbnails from disk based on the entries in the Jpeg Index
+	 * Create the thumbs for the entries in the Jpeg Index.  The images are loaded from disk when they are displayed.
 	 */
 	private void loadThumbs() {
+		ThumbnailLoader.removeChanged();
 		for (int j=0; j<actualThumbnails; j++)
 			if (thumbnails[j] != null)
 				thumbnailsPanel.remove(thumbnails[j]);
@@ -319,26 +324,13 @@ public class CameraTab extends FoxTelemTab implements Runnable, MouseListener, I
 					if (jpegIndex.get(actualThumbnails-i-1).compareTo(selectedJpeg) == 0) {
 						selectedThumb = i; // cache this
 					}
-				BufferedImage thumb = null;
-				try {
-					thumb = jpegIndex.get(actualThumbnails-i-1).getThumbnail(THUMB_X);
-				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace(Log.getWriter());
-				}
-				if (thumb != null) {
-					
-					if (thumbnails[i] == null)
-						thumbnails[i] = new CameraThumb();
-					thumbnails[i].setThumb(thumb, jpegIndex.get(actualThumbnails-i-1).pictureCounter, jpegIndex.get(actualThumbnails-i-1).resets, jpegIndex.get(actualThumbnails-i-1).fromUptime);
-//					thumbnails[i].setIcon(new ImageIcon(thumb));
-					thumbnailsPanel.add(thumbnails[i]);
-					thumbnails[i].addMouseListener(this);
-					thumbnails[i].setBorder(new MatteBorder(3, 3, 3, 3, Color.GRAY));
-					//DataBuffer buff = thumb.getRaster().getDataBuffer();
-					//int bytes = buff.getSize() * DataBuffer.getDataTypeSize(buff.getDataType()) / 8;
-					//Log.println("Loaded Thumb " + i + " size: " + bytes);
-				}	
+				// The thumbnail is loaded in the background when it is scrolled into view
+				if (thumbnails[i] == null)
+					thumbnails[i] = new CameraThumb();
+				thumbnails[i].setJpeg(jpegIndex.get(actualThumbnails-i-1), THUMB_X);
+				thumbnailsPanel.add(thumbnails[i]);
+				thumbnails[i].addMouseListener(this);
+				thumbnails[i].setBorder(new MatteBorder(3, 3, 3, 3, Color.GRAY));
 			}
 		}
 		if (actualThumbnails > 0)
@@ -379,17 +371,25 @@ public class CameraTab extends FoxTelemTab implements Runnable, MouseListener, I
 		}
 		int selected = jpegIndex.size() - clicked-1;
 		BufferedImage pic = null;
+		long length = 0;
+		String file = null;
 		if (selected >= 0)
 			if (jpegIndex != null)
 				if (selected != -1 && jpegIndex.size() > selected && jpegIndex.get(selected) != null)
 					try {
 						File f = new File(jpegIndex.get(selected).getFileName());
+						file = f.getPath();
+						length = f.length();
+						if (file.equals(displayedFile) && length == displayedLength)
+							return; // already displayed
 						pic = ImageIO.read(f);
 					} catch (IOException e) {
 						// TODO Auto-generated catch block
 						e.printStackTrace(Log.getWriter());
 					}
 		if (pic != null) {
+			displayedFile = file;
+			displayedLength = length;
 			picture.setBufferedImage(pic);
 			//			picture.setIcon(new ImageIcon(pic));
 			picReset.setText(""+jpegIndex.get(selected).resets);
@@ -431,9 +431,11 @@ public class CameraTab extends FoxTelemTab implements Runnable, MouseListener, I
 		done = false;
 		
 		
+		subscribe(foxId, UpdateBus.CAMERA);
 		while(running) {
 			try {
-				Thread.sleep(1000); // refresh data once a second, no point in more often as payloads take 5 seconds to download
+				waitForUpdate();
+				Thread.sleep(1000); // refresh at most once a second, no point in more often as payloads take 5 seconds to download
 			} catch (InterruptedException e) {
 				Log.println("ERROR: CameraTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -453,6 +455,7 @@ public class CameraTab extends FoxTelemTab implements Runnable, MouseListener, I
 			}
 			//System.out.println("Camera tab running: " + running);
 		}
+		unsubscribe();
 		done = true;
 		
 	}
@@ -2,13 +2,17 @@ package gui;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 
-import javax.swing.ImageIcon;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 
+import telemetry.CameraJpeg;
+
 /**
  * 
  * FOX 1 Telemetry Decoder
@@ -31,20 +35,24 @@ import javax.swing.JPanel;
  *
  *
  * A camera thumbnail that we can display on the CameraTab.  It consists of a thumbnail image and a time stamp.
+ * The image is only loaded when the thumb is painted, i.e. when it is scrolled into view, and it is held by
+ * the ThumbnailLoader rather than here.
  * 
  */
 @SuppressWarnings("serial")
 public class CameraThumb extends JPanel {
-	JLabel thumbImage;
+	ThumbImage thumbImage;
 	JLabel timestamp;
 	JPanel top;
 	JPanel bottom;
+	CameraJpeg jpeg;
+	int sizeX;
 	
 	public CameraThumb() {
 		setLayout(new BorderLayout());
 		top = new JPanel();
 		add(top, BorderLayout.CENTER);
-		thumbImage = new JLabel();
+		thumbImage = new ThumbImage();
 		top.add(thumbImage);
 		bottom = new JPanel();
 		add(bottom, BorderLayout.SOUTH);
@@ -58,9 +66,36 @@ public class CameraThumb extends JPanel {
 		timestamp.setText( reset + " / " + uptime + " / " + pc);
 	}
 	
-	public void setThumb(BufferedImage thumb, int pc, int reset, long uptime) {
-		thumbImage.setIcon(new ImageIcon(thumb));
-		setTimestamp(pc, reset, uptime);
+	/**
+	 * Show the thumbnail for this JPEG.  The space is reserved for a 4:3 image until it is loaded.
+	 * @param jpeg
+	 * @param sizeX
+	 */
+	public void setJpeg(CameraJpeg jpeg, int sizeX) {
+		this.jpeg = jpeg;
+		this.sizeX = sizeX;
+		thumbImage.setPreferredSize(new Dimension(sizeX, sizeX*3/4));
+		setTimestamp(jpeg.pictureCounter, jpeg.resets, jpeg.fromUptime);
+		thumbImage.repaint();
+	}
+
+	class ThumbImage extends JComponent {
+		@Override
+		protected void paintComponent(Graphics g) {
+			if (jpeg == null) return;
+			BufferedImage thumb = ThumbnailLoader.getThumbnail(jpeg, sizeX, this);
+			if (thumb == null) {
+				g.setColor(Color.LIGHT_GRAY);
+				g.fillRect(0, 0, getWidth(), getHeight());
+				return;
+			}
+			Dimension size = new Dimension(thumb.getWidth(), thumb.getHeight());
+			if (!size.equals(getPreferredSize())) {
+				// Not 4:3, so make room for it, then it is painted again
+				setPreferredSize(size);
+				revalidate();
+			}
+			g.drawImage(thumb, 0, 0, null);
+		}
 	}
-	
 }
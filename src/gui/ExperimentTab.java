@@ -21,6 +21,7 @@ import javax.swing.KeyStroke;
 import javax.swing.table.AbstractTableModel;
 import common.Config;
 import telemetry.PayloadRadExpData;
+import telemetry.UpdateBus;
 
 /**
  * 
@@ -183,6 +184,7 @@ public abstract class ExperimentTab extends ModuleTab implements MouseListener {
 			} else {
 				Config.displayRawRadData = true;
 			}
+			UpdateBus.publishAll(); // the other tabs show the same option
 			if (showRawBytes.isSelected()) {
 				packetScrollPane.setVisible(false); 
 				scrollPane.setVisible(true);
@@ -48,13 +48,13 @@ import gui.GraphCanvas;
  *
  */
 @SuppressWarnings("serial")
-public class EyePanel extends JPanel implements Runnable {
-	boolean done = false;
+public class EyePanel extends JPanel implements FrameScheduler.Animated {
 	boolean running = true;
 	Decoder decoder;
 	int zeroValue;
 	//double[] snr;
 	int[][] buffer;
+	int[][] data; // the last eye data from the decoder
 
 
 	public double avgHigh;
@@ -97,69 +97,62 @@ public class EyePanel extends JPanel implements Runnable {
 		//snr = new double[snrAvgLen];
 		//snrSample = 0;
 	}
+
+	public int getFrameRate() { return 100; } // approx 1/100 sec refresh
+	public boolean isRunning() { return running; }
+
+	/**
+	 * Called by the FrameScheduler.  Copy the latest eye data and repaint
+	 */
 	@Override
-	public void run() {
-		Thread.currentThread().setName("EyePanel");
-		done = false;
-		running = true;
-		Log.println("STARTING EYE PANEL THREAD");
-		int[][] data = null;
-		while(running) {
-			//			Log.println("eye running");
-			try {
-				Thread.sleep(1000/100); // approx 1/100 sec refresh
-			} catch (InterruptedException e) {
-				Log.println("ERROR: Eye Diagram thread interrupted");
-				//e.printStackTrace();
-			} 
-			//Log.println("RUNNING EYE THREAD FOR: " + decoder.name);
-			//if (decoder.name.equalsIgnoreCase("High Speed"))
-			//	Log.println("STOP");
-
-			if (decoder != null) {
-				// We get the eye data, which is a copy of the bucket data
-
-				eyeData = decoder.getEyeData();
-				zeroValue = decoder.getZeroValue();
-				if (eyeData != null) {
-					// Cache the values while we graph them
-					data = eyeData.getData();
-					avgHigh = eyeData.getAvg(EyeData.HIGH);
-					avgLow = eyeData.getAvg(EyeData.LOW);
-					sdHigh = eyeData.getStandardDeviation(EyeData.HIGH);
-					sdLow = eyeData.getStandardDeviation(EyeData.LOW);
-					bitSNR = eyeData.bitSNR;
-					errors = eyeData.lastErrorsCount;
-					erasures = eyeData.lastErasureCount;
-					clockOffset = eyeData.clockOffset;
-				}
+	public void nextFrame(boolean showing) {
+		if (!showing) return; // nothing to draw, the data is copied again when we are shown
+		//Log.println("RUNNING EYE THREAD FOR: " + decoder.name);
+		//if (decoder.name.equalsIgnoreCase("High Speed"))
+		//	Log.println("STOP");
+
+		if (decoder != null) {
+			// We get the eye data, which is a copy of the bucket data
+
+			eyeData = decoder.getEyeData();
+			zeroValue = decoder.getZeroValue();
+			if (eyeData != null) {
+				// Cache the values while we graph them
+				data = eyeData.getData();
+				avgHigh = eyeData.getAvg(EyeData.HIGH);
+				avgLow = eyeData.getAvg(EyeData.LOW);
+				sdHigh = eyeData.getStandardDeviation(EyeData.HIGH);
+				sdLow = eyeData.getStandardDeviation(EyeData.LOW);
+				bitSNR = eyeData.bitSNR;
+				errors = eyeData.lastErrorsCount;
+				erasures = eyeData.lastErasureCount;
+				clockOffset = eyeData.clockOffset;
 			}
-			if (decoder != null && data != null ) { 
-				init();
-				int a=0; 
-				int b=0;
-				try {
-					if (NUMBER_OF_BITS > data.length) NUMBER_OF_BITS = data.length;
-					for (int i=0; i < NUMBER_OF_BITS; i++) {
-						for (int j=0; j < decoder.getBucketSize(); j+=decoder.getBucketSize()/SAMPLES) {
-							if (data !=null && a < NUMBER_OF_BITS && b < SAMPLES) {
-								buffer[a][b++] = data[i][j];
-							}
+		}
+		if (decoder != null && data != null ) { 
+			init();
+			int a=0; 
+			int b=0;
+			try {
+				if (NUMBER_OF_BITS > data.length) NUMBER_OF_BITS = data.length;
+				for (int i=0; i < NUMBER_OF_BITS; i++) {
+					for (int j=0; j < decoder.getBucketSize(); j+=decoder.getBucketSize()/SAMPLES) {
+						if (data !=null && a < NUMBER_OF_BITS && b < SAMPLES) {
+							buffer[a][b++] = data[i][j];
 						}
-						b=0;
-						a++;
 					}
-				} catch (ArrayIndexOutOfBoundsException e) {
-					// nothing to do at run time.  We switched decoders and the array length changed underneath us
-					Log.println("Ran off end of eye diagram data: a:" + a + " b:" + b);	
+					b=0;
+					a++;
 				}
-
-			} else {
-				//Log.println("NULL EYE DATA");
+			} catch (ArrayIndexOutOfBoundsException e) {
+				// nothing to do at run time.  We switched decoders and the array length changed underneath us
+				Log.println("Ran off end of eye diagram data: a:" + a + " b:" + b);	
 			}
-			this.repaint();
+
+		} else {
+			//Log.println("NULL EYE DATA");
 		}
-		Log.println("ENDING EYE PANEL THREAD");
+		this.repaint();
 	}
 
 	public void updateFont() {
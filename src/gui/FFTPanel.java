@@ -61,7 +61,7 @@ import java.awt.event.MouseListener;
  *
  */
 @SuppressWarnings("serial")
-public class FFTPanel extends JPanel implements Runnable, MouseListener {
+public class FFTPanel extends JPanel implements FrameScheduler.Animated, MouseListener {
 	private static final float TRACK_SIGNAL_THRESHOLD = -80;
 	Spacecraft fox;
 	
@@ -71,7 +71,6 @@ public class FFTPanel extends JPanel implements Runnable, MouseListener {
 	private double[] psd = null;
 	
 	boolean running = true;
-	boolean done = false;
 	double centerFreqX = 145950;
 	//int selectedBin = 0; // this is the actual FFT bin, with negative and positve freq flipped
 	int selection = 0; // this is the bin that the user clicked on, which runs from left to right
@@ -174,46 +173,44 @@ public class FFTPanel extends JPanel implements Runnable, MouseListener {
 	
 	private void init() {
 		fftSamples = SourceIQ.FFT_SAMPLES;
-		done = false;
 		running = true;
 		psd = new double[fftSamples+1];
 		title.setText("FFT: " +  fftSamples);
 	}
 	
+	public int getFrameRate() { return 30; } // 30Hz
+	public boolean isRunning() { return running; }
+
+	/**
+	 * Called by the FrameScheduler.  Unlike the other panels we still have work to do when the FFT is hidden,
+	 * because the retune to follow the signal runs here.  We just do not draw.
+	 */
 	@Override
-	public void run() {
-		Thread.currentThread().setName("FFTPanel");
+	public void nextFrame(boolean showing) {
 		double[] buffer = null;
-		while(running) {
-			if (iqSource != null) {
-				if (fftSamples != SourceIQ.FFT_SAMPLES) {
-					fftSamples = SourceIQ.FFT_SAMPLES;
-					psd = new double[fftSamples+1];
-					title.setText("FFT: " +  fftSamples);
-				}
-				buffer = iqSource.getPowerSpectralDensity();
-				centerFreqX = iqSource.getCenterFreqkHz();
-				//selectedBin = Config.selectedBin;
-				rfData = iqSource.getRfData();
+		if (iqSource != null) {
+			if (fftSamples != SourceIQ.FFT_SAMPLES) {
+				fftSamples = SourceIQ.FFT_SAMPLES;
+				psd = new double[fftSamples+1];
+				title.setText("FFT: " +  fftSamples);
 			}
-			try {
-				Thread.sleep(1000/30); // 30Hz
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			} 
-			if (buffer != null) {
-				psd = buffer;
-				liveData = true;
+			buffer = iqSource.getPowerSpectralDensity();
+			centerFreqX = iqSource.getCenterFreqkHz();
+			//selectedBin = Config.selectedBin;
+			rfData = iqSource.getRfData();
+		}
+		if (buffer != null) {
+			psd = buffer;
+			liveData = true;
+			if (showing)
 				this.repaint();
-			} else {
-				liveData = false;
-			}
-			if (rfData != null) {
-				if (!Config.foxTelemCalcsDoppler)
-					retune();		
-			}
+		} else {
+			liveData = false;
+		}
+		if (rfData != null) {
+			if (!Config.foxTelemCalcsDoppler)
+				retune();		
 		}
-		done = true;
 	}
 
 	int avgBin = 0;
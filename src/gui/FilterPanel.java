@@ -15,6 +15,7 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import common.Config;
+import decoder.Fox200bpsDecoder;
 
 /**
  * 
@@ -170,18 +171,7 @@ public class FilterPanel extends JPanel  implements ChangeListener, ActionListen
 	}
 	
 	public static void checkFilterParams() {
-		if (Config.useFilterNumber == RAISED_COSINE) {
-			if (Config.filterLength > RC_LEN_MAX) {
-				Config.filterLength = RC_LEN_MAX;
-			}
-		
-		} else if (Config.useFilterNumber == WINDOWED_SINC){
-			if (Config.filterLength < WS_LEN_MIN) {
-				Config.filterLength = WS_LEN_MIN;
-			}
-		
-		} 
-		
+		Fox200bpsDecoder.checkFilterParams();
 	}
 	
 	private void updateSlider() {
@@ -4,6 +4,8 @@ import java.awt.Color;
 
 import javax.swing.JPanel;
 
+import telemetry.UpdateBus;
+
 /**
  * 
  * FOX 1 Telemetry Decoder
@@ -29,12 +31,46 @@ import javax.swing.JPanel;
 public class FoxTelemTab extends JPanel {
 	protected boolean running = false;
 	protected boolean done = false;
+	protected UpdateBus.Subscription updates; // the layouts this tab displays, if it has a refresh thread
 	
 	Color textLblColor = Color.BLACK;
 	Color textColor = Color.DARK_GRAY;
 	
 	public void stopProcessing() {
 		running = false;
+		UpdateBus.Subscription s = updates;
+		if (s != null)
+			s.wake(); // so the thread sees that it has stopped
+	}
+
+	/**
+	 * Subscribe to the layouts that this tab displays.  Call at the start of the refresh thread
+	 * @param foxId
+	 * @param layouts
+	 */
+	protected void subscribe(int foxId, String... layouts) {
+		updates = UpdateBus.subscribe(foxId, layouts);
+	}
+
+	/**
+	 * Block the refresh thread until one of the subscribed layouts is updated, the display options change or the
+	 * tab is stopped.  This replaces polling the payload store every 500ms.
+	 * @throws InterruptedException
+	 */
+	protected void waitForUpdate() throws InterruptedException {
+		if (updates == null)
+			Thread.sleep(500);
+		else
+			updates.await(0);
+	}
+
+	/**
+	 * Call when the refresh thread exits
+	 */
+	protected void unsubscribe() {
+		if (updates != null)
+			updates.close();
+		updates = null;
 	}
 
 	public boolean isDone() {
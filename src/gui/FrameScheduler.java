@@ -0,0 +1,128 @@
+package gui;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import common.Log;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Drives the live displays on the Input tab, such as the eye diagram, from one thread.  Each panel used to
+ * run its own thread that slept for 10-33ms and then read the decoder and called repaint(), even when the
+ * panel was not on the screen.
+ *
+ * Each panel asks for a frame rate and the scheduler calls nextFrame() when the next frame is due.  The panel
+ * is told if it is showing, so a hidden panel can skip reading the data and drawing.  Repaints are only
+ * requested from this thread, once per frame, and Swing merges any that are still pending into one paint.
+ *
+ */
+public class FrameScheduler implements Runnable {
+	public static final long MAX_WAIT = 100; // ms, how long we sleep if nothing is running
+
+	public interface Animated {
+		/**
+		 * @return the frames per second this panel wants
+		 */
+		public int getFrameRate();
+
+		/**
+		 * @return false to skip frames, e.g. before the decoder has started
+		 */
+		public boolean isRunning();
+
+		/**
+		 * Implemented by the JPanel.  True if the panel is on the screen
+		 */
+		public boolean isShowing();
+
+		/**
+		 * Called on the scheduler thread when the next frame is due.  Read the latest data and call repaint().
+		 * @param showing - false if the panel is hidden and there is no need to draw
+		 */
+		public void nextFrame(boolean showing);
+	}
+
+	static class Entry {
+		final Animated panel;
+		long next; // nanoTime that the next frame is due
+
+		Entry(Animated panel) {
+			this.panel = panel;
+			next = System.nanoTime();
+		}
+	}
+
+	private static CopyOnWriteArrayList<Entry> entries = new CopyOnWriteArrayList<Entry>();
+	private static Thread thread;
+
+	/**
+	 * Start calling this panel at its frame rate.  Has no effect if the panel is already scheduled.
+	 * @param panel
+	 */
+	public static synchronized void schedule(Animated panel) {
+		for (Entry e : entries)
+			if (e.panel == panel) return;
+		entries.add(new Entry(panel));
+		if (thread == null) {
+			thread = new Thread(new FrameScheduler());
+			thread.setName("FrameScheduler");
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
+			thread.start();
+		}
+		synchronized (entries) {
+			entries.notifyAll();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			long now = System.nanoTime();
+			long wait = MAX_WAIT * 1000000L;
+			for (Entry e : entries) {
+				long period = 1000000000L / Math.max(1, e.panel.getFrameRate());
+				if (now >= e.next) {
+					if (e.panel.isRunning()) {
+						try {
+							e.panel.nextFrame(e.panel.isShowing());
+						} catch (RuntimeException ex) {
+							// The panel used to have its own thread, which stopped on an exception.  Stop calling it.
+							Log.println("ERROR: Display panel stopped: " + ex);
+							ex.printStackTrace(Log.getWriter());
+							entries.remove(e);
+							continue;
+						}
+					}
+					e.next += period;
+					if (e.next < now)
+						e.next = now + period; // we fell behind, so skip the missed frames rather than catch up
+				}
+				wait = Math.min(wait, e.next - now);
+			}
+			if (wait > 0) {
+				try {
+					synchronized (entries) {
+						entries.wait(wait / 1000000L, (int)(wait % 1000000L));
+					}
+				} catch (InterruptedException ex) {
+					// nothing to do, check the panels again
+				}
+			}
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 
 import common.Config;
 import common.FoxSpacecraft;
@@ -24,6 +25,12 @@ public abstract class GraphCanvas extends MapPanel {
 	FoxSpacecraft fox;
 	double[][][] graphData = null;
 	double[][][] graphData2 = null;
+	GraphLod[] lod = null; // min/max of the DATA_COL of each series in graphData, built when the data is fetched
+	GraphLod[] lod2 = null;
+	// The settings used for the last full fetch, or null if the data can not be appended to.  While they are the
+	// same, an update only fetches the records stored since then and adds them to the end of the data.
+	private String fetchKey = null;
+	private int fetchCount; // records in the layout when the data was last fetched
 	String title = "Test Graph";
 	GraphFrame graphFrame;
 	protected int conversionType;  
@@ -59,6 +66,19 @@ public abstract class GraphCanvas extends MapPanel {
 	}
 
 	public void updateGraphData(String by) {
+		String layout = getLayoutName();
+		String key = getFetchKey();
+		if (layout != null && key.equals(fetchKey) && appendGraphData(layout)) {
+			if (graphData != null && graphData[0] != null)
+				this.repaint();
+			return;
+		}
+		fetchKey = null;
+		// Count before we fetch, so a record stored during the fetch is fetched again rather than missed
+		int count = 0;
+		if (layout != null)
+			count = Config.payloadStore.getNumberOfFrames(graphFrame.fox.foxId, layout);
+
 		int showDialogThreshold = 999999;
 		ProgressPanel fileProgress = null;
 		if (graphFrame.SAMPLES > showDialogThreshold) {
@@ -127,6 +147,14 @@ public abstract class GraphCanvas extends MapPanel {
 		}
 		
 		
+		lod = buildLod(graphData);
+		lod2 = buildLod(graphData2);
+		if (layout != null && count > 0 && graphFrame.plotType != GraphFrame.EARTH_PLOT
+				&& canAppend(graphData, count) && canAppend(graphData2, count)) {
+			fetchKey = key;
+			fetchCount = count;
+		}
+
 		if (graphFrame.SAMPLES > showDialogThreshold)
 			fileProgress.updateProgress(100);
 		
@@ -136,6 +164,148 @@ public abstract class GraphCanvas extends MapPanel {
 	
 	}
 	
+	/**
+	 * @return the layout that holds the data for this graph, or null if it is not a payload layout that can be
+	 * appended to, e.g. measurements
+	 */
+	private String getLayoutName() {
+		switch (payloadType) {
+		case FoxFramePart.TYPE_REAL_TIME: return Spacecraft.REAL_TIME_LAYOUT;
+		case FoxFramePart.TYPE_MAX_VALUES: return Spacecraft.MAX_LAYOUT;
+		case FoxFramePart.TYPE_MIN_VALUES: return Spacecraft.MIN_LAYOUT;
+		case FoxFramePart.TYPE_RAD_TELEM_DATA: return Spacecraft.RAD2_LAYOUT;
+		case FoxFramePart.TYPE_HERCI_SCIENCE_HEADER: return Spacecraft.HERCI_HS_HEADER_LAYOUT;
+		case FoxFramePart.TYPE_WOD: return Spacecraft.WOD_LAYOUT;
+		case FoxFramePart.TYPE_WOD_RAD_TELEM_DATA: return Spacecraft.WOD_RAD2_LAYOUT;
+		}
+		return null;
+	}
+
+	/**
+	 * Everything that decides which records are fetched and how they are converted
+	 */
+	private String getFetchKey() {
+		return graphFrame.fox.foxId + ":" + payloadType + ":" + Arrays.toString(graphFrame.fieldName) + ":"
+				+ Arrays.toString(graphFrame.fieldName2) + ":" + graphFrame.SAMPLES + ":" + graphFrame.showLatest + ":"
+				+ graphFrame.START_RESET + ":" + graphFrame.START_UPTIME + ":" + graphFrame.plotType + ":" + Config.displayRawValues;
+	}
+
+	/**
+	 * True if every series holds the same number of records and at least one, so the last record can be used to
+	 * find what is new
+	 */
+	private boolean canAppend(double[][][] data, int count) {
+		if (data == null) return true;
+		for (int j=0; j < data.length; j++) {
+			if (data[j] == null || data[j][PayloadStore.RESETS_COL] == null) return false;
+			int len = data[j][PayloadStore.RESETS_COL].length;
+			if (len == 0 || len > count || len != graphData[0][PayloadStore.RESETS_COL].length) return false;
+			for (int c=0; c < data[j].length; c++)
+				if (data[j][c] == null || data[j][c].length != len) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Fetch the records stored since the data was last fetched and add them to the end of each series.  A live
+	 * graph drops the same number of records from the start, so it still holds the latest SAMPLES.  A graph that
+	 * starts from a reset and uptime only grows until it holds SAMPLES.
+	 * @param layout
+	 * @return false if the new records could not be found this way, in which case all of the data is fetched again
+	 */
+	private boolean appendGraphData(String layout) {
+		int count = Config.payloadStore.getNumberOfFrames(graphFrame.fox.foxId, layout);
+		int added = count - fetchCount;
+		if (added < 0) return false;
+		if (added == 0) return true;
+		if (added >= graphFrame.SAMPLES) return false;
+		boolean reverse = graphFrame.showLatest == GraphFrame.SHOW_LIVE;
+		double[][] first = graphData[0];
+		int len = first[PayloadStore.RESETS_COL].length;
+		int afterReset = (int)first[PayloadStore.RESETS_COL][len-1];
+		long afterUptime = (long)first[PayloadStore.UPTIME_COL][len-1];
+		if (!reverse) {
+			// The window must start at the requested record, not at the last record because there was nothing later
+			int startReset = (int)first[PayloadStore.RESETS_COL][0];
+			long startUptime = (long)first[PayloadStore.UPTIME_COL][0];
+			if (startReset < graphFrame.START_RESET || (startReset == graphFrame.START_RESET && startUptime < graphFrame.START_UPTIME))
+				return false;
+		}
+
+		// Every record stored since the last fetch must follow the last one we have.  If one was stored out of order
+		// then it belongs somewhere in the middle, so we fetch everything again.
+		double[][][] newData = fetchAfter(graphFrame.fieldName, layout, added, afterReset, afterUptime);
+		if (newData == null) return false;
+		double[][][] newData2 = null;
+		if (graphData2 != null) {
+			newData2 = fetchAfter(graphFrame.fieldName2, layout, added, afterReset, afterUptime);
+			if (newData2 == null) return false;
+		}
+
+		int size = Math.min(graphFrame.SAMPLES, len + added);
+		int drop = reverse ? len + added - size : 0;
+		if (size > len || drop > 0) {
+			GraphLod[] newLod = lod == null ? null : new GraphLod[graphData.length];
+			GraphLod[] newLod2 = graphData2 == null ? null : new GraphLod[graphData2.length];
+			double[][][] data = appendSeries(graphData, newData, lod, newLod, size, drop);
+			double[][][] data2 = appendSeries(graphData2, newData2, lod2, newLod2, size, drop);
+			graphData = data;
+			graphData2 = data2;
+			lod = newLod;
+			lod2 = newLod2;
+		}
+		fetchCount = count;
+		return true;
+	}
+
+	/**
+	 * Fetch the records after the mark for each field.  Returns null unless we got exactly the number expected.
+	 */
+	private double[][][] fetchAfter(String[] names, String layout, int number, int afterReset, long afterUptime) {
+		boolean positionData = payloadType == FoxFramePart.TYPE_WOD;
+		double[][][] data = new double[names.length][][];
+		for (int i=0; i < names.length; i++) {
+			data[i] = Config.payloadStore.getGraphDataAfter(names[i], number, graphFrame.fox, afterReset, afterUptime, layout, positionData);
+			if (data[i] == null || data[i][PayloadStore.RESETS_COL] == null || data[i][PayloadStore.RESETS_COL].length != number)
+				return null;
+		}
+		return data;
+	}
+
+	/**
+	 * Copy the series into new arrays of this size, dropping records from the start and adding the new records at the
+	 * end.  The data is returned in new arrays so that a paint in progress sees either the old data or the new.
+	 * @param newLods - set to the level of detail for the new data, if lods is not null
+	 * @return the new data
+	 */
+	private double[][][] appendSeries(double[][][] data, double[][][] newData, GraphLod[] lods, GraphLod[] newLods, int size, int drop) {
+		if (data == null) return null;
+		double[][][] result = new double[data.length][][];
+		for (int j=0; j < data.length; j++) {
+			int len = data[j][PayloadStore.RESETS_COL].length;
+			int keep = len - drop;
+			int add = size - keep;
+			double[][] series = new double[data[j].length][];
+			for (int c=0; c < data[j].length; c++) {
+				series[c] = new double[size];
+				System.arraycopy(data[j][c], drop, series[c], 0, keep);
+				if (c < newData[j].length && newData[j][c] != null)
+					System.arraycopy(newData[j][c], 0, series[c], keep, add);
+			}
+			double[] values = series[PayloadStore.DATA_COL];
+			fixMpptValues(values, keep, size);
+			if (newLods != null) {
+				if (drop == 0 && lods != null && lods[j] != null && lods[j].size() == len) {
+					lods[j].extend(values, size);
+					newLods[j] = lods[j];
+				} else
+					newLods[j] = new GraphLod(values);
+			}
+			result[j] = series;
+		}
+		return result;
+	}
+
 	/**
 	 * Add Lat Lon from stored data or by calculation if needed
 	 * Ask the user if its a lot of data
@@ -185,6 +355,41 @@ public abstract class GraphCanvas extends MapPanel {
 		return newGraphData;
 	}
 
+	/**
+	 * Build the level of detail for each series.  The MPPT panel temperatures that could not be read are set to the
+	 * default value first, as they are not to be treated as the maximum.
+	 * @param data
+	 * @return
+	 */
+	private GraphLod[] buildLod(double[][][] data) {
+		if (data == null) return null;
+		GraphLod[] lods = new GraphLod[data.length];
+		for (int j=0; j < data.length; j++) {
+			if (data[j] == null || data[j][PayloadStore.DATA_COL] == null) continue;
+			double[] values = data[j][PayloadStore.DATA_COL];
+			fixMpptValues(values, 0, values.length);
+			lods[j] = new GraphLod(values);
+		}
+		return lods;
+	}
+
+	private void fixMpptValues(double[] values, int from, int to) {
+		if (graphFrame.conversionType == BitArrayLayout.CONVERT_MPPT_SOLAR_PANEL_TEMP)
+			for (int i=from; i < to; i++)
+				if (values[i] == BitArray.ERROR_VALUE)
+					values[i] = FoxFramePart.MPPT_DEFAULT_TEMP;
+	}
+
+	/**
+	 * Return the level of detail for this graph data, or null if it was not built for it
+	 */
+	protected GraphLod[] getLod(double[][][] data) {
+		if (data == null) return null;
+		if (data == graphData && lod != null && lod.length == data.length) return lod;
+		if (data == graphData2 && lod2 != null && lod2.length == data.length) return lod2;
+		return null;
+	}
+
 	public boolean checkDataExists() {
 		if (graphData == null) return false;
 		if (graphData[0] == null) return false;
@@ -227,7 +432,16 @@ public abstract class GraphCanvas extends MapPanel {
 			//	double maxValueAxisTwo = 0;
 			//	double minValueAxisTwo = 99E99;
 
-				for (int j=0; j < graphData.length; j++)
+				GraphLod[] lods = getLod(graphData);
+				for (int j=0; j < graphData.length; j++) {
+					if (lods != null && lods[j] != null && lods[j].size() == graphData[j][PayloadStore.DATA_COL].length) {
+						// Same result as the loop below, without looking at every point
+						if (lods[j].size() > 0) {
+							if (lods[j].getMax() >= maxValue) maxValue = lods[j].getMax();
+							if (lods[j].getMin() <= minValue) minValue = lods[j].getMin();
+						}
+						continue;
+					}
 					for (int i=0; i < graphData[j][0].length; i++) {
 						if (graphFrame.conversionType == BitArrayLayout.CONVERT_MPPT_SOLAR_PANEL_TEMP && graphData[j][PayloadStore.DATA_COL][i] == BitArray.ERROR_VALUE) {
 							// do not treat as the maximum.  Set to a default value
@@ -236,6 +450,7 @@ public abstract class GraphCanvas extends MapPanel {
 						if (graphData[j][PayloadStore.DATA_COL][i] >= maxValue) maxValue = graphData[j][PayloadStore.DATA_COL][i];
 						if (graphData[j][PayloadStore.DATA_COL][i] <= minValue) minValue = graphData[j][PayloadStore.DATA_COL][i];
 					}
+				}
 
 				if (maxValue == minValue) {
 					if (graphType == BitArrayLayout.CONVERT_INTEGER) 
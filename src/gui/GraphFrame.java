@@ -1390,7 +1390,7 @@ public class GraphFrame extends JFrame implements WindowListener, ActionListener
 			showHorizontalLines = !showHorizontalLines;
 			//Log.println("Plot Derivative " + plotDerivative);
 			setRedOutline(btnHorizontalLines,showHorizontalLines);
-			panel.updateGraphData("GraphFrame.actionPerformed:horizontal");
+			panel.repaint();
 		} else if (e.getSource() == btnVerticalLines) {
 			showVerticalLines = !showVerticalLines;
 			//Log.println("Plot Derivative " + plotDerivative);
@@ -1400,44 +1400,44 @@ public class GraphFrame extends JFrame implements WindowListener, ActionListener
 			} else
 				btnVerticalLines.setBackground(Color.GRAY);
 				*/
-			panel.updateGraphData("GraphFrame.actionPerformed:vertical");
+			panel.repaint();
 		} else if (e.getSource() == btnDerivative) {
 			plotDerivative = !plotDerivative;
 			//Log.println("Plot Derivative " + plotDerivative);
 			setRedOutline(btnDerivative,plotDerivative);
 			
-			panel.updateGraphData("GraphFrame.actionPerformed:derivative");
+			panel.repaint();
 		}  else if (e.getSource() == btnAvg) {
 			dspAvg = !dspAvg;
 			setRedOutline(btnAvg,dspAvg);
 			setAvgVisible(dspAvg);
 			//Log.println("Calc Average " + dspAvg);
-			panel.updateGraphData("GraphFrame.actionPerformed:avg");
+			panel.repaint();
 		} else if (e.getSource() == btnMain) {
 			hideMain = !hideMain;
 			setRedOutline(btnMain,hideMain);
 
-			panel.updateGraphData("GraphFrame.actionPerformed:main");
+			panel.repaint();
 		}  else if (e.getSource() == btnLines) {
 			hideLines = !hideLines;
 			setRedOutline(btnLines,!hideLines);
-			panel.updateGraphData("GraphFrame.actionPerformed:hideLines");
+			panel.repaint();
 		} else if (e.getSource() == btnPoints) {
 			hidePoints = !hidePoints;
 			setRedOutline(btnPoints,!hidePoints);
-			panel.updateGraphData("GraphFrame.actionPerformed:points");
+			panel.repaint();
 		}  else if (e.getSource() == btnMapType) {
 			mapType = mapType + 1;
 			if (mapType > COLOR_MAP_EQUIRECTANGULAR)
 				mapType = NO_MAP_EQUIRECTANGULAR;
-			panel.updateGraphData("GraphFrame.actionPerformed:points");
+			panel.repaint();
 		} 
 		if (e.getSource() == cbUptime) {
 				hideUptime = !hideUptime;
 			if (textDisplay)
 				diagnosticTable.updateData();
 			else
-				panel.updateGraphData("GraphFrame:stateChange:Uptime");
+				panel.repaint();
 			setRedOutline(cbUptime, !hideUptime);
 		}
 		if (e.getSource() == chckbxPlotAllUptime) {
@@ -1451,7 +1451,7 @@ public class GraphFrame extends JFrame implements WindowListener, ActionListener
 			if (textDisplay)
 				diagnosticTable.updateData();
 			else
-				panel.updateGraphData("GraphFrame:stateChange:plotAllUptime");
+				panel.repaint();
 		}
 		
 		if (e.getSource() == cbUTC) {
@@ -1488,7 +1488,7 @@ public class GraphFrame extends JFrame implements WindowListener, ActionListener
 			if (textDisplay)
 				diagnosticTable.updateData();
 			else
-				panel.updateGraphData("GraphFrame:stateChange:altLabels");
+				panel.repaint();
 		}
 		if (e.getSource() == cbShowSun) {
 			if (e.getStateChange() == ItemEvent.DESELECTED) {
@@ -1499,7 +1499,7 @@ public class GraphFrame extends JFrame implements WindowListener, ActionListener
 			if (textDisplay)
 				diagnosticTable.updateData();
 			else
-				panel.updateGraphData("GraphFrame:stateChange:altLabels");
+				panel.repaint();
 		}
 		if (e.getSource() == cbUptime) {
 			if (e.getStateChange() == ItemEvent.DESELECTED) {
@@ -1510,7 +1510,7 @@ public class GraphFrame extends JFrame implements WindowListener, ActionListener
 			if (textDisplay)
 				diagnosticTable.updateData();
 			else
-				panel.updateGraphData("GraphFrame:stateChange:Uptime");
+				panel.repaint();
 		}		
 		toggleSunCheckBox();
 	}
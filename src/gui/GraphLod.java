@@ -0,0 +1,157 @@
+package gui;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * A level of detail pyramid for one column of graph data.  Level 0 holds the min and max of each BASE values,
+ * and each level above holds the min and max of two buckets from the level below.  It is built once when the
+ * graph data is fetched, so that a repaint can find the range of the whole series, or the min and max of the
+ * points that fall on one pixel, without looking at every value.
+ *
+ * New values can be appended, in which case only the buckets at the end of each level are recalculated.
+ *
+ */
+public class GraphLod {
+	static final int BASE = 8; // values in a level 0 bucket
+
+	private double[] values;
+	private int length;
+	private double[][] min = new double[0][];
+	private double[][] max = new double[0][];
+
+	public GraphLod(double[] values) {
+		this(values, values.length);
+	}
+
+	public GraphLod(double[] values, int length) {
+		this.values = values;
+		this.length = 0;
+		extend(values, length);
+	}
+
+	public int size() { return length; }
+
+	/**
+	 * Add the values between the current size and length.  The array must hold the same values as before up to the
+	 * current size, but it can be a new array, e.g. when a buffer has been grown.
+	 * @param values
+	 * @param length
+	 */
+	public void extend(double[] values, int length) {
+		int from = this.length;
+		this.values = values;
+		this.length = length;
+		if (length <= from && min.length > 0) return;
+		int levels = 1;
+		for (long size = BASE; size < length; size *= 2) levels++;
+		if (levels > min.length) {
+			double[][] m = new double[levels][];
+			double[][] x = new double[levels][];
+			System.arraycopy(min, 0, m, 0, min.length);
+			System.arraycopy(max, 0, x, 0, max.length);
+			min = m;
+			max = x;
+		}
+		int size = BASE;
+		for (int k=0; k < levels; k++) {
+			int buckets = (length + size - 1) / size;
+			if (min[k] == null || min[k].length < buckets) {
+				// grow with spare room so that appending one record at a time does not copy every time
+				int room = Math.max(buckets, buckets + buckets/2);
+				double[] m = new double[room];
+				double[] x = new double[room];
+				if (min[k] != null) {
+					System.arraycopy(min[k], 0, m, 0, min[k].length);
+					System.arraycopy(max[k], 0, x, 0, max[k].length);
+				}
+				min[k] = m;
+				max[k] = x;
+			}
+			// The bucket that held the old last value may have been partial, so start from there
+			for (int b = from / size; b < buckets; b++) {
+				double lo = Double.MAX_VALUE;
+				double hi = -Double.MAX_VALUE;
+				if (k == 0) {
+					int end = Math.min(length, (b+1) * size);
+					for (int i = b * size; i < end; i++) {
+						if (values[i] < lo) lo = values[i];
+						if (values[i] > hi) hi = values[i];
+					}
+				} else {
+					int below = (length + size/2 - 1) / (size/2);
+					for (int c = 2*b; c < 2*b+2 && c < below; c++) {
+						if (min[k-1][c] < lo) lo = min[k-1][c];
+						if (max[k-1][c] > hi) hi = max[k-1][c];
+					}
+				}
+				min[k][b] = lo;
+				max[k][b] = hi;
+			}
+			size *= 2;
+		}
+	}
+
+	/**
+	 * @return the smallest value in the series, or Double.MAX_VALUE if it is empty
+	 */
+	public double getMin() {
+		return length == 0 ? Double.MAX_VALUE : min[min.length-1][0];
+	}
+
+	/**
+	 * @return the largest value in the series, or -Double.MAX_VALUE if it is empty
+	 */
+	public double getMax() {
+		return length == 0 ? -Double.MAX_VALUE : max[max.length-1][0];
+	}
+
+	/**
+	 * Find the min and max of the values from position from up to, but not including, to.  Whole buckets are
+	 * used where they fit, so this looks at a few values at each end and about two buckets per level in between.
+	 * @param from
+	 * @param to
+	 * @param range - set to {min, max}
+	 */
+	public void getRange(int from, int to, double[] range) {
+		double lo = Double.MAX_VALUE;
+		double hi = -Double.MAX_VALUE;
+		if (to > length) to = length;
+		int i = from;
+		while (i < to) {
+			// find the largest bucket that starts here and fits in the range
+			int k = -1;
+			int size = BASE;
+			while (k+1 < min.length && i % size == 0 && i + size <= to) {
+				k++;
+				size *= 2;
+			}
+			if (k < 0) {
+				if (values[i] < lo) lo = values[i];
+				if (values[i] > hi) hi = values[i];
+				i++;
+			} else {
+				size = size / 2;
+				int b = i / size;
+				if (min[k][b] < lo) lo = min[k][b];
+				if (max[k][b] > hi) hi = max[k][b];
+				i += size;
+			}
+		}
+		range[0] = lo;
+		range[1] = hi;
+	}
+}
@@ -46,6 +46,16 @@ public class GraphPanel extends GraphCanvas {
 	public static final int NO_TIME_VALUE = -999;
 	double[] firstDifference = null;
 	double[] dspData = null;
+	double[] dspDataFor = null; // the data and period that dspData was calculated for
+	int dspDataPeriod = 0;
+	
+	// The resets in the data and the uptime range of each, found once for each fetch of the data
+	double[] resetsFor = null;
+	double resetsThreshold = 0;
+	ArrayList<Integer> resetPosition;
+	double[] resetMinTime;
+	double[] resetMaxTime;
+	double[] range = new double[2];
 
 	int[] plottedXreset;
 	long[] plottedXuptime;
@@ -206,28 +216,8 @@ public class GraphPanel extends GraphCanvas {
 		// Remember that the data STARTS with the most recent records and goes back in time
 		// We will also look for large jumps in the Uptime meaning that data was taken from a later day or pass
 		// If so, we make an artifical Reset boundry
-		ArrayList<Integer> resetPosition = new ArrayList<Integer>();
-		resetPosition.add(0); // We have a reset at position 0 of course
-		
-		double currentReset = graphData[0][PayloadStore.RESETS_COL][0];
-		double lastUptime = graphData[0][PayloadStore.UPTIME_COL][0];
-		
-		for (int i=1; i < graphData[0][PayloadStore.RESETS_COL].length; i++) {
-			if (graphData[0][PayloadStore.RESETS_COL][i] != currentReset) {
-				// We have another reset in this data
-				// Add this position to the array.  It is the FIRST piece of data that has this reset
-				resetPosition.add(i);
-				currentReset = graphData[0][PayloadStore.RESETS_COL][i];
-			} else {
-				if (graphFrame.UPTIME_THRESHOLD != GraphFrame.CONTINUOUS_UPTIME_THRESHOLD)
-					// We dont have a reset, but maybe a big gap in the data
-					if ((graphData[0][PayloadStore.UPTIME_COL][i] - lastUptime) > graphFrame.UPTIME_THRESHOLD) {
-						resetPosition.add(i);
-						currentReset = graphData[0][PayloadStore.RESETS_COL][i];
-					}
-			}
-			lastUptime = graphData[0][PayloadStore.UPTIME_COL][i];
-		}
+		if (resetsFor != graphData[0][PayloadStore.RESETS_COL] || resetsThreshold != graphFrame.UPTIME_THRESHOLD)
+			findResets();
 
 		int titleHeight = Config.graphAxisFontSize+10;
 		if (zeroPoint < Config.graphAxisFontSize*3) {
@@ -310,7 +300,7 @@ public class GraphPanel extends GraphCanvas {
 			if (!graphFrame.roundLabels)
 				drawLabels = false;
 
-			drawGraphForSingleReset(start, end, width, graphHeight, startScreenPos, zeroPoint, axisPoints[1], axisPoints[2], 
+			drawGraphForSingleReset(r, start, end, width, graphHeight, startScreenPos, zeroPoint, axisPoints[1], axisPoints[2], 
 					axisPoints2[1], axisPoints2[2], drawLabels);
 		}
 
@@ -319,6 +309,53 @@ public class GraphPanel extends GraphCanvas {
 
 	}
 
+	/**
+	 * Find the position of each reset in the data, or a large gap in the uptime, which we treat as a reset.  Remember
+	 * that the data STARTS with the most recent records and goes back in time.  The uptime range of each reset is
+	 * found at the same time, so a repaint does not need to look at every point.
+	 */
+	private void findResets() {
+		resetPosition = new ArrayList<Integer>();
+		resetPosition.add(0); // We have a reset at position 0 of course
+		
+		double currentReset = graphData[0][PayloadStore.RESETS_COL][0];
+		double lastUptime = graphData[0][PayloadStore.UPTIME_COL][0];
+		
+		for (int i=1; i < graphData[0][PayloadStore.RESETS_COL].length; i++) {
+			if (graphData[0][PayloadStore.RESETS_COL][i] != currentReset) {
+				// We have another reset in this data
+				// Add this position to the array.  It is the FIRST piece of data that has this reset
+				resetPosition.add(i);
+				currentReset = graphData[0][PayloadStore.RESETS_COL][i];
+			} else {
+				if (graphFrame.UPTIME_THRESHOLD != GraphFrame.CONTINUOUS_UPTIME_THRESHOLD)
+					// We dont have a reset, but maybe a big gap in the data
+					if ((graphData[0][PayloadStore.UPTIME_COL][i] - lastUptime) > graphFrame.UPTIME_THRESHOLD) {
+						resetPosition.add(i);
+						currentReset = graphData[0][PayloadStore.RESETS_COL][i];
+					}
+			}
+			lastUptime = graphData[0][PayloadStore.UPTIME_COL][i];
+		}
+		
+		int len = graphData[0][PayloadStore.UPTIME_COL].length;
+		resetMinTime = new double[resetPosition.size()];
+		resetMaxTime = new double[resetPosition.size()];
+		for (int r=0; r < resetPosition.size(); r++) {
+			int end = (r == resetPosition.size()-1) ? len : resetPosition.get(r+1);
+			double maxTimeValue = 0;
+			double minTimeValue = 99999999;
+			for (int i=resetPosition.get(r); i < end; i++) {
+				if (graphData[0][PayloadStore.UPTIME_COL][i] >= maxTimeValue) maxTimeValue = graphData[0][PayloadStore.UPTIME_COL][i];
+				if (graphData[0][PayloadStore.UPTIME_COL][i] <= minTimeValue) minTimeValue = graphData[0][PayloadStore.UPTIME_COL][i];
+			}
+			resetMinTime[r] = minTimeValue;
+			resetMaxTime[r] = maxTimeValue;
+		}
+		resetsFor = graphData[0][PayloadStore.RESETS_COL];
+		resetsThreshold = graphFrame.UPTIME_THRESHOLD;
+	}
+	
 	private void plotAlternateLabels(int zeroPoint, int graphHeight) {
 
 		int prevReset = -1;
@@ -396,7 +433,7 @@ public class GraphPanel extends GraphCanvas {
 	 * @param maxValue2
 	 * @param drawLabels - if false then no labels are drawn for this reset because it is too narrow
 	 */
-	private void drawGraphForSingleReset(int start, int end, int graphWidth, int graphHeight, 
+	private void drawGraphForSingleReset(int reset, int start, int end, int graphWidth, int graphHeight, 
 			int sideBorder, int zeroPoint, double minValue, double maxValue, double minValue2, double maxValue2, boolean drawLabels) {
 		
 		/**
@@ -406,6 +443,11 @@ public class GraphPanel extends GraphCanvas {
 		if (graphFrame.dspAvg) {
 			if (graphFrame.AVG_PERIOD > graphData[0][0].length/2)
 				graphFrame.AVG_PERIOD = graphData[0][0].length /2 ;
+		}
+		// The average is over all of the data, so we only need to calculate it once for each fetch, not for each reset
+		if (graphFrame.dspAvg && (dspDataFor != graphData[0][PayloadStore.DATA_COL] || dspDataPeriod != graphFrame.AVG_PERIOD)) {
+			dspDataFor = graphData[0][PayloadStore.DATA_COL];
+			dspDataPeriod = graphFrame.AVG_PERIOD;
 			double sum = 0;
 			boolean first = true;
 			dspData = new double[graphData[0][0].length];
@@ -425,23 +467,22 @@ public class GraphPanel extends GraphCanvas {
 				dspData[j] = sum;
 		}
 
-		double maxTimeValue = 0;
-		double minTimeValue = 99999999;
-		for (int i=start; i < end; i++) {
-			if (graphData[0][PayloadStore.UPTIME_COL][i] >= maxTimeValue) maxTimeValue = graphData[0][PayloadStore.UPTIME_COL][i];
-			if (graphData[0][PayloadStore.UPTIME_COL][i] <= minTimeValue) minTimeValue = graphData[0][PayloadStore.UPTIME_COL][i];
-			if (graphFrame.plotDerivative && i > 0) {
-				double value = graphData[0][PayloadStore.DATA_COL][i];
-				double value2 = graphData[0][PayloadStore.DATA_COL][i-1];
-				if (conversionType == BitArrayLayout.CONVERT_FREQ) {
-					value = value - freqOffset;
-					value2 = value2 - freqOffset;
+		double maxTimeValue = resetMaxTime[reset];
+		double minTimeValue = resetMinTime[reset];
+		if (graphFrame.plotDerivative)
+			for (int i=start; i < end; i++) {
+				if (i > 0) {
+					double value = graphData[0][PayloadStore.DATA_COL][i];
+					double value2 = graphData[0][PayloadStore.DATA_COL][i-1];
+					if (conversionType == BitArrayLayout.CONVERT_FREQ) {
+						value = value - freqOffset;
+						value2 = value2 - freqOffset;
+					}
+					firstDifference[i] = 5 * ((value - value2) / (graphData[0][PayloadStore.UPTIME_COL][i]-graphData[0][PayloadStore.UPTIME_COL][i-1]));
+				//	if (firstDifference[i] < minValue) minValue = firstDifference[i];
+					//	if (firstDifference[i] > maxValue) maxValue = firstDifference[i];
 				}
-				firstDifference[i] = 5 * ((value - value2) / (graphData[0][PayloadStore.UPTIME_COL][i]-graphData[0][PayloadStore.UPTIME_COL][i-1]));
-			//	if (firstDifference[i] < minValue) minValue = firstDifference[i];
-				//	if (firstDifference[i] > maxValue) maxValue = firstDifference[i];
 			}
-		}
 		/* Second Deriv
 		if (graphFrame.plotDerivative)
 		for (int i=start; i < end; i++) {
@@ -541,8 +582,14 @@ public class GraphPanel extends GraphCanvas {
 
 	private void plotGraph(double[][][] graphData, int graphHeight, int graphWidth, int start, int end, int stepSize, int sideBorder, double minTimeValue, 
 			double maxTimeValue, double minValue, double maxValue, int colorIdx, int graphType, boolean plotDsp) {
+		GraphLod[] lods = getLod(graphData);
 		if (graphData != null)
 			for (int j=0; j<graphData.length; j++) {
+				// When there are more points than pixels we draw the min and max of the points we skip over, so a spike
+				// between two plotted points is not lost.  The level of detail gives us those without reading each point.
+				GraphLod envelope = null;
+				if (stepSize > 1 && lods != null && lods[j] != null && lods[j].size() == graphData[j][PayloadStore.DATA_COL].length)
+					envelope = lods[j];
 				int lastx = sideBorder+1; 
 				int nextx = 0; 
 				int lastMidPoint = 0;
@@ -574,15 +621,17 @@ public class GraphPanel extends GraphCanvas {
 					plottedXuptime[x-this.sideBorder] = (long) graphData[j][PayloadStore.UPTIME_COL][i];
 
 					
-					// draw the sun if requested by user
-					long up = (long) graphData[j][PayloadStore.UPTIME_COL][i];
-					int res = (int) graphData[j][PayloadStore.RESETS_COL][i];
+					// draw the sun if requested by user.  The position is only calculated if we need it
 					SatPos pos = null;
-					try {
-						 pos = this.fox.getSatellitePosition(res, up);
-					} catch (PositionCalcException e) {
-						// Ignore, we just don't plot it
-						pos = null;
+					if (graphFrame.showSun) {
+						long up = (long) graphData[j][PayloadStore.UPTIME_COL][i];
+						int res = (int) graphData[j][PayloadStore.RESETS_COL][i];
+						try {
+							 pos = this.fox.getSatellitePosition(res, up);
+						} catch (PositionCalcException e) {
+							// Ignore, we just don't plot it
+							pos = null;
+						}
 					}
 					
 					x2 = (x + lastx)/2; // position for the first deriv
@@ -653,6 +702,19 @@ public class GraphPanel extends GraphCanvas {
 						g2.setColor(graphColor[j+colorIdx]);
 						if (!graphFrame.hideLines) g2.drawLine(lastx, lasty, x, y);
 						if (!graphFrame.hidePoints) g2.draw(new Ellipse2D.Double(x-1, y-1, 2,2));
+						if (envelope != null && !graphFrame.hideLines) {
+							envelope.getRange(i, Math.min(i+stepSize, end), range);
+							double offset = 0;
+							if (graphType == BitArrayLayout.CONVERT_ANTENNA || graphType == BitArrayLayout.CONVERT_STATUS_BIT 
+									|| graphType == BitArrayLayout.CONVERT_BOOLEAN  || graphType == BitArrayLayout.CONVERT_VULCAN_STATUS ) 
+								offset = 1;
+							else if (graphType == BitArrayLayout.CONVERT_FREQ)
+								offset = -freqOffset;
+							int ymin = graphHeight - getRatioPosition(minValue, maxValue, range[0]+offset, graphHeight) + topBorder;
+							int ymax = graphHeight - getRatioPosition(minValue, maxValue, range[1]+offset, graphHeight) + topBorder;
+							if (ymin != ymax)
+								g2.drawLine(x, ymin, x, ymax);
+						}
 					}
 
 					if (graphFrame.plotDerivative && plotDsp && j==0) {
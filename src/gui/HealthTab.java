@@ -30,6 +30,7 @@ import telemetry.LayoutLoadException;
 import telemetry.PayloadMaxValues;
 import telemetry.PayloadMinValues;
 import telemetry.PayloadRtValues;
+import telemetry.UpdateBus;
 
 import java.awt.Dimension;
 
@@ -515,6 +516,7 @@ public abstract class HealthTab extends ModuleTab implements MouseListener, Item
 			} else {
 				Config.displayRawValues = true;
 			}
+			UpdateBus.publishAll(); // the other tabs show the same option
 //			Config.save();
 			if (realTime != null)
 				updateTabRT(realTime, false);
@@ -99,9 +99,10 @@ public class HealthTabRt extends HealthTab {
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.MAX_LAYOUT, Spacecraft.MIN_LAYOUT, Spacecraft.REAL_TIME_LAYOUT);
 		while(running) {
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: HealthTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -157,6 +158,7 @@ public class HealthTabRt extends HealthTab {
 			}
 			//System.out.println("Health tab running: " + running);
 		}
+		unsubscribe();
 		done = true;
 	}
 
@@ -28,6 +28,7 @@ import telemetry.FramePart;
 import telemetry.HerciHighspeedHeader;
 import telemetry.LayoutLoadException;
 import telemetry.PayloadHERCIhighSpeed;
+import telemetry.UpdateBus;
 import common.Config;
 import common.Log;
 import common.Spacecraft;
@@ -335,10 +336,11 @@ public class HerciHSTab extends ExperimentTab implements Runnable, ItemListener,
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.HERCI_HS_LAYOUT);
 		while(running) {
 
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: HERCI thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -373,6 +375,7 @@ public class HerciHSTab extends ExperimentTab implements Runnable, ItemListener,
 				}
 			}
 		}
+		unsubscribe();
 		done = true;
 	}
 
@@ -387,6 +390,7 @@ public class HerciHSTab extends ExperimentTab implements Runnable, ItemListener,
 			} else {
 				Config.displayRawValues = true;
 			}
+			UpdateBus.publishAll(); // the other tabs show the same option
 
 			if (hsHeader != null) {
 				updateTab(hsHeader, false);
@@ -29,6 +29,7 @@ import telemetry.FoxFramePart;
 import telemetry.FramePart;
 import telemetry.LayoutLoadException;
 import telemetry.RadiationTelemetry;
+import telemetry.UpdateBus;
 import common.Config;
 import common.Log;
 import common.Spacecraft;
@@ -310,10 +311,11 @@ public class HerciLSTab extends ExperimentTab implements ItemListener, Runnable,
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.RAD_LAYOUT);
 		while(running) {
 			
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: HealthTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -347,6 +349,7 @@ public class HerciLSTab extends ExperimentTab implements ItemListener, Runnable,
 				
 			}
 		}
+		unsubscribe();
 		done = true;
 	}
 
@@ -362,6 +365,7 @@ public class HerciLSTab extends ExperimentTab implements ItemListener, Runnable,
 			} else {
 				Config.displayRawValues = true;
 			}
+			UpdateBus.publishAll(); // the other tabs show the same option
 
 			updateTab(Config.payloadStore.getLatestRadTelem(foxId), true);
 			
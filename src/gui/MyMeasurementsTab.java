@@ -18,6 +18,7 @@ import common.Config;
 import common.Log;
 import common.Spacecraft;
 import common.FoxSpacecraft;
+import telemetry.UpdateBus;
 
 /**
  * 
@@ -143,9 +144,10 @@ ItemListener {
 		done = false;
 		boolean justStarted = true;
 
+		subscribe(sat.foxId, UpdateBus.MEASUREMENT, UpdateBus.PASS_MEASUREMENT);
 		while (running) {
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: Measurement thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -211,6 +213,7 @@ ItemListener {
 				justStarted = false;
 			}
 		}
+		unsubscribe();
 		done = true;
 	}
 
@@ -10,7 +10,6 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import common.Config;
-import common.Log;
 import decoder.FoxDecoder;
 import decoder.FoxBPSK.FoxBPSKCostasDecoder;
 import decoder.FoxBPSK.FoxBPSKDotProdDecoder;
@@ -47,8 +46,7 @@ import gui.GraphCanvas;
  *
  */
 @SuppressWarnings("serial")
-public class PhasorPanel extends JPanel implements Runnable {
-	boolean done = false;
+public class PhasorPanel extends JPanel implements FrameScheduler.Animated {
 	boolean running = true;
 	Decoder decoder;
 	int zeroValue;
@@ -84,36 +82,30 @@ public class PhasorPanel extends JPanel implements Runnable {
                 Short.MAX_VALUE));
 	}
 	
+	public int getFrameRate() { return 50; } // approx 1/50 sec refresh
+	public boolean isRunning() { return running; }
+
+	/**
+	 * Called by the FrameScheduler.  Copy the latest phasor data and repaint
+	 */
 	@Override
-	public void run() {
-		Thread.currentThread().setName("PhasorPanel");
-		done = false;
-		running = true;
-		Log.println("STARTING PHASOR PANEL THREAD");
-		while(running) {
-			try {
-				Thread.sleep(1000/50); // approx 1/50 sec refresh
-			} catch (InterruptedException e) {
-				Log.println("ERROR: Phasor Diagram thread interrupted");
-			} 
-
-			if (decoder != null) {
-				// We get the eye data, which is a copy of the bucket data
-
-				if (decoder instanceof FoxBPSKCostasDecoder)
-					phasorData = ((FoxBPSKCostasDecoder)decoder).getPhasorData();
-				else
-					phasorData = ((FoxBPSKDotProdDecoder)decoder).getPhasorData();
-				EyeData eyeData = decoder.getEyeData();
-				//				zeroValue = decoder.getZeroValue();
-				if (eyeData != null) {
-					errors = eyeData.lastErrorsCount;
-					erasures = eyeData.lastErasureCount;
-				}
+	public void nextFrame(boolean showing) {
+		if (!showing) return; // the phasor is hidden unless we are decoding BPSK
+		if (decoder != null) {
+			// We get the eye data, which is a copy of the bucket data
+
+			if (decoder instanceof FoxBPSKCostasDecoder)
+				phasorData = ((FoxBPSKCostasDecoder)decoder).getPhasorData();
+			else
+				phasorData = ((FoxBPSKDotProdDecoder)decoder).getPhasorData();
+			EyeData eyeData = decoder.getEyeData();
+			//				zeroValue = decoder.getZeroValue();
+			if (eyeData != null) {
+				errors = eyeData.lastErrorsCount;
+				erasures = eyeData.lastErasureCount;
 			}
-			this.repaint();
 		}
-		Log.println("ENDING PHASOR PANEL THREAD");
+		this.repaint();
 	}
 
 	public void updateFont() {
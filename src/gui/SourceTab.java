@@ -106,11 +106,6 @@ import javax.swing.event.PopupMenuEvent;
  */
 @SuppressWarnings("serial")
 public class SourceTab extends JPanel implements Runnable, ItemListener, ActionListener, PropertyChangeListener, FocusListener, MouseListener {
-	Thread audioGraphThread;
-	Thread eyePanelThread;
-	Thread phasorPanelThread;
-	
-	Thread fftPanelThread;
 	Thread decoder1Thread;
 	Thread decoder2Thread;
 	AudioGraphPanel audioGraph;
@@ -417,10 +412,7 @@ public class SourceTab extends JPanel implements Runnable, ItemListener, ActionL
 		audioGraph.setBackground(Color.LIGHT_GRAY);
 		//audioGraph.setPreferredSize(new Dimension(800, 250));
 		
-		if (audioGraphThread != null) { audioGraph.stopProcessing(); }		
-		audioGraphThread = new Thread(audioGraph);
-		audioGraphThread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
-		audioGraphThread.start();
+		FrameScheduler.schedule(audioGraph);
 
 		JPanel eyePhasorPanel = new JPanel();
 		eyePhasorPanel.setLayout(new BorderLayout());
@@ -1804,18 +1796,10 @@ public class SourceTab extends JPanel implements Runnable, ItemListener, ActionL
 						decoder1Thread.start();
 						//if (audioGraphThread != null) audioGraph.stopProcessing();
 						audioGraph.startProcessing(decoder1);
-						if (eyePanelThread == null) {	
-							eyePanelThread = new Thread(eyePanel);
-							eyePanelThread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
-							eyePanelThread.start();
-						}
+						FrameScheduler.schedule(eyePanel);
 						eyePanel.startProcessing(decoder1);
 						if (decoder1 instanceof FoxBPSKDotProdDecoder || decoder1 instanceof FoxBPSKCostasDecoder) {
-							if (phasorPanelThread == null) {	
-								phasorPanelThread = new Thread(phasorPanel);
-								phasorPanelThread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
-								phasorPanelThread.start();
-							}
+							FrameScheduler.schedule(phasorPanel);
 							phasorPanel.startProcessing(decoder1);
 							phasorPanel.setVisible(true);
 						} else {
@@ -1824,11 +1808,7 @@ public class SourceTab extends JPanel implements Runnable, ItemListener, ActionL
 						enableSourceSelectionComponents(false);
 						
 						if (iqSource1 != null) {
-							if (fftPanelThread == null) { 		
-								fftPanelThread = new Thread(fftPanel);
-								fftPanelThread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
-								fftPanelThread.start();
-							}
+							FrameScheduler.schedule(fftPanel);
 							fftPanel.startProcessing(iqSource1);
 						}	
 					} catch (IllegalThreadStateException e2) {
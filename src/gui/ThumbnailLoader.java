@@ -0,0 +1,173 @@
+package gui;
+
+import java.awt.Component;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import common.Log;
+import telemetry.CameraJpeg;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Loads the camera thumbnails on a background thread and keeps the most recently used ones in memory.  The CameraTab
+ * used to read every thumbnail from disk each time a picture line arrived, and each CameraJpeg held its thumbnail
+ * for as long as the program ran.
+ *
+ * A thumbnail is asked for when it is painted, so only the ones that are scrolled into view are loaded.  If it is
+ * not in the cache then null is returned, the load is queued and the component is repainted when it is ready.  The
+ * newest request is loaded first, so after a fast scroll the thumbnails on the screen are loaded before the ones that
+ * were passed on the way.
+ *
+ * Each cache entry remembers the length of the JPEG when it was loaded.  Lines are appended to the JPEG as they are
+ * received, so when the length changes the entry is dropped and the thumbnail is made again.
+ *
+ */
+public class ThumbnailLoader implements Runnable {
+	public static final int CACHE_SIZE = 200; // thumbnails held in memory, about 30k each
+	public static final int MAX_QUEUE = 100; // older requests are dropped, they will be asked for again if still on the screen
+
+	static class Thumb {
+		final BufferedImage image;
+		final long length; // length of the JPEG when the thumbnail was loaded
+
+		Thumb(BufferedImage image, long length) {
+			this.image = image;
+			this.length = length;
+		}
+	}
+
+	static class Request {
+		final CameraJpeg jpeg;
+		final int sizeX;
+		final Component target;
+
+		Request(CameraJpeg jpeg, int sizeX, Component target) {
+			this.jpeg = jpeg;
+			this.sizeX = sizeX;
+			this.target = target;
+		}
+	}
+
+	// Access ordered, so the eldest entry is the least recently painted
+	@SuppressWarnings("serial")
+	private static LinkedHashMap<String, Thumb> cache = new LinkedHashMap<String, Thumb>(CACHE_SIZE, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, Thumb> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	private static LinkedList<Request> queue = new LinkedList<Request>();
+	private static Thread thread;
+
+	/**
+	 * Return the thumbnail if it is in memory.  Otherwise queue it to be loaded and repaint the target when it is ready.
+	 * Called from paint, so it never reads from disk.
+	 * @param jpeg
+	 * @param sizeX
+	 * @param target - repainted when the thumbnail has been loaded
+	 * @return the thumbnail or null
+	 */
+	public static BufferedImage getThumbnail(CameraJpeg jpeg, int sizeX, Component target) {
+		String key = jpeg.getFileName();
+		synchronized (cache) {
+			Thumb t = cache.get(key);
+			if (t != null) return t.image;
+		}
+		synchronized (queue) {
+			for (Iterator<Request> it = queue.iterator(); it.hasNext(); )
+				if (it.next().target == target)
+					it.remove();
+			queue.addFirst(new Request(jpeg, sizeX, target));
+			while (queue.size() > MAX_QUEUE)
+				queue.removeLast();
+			if (thread == null) {
+				thread = new Thread(new ThumbnailLoader());
+				thread.setName("ThumbnailLoader");
+				thread.setDaemon(true);
+				thread.setUncaughtExceptionHandler(Log.uncaughtExHandler);
+				thread.start();
+			}
+			queue.notifyAll();
+		}
+		return null;
+	}
+
+	/**
+	 * Drop the thumbnails for JPEGs that have changed on disk since they were loaded.  Called when the camera data is
+	 * updated, not from the GUI thread, as it checks the length of each file in the cache.
+	 */
+	public static void removeChanged() {
+		String[] keys;
+		long[] lengths;
+		synchronized (cache) {
+			keys = new String[cache.size()];
+			lengths = new long[cache.size()];
+			int i = 0;
+			for (Map.Entry<String, Thumb> e : cache.entrySet()) {
+				keys[i] = e.getKey();
+				lengths[i++] = e.getValue().length;
+			}
+		}
+		for (int i=0; i < keys.length; i++) {
+			if (new File(keys[i]).length() != lengths[i])
+				synchronized (cache) {
+					cache.remove(keys[i]);
+				}
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			Request r;
+			synchronized (queue) {
+				while (queue.isEmpty())
+					try {
+						queue.wait();
+					} catch (InterruptedException e) {
+						// nothing to do, check the queue again
+					}
+				r = queue.removeFirst();
+			}
+			String key = r.jpeg.getFileName();
+			boolean loaded;
+			synchronized (cache) {
+				loaded = cache.containsKey(key); // another thumb for the same JPEG asked first
+			}
+			if (!loaded) {
+				// Take the length first, so if a line is added while we read then the entry is dropped next time
+				long length = new File(key).length();
+				BufferedImage image = null;
+				try {
+					image = r.jpeg.getThumbnail(r.sizeX);
+				} catch (IOException e) {
+					Log.println("ERROR: Could not load thumbnail for " + key + ": " + e.getMessage());
+				}
+				if (image == null) continue; // the thumb stays blank, as it did when the image could not be read
+				synchronized (cache) {
+					cache.put(key, new Thumb(image, length));
+				}
+			}
+			r.target.repaint();
+		}
+	}
+}
@@ -30,6 +30,7 @@ import telemetry.FramePart;
 import telemetry.LayoutLoadException;
 import telemetry.PayloadUwExperiment;
 import telemetry.uw.CanPacket;
+import telemetry.UpdateBus;
 import common.Config;
 import common.Log;
 import common.Spacecraft;
@@ -354,10 +355,11 @@ public class UwExperimentTab extends ExperimentTab implements ItemListener, Runn
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.RAD_LAYOUT);
 		while(running) {
 			
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: HealthTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -392,6 +394,7 @@ public class UwExperimentTab extends ExperimentTab implements ItemListener, Runn
 				
 			}
 		}
+		unsubscribe();
 		done = true;
 	}
 
@@ -407,6 +410,7 @@ public class UwExperimentTab extends ExperimentTab implements ItemListener, Runn
 			} else {
 				Config.displayRawValues = true;
 			}
+			UpdateBus.publishAll(); // the other tabs show the same option
 
 			updateTab(Config.payloadStore.getLatestRad(foxId), true);  // we don't have RAD2 conversion for the Experiment Payloads so just get RAD.
 			
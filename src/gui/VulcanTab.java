@@ -35,6 +35,7 @@ import telemetry.FramePart;
 import telemetry.LayoutLoadException;
 import telemetry.RadiationPacket;
 import telemetry.RadiationTelemetry;
+import telemetry.UpdateBus;
 import common.Config;
 import common.Log;
 import common.Spacecraft;
@@ -581,10 +582,11 @@ public class VulcanTab extends ExperimentTab implements ItemListener, Runnable,
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.RAD_LAYOUT);
 		while(running) {
 			
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: HealthTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -613,6 +615,7 @@ public class VulcanTab extends ExperimentTab implements ItemListener, Runnable,
 					}
 			}
 		}
+		unsubscribe();
 		done = true;
 	}
 
@@ -628,6 +631,7 @@ public class VulcanTab extends ExperimentTab implements ItemListener, Runnable,
 			} else {
 				Config.displayRawValues = true;
 			}
+			UpdateBus.publishAll(); // the other tabs show the same option
 
 			updateTab(Config.payloadStore.getLatestRadTelem(foxId), true);
 			
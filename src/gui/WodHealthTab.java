@@ -107,9 +107,10 @@ public class WodHealthTab extends HealthTab {
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.WOD_LAYOUT);
 		while(running) {
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: WodHealthTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -146,6 +147,7 @@ public class WodHealthTab extends HealthTab {
 			}
 			//System.out.println("Health tab running: " + running);
 		}
+		unsubscribe();
 		done = true;
 	}
 
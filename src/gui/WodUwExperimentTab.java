@@ -66,10 +66,11 @@ public class WodUwExperimentTab extends UwExperimentTab {
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.WOD_RAD_LAYOUT);
 		while(running) {
 			
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: HealthTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -92,6 +93,7 @@ public class WodUwExperimentTab extends UwExperimentTab {
 					}
 			}
 		}
+		unsubscribe();
 		done = true;
 	}
 }
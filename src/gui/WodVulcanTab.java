@@ -74,10 +74,11 @@ public class WodVulcanTab extends VulcanTab {
 		running = true;
 		done = false;
 		boolean justStarted = true;
+		subscribe(foxId, Spacecraft.WOD_RAD_LAYOUT);
 		while(running) {
 			
 			try {
-				Thread.sleep(500); // refresh data once a second
+				waitForUpdate(); // refresh when new data is stored
 			} catch (InterruptedException e) {
 				Log.println("ERROR: HealthTab thread interrupted");
 				e.printStackTrace(Log.getWriter());
@@ -99,6 +100,7 @@ public class WodVulcanTab extends VulcanTab {
 					}
 			}
 		}
+		unsubscribe();
 		done = true;
 	}
 }
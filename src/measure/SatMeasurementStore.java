@@ -1,7 +1,5 @@
 package measure;
 
-import gui.MainWindow;
-
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -13,10 +11,9 @@ import java.io.Writer;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
-import javax.swing.JOptionPane;
-
 import telemetry.PayloadStore;
 import telemetry.SatPayloadTable;
+import telemetry.UpdateBus;
 import common.Config;
 import common.Log;
 import common.Spacecraft;
@@ -90,10 +87,7 @@ public class SatMeasurementStore {
 				try {
 					convertPassMeasures();
 				} catch (IOException e) {
-					JOptionPane.showMessageDialog(MainWindow.frame,
-							e.toString(),
-							"ERROR converting old pass measurements",
-							JOptionPane.ERROR_MESSAGE) ;
+					Log.errorDialog("ERROR converting old pass measurements", e.toString());
 					e.printStackTrace(Log.getWriter());
 				}
 			} else {
@@ -103,10 +97,7 @@ public class SatMeasurementStore {
 			load(rtFileName, false);
 			
 		} catch (FileNotFoundException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"ERROR Loading Stored Payload data",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("ERROR Loading Stored Payload data", e.toString());
 			e.printStackTrace(Log.getWriter());
 		}
 	}
@@ -120,14 +111,18 @@ public class SatMeasurementStore {
 	public boolean getUpdatedMeasurement() { return updatedRt; }
 	public void setUpdatedMeasurement(boolean u) {
 		updatedRt = u;
+		if (u)
+			UpdateBus.publish(foxId, UpdateBus.MEASUREMENT);
 	}
 	public boolean getUpdatedPassMeasurement() { return updatedPass; }
 	public void setUpdatedPassMeasurement(boolean u) {
 		updatedPass = u;
+		if (u)
+			UpdateBus.publish(foxId, UpdateBus.PASS_MEASUREMENT);
 	}
 	public void setUpdatedAll() {
-		updatedRt = true;
-		updatedPass = true;
+		setUpdatedMeasurement(true);
+		setUpdatedPassMeasurement(true);
 	}
 
 	/**
@@ -146,7 +141,7 @@ public class SatMeasurementStore {
 				e.printStackTrace(Log.getWriter());
 			}
 			rtRecords.add(m);
-			updatedRt = true;
+			setUpdatedMeasurement(true);
 			return true;
 		} else if (m instanceof PassMeasurement) {
 			try {
@@ -156,7 +151,7 @@ public class SatMeasurementStore {
 				e.printStackTrace(Log.getWriter());
 			}
 			passRecords.add(m);
-			updatedPass = true;
+			setUpdatedPassMeasurement(true);
 			return true;	
 		}
 		return false;
@@ -257,10 +252,7 @@ public class SatMeasurementStore {
 			try {
 				aFile.createNewFile();
 			} catch (IOException e) {
-				JOptionPane.showMessageDialog(MainWindow.frame,
-						e.toString(),
-						"ERROR creating file " + log,
-						JOptionPane.ERROR_MESSAGE) ;
+				Log.errorDialog("ERROR creating file " + log, e.toString());
 				e.printStackTrace(Log.getWriter());
 			}
 		}
@@ -287,7 +279,7 @@ public class SatMeasurementStore {
         			if (type == RT_MEASUREMENT_TYPE || type == 1) {  // 1 is the legacy type
         				RtMeasurement rt = new RtMeasurement(id, date, reset, uptime, RT_MEASUREMENT_TYPE, st);
         				rtRecords.add(rt);
-        				updatedRt = true;
+        				setUpdatedMeasurement(true);
         			}
         			if (type == PASS_MEASUREMENT_TYPE || type == 2) {  // 2 is the legacy type
         				PassMeasurement rt = null;
@@ -298,7 +290,7 @@ public class SatMeasurementStore {
         					rt = new PassMeasurement(id, date, reset, uptime, PASS_MEASUREMENT_TYPE, st);
         				}
         				passRecords.add(rt);
-        				updatedPass = true;
+        				setUpdatedPassMeasurement(true);
         			}
         		}
         	}
@@ -377,10 +369,7 @@ public class SatMeasurementStore {
 				initArrays();
 				setUpdatedAll();
 			} catch (IOException ex) {
-				JOptionPane.showMessageDialog(MainWindow.frame,
-						ex.toString(),
-						"Error Deleting Measurement Files for FoxId:"+foxId+", check permissions",
-						JOptionPane.ERROR_MESSAGE) ;
+				Log.errorDialog("Error Deleting Measurement Files for FoxId:"+foxId+", check permissions", ex.toString());
 			}
 
 	}
@@ -405,10 +394,7 @@ public class SatMeasurementStore {
 	        		throw new IOException("Could not delete file " + file.getName() + " Check the file system and remove it manually.");
 	        	}
 		} catch (Exception ex) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					ex.toString(),
-					"Error Deleting File",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("Error Deleting File", ex.toString());
 		}
 	}
 
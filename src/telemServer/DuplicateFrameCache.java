@@ -0,0 +1,153 @@
+package telemServer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * FOX 1 Telemetry Server
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Remembers the frames that were added to the database in the last few minutes.  Many ground stations
+ * receive the same pass, so the same frame usually arrives several times within seconds of the first copy.
+ * Each copy still needs its STP header row, because that records who received it, but the payloads are
+ * already in the database and inserting them again only ends in ERR_DUPLICATE.
+ *
+ * A frame is identified by the spacecraft, reset, uptime and type, as in the STP header table, and a hash of
+ * the decoded bytes.
+ * The hash means a copy with different bytes, e.g. a corrupt frame that happened to pass the RS decode, is
+ * not suppressed and the database still decides if it is a duplicate.
+ *
+ * Entries are held in insertion order, so expired entries are always at the head of the map.
+ *
+ */
+public class DuplicateFrameCache {
+	public static final int MAX_ENTRIES = 100000;
+
+	static final Metrics.Counter hits = Metrics.counter("foxserver_duplicate_frames_total{result=\"hit\"}", "STP files checked against the duplicate frame cache");
+	static final Metrics.Counter misses = Metrics.counter("foxserver_duplicate_frames_total{result=\"miss\"}", "STP files checked against the duplicate frame cache");
+
+	private static LinkedHashMap<Key, Long> frames = new LinkedHashMap<Key, Long>(1024, 0.75f, false) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	static class Key {
+		final int id;
+		final int resets;
+		final long uptime;
+		final int type;
+		final long hash;
+
+		Key(int id, int resets, long uptime, int type, long hash) {
+			this.id = id;
+			this.resets = resets;
+			this.uptime = uptime;
+			this.type = type;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return id == k.id && resets == k.resets && uptime == k.uptime && type == k.type && hash == k.hash;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = hash;
+			h = 31*h + uptime;
+			h = 31*h + type;
+			h = 31*h + resets;
+			h = 31*h + id;
+			return (int)(h ^ (h >>> 32));
+		}
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the frame bytes
+	 * @param b
+	 * @return
+	 */
+	public static long hash(byte[] b) {
+		long h = 0xcbf29ce484222325L;
+		for (int i=0; i < b.length; i++) {
+			h ^= (b[i] & 0xff);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Return true if this frame was added to the database within the last ServerConfig.duplicateFrameSeconds.
+	 * The hit rate is counted here, so call this once per STP file.
+	 */
+	public static boolean isDuplicate(int id, int resets, long uptime, int type, long hash) {
+		if (ServerConfig.duplicateFrameSeconds <= 0) return false;
+		Key key = new Key(id, resets, uptime, type, hash);
+		long now = System.currentTimeMillis();
+		synchronized (frames) {
+			expire(now);
+			if (frames.containsKey(key)) {
+				hits.inc();
+				return true;
+			}
+		}
+		misses.inc();
+		return false;
+	}
+
+	/**
+	 * Record a frame once all of its payloads are in the database.  We only add it after a successful insert,
+	 * otherwise a copy that failed would cause the next copy to be suppressed too.
+	 */
+	public static void add(int id, int resets, long uptime, int type, long hash) {
+		if (ServerConfig.duplicateFrameSeconds <= 0) return;
+		Key key = new Key(id, resets, uptime, type, hash);
+		synchronized (frames) {
+			frames.remove(key); // so that it moves to the tail with the new time
+			frames.put(key, System.currentTimeMillis());
+		}
+	}
+
+	private static void expire(long now) {
+		long oldest = now - ServerConfig.duplicateFrameSeconds * 1000L;
+		Iterator<Long> it = frames.values().iterator();
+		while (it.hasNext()) {
+			if (it.next() >= oldest) break;
+			it.remove();
+		}
+	}
+
+	public static int size() {
+		synchronized (frames) {
+			return frames.size();
+		}
+	}
+
+	/**
+	 * The percentage of STP files that were found in the cache since the server started
+	 */
+	public static double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		if (total == 0) return 0;
+		return 100.0 * h / total;
+	}
+}
@@ -0,0 +1,63 @@
+package telemServer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import telemetry.FramePart;
+
+/**
+ * Holds the last rendered health page for each spacecraft.  Rendering a WebHealthTab walks every field of
+ * the RT, MAX and MIN layouts and is much more expensive than fetching the latest records, so we keep the
+ * html and only render again when one of the latest records has changed.  A new record in the database
+ * changes the reset/uptime of the latest record, which invalidates the cached page.  Frames are stored by the
+ * FoxTelemServer process, not this one, so this check on each request is how we see new data.
+ */
+public class HealthPageCache {
+	private static ConcurrentHashMap<Integer, CachedPage> pages = new ConcurrentHashMap<Integer, CachedPage>();
+
+	static class CachedPage {
+		final long[] key;
+		final String html;
+
+		CachedPage(long[] key, String html) {
+			this.key = key;
+			this.html = html;
+		}
+	}
+
+	/**
+	 * Build the cache key from the records that the page is rendered from
+	 * @param parts
+	 * @return
+	 */
+	public static long[] makeKey(FramePart ... parts) {
+		long[] key = new long[parts.length*2];
+		for (int i=0; i< parts.length; i++) {
+			if (parts[i] == null) {
+				key[2*i] = -1;
+				key[2*i+1] = -1;
+			} else {
+				key[2*i] = parts[i].getResets();
+				key[2*i+1] = parts[i].getUptime();
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Return the cached page for this spacecraft if it was rendered from the same records, otherwise null
+	 * @param id
+	 * @param key
+	 * @return
+	 */
+	public static String get(int id, long[] key) {
+		CachedPage page = pages.get(id);
+		if (page == null) return null;
+		if (!Arrays.equals(page.key, key)) return null;
+		return page.html;
+	}
+
+	public static void put(int id, long[] key, String html) {
+		pages.put(id, new CachedPage(key, html));
+	}
+}
@@ -10,6 +10,8 @@ public class ImageProcess implements Runnable {
 	PayloadDbStore payloadStore;
 	boolean running = true;
 	private static final int SLEEP_PERIOD = 5000; // 5 seconds
+	static final Metrics.Histogram imageTime = Metrics.histogram("foxserver_image_process_seconds", "Time to assemble the new image lines into jpegs");
+	static final Metrics.Counter imageErrors = Metrics.counter("foxserver_image_process_errors_total", "Errors assembling images");
 	
 	public ImageProcess(PayloadDbStore db) {
 		payloadStore = db;
@@ -20,15 +22,19 @@ public class ImageProcess implements Runnable {
 		
 		while (running) {
 			//Get a list of images which have updated lines, then load the image data from the database and save each image to disk as a Jpeg
+			long start = System.nanoTime();
 			try {
 				payloadStore.processNewImageLines();
 			} catch (SQLException e) {
+				imageErrors.inc();
 				Log.println("ERROR ALERT:" + e.getMessage());
 				e.printStackTrace(Log.getWriter());
 			} catch (IOException e) {
+				imageErrors.inc();
 				Log.println("ERROR ALERT:" + e.getMessage());
 				e.printStackTrace(Log.getWriter());
 			}
+			imageTime.observeSince(start);
 			try {
 				Thread.sleep(SLEEP_PERIOD);
 			} catch (InterruptedException e) {
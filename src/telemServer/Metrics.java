@@ -0,0 +1,186 @@
+package telemServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * FOX 1 Telemetry Server
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * A registry of counters, gauges and histograms for the server.  The metrics are created once, held in
+ * static fields by the class that updates them, and updated with a single atomic operation so they can be
+ * used on the ingest path.  MetricsServer renders them in the Prometheus text exposition format.
+ *
+ * Labels are passed as part of the name, e.g. foxserver_stp_files_total{result="processed"}, so each label
+ * combination is its own metric.
+ *
+ */
+public class Metrics {
+	static ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+	static ConcurrentHashMap<String, String> help = new ConcurrentHashMap<String, String>();
+
+	// Default latency buckets in seconds, from 1ms to 10s
+	public static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+	public static abstract class Metric {
+		final String name;
+		Metric(String name) { this.name = name; }
+		abstract String type();
+		abstract void write(StringBuilder s);
+	}
+
+	public static class Counter extends Metric {
+		final AtomicLong count = new AtomicLong();
+		Counter(String name) { super(name); }
+		public void inc() { count.incrementAndGet(); }
+		public void inc(long n) { count.addAndGet(n); }
+		public long get() { return count.get(); }
+		String type() { return "counter"; }
+		void write(StringBuilder s) { s.append(name).append(' ').append(count.get()).append('\n'); }
+	}
+
+	/**
+	 * A value that is read when the metrics are scraped, such as a queue depth
+	 */
+	public static abstract class Gauge extends Metric {
+		public Gauge(String name) { super(name); }
+		public abstract double value();
+		String type() { return "gauge"; }
+		void write(StringBuilder s) { s.append(name).append(' ').append(value()).append('\n'); }
+	}
+
+	public static class Histogram extends Metric {
+		final double[] bounds;
+		final AtomicLongArray buckets;
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong sumNanos = new AtomicLong();
+
+		Histogram(String name, double[] bounds) {
+			super(name);
+			this.bounds = bounds;
+			buckets = new AtomicLongArray(bounds.length);
+		}
+
+		/**
+		 * Record a duration measured with System.nanoTime()
+		 * @param nanos
+		 */
+		public void observeNanos(long nanos) {
+			double secs = nanos / 1E9;
+			for (int i=0; i < bounds.length; i++)
+				if (secs <= bounds[i]) {
+					buckets.incrementAndGet(i);
+					break;
+				}
+			count.incrementAndGet();
+			sumNanos.addAndGet(nanos);
+		}
+
+		/**
+		 * Record the time since start, where start was from System.nanoTime()
+		 */
+		public void observeSince(long start) {
+			observeNanos(System.nanoTime() - start);
+		}
+
+		public long getCount() { return count.get(); }
+		String type() { return "histogram"; }
+
+		void write(StringBuilder s) {
+			// Split out any labels so that we can add the le label to them
+			String base = name;
+			String labels = "";
+			int brace = name.indexOf('{');
+			if (brace > 0) {
+				base = name.substring(0, brace);
+				labels = name.substring(brace+1, name.length()-1) + ",";
+			}
+			long cumulative = 0;
+			for (int i=0; i < bounds.length; i++) {
+				cumulative += buckets.get(i);
+				s.append(base).append("_bucket{").append(labels).append("le=\"").append(bounds[i]).append("\"} ").append(cumulative).append('\n');
+			}
+			long n = count.get();
+			s.append(base).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(n).append('\n');
+			String suffix = brace > 0 ? name.substring(brace) : "";
+			s.append(base).append("_sum").append(suffix).append(' ').append(sumNanos.get() / 1E9).append('\n');
+			s.append(base).append("_count").append(suffix).append(' ').append(n).append('\n');
+		}
+	}
+
+	static String baseName(String name) {
+		int brace = name.indexOf('{');
+		if (brace > 0) return name.substring(0, brace);
+		return name;
+	}
+
+	public static Counter counter(String name, String description) {
+		Metric m = metrics.get(name);
+		if (m == null) {
+			help.putIfAbsent(baseName(name), description);
+			m = metrics.putIfAbsent(name, new Counter(name));
+			if (m == null) m = metrics.get(name);
+		}
+		return (Counter)m;
+	}
+
+	public static Histogram histogram(String name, String description) {
+		return histogram(name, description, LATENCY_BUCKETS);
+	}
+
+	public static Histogram histogram(String name, String description, double[] bounds) {
+		Metric m = metrics.get(name);
+		if (m == null) {
+			help.putIfAbsent(baseName(name), description);
+			m = metrics.putIfAbsent(name, new Histogram(name, bounds));
+			if (m == null) m = metrics.get(name);
+		}
+		return (Histogram)m;
+	}
+
+	/**
+	 * Register a gauge.  A gauge registered again with the same name replaces the previous one.
+	 */
+	public static void register(Gauge g, String description) {
+		help.putIfAbsent(baseName(g.name), description);
+		metrics.put(g.name, g);
+	}
+
+	/**
+	 * Render all of the metrics in the Prometheus text exposition format, version 0.0.4
+	 * @return
+	 */
+	public static String toText() {
+		ArrayList<String> names = new ArrayList<String>(metrics.keySet());
+		Collections.sort(names);
+		StringBuilder s = new StringBuilder();
+		String lastBase = "";
+		for (String name : names) {
+			Metric m = metrics.get(name);
+			String base = baseName(name);
+			if (!base.equals(lastBase)) {
+				s.append("# HELP ").append(base).append(' ').append(help.get(base)).append('\n');
+				s.append("# TYPE ").append(base).append(' ').append(m.type()).append('\n');
+				lastBase = base;
+			}
+			m.write(s);
+		}
+		return s.toString();
+	}
+}
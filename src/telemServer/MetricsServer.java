@@ -0,0 +1,70 @@
+package telemServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+import common.Log;
+
+/**
+ * Serves the server Metrics over HTTP on the loopback interface, so they can be scraped by a local
+ * Prometheus or read with curl.  Requests are handled one at a time on this thread because a scrape
+ * only takes a few ms and we do not want the metrics to compete with the ingest threads.
+ */
+public class MetricsServer implements Runnable {
+	int port;
+	boolean running = true;
+	ServerSocket serverSocket;
+
+	public MetricsServer(int port) {
+		this.port = port;
+	}
+
+	public void stop() {
+		running = false;
+		try { if (serverSocket != null) serverSocket.close(); } catch (IOException e) { /* ignore */ }
+	}
+
+	@Override
+	public void run() {
+		try {
+			serverSocket = new ServerSocket(port, 10, InetAddress.getByName("127.0.0.1"));
+		} catch (IOException e) {
+			Log.println("ERROR: Could not start the metrics server on port: " + port + " " + e.getMessage());
+			return;
+		}
+		Log.println("Metrics available at http://127.0.0.1:" + port + "/metrics");
+		while (running) {
+			Socket socket = null;
+			try {
+				socket = serverSocket.accept();
+				socket.setSoTimeout(5000);
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+				String line = in.readLine();
+				while (line != null && !line.equals("")) {
+					line = in.readLine(); // ignore the rest of the header
+				}
+				byte[] body = Metrics.toText().getBytes(Charset.forName("UTF-8"));
+				String headers = "HTTP/1.0 200 OK\r\n"
+						+ "Content-Type: text/plain; version=0.0.4\r\n"
+						+ "Content-Length: " + body.length + "\r\n"
+						+ "Connection: close\r\n\r\n";
+				OutputStream out = socket.getOutputStream();
+				out.write(headers.getBytes(Charset.forName("US-ASCII")));
+				out.write(body);
+				out.flush();
+			} catch (IOException e) {
+				if (running)
+					Log.println("ERROR: Metrics request failed: " + e.getMessage());
+			} finally {
+				try { if (socket != null) socket.close(); } catch (IOException e) { /* ignore */ }
+			}
+		}
+		Log.println("STOPPING: Metrics Server Exit");
+	}
+}
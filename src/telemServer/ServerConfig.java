@@ -13,6 +13,9 @@ public class ServerConfig {
 	public static final String propertiesFileName = "FoxTelemServer.properties";
 	public static boolean slowSpeedRsDecode=true;
 	public static boolean highSpeedRsDecode=true;
+	public static int metricsPort = 9108; // local port for the metrics endpoint, 0 to disable
+	public static int duplicateFrameSeconds = 300; // how long we remember frames to skip duplicate payloads, 0 to disable
+	public static String spoolDir = "spool"; // where the STP files are stored as they are received
 
 	public static void init() {
 		properties = new Properties();
@@ -21,6 +24,9 @@ public class ServerConfig {
 	public static void save() {
 		properties.setProperty("slowSpeedRsDecode", Boolean.toString(slowSpeedRsDecode));
 		properties.setProperty("highSpeedRsDecode", Boolean.toString(highSpeedRsDecode));
+		properties.setProperty("metricsPort", Integer.toString(metricsPort));
+		properties.setProperty("duplicateFrameSeconds", Integer.toString(duplicateFrameSeconds));
+		properties.setProperty("spoolDir", spoolDir);
 		store();
 	}
 
@@ -59,6 +65,10 @@ public class ServerConfig {
 		try {
 			slowSpeedRsDecode = Boolean.parseBoolean(getProperty("slowSpeedRsDecode"));
 			highSpeedRsDecode = Boolean.parseBoolean(getProperty("highSpeedRsDecode"));
+			// Added later, so older properties files will not have it
+			metricsPort = Integer.parseInt(properties.getProperty("metricsPort", Integer.toString(metricsPort)));
+			duplicateFrameSeconds = Integer.parseInt(properties.getProperty("duplicateFrameSeconds", Integer.toString(duplicateFrameSeconds)));
+			spoolDir = properties.getProperty("spoolDir", spoolDir);
 
 		} catch (NumberFormatException nf) {
 			Log.println("FATAL: Could not load properties: " + nf.getMessage());
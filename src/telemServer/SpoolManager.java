@@ -0,0 +1,272 @@
+package telemServer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.TimeZone;
+
+import common.Log;
+
+/**
+ *
+ * FOX 1 Telemetry Server
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The spool holds every STP file that the server receives.  Each upload is written to the spool before it is
+ * imported, so if the import fails or the server stops we still have the data and can process it again.
+ *
+ * Rather than one small file per upload, the spool is sharded by UTC date and hour:
+ *   spool/yyyy/MM/dd/HH.pack - the STP files appended one after the other, each preceded by its length
+ *   spool/yyyy/MM/dd/HH.idx  - one fixed size record per STP file, in the same order
+ *
+ * The pack is only ever appended to.  The index record holds the offset and length of the file in the pack,
+ * the time it was received and its status.  The status starts as NEW and is updated in place once the import
+ * has finished, which replaces the old scheme of renaming the file to .processed, .null or .ex.  Because the
+ * shard names are calculated from the time, a scan of a date range opens the index files directly and never
+ * needs to list a directory.
+ *
+ * If the index is lost it can be rebuilt from the pack, because every file in the pack is preceded by its length.
+ *
+ */
+public class SpoolManager {
+	public static final byte NEW = 0;
+	public static final byte PROCESSED = 1;
+	public static final byte NULL = 2; // test data, not an STP file, or failed the RS decode
+	public static final byte EXCEPTION = 3;
+	public static final String[] STATUS = {"NEW", "PROCESSED", "NULL", "EXCEPTION"};
+
+	public static final int ALL = 0xF;
+
+	// offset(8) length(4) received(8) sequence(4) status(1) reserved(7)
+	public static final int INDEX_RECORD_LEN = 32;
+	static final int STATUS_OFFSET = 24;
+	static final long HOUR = 60*60*1000L;
+
+	File root;
+	private DateFormat shardName = new SimpleDateFormat("yyyy" + File.separator + "MM" + File.separator + "dd" + File.separator + "HH");
+
+	// The shard we are appending to.  All writes are made while holding the lock on this object
+	private String currentShard;
+	private RandomAccessFile pack;
+	private RandomAccessFile index;
+	private int entries;
+
+	/**
+	 * An STP file in the spool
+	 */
+	public static class Entry {
+		public final String shard;
+		public final int number;
+		final long offset;
+		public final int length;
+		public final long received;
+		public final int sequence;
+		byte status;
+
+		Entry(String shard, int number, long offset, int length, long received, int sequence, byte status) {
+			this.shard = shard;
+			this.number = number;
+			this.offset = offset;
+			this.length = length;
+			this.received = received;
+			this.sequence = sequence;
+			this.status = status;
+		}
+
+		public byte getStatus() { return status; }
+
+		public String toString() {
+			return shard + "#" + number;
+		}
+	}
+
+	/**
+	 * Called for each entry found by a scan, with the bytes of the STP file
+	 */
+	public interface Visitor {
+		public void entry(Entry e, byte[] stp) throws IOException;
+	}
+
+	public SpoolManager(String dir) throws IOException {
+		root = new File(dir);
+		if (!root.isDirectory() && !root.mkdirs())
+			throw new IOException("Can not make the spool dir: " + dir);
+		shardName.setTimeZone(TimeZone.getTimeZone("UTC"));
+	}
+
+	/**
+	 * Append an STP file to the shard for the current hour.  The pack is forced to disk before the index record is
+	 * written, so a crash part way through never leaves an index record that points past the end of the pack.  The
+	 * index is forced too, so once this returns the file survives a crash of the server or of the machine.
+	 * @param stp
+	 * @param sequence - the connection number, kept to help trace a file back to the server log
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized Entry append(byte[] stp, int sequence) throws IOException {
+		long now = System.currentTimeMillis();
+		String shard = shardName.format(new Date(now));
+		if (!shard.equals(currentShard))
+			openShard(shard);
+		long offset = pack.length();
+		ByteBuffer buf = ByteBuffer.allocate(4 + stp.length);
+		buf.putInt(stp.length);
+		buf.put(stp);
+		pack.seek(offset);
+		pack.write(buf.array());
+		pack.getChannel().force(false);
+
+		ByteBuffer rec = ByteBuffer.allocate(INDEX_RECORD_LEN);
+		rec.putLong(offset + 4);
+		rec.putInt(stp.length);
+		rec.putLong(now);
+		rec.putInt(sequence);
+		rec.put(NEW);
+		index.seek((long)entries * INDEX_RECORD_LEN);
+		index.write(rec.array());
+		index.getChannel().force(false);
+		return new Entry(shard, entries++, offset + 4, stp.length, now, sequence, NEW);
+	}
+
+	private void openShard(String shard) throws IOException {
+		close();
+		File dir = new File(root, shard).getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Can not make the spool dir: " + dir.getPath());
+		pack = new RandomAccessFile(packFile(shard), "rw");
+		index = new RandomAccessFile(indexFile(shard), "rw");
+		// Ignore a partial record at the end of the index, it will be overwritten
+		entries = (int)(index.length() / INDEX_RECORD_LEN);
+		currentShard = shard;
+	}
+
+	File packFile(String shard) {
+		return new File(root, shard + ".pack");
+	}
+
+	File indexFile(String shard) {
+		return new File(root, shard + ".idx");
+	}
+
+	/**
+	 * Record the result of importing an entry
+	 * @param e
+	 * @param status
+	 */
+	public synchronized void mark(Entry e, byte status) {
+		RandomAccessFile idx = null;
+		try {
+			if (e.shard.equals(currentShard))
+				idx = index;
+			else
+				idx = new RandomAccessFile(indexFile(e.shard), "rw");
+			idx.seek((long)e.number * INDEX_RECORD_LEN + STATUS_OFFSET);
+			idx.write(status);
+			e.status = status;
+		} catch (IOException ex) {
+			// We still have the data, it just has the wrong status, so it may be processed again by a later scan
+			Log.println("ERROR: Could not mark spool entry " + e + " as " + STATUS[status] + ": " + ex.getMessage());
+		} finally {
+			if (idx != null && idx != index)
+				try { idx.close(); } catch (IOException ex) { /* ignore */ }
+		}
+	}
+
+	/**
+	 * Visit every entry received between from and to (inclusive) whose status is in the statusMask, e.g.
+	 * (1 << NEW) | (1 << EXCEPTION).  The hour shards in the range are opened by name, so the cost depends on
+	 * the range scanned, not on the size of the spool.
+	 * @param from
+	 * @param to
+	 * @param statusMask
+	 * @param visitor
+	 * @return the number of entries visited
+	 * @throws IOException
+	 */
+	public int scan(Date from, Date to, int statusMask, Visitor visitor) throws IOException {
+		DateFormat df = new SimpleDateFormat("yyyy" + File.separator + "MM" + File.separator + "dd" + File.separator + "HH");
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		int count = 0;
+		long start = from.getTime() - from.getTime() % HOUR;
+		for (long t = start; t <= to.getTime(); t += HOUR) {
+			String shard = df.format(new Date(t));
+			ArrayList<Entry> list = readIndex(shard);
+			if (list.isEmpty()) continue;
+			RandomAccessFile in = new RandomAccessFile(packFile(shard), "r");
+			try {
+				for (Entry e : list) {
+					if ((statusMask & (1 << e.status)) == 0) continue;
+					if (e.received < from.getTime() || e.received > to.getTime()) continue;
+					byte[] stp = new byte[e.length];
+					in.seek(e.offset);
+					in.readFully(stp);
+					visitor.entry(e, stp);
+					count++;
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Read the index for a shard.  Held under the lock so that we do not read a record that is half written.
+	 * @param shard
+	 * @return the entries, or an empty list if there is no shard for this hour
+	 * @throws IOException
+	 */
+	synchronized ArrayList<Entry> readIndex(String shard) throws IOException {
+		ArrayList<Entry> list = new ArrayList<Entry>();
+		File f = indexFile(shard);
+		if (!f.exists()) return list;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		try {
+			int n = (int)(f.length() / INDEX_RECORD_LEN);
+			for (int i=0; i < n; i++) {
+				long offset = in.readLong();
+				int length = in.readInt();
+				long received = in.readLong();
+				int sequence = in.readInt();
+				byte status = in.readByte();
+				in.skipBytes(INDEX_RECORD_LEN - STATUS_OFFSET - 1);
+				if (status < 0 || status >= STATUS.length) status = NEW;
+				list.add(new Entry(shard, i, offset, length, received, sequence, status));
+			}
+		} catch (EOFException e) {
+			// partial record at the end
+		} finally {
+			in.close();
+		}
+		return list;
+	}
+
+	public synchronized void close() {
+		try { if (pack != null) pack.close(); } catch (IOException e) { /* ignore */ }
+		try { if (index != null) index.close(); } catch (IOException e) { /* ignore */ }
+		pack = null;
+		index = null;
+		currentShard = null;
+	}
+}
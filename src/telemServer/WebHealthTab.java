@@ -25,6 +25,7 @@ public class WebHealthTab {
 	PayloadRtValues payloadRt;
 	PayloadMaxValues payloadMax;
 	PayloadMinValues payloadMin;
+	PayloadRadExpData payloadRad;
 
 	BitArrayLayout rtlayout;
 	BitArrayLayout maxlayout;
@@ -52,6 +53,7 @@ public class WebHealthTab {
 	public void setRtPayload(PayloadRtValues rt) {payloadRt = rt;}
 	public void setMaxPayload(PayloadMaxValues max) {payloadMax = max;}
 	public void setMinPayload(PayloadMinValues min) {payloadMin = min;}
+	public void setRadPayload(PayloadRadExpData rad) {payloadRad = rad;}
 	
 	public String toCsvString(String fieldName, boolean convert, int num, int fromReset, int fromUptime) {
 		String s = "";
@@ -102,7 +104,9 @@ public class WebHealthTab {
 	
 	public String toString() {
 		String s = "";
-		PayloadRadExpData radPayload = payloadDbStore.getLatestRad(fox.foxId);
+		PayloadRadExpData radPayload = payloadRad;
+		if (radPayload == null)
+			radPayload = payloadDbStore.getLatestRad(fox.foxId);
 		String mode = FoxSpacecraft.determineModeString((PayloadRtValues)payloadRt, (PayloadMaxValues)payloadMax, (PayloadMinValues)payloadMin, radPayload);
 		if (payloadRt != null) {
 			
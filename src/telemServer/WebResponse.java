@@ -0,0 +1,42 @@
+package telemServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+/**
+ * The response to a Web Service command.  Commands write html to the PrintWriter, or set a different content
+ * type and write to the OutputStream for CSV and binary data.  Set the content type before writing anything,
+ * because the headers may be sent as soon as the first data is flushed.
+ */
+public class WebResponse {
+	public static final String HTML = "text/html";
+	public static final String CSV = "text/csv";
+	public static final String BINARY = "application/octet-stream";
+
+	String contentType = HTML;
+	OutputStream out;
+	PrintWriter writer;
+
+	public WebResponse(OutputStream out) {
+		this.out = out;
+	}
+
+	public void setContentType(String type) { contentType = type; }
+	public String getContentType() { return contentType; }
+	public OutputStream getOutputStream() { return out; }
+
+	public PrintWriter getWriter() {
+		if (writer == null)
+			writer = new PrintWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")));
+		return writer;
+	}
+
+	public void flush() throws IOException {
+		if (writer != null)
+			writer.flush();
+		out.flush();
+	}
+}
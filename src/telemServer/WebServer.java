@@ -0,0 +1,548 @@
+package telemServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import common.Log;
+import telemetry.PayloadDbStore;
+
+/**
+ *
+ * FOX 1 Telemetry Web Service
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * An HTTP/1.1 front end for the Web Service.  A single selector thread accepts connections, reads the
+ * request headers and writes the responses without blocking.  Once a complete request has been read it is
+ * passed to the worker pool, because the commands query the database and can take some time.  Each worker
+ * keeps its own PayloadDbStore so the database connection is reused between requests rather than opened
+ * for every connection.
+ *
+ * Small responses are sent with a Content-Length.  Larger ones, such as months of FIELD data, are streamed
+ * with chunked encoding while the worker is still producing them.
+ *
+ * Connections are kept alive, as per HTTP/1.1, unless the client asks us to close them, uses HTTP/1.0
+ * without asking for keep-alive, or has been idle for longer than IDLE_TIMEOUT.  A client that stops reading
+ * a response for longer than WRITE_TIMEOUT is closed, so that it does not hold a worker.
+ *
+ */
+public class WebServer implements Runnable {
+	public static final int MAX_HEADER_LENGTH = 8192;
+	public static final int IDLE_TIMEOUT = 15000; // ms that a keep-alive connection can be idle before we close it
+	public static final int MAX_KEEP_ALIVE_REQUESTS = 1000;
+	public static final int CHUNK_SIZE = 16384; // responses larger than this are sent with chunked encoding
+	public static final int MAX_PENDING_BYTES = 256 * 1024; // queued for one connection before the worker waits
+	public static final int WRITE_TIMEOUT = 30000; // ms that a client can stop reading a response before we close it
+	static final ByteBuffer END_OF_RESPONSE = ByteBuffer.allocate(0); // queued after the last buffer of a response
+	static final Charset ASCII = Charset.forName("US-ASCII");
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	int port;
+	int poolSize;
+	String u;
+	String p;
+	String db;
+	volatile boolean running = true;
+	Selector selector;
+	ServerSocketChannel serverChannel;
+	ExecutorService pool;
+	ConcurrentLinkedQueue<HttpConnection> responsesReady = new ConcurrentLinkedQueue<HttpConnection>();
+	ThreadLocal<PayloadDbStore> payloadDbStore = new ThreadLocal<PayloadDbStore>() {
+		@Override
+		protected PayloadDbStore initialValue() {
+			return new PayloadDbStore(u,p,db);
+		}
+	};
+
+	public WebServer(int port, int poolSize, String u, String p, String db) {
+		this.port = port;
+		this.poolSize = poolSize;
+		this.u = u;
+		this.p = p;
+		this.db = db;
+	}
+
+	public void start() throws IOException {
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(port));
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		pool = Executors.newFixedThreadPool(poolSize);
+	}
+
+	public void stop() {
+		running = false;
+		if (selector != null)
+			selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		Log.println("Web Server listening on port: " + port);
+		long lastIdleCheck = System.currentTimeMillis();
+		while (running) {
+			try {
+				selector.select(1000);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+					try {
+						if (key.isAcceptable())
+							accept();
+						else if (key.isReadable())
+							read((HttpConnection)key.attachment());
+						else if (key.isWritable())
+							write((HttpConnection)key.attachment());
+					} catch (IOException e) {
+						// The client went away, nothing more we can do for this connection
+						close((HttpConnection)key.attachment());
+					}
+				}
+				HttpConnection conn;
+				while ((conn = responsesReady.poll()) != null) {
+					try {
+						write(conn);
+					} catch (IOException e) {
+						close(conn);
+					}
+				}
+				long now = System.currentTimeMillis();
+				if (now - lastIdleCheck > 1000) {
+					closeIdleConnections(now);
+					lastIdleCheck = now;
+				}
+			} catch (IOException e) {
+				Log.println("ERROR: Web Server selector failed: " + e.getMessage());
+				e.printStackTrace(Log.getWriter());
+			}
+		}
+		try { serverChannel.close(); } catch (IOException e) {e.printStackTrace(Log.getWriter());}
+		try { selector.close(); } catch (IOException e) {e.printStackTrace(Log.getWriter());}
+		pool.shutdown();
+		Log.println("STOPPING: Web Server Exit");
+	}
+
+	private void accept() throws IOException {
+		SocketChannel ch = serverChannel.accept();
+		if (ch == null) return;
+		ch.configureBlocking(false);
+		ch.socket().setTcpNoDelay(true);
+		HttpConnection conn = new HttpConnection(ch);
+		conn.key = ch.register(selector, SelectionKey.OP_READ, conn);
+		WebServiceStats.newConnection();
+	}
+
+	private void read(HttpConnection conn) throws IOException {
+		int n = conn.channel.read(conn.in);
+		if (n == -1) {
+			close(conn);
+			return;
+		}
+		conn.lastActive = System.currentTimeMillis();
+		dispatchIfComplete(conn);
+	}
+
+	/**
+	 * If the input buffer holds a complete request head then stop reading from this connection and
+	 * pass the request to a worker.  We only process one request at a time per connection, so any
+	 * pipelined requests wait in the buffer until the response has been written.
+	 * @param conn
+	 * @throws IOException
+	 */
+	private void dispatchIfComplete(HttpConnection conn) throws IOException {
+		int end = findEndOfHeader(conn.in);
+		if (end == -1) {
+			if (!conn.in.hasRemaining()) {
+				// Header is too long, probablly spam
+				conn.keepAlive = false;
+				conn.key.interestOps(0);
+				conn.responding = true;
+				queueResponse(conn, 431, "Request Header Fields Too Large", "text/plain", "Request header too long".getBytes(ASCII), false);
+			}
+			return;
+		}
+		byte[] head = new byte[end];
+		conn.in.flip();
+		conn.in.get(head);
+		conn.in.compact();
+		conn.key.interestOps(0);
+		conn.responding = true;
+		conn.requests++;
+		if (conn.requests > 1)
+			WebServiceStats.keepAliveRequest();
+		pool.execute(new RequestTask(conn, new String(head, ASCII)));
+	}
+
+	/**
+	 * Return the length of the request head including the blank line, or -1 if we have not read it all yet
+	 */
+	static int findEndOfHeader(ByteBuffer buf) {
+		int len = buf.position();
+		for (int i=3; i < len; i++) {
+			if (buf.get(i-3) == '\r' && buf.get(i-2) == '\n' && buf.get(i-1) == '\r' && buf.get(i) == '\n')
+				return i+1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Write as much of the queued response as the socket will take.  If the worker is still producing the
+	 * response then we stop selecting on this connection until it queues the next chunk.  The response is
+	 * only complete once we reach END_OF_RESPONSE in the queue, so everything before it has been written.
+	 */
+	private void write(HttpConnection conn) throws IOException {
+		if (!conn.channel.isOpen() || !conn.responding) return;
+		ByteBuffer b;
+		while ((b = conn.outQueue.peek()) != null) {
+			if (b == END_OF_RESPONSE) {
+				conn.outQueue.poll();
+				conn.responding = false;
+				if (!conn.keepAlive) {
+					close(conn);
+					return;
+				}
+				conn.key.interestOps(SelectionKey.OP_READ);
+				dispatchIfComplete(conn); // a pipelined request may already be waiting
+				return;
+			}
+			if (conn.channel.write(b) > 0)
+				conn.lastActive = System.currentTimeMillis();
+			if (b.hasRemaining()) {
+				conn.key.interestOps(SelectionKey.OP_WRITE);
+				return;
+			}
+			conn.outQueue.poll();
+			conn.released(b.capacity());
+		}
+		conn.key.interestOps(0);
+	}
+
+	private void closeIdleConnections(long now) {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof HttpConnection) {
+				HttpConnection conn = (HttpConnection)key.attachment();
+				// Close connections that are waiting for a request, or that we can not write to because the client
+				// has stopped reading, but not ones that are being processed
+				if (!key.isValid()) continue;
+				if (key.interestOps() == SelectionKey.OP_READ && now - conn.lastActive > IDLE_TIMEOUT)
+					close(conn);
+				else if (key.interestOps() == SelectionKey.OP_WRITE && now - conn.lastActive > WRITE_TIMEOUT)
+					close(conn);
+			}
+		}
+	}
+
+	private void close(HttpConnection conn) {
+		if (conn == null) return;
+		if (conn.key != null) conn.key.cancel();
+		try { conn.channel.close(); } catch (IOException e) { /* ignore */ }
+		conn.released(0); // wake any worker waiting to queue more data
+	}
+
+	/**
+	 * Build a complete response and hand it back to the selector thread to be written.  If the client has
+	 * gone then the connection is closed.
+	 */
+	private void queueResponse(HttpConnection conn, int status, String reason, String contentType, byte[] body, boolean head) {
+		byte[] headers = makeHeaders(conn, status, reason, contentType, "Content-Length: " + body.length);
+		ByteBuffer out = ByteBuffer.allocate(headers.length + (head ? 0 : body.length));
+		out.put(headers);
+		if (!head)
+			out.put(body);
+		out.flip();
+		try {
+			conn.queue(out, true);
+		} catch (IOException e) {
+			close(conn);
+		}
+	}
+
+	/**
+	 * @param length - the Content-Length or Transfer-Encoding header, or null if the end of the body is marked by
+	 * closing the connection
+	 */
+	private byte[] makeHeaders(HttpConnection conn, int status, String reason, String contentType, String length) {
+		StringBuilder h = new StringBuilder();
+		h.append("HTTP/1.1 ").append(status).append(" ").append(reason).append("\r\n");
+		h.append("Content-Type: ").append(contentType).append("\r\n");
+		if (length != null)
+			h.append(length).append("\r\n");
+		h.append("Server: Bot\r\n");
+		h.append(conn.keepAlive ? "Connection: keep-alive\r\n" : "Connection: close\r\n");
+		h.append("\r\n");
+		return h.toString().getBytes(ASCII);
+	}
+
+	class HttpConnection {
+		SocketChannel channel;
+		SelectionKey key;
+		ByteBuffer in = ByteBuffer.allocate(MAX_HEADER_LENGTH);
+		ConcurrentLinkedQueue<ByteBuffer> outQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+		int pendingBytes = 0; // guarded by this
+		boolean responding = false; // only used by the selector thread, true from the request until END_OF_RESPONSE
+		volatile boolean keepAlive = true;
+		volatile boolean http11 = true;
+		volatile long lastActive = System.currentTimeMillis();
+		int requests = 0;
+
+		HttpConnection(SocketChannel ch) {
+			channel = ch;
+		}
+
+		/**
+		 * Called by a worker to queue part of the response.  If the client is reading slowly then we wait
+		 * here, so that a large response does not build up in memory.  If nothing has been written to the
+		 * client for WRITE_TIMEOUT then it has stopped reading, so we close the connection and give up.
+		 * @param b
+		 * @param last - true if this is the end of the response
+		 * @throws IOException if the connection is closed
+		 */
+		void queue(ByteBuffer b, boolean last) throws IOException {
+			synchronized (this) {
+				while (pendingBytes > MAX_PENDING_BYTES && channel.isOpen()) {
+					long wait = lastActive + WRITE_TIMEOUT - System.currentTimeMillis();
+					if (wait <= 0) {
+						close(this);
+						break;
+					}
+					try {
+						wait(Math.min(wait, 1000));
+					} catch (InterruptedException e) {
+						close(this);
+						break;
+					}
+				}
+				if (!channel.isOpen())
+					throw new IOException("Connection closed");
+				pendingBytes += b.capacity();
+			}
+			outQueue.add(b);
+			if (last)
+				outQueue.add(END_OF_RESPONSE);
+			responsesReady.add(this);
+			selector.wakeup();
+		}
+
+		synchronized void released(int bytes) {
+			pendingBytes -= bytes;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * The body of a response.  If the command writes less than CHUNK_SIZE then it is sent in one piece
+	 * with a Content-Length.  Otherwise the headers are sent with the first chunk and the body is sent
+	 * with chunked encoding as it is written, so large results are streamed to the client while the
+	 * command is still reading them from the database.  HTTP/1.0 clients do not understand chunks, so
+	 * they get the raw body and the connection is closed at the end.
+	 */
+	class ResponseStream extends OutputStream {
+		HttpConnection conn;
+		WebResponse response;
+		boolean head;
+		byte[] buffer = new byte[CHUNK_SIZE];
+		int count = 0;
+		long total = 0;
+		boolean committed = false;
+		boolean finished = false;
+
+		ResponseStream(HttpConnection conn, boolean head) {
+			this.conn = conn;
+			this.head = head;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (count == buffer.length)
+				sendChunk();
+			buffer[count++] = (byte)b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == buffer.length)
+					sendChunk();
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		private void sendChunk() throws IOException {
+			if (!conn.channel.isOpen())
+				throw new IOException("Connection closed by client");
+			if (!committed) {
+				committed = true;
+				String length = "Transfer-Encoding: chunked";
+				if (!conn.http11) {
+					conn.keepAlive = false; // makeHeaders adds Connection: close
+					length = null;
+				}
+				conn.queue(ByteBuffer.wrap(makeHeaders(conn, 200, "OK", response.getContentType(), length)), false);
+			}
+			if (count == 0 || head) {
+				count = 0;
+				return;
+			}
+			total += count;
+			ByteBuffer b;
+			if (conn.http11) {
+				byte[] size = (Integer.toHexString(count) + "\r\n").getBytes(ASCII);
+				b = ByteBuffer.allocate(size.length + count + 2);
+				b.put(size);
+				b.put(buffer, 0, count);
+				b.put((byte)'\r');
+				b.put((byte)'\n');
+				b.flip();
+			} else {
+				b = ByteBuffer.allocate(count);
+				b.put(buffer, 0, count);
+				b.flip();
+			}
+			count = 0;
+			conn.queue(b, false);
+		}
+
+		/**
+		 * Send whatever is left and mark the response as complete
+		 */
+		void finish() throws IOException {
+			if (finished) return;
+			finished = true;
+			if (!committed) {
+				total = count;
+				byte[] body = new byte[count];
+				System.arraycopy(buffer, 0, body, 0, count);
+				queueResponse(conn, 200, "OK", response.getContentType(), body, head);
+				return;
+			}
+			sendChunk();
+			if (conn.http11 && !head)
+				conn.queue(ByteBuffer.wrap("0\r\n\r\n".getBytes(ASCII)), true);
+			else
+				conn.queue(ByteBuffer.allocate(0), true);
+		}
+
+		/**
+		 * Something went wrong.  If nothing has been sent we can still send an error page, with a 500 status so
+		 * that clients and caches do not take it as data, otherwise all we can do is drop the connection so the
+		 * client knows the response is incomplete.  Either way the connection is closed after the response.
+		 */
+		void abort(String message) {
+			if (finished) return;
+			finished = true;
+			if (!committed) {
+				byte[] body = message.getBytes(UTF8);
+				total = body.length;
+				conn.keepAlive = false;
+				queueResponse(conn, 500, "Internal Server Error", WebResponse.HTML, body, head);
+			} else {
+				conn.keepAlive = false;
+				try {
+					conn.queue(ByteBuffer.allocate(0), true);
+				} catch (IOException e) {
+					WebServer.this.close(conn);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs on a worker thread.  Parse the request head, run the command and queue the response.
+	 */
+	class RequestTask implements Runnable {
+		HttpConnection conn;
+		String head;
+
+		RequestTask(HttpConnection conn, String head) {
+			this.conn = conn;
+			this.head = head;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			String[] lines = head.split("\r\n");
+			String[] requestLine = lines[0].split(" "); // GET <path> HTTP/1.1
+			if (requestLine.length != 3) {
+				conn.keepAlive = false;
+				queueResponse(conn, 400, "Bad Request", "text/plain", "Bad Request".getBytes(ASCII), false);
+				return;
+			}
+			String method = requestLine[0];
+			String request = requestLine[1];
+			String version = requestLine[2];
+			HashMap<String, String> headers = new HashMap<String, String>();
+			for (int i=1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+				if (colon > 0)
+					headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon+1).trim());
+			}
+			String connection = headers.get("connection");
+			conn.http11 = version.equals("HTTP/1.1");
+			if (conn.http11)
+				conn.keepAlive = connection == null || !connection.equalsIgnoreCase("close");
+			else
+				conn.keepAlive = connection != null && connection.equalsIgnoreCase("keep-alive");
+			if (conn.requests >= MAX_KEEP_ALIVE_REQUESTS)
+				conn.keepAlive = false;
+
+			boolean head = method.equals("HEAD");
+			if (!method.equals("GET") && !head) {
+				// We do not read request bodies, so we can not keep this connection
+				conn.keepAlive = false;
+				queueResponse(conn, 405, "Method Not Allowed", "text/plain", "Method Not Allowed".getBytes(ASCII), false);
+				return;
+			}
+
+			String endpoint = WebServiceProcess.endpointName(request);
+			boolean error = false;
+			ResponseStream body = new ResponseStream(conn, head);
+			WebResponse response = new WebResponse(body);
+			body.response = response;
+			try {
+				WebServiceProcess process = new WebServiceProcess(payloadDbStore.get(), port);
+				process.handleRequest(request, response);
+				response.flush();
+				body.finish();
+			} catch (Exception e) {
+				// We can not let a bad request kill the worker thread, so report it and carry on
+				Log.println("ERROR: Web Service request failed: " + request + " " + e.getMessage());
+				e.printStackTrace(Log.getWriter());
+				error = true;
+				body.abort("FOX SERVER Request failed: " + request + "\n");
+			}
+			WebServiceStats.record(endpoint, System.nanoTime() - start, body.total, error);
+		}
+	}
+}
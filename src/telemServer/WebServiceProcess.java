@@ -1,6 +1,9 @@
 package telemServer;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
@@ -11,32 +14,39 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.DecimalFormat;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.TimeZone;
 
+import telemetry.BitArrayLayout;
+import telemetry.ConversionPlan;
 import telemetry.Frame;
 import telemetry.FramePart;
 import telemetry.LayoutLoadException;
 import telemetry.PayloadDbStore;
 import telemetry.PayloadMaxValues;
 import telemetry.PayloadMinValues;
+import telemetry.PayloadRadExpData;
 import telemetry.PayloadRtValues;
+import telemetry.SatPayloadDbStore;
 import uk.me.g4dpz.satellite.SatPos;
 import common.Config;
 import common.FoxSpacecraft;
 import common.FoxTime;
+import common.Spacecraft;
 import common.Log;
 
 public class WebServiceProcess implements Runnable {
 	PayloadDbStore payloadDbStore;
-	public static String version = "Version 1.00 - 15 Sept 2018";
+	public static String version = "Version 1.01 - 19 Oct 2026";
 	private Socket socket = null;
 	int port = 8080;
 	
 	public static final String VERSION = "version";
 	public static final String TIME = "getSatUtcAtResetUptime";
 	public static final String POSITION = "getSatLatLonAtResetUptime";
+	public static final String STATS = "STATS";
 	
 	public WebServiceProcess(PayloadDbStore db, Socket socket, int p) {
 		this.socket = socket;
@@ -44,7 +54,17 @@ public class WebServiceProcess implements Runnable {
 		payloadDbStore = db;
 	}
 
+	public WebServiceProcess(PayloadDbStore db, int p) {
+		port = p;
+		payloadDbStore = db;
+	}
 
+
+	/**
+	 * Legacy entry point when a connection is handed to us by a thread pool.  The request is read with
+	 * HTTP/1.0 semantics and the connection is closed once the response is sent.  FoxService now uses the
+	 * WebServer for keep-alive connections, which calls handleRequest() directly.
+	 */
 	@Override
 	public void run() {
 		BufferedReader in = null;
@@ -65,147 +85,26 @@ public class WebServiceProcess implements Runnable {
 				Log.println(GET);
 				String[] requestLine = GET.split(" "); // GET <path> HTTP/1.1
 				String request = new String(requestLine[1]);
-				while (!str.equals("")) {
+				while (str != null && !str.equals("")) {
 					str = in.readLine(); // ignore the rest of the header
 				}
 
+				long start = System.nanoTime();
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				WebResponse response = new WebResponse(body);
+				handleRequest(request, response);
+				response.flush();
+				WebServiceStats.record(endpointName(request), System.nanoTime() - start, body.size(), false);
+
 				// Send the response
 				// Send the headers
 				out.println("HTTP/1.0 200 OK");
-				out.println("Content-Type: text/html");
+				out.println("Content-Type: " + response.getContentType());
 				out.println("Server: Bot");
 				// this blank line signals the end of the headers
 				out.println("");
-
-				//String path = request.substring(1, request.length());
-
-				WebHealthTab fox1Atab = null;
-
-
-				/*
-				 * The FoxService Command API is in the format:
-				 * COMMAND/SAT/OPTIONS
-				 * 
-				 * The following commands are valid:
-				 * /VERSION - return the version
-				 * /getSatLatLonAtResetUptime=sat&reset&uptime
-				 * /getSatUtcForResetUptime=sat&reset&uptime
-				 * 
-				 * LEGACY APIs:
-				 * /T0/SAT/RESET/CALL/N - Returns N T0 records for RESET logged by CALL for sat SAT
-				 * /FRAME/SAT/TYPE - Return the latest frame of type TYPE for SAT
-				 * /FIELD/SAT/NAME/R|C/N/RESET/UPTIME - Return N R-RAW or C-CONVERTED values for field NAME from sat SAT from RESET and UPTIME
-				 * 
-				 */
-				String[] path = request.split("/");
-				
-				if (path.length == 0) {
-					out.println("<H2>AMSAT FOX WEB SERVICE</H2>");
-				} else { 
-					String[] params = path[1].split("\\?");
-
-					switch (params[0]) {
-					case VERSION:
-						out.println("Fox Web Service..." + version);
-						return;
-					case POSITION:
-						if (params.length == 2) {
-							getSatLatLonAtResetUptime(params[1], out);
-							return;	
-						}
-					case TIME:
-						if (params.length == 2) {
-							getSatUtcForResetUptime(params[1], out);
-							return;	
-						}
-					default:
-						//out.println("Amsat API Malformed Request");  // put this message back in if NO LEGACY APIs
-						break;
-					}
-					
-					
-					// LEGACY APIs in old format
-					if (path[1].equalsIgnoreCase("T0")) { // T0 COMMAND
-						if (path.length == 6) {
-							try {
-								String t0 = calculateT0(out, Integer.parseInt(path[2]), Integer.parseInt(path[3]), path[4],  Integer.parseInt(path[5]));
-								out.println(t0 + "\n");
-							} catch (NumberFormatException e) {
-								out.println("FOX T0 Request is invalid id + " + path[2] + " reset " + path[3] + " number " + path[5]+"\n");								
-							}
-						} else {
-							out.println("FOX T0 Request invalid\n");
-						}
-					} else if (path[1].equalsIgnoreCase("FRAME")) { // Frame Command
-						// Send the HTML page
-						if (path.length == 4) {
-							PayloadRtValues rt = null;
-							int sat = 1;
-							@SuppressWarnings("unused")
-							int type = 1;
-							try {
-								sat = Integer.parseInt(path[2]);
-								type = Integer.parseInt(path[3]);
-								rt = (PayloadRtValues) payloadDbStore.getLatestRt(sat);
-							} catch (NumberFormatException e) {
-								out.println("Invalid sat or type");
-							}
-							PayloadMaxValues max = (PayloadMaxValues) payloadDbStore.getLatestMax(sat);
-							PayloadMinValues min = (PayloadMinValues) payloadDbStore.getLatestMin(sat);
-							if (rt != null) {								
-								try {
-									fox1Atab = new WebHealthTab(payloadDbStore, (FoxSpacecraft) Config.satManager.getSpacecraft(sat),port);
-								} catch (LayoutLoadException e1) {
-									e1.printStackTrace(Log.getWriter());
-								}
-								//out.println("<H2>Fox-1 Telemetry</H2>");
-								fox1Atab.setRtPayload(rt);
-								fox1Atab.setMaxPayload(max);
-								fox1Atab.setMinPayload(min);
-								out.println(fox1Atab.toString());
-							} else {
-								out.println("FOX SERVER Currently not returning data....\n");
-							}
-						} else {
-							out.println("FOX FRAME Request invalid\n");
-						}
-					} else if (path[1].equalsIgnoreCase("FIELD")) { // Field Command
-						// /FIELD/SAT/NAME/R|C/N/RESET/UPTME - Return N R-RAW or C-CONVERTED values for field NAME from sat SAT
-						if (path.length == 8) {
-							String name = path[3];
-							String raw = path[4];
-							boolean convert = true;
-							int sat = 0;
-							int num = 0;
-							int fromReset = 0;
-							int fromUptime = 0;
-							try {
-								sat = Integer.parseInt(path[2]);
-								num = Integer.parseInt(path[5]);
-								fromReset = Integer.parseInt(path[6]);
-								fromUptime = Integer.parseInt(path[7]);
-							} catch (NumberFormatException e) {
-								out.println("Invalid sat or type");
-							}
-							if (sat != 0) {
-							try {
-								fox1Atab = new WebHealthTab(payloadDbStore,(FoxSpacecraft) Config.satManager.getSpacecraft(sat),port);
-							} catch (LayoutLoadException e1) {
-								e1.printStackTrace(Log.getWriter());
-							}
-							if (raw.startsWith("C"))
-								convert = false;
-							
-							out.println(fox1Atab.toGraphString(name, convert, num, fromReset, fromUptime));
-							
-							} else {
-								out.println("FOX SAT Requested invalid\n");
-							}
-						} else {
-							out.println("FOX FIELD Request invalid\n");
-						}
-					}
-				}
+				out.flush();
+				body.writeTo(socket.getOutputStream());
 			}
 
 			out.flush();
@@ -221,6 +120,279 @@ public class WebServiceProcess implements Runnable {
 		}
 	}
 
+	public static final String OTHER = "OTHER";
+	static final String[] LEGACY_COMMANDS = {"T0", "FRAME", "FIELD"};
+
+	/**
+	 * Return the name of the command in this request path.  This is used to key the per endpoint statistics, so
+	 * anything that is not a command goes in the OTHER bucket.  Otherwise every random path requested by a scanner
+	 * would add an entry that is never removed.
+	 * @param request
+	 * @return
+	 */
+	public static String endpointName(String request) {
+		String[] path = request.split("/");
+		if (path.length < 2) return "ROOT";
+		String[] params = path[1].split("\\?");
+		switch (params[0]) {
+		case VERSION:
+		case POSITION:
+		case TIME:
+		case STATS:
+			return params[0];
+		default:
+			for (String command : LEGACY_COMMANDS)
+				if (params[0].equalsIgnoreCase(command))
+					return command;
+			return OTHER;
+		}
+	}
+
+	/**
+	 * Route the request path to the command that handles it and write the html response to out.  The
+	 * caller is responsible for the HTTP headers.
+	 * 
+	 * @param request - the path from the request line
+	 * @param response
+	 * @throws IOException 
+	 */
+	public void handleRequest(String request, WebResponse response) throws IOException {
+		WebHealthTab fox1Atab = null;
+		PrintWriter out = response.getWriter();
+
+		/*
+		 * The FoxService Command API is in the format:
+		 * COMMAND/SAT/OPTIONS
+		 * 
+		 * The following commands are valid:
+		 * /VERSION - return the version
+		 * /STATS - return the request statistics for each command
+		 * /getSatLatLonAtResetUptime=sat&reset&uptime
+		 * /getSatUtcForResetUptime=sat&reset&uptime
+		 * 
+		 * LEGACY APIs:
+		 * /T0/SAT/RESET/CALL/N - Returns N T0 records for RESET logged by CALL for sat SAT
+		 * /FRAME/SAT/TYPE - Return the latest frame of type TYPE for SAT
+		 * /FIELD/SAT/NAME/R|C/N/RESET/UPTIME - Return N R-RAW or C-CONVERTED values for field NAME from sat SAT from RESET and UPTIME
+		 * /FIELD/SAT/NAME/R|C/N/RESET/UPTIME/HTML|CSV|BIN - As above but streamed in the requested format.  Reset and uptime of 0 returns the latest N
+		 * 
+		 */
+		String[] path = request.split("/");
+
+		if (path.length == 0) {
+			out.println("<H2>AMSAT FOX WEB SERVICE</H2>");
+		} else { 
+			String[] params = path[1].split("\\?");
+
+			switch (params[0]) {
+			case VERSION:
+				out.println("Fox Web Service..." + version);
+				return;
+			case STATS:
+				out.println(WebServiceStats.toHtml());
+				return;
+			case POSITION:
+				if (params.length == 2) {
+					getSatLatLonAtResetUptime(params[1], out);
+					return;	
+				}
+			case TIME:
+				if (params.length == 2) {
+					getSatUtcForResetUptime(params[1], out);
+					return;	
+				}
+			default:
+				//out.println("Amsat API Malformed Request");  // put this message back in if NO LEGACY APIs
+				break;
+			}
+
+
+			// LEGACY APIs in old format
+			if (path[1].equalsIgnoreCase("T0")) { // T0 COMMAND
+				if (path.length == 6) {
+					try {
+						String t0 = calculateT0(out, Integer.parseInt(path[2]), Integer.parseInt(path[3]), path[4],  Integer.parseInt(path[5]));
+						out.println(t0 + "\n");
+					} catch (NumberFormatException e) {
+						out.println("FOX T0 Request is invalid id + " + path[2] + " reset " + path[3] + " number " + path[5]+"\n");								
+					}
+				} else {
+					out.println("FOX T0 Request invalid\n");
+				}
+			} else if (path[1].equalsIgnoreCase("FRAME")) { // Frame Command
+				// Send the HTML page
+				if (path.length == 4) {
+					PayloadRtValues rt = null;
+					int sat = 1;
+					@SuppressWarnings("unused")
+					int type = 1;
+					try {
+						sat = Integer.parseInt(path[2]);
+						type = Integer.parseInt(path[3]);
+						rt = (PayloadRtValues) payloadDbStore.getLatestRt(sat);
+					} catch (NumberFormatException e) {
+						out.println("Invalid sat or type");
+					}
+					PayloadMaxValues max = (PayloadMaxValues) payloadDbStore.getLatestMax(sat);
+					PayloadMinValues min = (PayloadMinValues) payloadDbStore.getLatestMin(sat);
+					if (rt != null) {
+						// The page only needs to be rendered again if one of the latest records has changed
+						PayloadRadExpData rad = payloadDbStore.getLatestRad(sat);
+						long[] key = HealthPageCache.makeKey(rt, max, min, rad);
+						String page = HealthPageCache.get(sat, key);
+						if (page != null) {
+							WebServiceStats.recordCacheHit(endpointName(request));
+							out.println(page);
+							return;
+						}
+						try {
+							fox1Atab = new WebHealthTab(payloadDbStore, (FoxSpacecraft) Config.satManager.getSpacecraft(sat),port);
+						} catch (LayoutLoadException e1) {
+							e1.printStackTrace(Log.getWriter());
+						}
+						//out.println("<H2>Fox-1 Telemetry</H2>");
+						fox1Atab.setRtPayload(rt);
+						fox1Atab.setMaxPayload(max);
+						fox1Atab.setMinPayload(min);
+						fox1Atab.setRadPayload(rad);
+						page = fox1Atab.toString();
+						HealthPageCache.put(sat, key, page);
+						out.println(page);
+					} else {
+						out.println("FOX SERVER Currently not returning data....\n");
+					}
+				} else {
+					out.println("FOX FRAME Request invalid\n");
+				}
+			} else if (path[1].equalsIgnoreCase("FIELD")) { // Field Command
+				// /FIELD/SAT/NAME/R|C/N/RESET/UPTME - Return N R-RAW or C-CONVERTED values for field NAME from sat SAT as HTML
+				// /FIELD/SAT/NAME/R|C/N/RESET/UPTME/FORMAT - The same in HTML, CSV or BIN
+				if (path.length == 8) {
+					String[] html = Arrays.copyOf(path, 9);
+					html[8] = "HTML";
+					streamField(html, response);
+				} else if (path.length == 9) {
+					streamField(path, response);
+				} else {
+					out.println("FOX FIELD Request invalid\n");
+				}
+			}
+		}
+		out.flush();
+	}
+
+	public static final int MAX_FIELD_ROWS = 10000000;
+	
+	/**
+	 * /FIELD/SAT/NAME/R|C/N/RESET/UPTIME/FORMAT
+	 * Stream N raw or converted values of field NAME.  Only resets, uptime and the field are read from the database
+	 * and each row is written as it is read, so this can return months of data.  The formats are:
+	 * HTML - a table in the same form as the legacy FIELD command
+	 * CSV - resets,uptime,value per line
+	 * BIN - per row a big endian int resets, int uptime and double value
+	 * 
+	 * @param path
+	 * @param response
+	 * @throws IOException
+	 */
+	private void streamField(String[] path, WebResponse response) throws IOException {
+		final PrintWriter out = response.getWriter();
+		final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(response.getOutputStream()));
+		final FoxSpacecraft fox;
+		final String name = path[3];
+		final boolean convert = !path[4].toUpperCase().startsWith("R");
+		final String format = path[8].toUpperCase();
+		int num = 0;
+		int fromReset = 0;
+		long fromUptime = 0;
+		try {
+			fox = (FoxSpacecraft) Config.satManager.getSpacecraft(Integer.parseInt(path[2]));
+			num = Integer.parseInt(path[5]);
+			fromReset = Integer.parseInt(path[6]);
+			fromUptime = Long.parseLong(path[7]);
+		} catch (NumberFormatException e) {
+			out.println("FOX FIELD Request is invalid\n");
+			return;
+		}
+		if (fox == null) {
+			out.println("FOX SAT Requested invalid\n");
+			return;
+		}
+		if (num <= 0 || num > MAX_FIELD_ROWS) num = MAX_FIELD_ROWS;
+		
+		String layoutName = null;
+		String[] layouts = {Spacecraft.REAL_TIME_LAYOUT, Spacecraft.MIN_LAYOUT, Spacecraft.MAX_LAYOUT, Spacecraft.WOD_LAYOUT};
+		for (String l : layouts) {
+			BitArrayLayout lay = fox.getLayoutByName(l);
+			if (lay != null && lay.hasFieldName(name)) {
+				layoutName = l;
+				break;
+			}
+		}
+		if (layoutName == null) {
+			out.println("FOX FIELD " + name + " invalid\n");
+			return;
+		}
+		final BitArrayLayout layout = fox.getLayoutByName(layoutName);
+		final int field = layout.getPositionByName(name);
+		final ConversionPlan plan = ConversionPlan.getPlan(SatPayloadDbStore.makeRecord(layoutName, layout), fox);
+		
+		SatPayloadDbStore.FieldRowHandler handler;
+		if (format.equals("BIN")) {
+			response.setContentType(WebResponse.BINARY);
+			handler = new SatPayloadDbStore.FieldRowHandler() {
+				public void row(int resets, long uptime, int raw) throws IOException {
+					data.writeInt(resets);
+					data.writeInt((int)uptime);
+					data.writeDouble(convert ? plan.convert(field, raw) : raw);
+				}
+			};
+		} else if (format.equals("CSV")) {
+			response.setContentType(WebResponse.CSV);
+			handler = new SatPayloadDbStore.FieldRowHandler() {
+				public void row(int resets, long uptime, int raw) throws IOException {
+					out.print(resets);
+					out.print(',');
+					out.print(uptime);
+					out.print(',');
+					if (convert)
+						out.print(plan.convert(field, raw));
+					else
+						out.print(raw);
+					out.print('\n');
+				}
+			};
+		} else if (format.equals("HTML")) {
+			out.println("<style> td { border: 5px } th { background-color: lightgray; border: 3px solid lightgray; } td { padding: 5px; vertical-align: top; background-color: darkgray } </style>");	
+			out.println("<h1 class='entry-title'>Fox "+ fox.getIdString()+" - " + layout.fieldName[layout.getPositionByName(name)] +"</h1>"
+					+ "<table><tr><th>Reset</th> <th>Uptime </th> <th>" + layout.fieldName[layout.getPositionByName(name)] + "</th> </tr>");
+			handler = new SatPayloadDbStore.FieldRowHandler() {
+				public void row(int resets, long uptime, int raw) throws IOException {
+					out.print("<tr><td>" + resets + "</td><td>" + uptime + "</td><td>");
+					if (convert)
+						out.print(plan.convert(field, raw));
+					else
+						out.print(raw);
+					out.println("</td></tr>");
+				}
+			};
+		} else {
+			out.println("FOX FIELD format " + format + " invalid\n");
+			return;
+		}
+		
+		try {
+			payloadDbStore.streamFieldData(fox.foxId, layoutName, name, fromReset, fromUptime, num, handler);
+		} catch (SQLException e) {
+			PayloadDbStore.errorPrint("streamField", e);
+			throw new IOException("Could not read field " + name + ": " + e.getMessage());
+		}
+		if (format.equals("HTML"))
+			out.println("</table>");
+		out.flush();
+		data.flush();
+	}
+
 	public static final String SAT = "sat";
 	public static final String RESET = "reset";
 	public static final String UPTIME = "uptime";
@@ -0,0 +1,100 @@
+package telemServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per endpoint latency and throughput counters for the Web Service.  One EndpointStats is kept for each
+ * command (VERSION, FRAME, FIELD, T0 etc) and one shared by all other paths, named by
+ * WebServiceProcess.endpointName().  The counters are updated by the worker threads and read
+ * by the /STATS command, so they use atomics rather than locks.
+ */
+public class WebServiceStats {
+	static final long startTime = System.currentTimeMillis();
+	static ConcurrentHashMap<String, EndpointStats> endpoints = new ConcurrentHashMap<String, EndpointStats>();
+	static AtomicLong connections = new AtomicLong();
+	static AtomicLong keepAliveReuse = new AtomicLong();
+
+	public static class EndpointStats {
+		public final String name;
+		final AtomicLong requests = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicLong cacheHits = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicLong totalNanos = new AtomicLong();
+		final AtomicLong maxNanos = new AtomicLong();
+
+		EndpointStats(String name) {
+			this.name = name;
+		}
+
+		void record(long nanos, long len, boolean error) {
+			requests.incrementAndGet();
+			if (error) errors.incrementAndGet();
+			bytes.addAndGet(len);
+			totalNanos.addAndGet(nanos);
+			long max = maxNanos.get();
+			while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+				max = maxNanos.get();
+		}
+
+		public long getRequests() { return requests.get(); }
+		public long getErrors() { return errors.get(); }
+		public long getCacheHits() { return cacheHits.get(); }
+		public long getBytes() { return bytes.get(); }
+		public double getAvgMillis() {
+			long n = requests.get();
+			if (n == 0) return 0;
+			return totalNanos.get() / (double)n / 1000000d;
+		}
+		public double getMaxMillis() { return maxNanos.get() / 1000000d; }
+	}
+
+	public static EndpointStats getEndpoint(String name) {
+		EndpointStats e = endpoints.get(name);
+		if (e == null) {
+			EndpointStats n = new EndpointStats(name);
+			e = endpoints.putIfAbsent(name, n);
+			if (e == null) e = n;
+		}
+		return e;
+	}
+
+	public static void record(String name, long nanos, long len, boolean error) {
+		getEndpoint(name).record(nanos, len, error);
+	}
+
+	public static void recordCacheHit(String name) {
+		getEndpoint(name).cacheHits.incrementAndGet();
+	}
+
+	public static void newConnection() { connections.incrementAndGet(); }
+	public static void keepAliveRequest() { keepAliveReuse.incrementAndGet(); }
+
+	/**
+	 * Render the counters as an html table for the /STATS command
+	 * @return
+	 */
+	public static String toHtml() {
+		double upSecs = (System.currentTimeMillis() - startTime) / 1000d;
+		StringBuilder s = new StringBuilder();
+		s.append("<style> td { border: 5px } th { background-color: lightgray; border: 3px solid lightgray; } td { padding: 5px; vertical-align: top; background-color: darkgray } </style>");
+		s.append("<h3>Fox Web Service Statistics</h3>");
+		s.append("Up: " + (long)upSecs + " s  Connections: " + connections.get() + "  Keep-alive requests: " + keepAliveReuse.get() + "<br>");
+		s.append("<table><tr><th>Endpoint</th><th>Requests</th><th>Req/s</th><th>Errors</th><th>Cache Hits</th>"
+				+ "<th>Bytes</th><th>Avg ms</th><th>Max ms</th></tr>");
+		ArrayList<String> names = new ArrayList<String>(endpoints.keySet());
+		Collections.sort(names);
+		for (String name : names) {
+			EndpointStats e = endpoints.get(name);
+			s.append("<tr><td>" + name + "</td><td>" + e.getRequests() + "</td><td>"
+					+ String.format("%.2f", upSecs > 0 ? e.getRequests()/upSecs : 0) + "</td><td>"
+					+ e.getErrors() + "</td><td>" + e.getCacheHits() + "</td><td>" + e.getBytes() + "</td><td>"
+					+ String.format("%.2f", e.getAvgMillis()) + "</td><td>" + String.format("%.2f", e.getMaxMillis()) + "</td></tr>");
+		}
+		s.append("</table>");
+		return s.toString();
+	}
+}
@@ -170,5 +170,19 @@ public abstract class BitArray {
 
 	public abstract double convertRawValue(String name, int rawValue, int conversion, Spacecraft fox );	
 	
+	/**
+	 * Convert a set of raw values from the same field, e.g. all of the points on a graph.  Subclasses can
+	 * override this when a conversion can be run faster on the whole set
+	 * @param name
+	 * @param raw
+	 * @param out - must be at least as long as raw
+	 * @param conversion
+	 * @param fox
+	 */
+	public void convertRawValues(String name, int[] raw, double[] out, int conversion, Spacecraft fox) {
+		for (int i=0; i < raw.length; i++)
+			out[i] = convertRawValue(name, raw[i], conversion, fox);
+	}
+	
 	
 }
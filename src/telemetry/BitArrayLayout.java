@@ -7,6 +7,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import common.Log;
 
@@ -45,6 +46,8 @@ public class BitArrayLayout {
 	public String fileName;
 	public String name; // the name, which is stored in the spacecraft file and used to index the layouts
 	public String parentLayout = null; // this is set to the value of the primary payload that spawns this
+	// built the first time a column of this layout is converted, one for each class of record that converts it
+	final ConcurrentHashMap<Class<?>, ConversionPlan> conversionPlans = new ConcurrentHashMap<Class<?>, ConversionPlan>();
 	
 	public static final String NONE = "NONE";
 	
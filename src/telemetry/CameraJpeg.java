@@ -6,6 +6,7 @@ import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -53,6 +54,7 @@ public class CameraJpeg implements Comparable<CameraJpeg> {
 	public static final int UPTIME_THRESHOLD = 500; // if the uptime is within this value then it is the same picture.  Assumes 300 seconds per picture
 	public static final boolean INSERT_MARKERS = true;
 	public static final int LAST_LINE = 59;  // 60 lines from 0 - 59
+	public static final long OPEN_TIMEOUT = 10*60*1000; // ms. Close the file if no lines have been added for this long
 	public int id; // Fox Id
 	public int resets;
 	public long fromUptime;
@@ -60,9 +62,10 @@ public class CameraJpeg implements Comparable<CameraJpeg> {
 	public int pictureCounter;
 	private String fileName;
 	public String captureDate;
-	private boolean thumbStale = false;
+	private volatile boolean thumbStale = false;
+	private OutputStream openFile; // held open while lines are arriving for this picture
+	private long lastWrite;
 	
-	BufferedImage thumbNail; // cache the thumbnail in memory
 	SortedArrayList<PictureScanLine> pictureLines;
 	
 	/**
@@ -149,14 +152,41 @@ public class CameraJpeg implements Comparable<CameraJpeg> {
 		if (toUptime < line.uptime)
 			toUptime = line.uptime;
 
-		String toFileName = getFileName();
-			
-		OutputStream out = new FileOutputStream(toFileName, true);
+		// The file stays open for the next line, until the picture is complete or the store closes it
+		if (openFile == null)
+			openFile = new BufferedOutputStream(new FileOutputStream(getFileName(), true));
 		try {
-			writeLine(line, out);
-		} finally {
-			out.close();
+			writeLine(line, openFile);
+			openFile.flush(); // so that the picture can be displayed with the lines received so far
+		} catch (IOException e) {
+			close();
+			throw e;
 		}
+		lastWrite = System.currentTimeMillis();
+		if (line.scanLineNumber == LAST_LINE)
+			close();
+	}
+
+	public boolean isOpen() { return openFile != null; }
+
+	/**
+	 * True if the file is open but no line has been added for OPEN_TIMEOUT
+	 */
+	public boolean isIdle(long now) {
+		return openFile != null && now - lastWrite > OPEN_TIMEOUT;
+	}
+
+	/**
+	 * Close the file if it is open.  It is opened again if another line arrives.
+	 */
+	public void close() {
+		if (openFile == null) return;
+		try {
+			openFile.close();
+		} catch (IOException e) {
+			Log.println("ERROR: closing " + getFileName() + ": " + e.getMessage());
+		}
+		openFile = null;
 	}
 	
 	private void writeLine(PictureScanLine line, OutputStream out) throws IOException {
@@ -189,6 +219,7 @@ public class CameraJpeg implements Comparable<CameraJpeg> {
 	 * @throws IOException
 	 */
 	public void writeAllLines() throws IOException {
+		close();
 		fileName = createJpegFile(id, resets, fromUptime, pictureCounter, true);
 		String toFileName = getFileName();
 		
@@ -315,7 +346,7 @@ public class CameraJpeg implements Comparable<CameraJpeg> {
 			double w = img.getWidth();
 			double scale = sizeX/w;
 			
-			thumbNail = scale(img, scale);
+			BufferedImage thumbNail = scale(img, scale);
 			try {
 				ImageIO.write(thumbNail, "JPEG", f);
 			} catch (IOException e) {
@@ -335,24 +366,26 @@ public class CameraJpeg implements Comparable<CameraJpeg> {
 	}
 	
 	/**
-	 * Load the JPEG file from disk and create a Thumbnail.
+	 * Load the Thumbnail from disk, or create it from the JPEG file if the JPEG has had lines added since the Thumbnail
+	 * was written.  The thumbnail is not held here, the GUI keeps the ones it is displaying in the ThumbnailLoader.
 	 * @param sizeX
 	 * @return
 	 * @throws IOException
 	 * @throws IIOException
 	 */
 	public BufferedImage getThumbnail(int sizeX) throws IOException, IIOException {
-		if (!thumbStale && thumbNail != null) return thumbNail;
+		BufferedImage thumbNail = null;
 		BufferedImage img = null;
 		String imageFile = getFileName();
 		
 		File source = new File(imageFile);
 		imageFile = imageFile.replace(".jpg", "_tn.jpg");
 		File thumbFile = new File(imageFile);
-		if(!thumbStale && thumbFile.exists()) {
+		// Lines are appended to the JPEG, so it is newer than the thumbnail if a line arrived after the thumbnail was
+		// made, including in a previous run
+		if(!thumbStale && thumbFile.exists() && thumbFile.lastModified() > source.lastModified()) {
 			img = ImageIO.read(thumbFile);
 			//Log.println("Loading thumb");
-			thumbNail = img;
 			return img;
 		}
 		//scale based on X
@@ -0,0 +1,475 @@
+package telemetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The records of a payload table that are held in memory, sorted by reset, uptime and type in the same way as
+ * SortedFramePartArrayList.  Each record loaded from disk used to be a FramePart with its own int[] of field values,
+ * its layout and a captureDate String, which is several hundred bytes per record when a few dozen bytes of data are
+ * needed.
+ *
+ * Records loaded from disk are packed into columns instead.  The header values are held in primitive arrays and the
+ * field values of all of the records are held in one block per width.  A field is held in a byte if the layout gives
+ * it 8 bits or less, in a short if it has 16 bits or less, and otherwise in an int.  When a caller asks for a record
+ * with get(), a FramePart is made from the columns.  It is a new object each time, so changes to it are not kept.
+ * The graphs and tables read the columns directly with getRawValue() and getFieldValues().
+ *
+ * A record is only packed if it is one of the plain payload types that hold nothing but the fields, it has the same
+ * layout as the other packed records and all of its values fit.  Anything else is held as the FramePart, as are the
+ * records added with add().  These are new records from the decoder, which other parts of the program may still hold
+ * and update, e.g. with the satellite position.
+ *
+ */
+public class CompactRecordList {
+	private int size;
+	private int[] resets = new int[0];
+	private long[] uptimes = new long[0];
+	private int[] types = new int[0];
+	private int[] ids = new int[0];
+	private long[] dates = new long[0]; // the captureDate as a number, yyyyMMddHHmmss
+	private FramePart[] records = new FramePart[0]; // null if the record is packed
+
+	// The class and layout of the packed records, set by the first record that is packed
+	private Class<?> recordClass;
+	private BitArrayLayout layout;
+	private int[] width; // 1, 2 or 4 bytes for each field
+	private int[] offset; // the position of each field in the block for its width
+	private int byteStride, shortStride, intStride;
+	private byte[] byteValues = new byte[0];
+	private short[] shortValues = new short[0];
+	private int[] intValues = new int[0];
+
+	public CompactRecordList(int capacity) {
+		grow(capacity);
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	private void grow(int room) {
+		resets = copyOf(resets, room);
+		uptimes = copyOf(uptimes, room);
+		types = copyOf(types, room);
+		ids = copyOf(ids, room);
+		dates = copyOf(dates, room);
+		FramePart[] r = new FramePart[room];
+		System.arraycopy(records, 0, r, 0, size);
+		records = r;
+		growValues(room);
+	}
+
+	private void growValues(int room) {
+		byte[] b = new byte[room * byteStride];
+		System.arraycopy(byteValues, 0, b, 0, Math.min(byteValues.length, size * byteStride));
+		byteValues = b;
+		short[] s = new short[room * shortStride];
+		System.arraycopy(shortValues, 0, s, 0, Math.min(shortValues.length, size * shortStride));
+		shortValues = s;
+		int[] v = new int[room * intStride];
+		System.arraycopy(intValues, 0, v, 0, Math.min(intValues.length, size * intStride));
+		intValues = v;
+	}
+
+	private int[] copyOf(int[] a, int room) {
+		int[] n = new int[room];
+		System.arraycopy(a, 0, n, 0, size);
+		return n;
+	}
+
+	private long[] copyOf(long[] a, int room) {
+		long[] n = new long[room];
+		System.arraycopy(a, 0, n, 0, size);
+		return n;
+	}
+
+	/**
+	 * Move the records from position pos onwards by one, to make room for a record at pos
+	 */
+	private void shift(int pos) {
+		int n = size - pos;
+		System.arraycopy(resets, pos, resets, pos+1, n);
+		System.arraycopy(uptimes, pos, uptimes, pos+1, n);
+		System.arraycopy(types, pos, types, pos+1, n);
+		System.arraycopy(ids, pos, ids, pos+1, n);
+		System.arraycopy(dates, pos, dates, pos+1, n);
+		System.arraycopy(records, pos, records, pos+1, n);
+		System.arraycopy(byteValues, pos*byteStride, byteValues, (pos+1)*byteStride, n*byteStride);
+		System.arraycopy(shortValues, pos*shortStride, shortValues, (pos+1)*shortStride, n*shortStride);
+		System.arraycopy(intValues, pos*intStride, intValues, (pos+1)*intStride, n*intStride);
+	}
+
+	/**
+	 * True for the payloads that are fully described by their header and fields, so that get() can make an
+	 * identical record.  Payloads that hold other data, such as the HERCI packets or CAN packets, are not packed.
+	 */
+	private static boolean isPlainPayload(Class<?> c) {
+		return c == PayloadRtValues.class || c == PayloadMaxValues.class || c == PayloadMinValues.class
+				|| c == PayloadWOD.class || c == RadiationTelemetry.class || c == WodRadiationTelemetry.class
+				|| c == HerciHighspeedHeader.class;
+	}
+
+	private void setRecordClass(FramePart f) {
+		recordClass = f.getClass();
+		layout = f.layout;
+		int n = layout.NUMBER_OF_FIELDS;
+		width = new int[n];
+		offset = new int[n];
+		for (int i=0; i < n; i++) {
+			int bits = layout.fieldBitLength[i];
+			if (bits <= 8) {
+				width[i] = 1;
+				offset[i] = byteStride++;
+			} else if (bits <= 16) {
+				width[i] = 2;
+				offset[i] = shortStride++;
+			} else {
+				width[i] = 4;
+				offset[i] = intStride++;
+			}
+		}
+		growValues(resets.length);
+	}
+
+	/**
+	 * @return the captureDate as a number, or -1 if it can not be held as one and given back as the same String
+	 */
+	private static long parseDate(String date) {
+		if (date == null || date.length() != 14 || date.charAt(0) == '0') return -1;
+		long d = 0;
+		for (int i=0; i < date.length(); i++) {
+			char c = date.charAt(i);
+			if (c < '0' || c > '9') return -1;
+			d = d * 10 + (c - '0');
+		}
+		return d;
+	}
+
+	private boolean canPack(FramePart f) {
+		if (f.rawBits != null || f.fieldValue == null) return false;
+		if (f.satLatitude != FramePart.NO_POSITION_DATA || f.satLongitude != FramePart.NO_POSITION_DATA
+				|| f.satAltitude != FramePart.NO_POSITION_DATA) return false;
+		if (parseDate(f.captureDate) == -1) return false;
+		if (recordClass == null) {
+			if (!isPlainPayload(f.getClass())) return false;
+			if (f.layout == null || f.layout.fieldBitLength == null) return false;
+		} else if (f.getClass() != recordClass || f.layout != layout) {
+			return false;
+		}
+		BitArrayLayout l = f.layout;
+		if (f.fieldValue.length != l.NUMBER_OF_FIELDS) return false;
+		for (int i=0; i < f.fieldValue.length; i++) {
+			int v = f.fieldValue[i];
+			int bits = l.fieldBitLength[i];
+			if (bits <= 8 && (v < 0 || v > 0xFF)) return false;
+			if (bits > 8 && bits <= 16 && (v < 0 || v > 0xFFFF)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Put the record at position r, packing it if we can
+	 * @param r
+	 * @param f
+	 * @param pack - false to hold the FramePart itself
+	 */
+	private void store(int r, FramePart f, boolean pack) {
+		resets[r] = f.resets;
+		uptimes[r] = f.uptime;
+		types[r] = f.type;
+		ids[r] = f.id;
+		if (pack && canPack(f)) {
+			if (recordClass == null)
+				setRecordClass(f);
+			dates[r] = parseDate(f.captureDate);
+			records[r] = null;
+			for (int i=0; i < width.length; i++) {
+				int v = f.fieldValue[i];
+				if (width[i] == 1)
+					byteValues[r*byteStride + offset[i]] = (byte)v;
+				else if (width[i] == 2)
+					shortValues[r*shortStride + offset[i]] = (short)v;
+				else
+					intValues[r*intStride + offset[i]] = v;
+			}
+		} else {
+			dates[r] = -1;
+			records[r] = f;
+		}
+	}
+
+	/**
+	 * Make a record of the packed class from its header.  The constructor is passed no fields to load.
+	 */
+	private FoxFramePart newRecord(int id, int reset, long uptime, String date) {
+		StringTokenizer st = new StringTokenizer("");
+		if (recordClass == PayloadRtValues.class) return new PayloadRtValues(id, reset, uptime, date, st, layout);
+		if (recordClass == PayloadMaxValues.class) return new PayloadMaxValues(id, reset, uptime, date, st, layout);
+		if (recordClass == PayloadMinValues.class) return new PayloadMinValues(id, reset, uptime, date, st, layout);
+		if (recordClass == PayloadWOD.class) return new PayloadWOD(id, reset, uptime, date, st, layout);
+		if (recordClass == RadiationTelemetry.class) return new RadiationTelemetry(id, reset, uptime, date, st, layout);
+		if (recordClass == WodRadiationTelemetry.class) return new WodRadiationTelemetry(id, reset, uptime, date, st, layout);
+		return new HerciHighspeedHeader(id, reset, uptime, date, st, layout);
+	}
+
+	/**
+	 * Return the record at position i.  A packed record is made from the columns, so it is a new object each time.
+	 */
+	public synchronized FramePart get(int i) {
+		if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		if (records[i] != null) return records[i];
+		FoxFramePart f = newRecord(ids[i], resets[i], uptimes[i], Long.toString(dates[i]));
+		f.type = types[i];
+		if (f.fieldValue == null)
+			f.fieldValue = new int[width.length];
+		for (int k=0; k < width.length; k++)
+			f.fieldValue[k] = value(i, k);
+		return f;
+	}
+
+	private int value(int i, int field) {
+		if (width[field] == 1)
+			return byteValues[i*byteStride + offset[field]] & 0xFF;
+		if (width[field] == 2)
+			return shortValues[i*shortStride + offset[field]] & 0xFFFF;
+		return intValues[i*intStride + offset[field]];
+	}
+
+	public synchronized int getResets(int i) { return resets[i]; }
+	public synchronized long getUptime(int i) { return uptimes[i]; }
+	public synchronized int getType(int i) { return types[i]; }
+	public synchronized int getId(int i) { return ids[i]; }
+
+	/**
+	 * Return the raw value of the field at this position in the layout for record i, without making the record
+	 */
+	public synchronized int getRawValue(int i, int field) {
+		if (records[i] != null) return records[i].fieldValue[field];
+		return value(i, field);
+	}
+
+	/**
+	 * Return the raw values of all of the fields of record i.  For a packed record this is a new array.
+	 */
+	public synchronized int[] getFieldValues(int i) {
+		if (records[i] != null) return records[i].getFieldValues();
+		int[] values = new int[width.length];
+		for (int k=0; k < width.length; k++)
+			values[k] = value(i, k);
+		return values;
+	}
+
+	public synchronized double getSatLatitude(int i) {
+		return records[i] != null ? records[i].satLatitude : FramePart.NO_POSITION_DATA;
+	}
+
+	public synchronized double getSatLongitude(int i) {
+		return records[i] != null ? records[i].satLongitude : FramePart.NO_POSITION_DATA;
+	}
+
+	/**
+	 * Compare the record at position i with this reset, uptime and type, in the same order as FramePart.compareTo()
+	 */
+	private int compare(int i, int reset, long uptime, int type) {
+		if (resets[i] != reset) return resets[i] < reset ? -1 : 1;
+		if (uptimes[i] != uptime) return uptimes[i] < uptime ? -1 : 1;
+		if (types[i] != type) return types[i] < type ? -1 : 1;
+		return 0;
+	}
+
+	/**
+	 * @return the position of the first record that is at or after this reset, uptime and type, or size if there
+	 * is none
+	 */
+	private int lowerBound(int reset, long uptime, int type) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(mid, reset, uptime, type) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Insert a new record in order.  It is held as it is and not packed.  Returns false if we already hold a record
+	 * with the same reset, uptime and type.
+	 */
+	public synchronized boolean add(FramePart f) {
+		if (f == null) return false;
+		int pos;
+		if (size == 0 || compare(size-1, f.resets, f.uptime, f.type) < 0)
+			pos = size; // the usual case, a new record at the end
+		else
+			pos = lowerBound(f.resets, f.uptime, f.type);
+		if (pos < size && compare(pos, f.resets, f.uptime, f.type) == 0)
+			return false; // this was already in the list and would be a duplicate
+		if (size == resets.length)
+			grow(Math.max(16, size * 2));
+		shift(pos);
+		size++;
+		store(pos, f, false);
+		return true;
+	}
+
+	/**
+	 * Add a batch of records loaded from disk, packing them where we can.  The batch is sorted once and merged with
+	 * the records we already hold.  As with add(), a record that duplicates one we already hold, or an earlier one in
+	 * the batch, is not added.
+	 * @param list
+	 */
+	public synchronized void addAllSorted(List<FramePart> list) {
+		ArrayList<FramePart> batch = new ArrayList<FramePart>(list.size());
+		for (FramePart f : list)
+			if (f != null) batch.add(f);
+		if (batch.isEmpty()) return;
+		Collections.sort(batch); // stable, so the first of any duplicates stays first
+
+		// Work out where each record goes.  A positive entry is a record we hold, a negative one is from the batch
+		int[] from = new int[size + batch.size()];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size || j < batch.size()) {
+			boolean ours;
+			if (j >= batch.size())
+				ours = true;
+			else if (i >= size)
+				ours = false;
+			else {
+				FramePart b = batch.get(j);
+				ours = compare(i, b.resets, b.uptime, b.type) <= 0;
+			}
+			int reset; long uptime; int type;
+			if (ours) {
+				reset = resets[i]; uptime = uptimes[i]; type = types[i];
+			} else {
+				FramePart b = batch.get(j);
+				reset = b.resets; uptime = b.uptime; type = b.type;
+			}
+			boolean duplicate = false;
+			if (n > 0) {
+				int last = from[n-1];
+				if (last >= 0)
+					duplicate = compare(last, reset, uptime, type) == 0;
+				else {
+					FramePart b = batch.get(-last-1);
+					duplicate = b.resets == reset && b.uptime == uptime && b.type == type;
+				}
+			}
+			if (!duplicate)
+				from[n++] = ours ? i : -j-1;
+			if (ours) i++; else j++;
+		}
+
+		// Copy the records we hold to their new positions, then pack the new ones
+		int room = Math.max(n, resets.length);
+		int[] r = new int[room];
+		long[] u = new long[room];
+		int[] t = new int[room];
+		int[] id = new int[room];
+		long[] d = new long[room];
+		FramePart[] rec = new FramePart[room];
+		byte[] b = new byte[room * byteStride];
+		short[] s = new short[room * shortStride];
+		int[] v = new int[room * intStride];
+		for (int k=0; k < n; k++) {
+			int o = from[k];
+			if (o < 0) continue;
+			r[k] = resets[o];
+			u[k] = uptimes[o];
+			t[k] = types[o];
+			id[k] = ids[o];
+			d[k] = dates[o];
+			rec[k] = records[o];
+			System.arraycopy(byteValues, o*byteStride, b, k*byteStride, byteStride);
+			System.arraycopy(shortValues, o*shortStride, s, k*shortStride, shortStride);
+			System.arraycopy(intValues, o*intStride, v, k*intStride, intStride);
+		}
+		resets = r;
+		uptimes = u;
+		types = t;
+		ids = id;
+		dates = d;
+		records = rec;
+		byteValues = b;
+		shortValues = s;
+		intValues = v;
+		size = n;
+		for (int k=0; k < n; k++)
+			if (from[k] < 0)
+				store(k, batch.get(-from[k]-1), true);
+	}
+
+	public boolean hasFrame(int id, long uptime, int resets) {
+		return getFrameIndex(id, uptime, resets) != -1;
+	}
+
+	public synchronized int getFrameIndex(int id, long uptime, int resets) {
+		for (int i=lowerBound(resets, uptime, Integer.MIN_VALUE); i < size && this.resets[i] == resets && uptimes[i] == uptime; i++) {
+			if (ids[i] == id)
+				return i;
+		}
+		return -1;
+	}
+
+	public synchronized int getNearestFrameIndex(int id, long uptime, int resets) {
+		if (size == 0) return -1;
+		return getNearestFrameIndex(id, uptime, resets, types[0]);
+	}
+
+	/**
+	 * Return the first record at or after this reset, uptime and type, or the last record if they are all before it
+	 */
+	public synchronized int getNearestFrameIndex(int id, long uptime, int resets, int type) {
+		if (size == 0) return -1;
+		// First check special case where we have value off the end
+		if (resets > this.resets[size-1]) return size-1;
+		if (resets == this.resets[size-1] && uptime > uptimes[size-1]) return size-1;
+		int i = lowerBound(resets, uptime, type);
+		if (i < size)
+			return i;
+		return -1;
+	}
+
+	public synchronized int getNearestPrevFrameIndex(int id, long uptime, int resets) {
+		if (size == 0) return -1;
+		return getNearestPrevFrameIndex(id, uptime, resets, types[0]);
+	}
+
+	/**
+	 * Return the record at this reset, uptime and type, or the one before it if there is no exact match
+	 */
+	public synchronized int getNearestPrevFrameIndex(int id, long uptime, int resets, int type) {
+		if (size == 0) return -1;
+		// First check special case where we have value off the end, we return the last value
+		if (resets > this.resets[size-1]) return size-1;
+		if (resets == this.resets[size-1] && uptime > uptimes[size-1]) return size-1;
+		int i = lowerBound(resets, uptime, type);
+		if (i >= size) return -1;
+		if (compare(i, resets, uptime, type) == 0) return i;
+		return i-1;
+	}
+}
@@ -0,0 +1,144 @@
+package telemetry;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import common.FoxSpacecraft;
+import common.Spacecraft;
+
+/**
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The conversions for every field of a layout, worked out once so that a column of raw values can be converted
+ * in a loop.  convertRawValue() is a large switch that is entered for every value with the field name, and some
+ * conversions then look up a table by name.  Most fields are either a fixed scaling of the raw value or a lookup
+ * table, so for those fields we hold the scaling or the table.  Anything else is still passed to convertRawValue()
+ * on a record of the right type, so conversions that depend on the field name or are overridden by a payload
+ * work as they always did.
+ *
+ * Only FoxFramePart conversions are compiled.  The payloads that extend it only override conversions that are
+ * not compiled here, so the results are the same as calling convertRawValue().
+ *
+ */
+public class ConversionPlan {
+	static final int GENERIC = 0;
+	static final int SCALE = 1;
+	static final int TABLE = 2;
+	static final int IDENTITY = 3;
+
+	final BitArrayLayout layout;
+	final BitArray part;
+	final Spacecraft fox;
+	final int[] kind;
+	final double[][] scaling;
+	final LookUpTable[] table;
+
+	/**
+	 * Return the plan for the layout and class of this record.  The plans are held by the layout, one for each class,
+	 * because a layout can be read as more than one kind of record.  The record is kept and used for the conversions
+	 * that are not compiled
+	 * @param part
+	 * @param fox
+	 * @return
+	 */
+	public static ConversionPlan getPlan(BitArray part, Spacecraft fox) {
+		ConcurrentHashMap<Class<?>, ConversionPlan> plans = part.layout.conversionPlans;
+		ConversionPlan plan = plans.get(part.getClass());
+		if (plan == null || plan.fox != fox) {
+			plan = new ConversionPlan(part, fox);
+			plans.put(part.getClass(), plan);
+		}
+		return plan;
+	}
+
+	ConversionPlan(BitArray part, Spacecraft fox) {
+		this.part = part;
+		this.fox = fox;
+		layout = part.layout;
+		int n = layout.fieldName.length;
+		kind = new int[n];
+		scaling = new double[n][];
+		table = new LookUpTable[n];
+		for (int i=0; i < n; i++) {
+			kind[i] = GENERIC;
+			if (!(part instanceof FoxFramePart)) continue;
+			int conversion = layout.conversion[i];
+			double[] s = FoxFramePart.getScaling(conversion);
+			if (s != null) {
+				scaling[i] = s;
+				kind[i] = (s[0] == 1 && s[1] == 1 && s[2] == 1) ? IDENTITY : SCALE;
+			} else {
+				LookUpTable t = FoxFramePart.getLookupTable(conversion, fox instanceof FoxSpacecraft ? (FoxSpacecraft)fox : null);
+				if (t != null) {
+					table[i] = t;
+					kind[i] = TABLE;
+				}
+			}
+		}
+	}
+
+	/**
+	 * True if the conversion for this field runs in the plan, false if it is passed to convertRawValue()
+	 */
+	public boolean isCompiled(int field) {
+		return kind[field] != GENERIC;
+	}
+
+	/**
+	 * Convert a column of raw values for the field at this position in the layout
+	 * @param field - position of the field in the layout
+	 * @param raw
+	 * @param out - must be at least as long as raw
+	 */
+	public void convert(int field, int[] raw, double[] out) {
+		switch (kind[field]) {
+		case IDENTITY:
+			for (int i=0; i < raw.length; i++)
+				out[i] = raw[i];
+			break;
+		case SCALE:
+			double m = scaling[field][0];
+			double d = scaling[field][1];
+			double m2 = scaling[field][2];
+			for (int i=0; i < raw.length; i++)
+				out[i] = raw[i] * m / d * m2;
+			break;
+		case TABLE:
+			table[field].convert(raw, out);
+			break;
+		default:
+			String name = layout.fieldName[field];
+			int conversion = layout.conversion[field];
+			for (int i=0; i < raw.length; i++)
+				out[i] = part.convertRawValue(name, raw[i], conversion, fox);
+		}
+	}
+
+	/**
+	 * Convert one raw value for the field at this position in the layout
+	 */
+	public double convert(int field, int raw) {
+		switch (kind[field]) {
+		case IDENTITY:
+			return raw;
+		case SCALE:
+			return raw * scaling[field][0] / scaling[field][1] * scaling[field][2];
+		case TABLE:
+			return table[field].lookupValue(raw);
+		default:
+			return part.convertRawValue(layout.fieldName[field], raw, layout.conversion[field], fox);
+		}
+	}
+}
@@ -386,6 +386,79 @@ longer send telemetry.
 	public double convertRawValue(String name, int rawValue, int conversion, Spacecraft fox) {
 		return convertRawValue(name, rawValue, conversion, (FoxSpacecraft)fox);
 	}
+	
+	/**
+	 * Conversions that are just a table lookup convert the whole set with the table.  Anything else is converted
+	 * one value at a time
+	 */
+	public void convertRawValues(String name, int[] raw, double[] out, int conversion, Spacecraft fox) {
+		LookUpTable table = getLookupTable(conversion, (FoxSpacecraft)fox);
+		if (table != null)
+			table.convert(raw, out);
+		else
+			super.convertRawValues(name, raw, out, conversion, fox);
+	}
+	
+	/**
+	 * Return {multiply, divide, multiply} if this conversion only scales the raw value, so that it can be run over
+	 * a whole column in a loop.  The raw value is multiplied and divided in the same order as convertRawValue()
+	 * so that the results are identical.  Returns null for any other conversion.
+	 * @param conversion
+	 * @return
+	 */
+	static double[] getScaling(int conversion) {
+		switch (conversion) {
+		case BitArrayLayout.CONVERT_ANTENNA:
+		case BitArrayLayout.CONVERT_BOOLEAN:
+		case BitArrayLayout.CONVERT_NONE:
+		case BitArrayLayout.CONVERT_INTEGER:
+		case BitArrayLayout.CONVERT_STATUS_BIT:
+		case BitArrayLayout.CONVERT_IHU_DIAGNOSTIC:
+		case BitArrayLayout.CONVERT_HARD_ERROR:
+		case BitArrayLayout.CONVERT_SOFT_ERROR:
+		case BitArrayLayout.CONVERT_SOFT_ERROR_84488:
+		case BitArrayLayout.CONVERT_ICR_COMMAND_COUNT:
+		case BitArrayLayout.CONVERT_ICR_DIAGNOSTIC:
+			return new double[] {1, 1, 1};
+		case BitArrayLayout.CONVERT_V25_SENSOR:
+			return new double[] {VOLTAGE_STEP_FOR_2V5_SENSORS, 1, 1};
+		case BitArrayLayout.CONVERT_V3_SENSOR:
+			return new double[] {VOLTAGE_STEP_FOR_3V_SENSORS, 1, 1};
+		case BitArrayLayout.CONVERT_SOLAR_PANEL:
+			return new double[] {VOLTAGE_STEP_FOR_3V_SENSORS, SOLAR_PANEL_SCALING_FACTOR, 1};
+		case BitArrayLayout.CONVERT_MPPT_SOLAR_PANEL:
+			return new double[] {VOLTAGE_STEP_FOR_2V5_SENSORS, 1, MPPT_SOLAR_PANEL_SCALING_FACTOR};
+		case BitArrayLayout.CONVERT_PSU_CURRENT:
+			return new double[] {VOLTAGE_STEP_FOR_3V_SENSORS, PSU_CURRENT_SCALING_FACTOR, 1};
+		case BitArrayLayout.CONVERT_MPPT_CURRENT:
+			return new double[] {VOLTAGE_STEP_FOR_2V5_SENSORS, MPPT_CURRENT_SCALING_FACTOR, 1000};
+		}
+		return null;
+	}
+	
+	/**
+	 * Return the table if this conversion is only a lookup in it, otherwise null
+	 * @param conversion
+	 * @param fox - may be null, in which case only the static tables are returned
+	 * @return
+	 */
+	public static LookUpTable getLookupTable(int conversion, FoxSpacecraft fox) {
+		switch (conversion) {
+		case BitArrayLayout.CONVERT_BATTERY_TEMP:
+			return batteryTempTable;
+		case BitArrayLayout.CONVERT_SOLAR_PANEL_TEMP:
+			return solarPanelTempTable;
+		case BitArrayLayout.CONVERT_TEMP:
+			return temperatureTable;
+		case BitArrayLayout.CONVERT_RSSI:
+			return fox == null ? null : fox.getLookupTableByName(Spacecraft.RSSI_LOOKUP);
+		case BitArrayLayout.CONVERT_IHU_TEMP:
+			return fox == null ? null : fox.getLookupTableByName(Spacecraft.IHU_TEMP_LOOKUP);
+		case BitArrayLayout.CONVERT_HUSKY_ISIS_ANT_TEMP:
+			return fox == null ? null : fox.getLookupTableByName(Spacecraft.HUSKY_SAT_ISIS_ANT_TEMP);
+		}
+		return null;
+	}
 	/**
 	 * Given a raw value, BitArrayLayout.CONVERT_it into the actual value that we can display based on the
 	 * conversion type passed.  Field name is also used in some conversions, e.g. the batteries
@@ -99,6 +99,16 @@ public abstract class FoxPayloadStore implements Runnable {
 	 */
 	public abstract double[][] getGraphData(String name, int period, Spacecraft fox, int fromReset, long fromUptime, String layout, boolean positionData, boolean reverse);
 
+	/**
+	 * Return up to "period" entries for this attribute that follow the record at afterReset, afterUptime, oldest
+	 * first.  Used by a graph that already has the data up to that record.
+	 * 
+	 * @param name
+	 * @param period
+	 * @return the new entries, or null if they can not be found this way and the graph should fetch all of its data
+	 */
+	public abstract double[][] getGraphDataAfter(String name, int period, Spacecraft fox, int afterReset, long afterUptime, String layout, boolean positionData);
+
 	public abstract double[][] getRtGraphData(String name, int period, Spacecraft fox, int fromReset, long fromUptime, boolean positionData, boolean reverse);
 
 	public abstract double[][] getMaxGraphData(String name, int period, Spacecraft fox, int fromReset, long fromUptime, boolean positionData, boolean reverse);
@@ -1,10 +1,12 @@
 package telemetry;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.UnknownHostException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -17,6 +19,8 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import telemServer.DuplicateFrameCache;
+import telemServer.Metrics;
 import telemServer.ServerConfig;
 import telemServer.StpFileProcessException;
 import telemServer.StpFileRsDecodeException;
@@ -112,6 +116,7 @@ public abstract class Frame implements Comparable<Frame> {
 
 	int numberBytesAdded = 0;
 	protected byte[] bytes;
+	private long rawFrameHash; // hash of the decoded bytes from an STP file, used to spot duplicate frames
 
 	// Store a reference to any measurements that were made at the same time as
 	// the Frame was downloaded, so we can pass them on to the server
@@ -405,7 +410,20 @@ public abstract class Frame implements Comparable<Frame> {
 		//	stpDir = dir + File.separator + fileName;
 		//	
 		//}
-		FileInputStream in = new FileInputStream(fileName);
+		return loadStp(fileName, new BufferedInputStream(new FileInputStream(fileName)));
+	}
+
+	/**
+	 * Create a frame from an STP file that has already been read, e.g. from the server spool.  The stream
+	 * is closed once the frame has been read.
+	 * 
+	 * @param fileName - the name used in log messages and exceptions
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 * @throws StpFileProcessException
+	 */
+	public static Frame loadStp(String fileName, InputStream in) throws IOException, StpFileProcessException {
 		int c;
 		int lineLen = 0;
 
@@ -580,6 +598,7 @@ public abstract class Frame implements Comparable<Frame> {
 
 
 		frm.addRawFrame(frame);
+		frm.rawFrameHash = DuplicateFrameCache.hash(frame);
 		frm.receiver = receiver;
 		frm.demodulator = demodulator;
 		frm.stpDate = stpDate;
@@ -673,10 +692,40 @@ public abstract class Frame implements Comparable<Frame> {
 		return true;
 	}
 
+	static final Metrics.Histogram importTime = Metrics.histogram("foxserver_stp_import_seconds", "Time to decode an STP file and add it to the database");
+	static final Metrics.Counter rsFailures = Metrics.counter("foxserver_rs_decode_failures_total", "STP files that failed the RS decode");
+	static final Metrics.Counter duvFrames = Metrics.counter("foxserver_frames_total{type=\"duv\"}", "Frames added to the database by type");
+	static final Metrics.Counter bpskFrames = Metrics.counter("foxserver_frames_total{type=\"bpsk\"}", "Frames added to the database by type");
+	static final Metrics.Counter hsFrames = Metrics.counter("foxserver_frames_total{type=\"highspeed\"}", "Frames added to the database by type");
+	
 	public static Frame importStpFile(String u, String p, String db, File f, boolean delete) throws StpFileProcessException {
+		InputStream in;
+		try {
+			in = new BufferedInputStream(new FileInputStream(f));
+		} catch (IOException e) {
+			Log.println(e.getMessage());
+			throw new StpFileProcessException(f.getName(), "IO Exception processing file");
+		}
+		Frame decodedFrame = importStp(u, p, db, f.getName(), in);
+		if (delete) {
+			f.delete();
+		}
+		return decodedFrame;
+	}
+
+	/**
+	 * Decode an STP file from a stream and add it to the database
+	 * 
+	 * @param name - the name of the STP file, used in log messages and exceptions
+	 * @param in
+	 * @return the frame, or null if this was not an STP file or was test data
+	 * @throws StpFileProcessException
+	 */
+	public static Frame importStp(String u, String p, String db, String name, InputStream in) throws StpFileProcessException {
 		PayloadDbStore payloadStore = null;
+		long start = System.nanoTime();
 		try {
-			Frame decodedFrame = Frame.loadStp(f.getPath());
+			Frame decodedFrame = Frame.loadStp(name, in);
 			if (decodedFrame != null && !decodedFrame.corrupt) {
 
 				/*
@@ -692,61 +741,71 @@ public abstract class Frame implements Comparable<Frame> {
 				*/
 				payloadStore = new PayloadDbStore(u,p,db);
 				if (!payloadStore.addStpHeader(decodedFrame))
-					throw new StpFileProcessException(f.getName(), "Could not add the STP HEADER to the database ");
-				if (decodedFrame instanceof SlowSpeedFrame) {
+					throw new StpFileProcessException(name, "Could not add the STP HEADER to the database ");
+				// Another station may have sent this frame a few seconds ago.  We have recorded that this station
+				// received it, and the payloads are already stored, so there is nothing more to do
+				Header h = decodedFrame.getHeader();
+				boolean duplicate = DuplicateFrameCache.isDuplicate(decodedFrame.foxId, h.resets, h.uptime, h.type, decodedFrame.rawFrameHash);
+				if (duplicate) {
+					// counted by the duplicate frame cache, the payloads were not added again
+				} else if (decodedFrame instanceof SlowSpeedFrame) {
 					SlowSpeedFrame ssf = (SlowSpeedFrame)decodedFrame;
 					FoxFramePart payload = ssf.getPayload();
 					SlowSpeedHeader header = ssf.getHeader();
 					if (!payloadStore.add(header.getFoxId(), header.getUptime(), header.getResets(), payload))
-						throw new StpFileProcessException(f.getName(), "Failed to process file: Could not add DUV record to database");
-					//duvFrames++;
+						throw new StpFileProcessException(name, "Failed to process file: Could not add DUV record to database");
+					duvFrames.inc();
 				} else if (decodedFrame instanceof FoxBPSKFrame) {
 					FoxBPSKFrame hsf = (FoxBPSKFrame)decodedFrame;
 					// For BPSK the header is stored on the frame and the timestamp info is saved
 					if (!hsf.savePayloads(payloadStore))
-							throw new StpFileProcessException(f.getName(), "Failed to process file: Could not add PSK record to database");;
+							throw new StpFileProcessException(name, "Failed to process file: Could not add PSK record to database");;
+					bpskFrames.inc();
 				} else {
 					HighSpeedFrame hsf = (HighSpeedFrame)decodedFrame;
 					HighSpeedHeader header = hsf.getHeader();
 					PayloadRtValues payload = hsf.getRtPayload();
 					if (!payloadStore.add(header.getFoxId(), header.getUptime(), header.getResets(), payload))
-						throw new StpFileProcessException(f.getName(), "Failed to process file: Could not add HS RT to database");
+						throw new StpFileProcessException(name, "Failed to process file: Could not add HS RT to database");
 					PayloadMaxValues maxPayload = hsf.getMaxPayload();
 					if (!payloadStore.add(header.getFoxId(), header.getUptime(), header.getResets(), maxPayload))
-						throw new StpFileProcessException(f.getName(), "Failed to process file: Could not add HS MAX to database");
+						throw new StpFileProcessException(name, "Failed to process file: Could not add HS MAX to database");
 					PayloadMinValues minPayload = hsf.getMinPayload();
 					if (!payloadStore.add(header.getFoxId(), header.getUptime(), header.getResets(), minPayload)) 
-						throw new StpFileProcessException(f.getName(), "Failed to process file: Could not HS MIN add to database");
+						throw new StpFileProcessException(name, "Failed to process file: Could not HS MIN add to database");
 					PayloadRadExpData[] radPayloads = hsf.getRadPayloads();
 					if (!payloadStore.add(header.getFoxId(), header.getUptime(), header.getResets(), radPayloads))
-						throw new StpFileProcessException(f.getName(), "Failed to process file: Could not add HS RAD to database");
+						throw new StpFileProcessException(name, "Failed to process file: Could not add HS RAD to database");
 					if (Config.satManager.hasCamera(header.getFoxId())) {
 						PayloadCameraData cameraData = hsf.getCameraPayload();
 						if (cameraData != null)
 							if (!payloadStore.add(header.getFoxId(), header.getUptime(), header.getResets(), cameraData))
-								throw new StpFileProcessException(f.getName(), "Failed to process file: Could not add HS CAMERA data to database");
+								throw new StpFileProcessException(name, "Failed to process file: Could not add HS CAMERA data to database");
 
 					}
 					if (Config.satManager.hasHerci(header.getFoxId())) {
 						PayloadHERCIhighSpeed[] herciDataSet = hsf.getHerciPayloads();
 						if (herciDataSet != null)
 							if (!payloadStore.add(header.getFoxId(), header.getUptime(), header.getResets(), herciDataSet))
-								throw new StpFileProcessException(f.getName(), "Failed to process file: Could not add HERCI HS data to database");
+								throw new StpFileProcessException(name, "Failed to process file: Could not add HERCI HS data to database");
 					}
 			
-					//hsFrames++;
+					hsFrames.inc();
 				}
-			}
-			if (delete) {
-				f.delete();
+				if (!duplicate)
+					DuplicateFrameCache.add(decodedFrame.foxId, h.resets, h.uptime, h.type, decodedFrame.rawFrameHash);
 			}
 			return decodedFrame;
+		} catch (StpFileRsDecodeException e) {
+			rsFailures.inc();
+			throw e;
 		} catch (IOException e) {
 			Log.println(e.getMessage());
 			e.printStackTrace(Log.getWriter());
-			throw new StpFileProcessException(f.getName(), "IO Exception processing file");
+			throw new StpFileProcessException(name, "IO Exception processing file");
 		} finally {
 			try { payloadStore.closeConnection(); } catch (Exception e) {	}
+			importTime.observeSince(start);
 		}
 	}
 	
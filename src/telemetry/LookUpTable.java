@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -38,14 +39,92 @@ import common.Log;
  * We store the reference values in a file and read on startup.  The values are read into a Map sorted
  * by the key.
  *
- * To look up a value we find the nearest key value by iterating over the map, then return the interpolated value
- * 
+ * The map is compiled into arrays of keys and values the first time a value is looked up, so a lookup is a
+ * binary search and an interpolation with no boxing.  A few tables are not quite in key order, e.g. the end of the
+ * FOX1A RSSI table, and for those we walk the arrays in file order so the results are the same as they always were.
+ * Tables whose keys fit in a 12 bit ADC reading are also expanded into a dense array with the value for every raw
+ * reading, which makes a lookup an array index.
+ * Graphs and exports convert thousands of values at a time, so they should use convert(int[], double[]).
  *
  */
 public class LookUpTable {
 	
 	public String name; // the name, which is stored in the spacecraft file and used to index the tables
 	protected Map<Integer, Double> table = new LinkedHashMap<Integer, Double>();
+	
+	public static final int DENSE_SIZE = 4096; // every value of a 12 bit ADC
+	private volatile Compiled compiled;
+	
+	/**
+	 * The table as primitive arrays.  Built once and never changed, so it can be shared by threads.
+	 */
+	static class Compiled {
+		final int[] keys;
+		final double[] values;
+		final boolean sorted;
+		final double[] dense; // null if the keys do not fit in DENSE_SIZE
+		
+		Compiled(Map<Integer, Double> table) {
+			keys = new int[table.size()];
+			values = new double[table.size()];
+			int i = 0;
+			boolean ascending = true;
+			for (Entry<Integer, Double> e : table.entrySet()) {
+				keys[i] = e.getKey();
+				values[i] = e.getValue();
+				if (i > 0 && keys[i] <= keys[i-1])
+					ascending = false;
+				i++;
+			}
+			sorted = ascending;
+			int max = Integer.MIN_VALUE;
+			int min = Integer.MAX_VALUE;
+			for (int k : keys) {
+				if (k > max) max = k;
+				if (k < min) min = k;
+			}
+			if (keys.length > 0 && min >= 0 && max < DENSE_SIZE) {
+				double[] d = new double[DENSE_SIZE];
+				for (int k=0; k < DENSE_SIZE; k++)
+					d[k] = search(k);
+				dense = d;
+			} else
+				dense = null;
+		}
+		
+		final double lookup(int key) {
+			if (dense != null && key >= 0 && key < DENSE_SIZE)
+				return dense[key];
+			return search(key);
+		}
+		
+		/**
+		 * Binary search for the keys either side of this key and interpolate between them.  If the key is off
+		 * either end of the table we extrapolate from the first or last two keys.
+		 */
+		final double search(int key) {
+			int n = keys.length;
+			if (n == 0) return FoxFramePart.ERROR_VALUE;
+			if (n == 1) {
+				if (key == keys[0]) return values[0];
+				return linearInterpolation(key, 0, keys[0], 0, values[0]);
+			}
+			int i;
+			if (sorted) {
+				int idx = Arrays.binarySearch(keys, key);
+				if (idx >= 0) return values[idx];
+				i = -idx - 1; // the first key that is greater than this key
+			} else {
+				for (i=0; i < n; i++) {
+					if (key == keys[i]) return values[i];
+					if (key < keys[i]) break;
+				}
+			}
+			if (i == 0) i = 1;
+			else if (i == n) i = n - 1;
+			return linearInterpolation(key, keys[i-1], keys[i], values[i-1], values[i]);
+		}
+	}
 
 	/**
 	 * Called for a static table where the values are not loaded from a file
@@ -73,16 +152,32 @@ public class LookUpTable {
 	 * @param y1
 	 * @return
 	 */
-	private double linearInterpolation(double x, double x0, double x1, double y0, double y1) {
+	private static double linearInterpolation(double x, double x0, double x1, double y0, double y1) {
 		double y = y0 + (y1 - y0) * ((x - x0)/(x1 - x0));
 		return y;
 	}
 		
 	/**
-	 * Look up a value from the table.  We start from the top of the table.  The keys are in ascending order
-	 * with the lowest value first.  So we search for the first key that is greater than the key we are 
-	 * looking up.  Then we run a linear interpolation between the previous key and the key that is greater than
-	 * our lookup key.
+	 * Build the arrays used for the lookups.  Called automatically on the first lookup, after the table has been
+	 * loaded from the file or filled by the constructor of a static table.
+	 */
+	public void compile() {
+		compiled = new Compiled(table);
+	}
+	
+	private Compiled getCompiled() {
+		Compiled c = compiled;
+		if (c == null) {
+			c = new Compiled(table);
+			compiled = c;
+		}
+		return c;
+	}
+	
+	/**
+	 * Look up a value from the table.  The keys are in ascending order with the lowest value first.  So we 
+	 * search for the first key that is greater than the key we are looking up.  Then we run a linear 
+	 * interpolation between the previous key and the key that is greater than our lookup key.
 	 * 
 	 * If the lookup key is less than the first key in the table then we must extrapolate
 	 * If the lookup key is greater than the last key in the table we must extrapolate past the end
@@ -90,52 +185,18 @@ public class LookUpTable {
 	 * @return
 	 */
 	public double lookupValue(int lookUpKey) {
-		Iterator<Entry<Integer, Double>> it = table.entrySet().iterator();
-		double lastValue = 0;
-		int lastKey = 0;
-		double prevValue = 0;
-		int prevKey = 0;
-		Entry<Integer, Double> pairs = null;
-		int key;
-		boolean firstKey = true;
-		double value = FoxFramePart.ERROR_VALUE;
-	    while (it.hasNext()) {
-	        pairs = it.next();
-	        key = (Integer)pairs.getKey();
-	        value = (Double)pairs.getValue(); 
-	        if (firstKey) {
-	        	firstKey = false;
-	        	if (lookUpKey < key) {
-	        		
-	        		// store the values
-	        		lastKey = key;
-	    	        lastValue = value;
-	        		// get the next set
-	    	        pairs = it.next();
-	    	        key = (Integer)pairs.getKey();
-	    	        value = (Double)pairs.getValue();
-	    	        // and extrapolate from there
-	        		value = linearInterpolation((double)lookUpKey, lastKey, (double)pairs.getKey(), lastValue, (Double)pairs.getValue());
-	        		return value;
-	        	}
-	        }
-	        if (lookUpKey == key) 
-	        	return value;
-	        else if (lookUpKey < key) {
-	        	// Solve for the value using linear interpolation
-	  //      	System.out.println("Interpolating: " + (double)lookUpkKey +" "+ lastKey + " " + (double)pairs.getKey() + " " + lastValue + " " + (Double)pairs.getValue());
-	        	value = linearInterpolation((double)lookUpKey, lastKey, (double)pairs.getKey(), lastValue, (Double)pairs.getValue());
-	        	return value;
-	        }
-	        prevKey = lastKey;
-	        prevValue = lastValue;
-	        lastKey = key;
-	        lastValue = value;
-	    }
-	    // try to extrapolate off the end
-	    if (pairs != null)
-	    	value = linearInterpolation((double)lookUpKey, prevKey, lastKey, prevValue, lastValue);
-	    return value;
+		return getCompiled().lookup(lookUpKey);
+	}
+	
+	/**
+	 * Look up a set of raw values, e.g. all of the points on a graph
+	 * @param raw
+	 * @param out - must be at least as long as raw
+	 */
+	public void convert(int[] raw, double[] out) {
+		Compiled c = getCompiled();
+		for (int i=0; i < raw.length; i++)
+			out[i] = c.lookup(raw[i]);
 	}
 	
 	public int reverseLookup(double lookUpKey) {
@@ -207,6 +268,7 @@ public class LookUpTable {
 				}
 			}
 			dis.close();
+			compile();
 		} catch (IOException e) {
 			e.printStackTrace(Log.getWriter());
 
@@ -709,6 +709,21 @@ public class PayloadDbStore extends FoxPayloadStore implements Runnable {
 		return null;		
 	}
 
+	/**
+	 * Stream the raw values of a single field to the handler.  Only resets, uptime and the field are read
+	 * from the database.  See SatPayloadDbStore.streamFieldData()
+	 * @return the number of rows, or -1 if the spacecraft, layout or field is not valid
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public int streamFieldData(int id, String layoutName, String name, int fromReset, long fromUptime, int num, 
+			SatPayloadDbStore.FieldRowHandler handler) throws SQLException, IOException {
+		SatPayloadDbStore store = getPayloadStoreById(id);
+		if (store != null)
+			return store.streamFieldData(layoutName, name, fromReset, fromUptime, num, handler);
+		return -1;
+	}
+
 	/**
 	 * Return an array of radiation data with "period" entries for this sat id and from the given reset and
 	 * uptime.
@@ -992,10 +1007,26 @@ public class PayloadDbStore extends FoxPayloadStore implements Runnable {
 
 	@Override
 	public int getNumberOfFrames(int id, String lay) {
-		// TODO Auto-generated method stub
+		SatPayloadDbStore store = getPayloadStoreById(id);
+		if (store != null)
+			return store.getNumberOfFrames(lay);
 		return 0;
 	}
 
+	@Override
+	public double[][] getGraphDataAfter(String name, int period, Spacecraft fox, int afterReset, long afterUptime,
+			String layout, boolean positionData) {
+		SatPayloadDbStore store = getPayloadStoreById(fox.foxId);
+		if (store != null)
+			try {
+				return store.getGraphDataAfter(name, period, fox, afterReset, afterUptime, layout);
+			} catch (SQLException e) {
+				errorPrint("getGraphDataAfter", e);
+				e.printStackTrace(Log.getWriter());
+			}
+		return null;
+	}
+
 	@Override
 	public double[][] getGraphData(String name, int period, Spacecraft fox, int fromReset, long fromUptime,
 			String layout, boolean plot, boolean reverse) {
@@ -101,8 +101,10 @@ public class PayloadStore extends FoxPayloadStore implements Runnable {
 			}
 			
 		}
-		Config.fileProgress = new ProgressPanel(MainWindow.frame, loadMessage, false);
-		Config.fileProgress.setVisible(true);
+		if (Log.showGuiDialogs) {
+			Config.fileProgress = new ProgressPanel(MainWindow.frame, loadMessage, false);
+			Config.fileProgress.setVisible(true);
+		}
 		
 		for (int s=0; s<sats.size(); s++) {
 			
@@ -120,10 +122,12 @@ public class PayloadStore extends FoxPayloadStore implements Runnable {
 				if (sats.get(s).isFox1())
 					if (((FoxSpacecraft)sats.get(s)).hasCamera()) pictureStore[s] = new SatPictureStore(sats.get(s).foxId);;
 				measurementStore[s] = new SatMeasurementStore(sats.get(s).foxId);
-				Config.fileProgress.updateProgress(100 * s / sats.size());
+				if (Config.fileProgress != null)
+					Config.fileProgress.updateProgress(100 * s / sats.size());
 			
 		}
 		loaded = true;
+		UpdateBus.publishAll(); // anything that was waiting for the store to load can now read it
 	}
 	
 	/**
@@ -707,6 +711,17 @@ public class PayloadStore extends FoxPayloadStore implements Runnable {
 			}
 		return null;
 	}
+	public double[][] getGraphDataAfter(String name, int period, Spacecraft fox, int afterReset, long afterUptime, String layout, boolean positionData) {
+		SatPayloadStore store = getPayloadStoreById(fox.foxId);
+		if (store != null)
+			try {
+				return store.getGraphDataAfter(name, period, fox, afterReset, afterUptime, layout, positionData);
+			} catch (IOException e) {
+				e.printStackTrace(Log.getWriter());
+				Log.println("ERROR getting graph data: " + e.getMessage());
+			}
+		return null;
+	}
 	public double[][] getRtGraphData(String name, int period, Spacecraft fox, int fromReset, long fromUptime, boolean positionData, boolean reverse) {
 		SatPayloadStore store = getPayloadStoreById(fox.foxId);
 		if (store != null)
@@ -1,14 +1,10 @@
 package telemetry;
 
-import gui.MainWindow;
-
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
-import javax.swing.JOptionPane;
-
 import measure.PassMeasurement;
 import telemetry.FoxBPSK.FoxBPSKFrame;
 import common.Config;
@@ -72,16 +68,10 @@ public class RawFrameQueue extends RawQueue {
 				load(RAW_PSK_FRAMES_FILE, Frame.PSK_FRAME);
 			}
 		} catch (FileNotFoundException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"ERROR Raw Frames Queue File not found",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("ERROR Raw Frames Queue File not found", e.toString());
 			e.printStackTrace(Log.getWriter());
 		} catch (IOException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"I/O ERROR Loading Stored Raw Frames Queue",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("I/O ERROR Loading Stored Raw Frames Queue", e.toString());
 			e.printStackTrace(Log.getWriter());
 		}
 	}
@@ -90,18 +80,18 @@ public class RawFrameQueue extends RawQueue {
 		if (f instanceof SlowSpeedFrame ) {
 				updatedSlowQueue = true;
 				save(f, RAW_SLOW_SPEED_FRAMES_FILE);
-				MainWindow.setTotalQueued(this.rawSlowSpeedFrames.size() + this.rawHighSpeedFrames.size()+ this.rawPSKFrames.size());
+				updateTotalQueued();
 				return rawSlowSpeedFrames.add(f);
 			
 		} else if (f instanceof FoxBPSKFrame ) {
 				updatedPSKQueue = true;
 				save(f, RAW_PSK_FRAMES_FILE);
-				MainWindow.setTotalQueued(this.rawSlowSpeedFrames.size() + this.rawHighSpeedFrames.size() + this.rawPSKFrames.size());
+				updateTotalQueued();
 				return rawPSKFrames.add(f);
 		} else {
 				updatedHSQueue = true;
 				save(f, RAW_HIGH_SPEED_FRAMES_FILE);
-				MainWindow.setTotalQueued(this.rawSlowSpeedFrames.size() + this.rawHighSpeedFrames.size() + this.rawPSKFrames.size());
+				updateTotalQueued();
 				return rawHighSpeedFrames.add(f);
 		}		
 	}
@@ -114,13 +104,10 @@ public class RawFrameQueue extends RawQueue {
 			SatPayloadStore.remove(SatPayloadTable.getDir() + RAW_PSK_FRAMES_FILE);
 			init();
 		} catch (IOException ex) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					ex.toString(),
-					"Error Deleting Server Upload Queues, check permissions on files:\n" +
+			Log.errorDialog("Error Deleting Server Upload Queues, check permissions on files:\n" +
 					RAW_SLOW_SPEED_FRAMES_FILE + "\n" +
 					RAW_PSK_FRAMES_FILE + "\n" +
-					RAW_HIGH_SPEED_FRAMES_FILE,
-					JOptionPane.ERROR_MESSAGE) ;
+					RAW_HIGH_SPEED_FRAMES_FILE, ex.toString());
 		}
 
 	}
@@ -138,7 +125,7 @@ public class RawFrameQueue extends RawQueue {
 				Log.println("ERROR: server frame queue thread interrupted");
 				e.printStackTrace(Log.getWriter());
 			} 			
-			MainWindow.setTotalQueued(this.rawSlowSpeedFrames.size() + this.rawHighSpeedFrames.size() + this.rawPSKFrames.size());
+			updateTotalQueued();
 			if (Config.uploadToServer) {
 				if (!success) {
 					// We failed the last time we tried to connect, so wait until we retry
@@ -243,7 +230,7 @@ public class RawFrameQueue extends RawQueue {
 						+ " The frame will be sent again.  If this error repeats you may need to remove the queue file manually");
 				e.printStackTrace(Log.getWriter());
 			}
-		MainWindow.setTotalQueued(this.rawSlowSpeedFrames.size() + this.rawHighSpeedFrames.size()+ this.rawPSKFrames.size());
+		updateTotalQueued();
 		return success; // return true if one succeeded
 	}
 }
\ No newline at end of file
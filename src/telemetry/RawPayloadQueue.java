@@ -5,13 +5,10 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
-import javax.swing.JOptionPane;
-
 import common.Config;
 import common.Log;
 import common.Spacecraft;
 import common.TlmServer;
-import gui.MainWindow;
 import telemetry.FoxBPSK.FoxBPSKFrame;
 
 /**
@@ -62,16 +59,10 @@ public class RawPayloadQueue extends RawQueue {
 				load(RAW_PSK_FRAMES_FILE, Frame.PSK_FRAME);
 			}
 		} catch (FileNotFoundException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"ERROR Raw Frames Queue File not found",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("ERROR Raw Frames Queue File not found", e.toString());
 			e.printStackTrace(Log.getWriter());
 		} catch (IOException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"I/O ERROR Loading Stored Raw Frames Queue",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("I/O ERROR Loading Stored Raw Frames Queue", e.toString());
 			e.printStackTrace(Log.getWriter());
 		}
 	}
@@ -100,13 +91,10 @@ public class RawPayloadQueue extends RawQueue {
 			SatPayloadStore.remove(SatPayloadTable.getDir() + RAW_PSK_FRAMES_FILE);
 			init();
 		} catch (IOException ex) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					ex.toString(),
-					"Error Deleting Local Server Upload Queues, check permissions on files:\n" +
+			Log.errorDialog("Error Deleting Local Server Upload Queues, check permissions on files:\n" +
 					RAW_SLOW_SPEED_FRAMES_FILE + "\n" +
 					RAW_PSK_FRAMES_FILE + "\n" +
-					RAW_HIGH_SPEED_FRAMES_FILE,
-					JOptionPane.ERROR_MESSAGE) ;
+					RAW_HIGH_SPEED_FRAMES_FILE, ex.toString());
 		}
 
 	}
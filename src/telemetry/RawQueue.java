@@ -35,6 +35,18 @@ public abstract class RawQueue implements Runnable {
 	public abstract boolean add(Frame f) throws IOException;
 	public abstract void delete();
 	
+	/**
+	 * @return the number of frames waiting to be sent to the server
+	 */
+	public int getSize() {
+		return rawSlowSpeedFrames.size() + rawHighSpeedFrames.size() + rawPSKFrames.size();
+	}
+	
+	protected void updateTotalQueued() {
+		if (Config.mainWindow != null) // there is no window when we run as a daemon
+			MainWindow.setTotalQueued(getSize());
+	}
+	
 	protected void load(String log, int type) throws IOException {
 		if (!Config.logFileDirectory.equalsIgnoreCase("")) {
 			log = Config.logFileDirectory + File.separator + log;
@@ -75,7 +87,7 @@ public abstract class RawQueue implements Runnable {
 		}
 
 		dis.close();
-		MainWindow.setTotalQueued(this.rawSlowSpeedFrames.size() + this.rawHighSpeedFrames.size() + this.rawPSKFrames.size());
+		updateTotalQueued();
 
 	}
 
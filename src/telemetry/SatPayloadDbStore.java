@@ -12,6 +12,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.JOptionPane;
 
@@ -19,6 +20,7 @@ import common.Config;
 import common.Log;
 import common.Spacecraft;
 import common.FoxSpacecraft;
+import telemServer.Metrics;
 
 /**
  * 
@@ -105,6 +107,11 @@ public class SatPayloadDbStore {
 	
 	PayloadDbStore payloadDbStore;
 	
+	static final Metrics.Histogram insertTime = Metrics.histogram("foxserver_db_insert_seconds", "Time to insert a record into the database");
+	static final Metrics.Counter inserted = Metrics.counter("foxserver_db_inserts_total{result=\"inserted\"}", "Database inserts by result");
+	static final Metrics.Counter duplicates = Metrics.counter("foxserver_db_inserts_total{result=\"duplicate\"}", "Database inserts by result");
+	static final Metrics.Counter insertErrors = Metrics.counter("foxserver_db_inserts_total{result=\"error\"}", "Database inserts by result");
+	
 	/**
 	 * Create the payload store this this fox id
 	 * @param id
@@ -306,6 +313,11 @@ public class SatPayloadDbStore {
 	}
 
 	public int getNumberOfFrames() { return count(rtTableName) + count(maxTableName) + count(minTableName) + count(radTableName); }
+	public int getNumberOfFrames(String layout) {
+		String table = getTableNameByLayout(layout);
+		if (table == null) return 0;
+		return count(table);
+	}
 	public int getNumberOfTelemFrames() { return count(rtTableName) + count(maxTableName) + count(minTableName); }
 	public int getNumberOfRadFrames() { return count(radTableName);}
 	public int getNumberOfPictureCounters() { return count(jpgIdxTableName);}
@@ -433,6 +445,7 @@ public class SatPayloadDbStore {
 		String update = "insert into " + table;
 		update = update + insertStmt;
 		//Log.println("SQL:" + update);
+		long start = System.nanoTime();
 		try {
 			Connection derby = payloadDbStore.getConnection();
 			stmt = derby.createStatement();
@@ -441,14 +454,18 @@ public class SatPayloadDbStore {
 		} catch (SQLException e) {
 			if ( e.getSQLState().equals(ERR_DUPLICATE) ) {  // duplicate
 				//Log.println("DUPLICATE RECORD, not stored");
+				duplicates.inc();
 				return true; // We have the data
 			} else {
+				insertErrors.inc();
 				PayloadDbStore.errorPrint("insertData:"+table, e);
 			}
 			return false;
 		} finally {
 			try { if (stmt != null) stmt.close(); } catch (SQLException e2) {};
+			insertTime.observeSince(start);
 		}
+		inserted.inc();
 		return true;
 
 	}
@@ -1213,21 +1230,22 @@ public class SatPayloadDbStore {
 			if (Config.displayRawValues)
 				;//FIXME conversion = 0;
 			if (size > 0) {
+				int[] raw = new int[size];
 				resets[i] = rs.getInt("resets");
 				upTime[i] = rs.getLong("uptime");
-				//FIXME - we need a payload record so that we can access the right conversion.  But this means we need all the columns....bad
-				PayloadRtValues rt = new PayloadRtValues(id.getLayoutByName(Spacecraft.REAL_TIME_LAYOUT));
-				results[i++] = rt.convertRawValue(name, (int)rs.getDouble(name), rt.getConversionByName(name), id);
+				raw[i++] = (int)rs.getDouble(name);
 				while (rs.previous()) {
 					resets[i] = rs.getInt("resets");
 					upTime[i] = rs.getLong("uptime");
-					//rt = new PayloadRtValues(rs, fox.rtLayout);
-					//raw value
-					//results[i++] = rs.getDouble(name);
-					// converted
-
-					results[i++] = rt.convertRawValue(name, (int)rs.getDouble(name), rt.getConversionByName(name), id);
+					raw[i++] = (int)rs.getDouble(name);
 				}
+				//FIXME - we need a payload record so that we can access the right conversion.  But this means we need all the columns....bad
+				PayloadRtValues rt = new PayloadRtValues(id.getLayoutByName(Spacecraft.REAL_TIME_LAYOUT));
+				int pos = rt.layout.getPositionByName(name);
+				if (pos == BitArrayLayout.ERROR_POSITION)
+					rt.convertRawValues(name, raw, results, BitArrayLayout.CONVERT_NONE, id);
+				else
+					ConversionPlan.getPlan(rt, id).convert(pos, raw, results);
 			} else {
 				results = new double[1];
 				upTime = new double[1];
@@ -1250,6 +1268,184 @@ public class SatPayloadDbStore {
 
 	}
 
+	/**
+	 * Return up to period values of this field that follow the record at afterReset, afterUptime, oldest first
+	 * @param name
+	 * @param period
+	 * @param id
+	 * @param afterReset
+	 * @param afterUptime
+	 * @param layout
+	 * @return the values, or null if the layout is not held in a table we can query this way
+	 * @throws SQLException
+	 */
+	public double[][] getGraphDataAfter(String name, int period, Spacecraft id, int afterReset, long afterUptime, String layout) throws SQLException {
+		String table = getTableNameByLayout(layout);
+		if (table == null) return null;
+		BitArrayLayout lay = id.getLayoutByName(layout);
+		if (lay == null) return null;
+		String update = "SELECT resets, uptime, " + name + " FROM " + table
+				+ " where resets > " + afterReset + " or (resets = " + afterReset + " and uptime > " + afterUptime + ")"
+				+ " ORDER BY resets, uptime LIMIT " + period;
+		Statement stmt = null;
+		ResultSet rs = null;
+		double[][] resultSet = null;
+		try {
+			Connection derby = payloadDbStore.getConnection();
+			stmt = derby.createStatement();
+			rs = stmt.executeQuery(update);
+			double[] upTime = new double[period];
+			double[] resets = new double[period];
+			int[] raw = new int[period];
+			int size = 0;
+			while (size < period && rs.next()) {
+				resets[size] = rs.getInt("resets");
+				upTime[size] = rs.getLong("uptime");
+				raw[size++] = (int)rs.getDouble(name);
+			}
+			if (size < period) {
+				resets = Arrays.copyOf(resets, size);
+				upTime = Arrays.copyOf(upTime, size);
+				raw = Arrays.copyOf(raw, size);
+			}
+			double[] results = new double[size];
+			FramePart record = makeRecord(layout, lay);
+			int pos = lay.getPositionByName(name);
+			if (Config.displayRawValues) {
+				for (int i=0; i < size; i++)
+					results[i] = raw[i];
+			} else if (pos == BitArrayLayout.ERROR_POSITION)
+				record.convertRawValues(name, raw, results, BitArrayLayout.CONVERT_NONE, id);
+			else
+				ConversionPlan.getPlan(record, id).convert(pos, raw, results);
+			resultSet = new double[3][];
+			resultSet[PayloadStore.DATA_COL] = results;
+			resultSet[PayloadStore.UPTIME_COL] = upTime;
+			resultSet[PayloadStore.RESETS_COL] = resets;
+		} finally {
+			try { if (rs != null) rs.close(); } catch (SQLException e2) {};
+			try { if (stmt != null) stmt.close(); } catch (SQLException e2) {};
+		}
+		return resultSet;
+	}
+
+	/**
+	 * Receives the rows from streamFieldData() one at a time, so that the caller can write them out
+	 * without holding the whole result in memory
+	 */
+	public interface FieldRowHandler {
+		public void row(int resets, long uptime, int rawValue) throws IOException;
+	}
+
+	public static final int FIELD_PAGE_SIZE = 5000; // rows fetched from the database in each query
+	
+	/**
+	 * Return the table that holds the records for this layout, or null if it is not stored in a table that
+	 * supports field queries
+	 * @param layoutName
+	 * @return
+	 */
+	public String getTableNameByLayout(String layoutName) {
+		if (layoutName.equalsIgnoreCase(Spacecraft.REAL_TIME_LAYOUT)) return rtTableName;
+		if (layoutName.equalsIgnoreCase(Spacecraft.MAX_LAYOUT)) return maxTableName;
+		if (layoutName.equalsIgnoreCase(Spacecraft.MIN_LAYOUT)) return minTableName;
+		if (layoutName.equalsIgnoreCase(Spacecraft.WOD_LAYOUT)) return wodTableName;
+		return null;
+	}
+	
+	/**
+	 * Return an empty record of the type that is stored in the table for this layout, so that its raw values are
+	 * converted by the right convertRawValue()
+	 * @param layoutName
+	 * @param layout
+	 * @return
+	 */
+	public static FramePart makeRecord(String layoutName, BitArrayLayout layout) {
+		if (layoutName.equalsIgnoreCase(Spacecraft.MAX_LAYOUT)) return new PayloadMaxValues(layout);
+		if (layoutName.equalsIgnoreCase(Spacecraft.MIN_LAYOUT)) return new PayloadMinValues(layout);
+		if (layoutName.equalsIgnoreCase(Spacecraft.WOD_LAYOUT)) return new PayloadWOD(layout);
+		return new PayloadRtValues(layout);
+	}
+	
+	/**
+	 * Select only resets, uptime and the named field from the table for this layout and pass the raw values to 
+	 * the handler in resets, uptime order.  If fromReset and fromUptime are both zero then the most recent
+	 * num records are returned, otherwise num records from fromReset/fromUptime.
+	 * 
+	 * The rows are fetched in pages of FIELD_PAGE_SIZE using the primary key as the cursor, so a request for
+	 * months of data never holds more than one page in memory and each query can use the index rather
+	 * than an offset scan.
+	 * 
+	 * @param layoutName
+	 * @param name
+	 * @param fromReset
+	 * @param fromUptime
+	 * @param num
+	 * @param handler
+	 * @return the number of rows passed to the handler, or -1 if the layout or field is not valid
+	 * @throws SQLException
+	 * @throws IOException 
+	 */
+	public int streamFieldData(String layoutName, String name, int fromReset, long fromUptime, int num, FieldRowHandler handler) throws SQLException, IOException {
+		String table = getTableNameByLayout(layoutName);
+		BitArrayLayout layout = fox.getLayoutByName(layoutName);
+		if (table == null || layout == null) return -1;
+		int pos = layout.getPositionByName(name);
+		if (pos == BitArrayLayout.ERROR_POSITION) return -1;
+		String column = layout.fieldName[pos]; // Use the name from the layout so that nothing from the request goes into the SQL
+		
+		// The cursor is exclusive, so we start one type before the first record we want
+		int cursorResets = fromReset;
+		long cursorUptime = fromUptime;
+		int cursorType = -1;
+		Connection derby = payloadDbStore.getConnection();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			if (fromReset == 0 && fromUptime == 0) { // then we take records nearest the end
+				ps = derby.prepareStatement("SELECT resets, uptime, type FROM " + table 
+						+ " ORDER BY resets DESC, uptime DESC, type DESC LIMIT 1 OFFSET ?");
+				ps.setInt(1, num-1);
+				rs = ps.executeQuery();
+				if (rs.next()) {
+					cursorResets = rs.getInt(1);
+					cursorUptime = rs.getLong(2);
+					cursorType = rs.getInt(3) - 1;
+				}
+				rs.close();
+				ps.close();
+			}
+			ps = derby.prepareStatement("SELECT resets, uptime, type, " + column + " FROM " + table 
+					+ " WHERE resets > ? OR (resets = ? AND (uptime > ? OR (uptime = ? AND type > ?)))"
+					+ " ORDER BY resets, uptime, type LIMIT ?", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			int total = 0;
+			while (total < num) {
+				int page = Math.min(FIELD_PAGE_SIZE, num - total);
+				ps.setInt(1, cursorResets);
+				ps.setInt(2, cursorResets);
+				ps.setLong(3, cursorUptime);
+				ps.setLong(4, cursorUptime);
+				ps.setInt(5, cursorType);
+				ps.setInt(6, page);
+				rs = ps.executeQuery();
+				int rows = 0;
+				while (rs.next()) {
+					cursorResets = rs.getInt(1);
+					cursorUptime = rs.getLong(2);
+					cursorType = rs.getInt(3);
+					handler.row(cursorResets, cursorUptime, rs.getInt(4));
+					rows++;
+				}
+				rs.close();
+				total += rows;
+				if (rows < page) break; // no more data
+			}
+			return total;
+		} finally {
+			try { if (rs != null) rs.close(); } catch (SQLException e2) {};
+			try { if (ps != null) ps.close(); } catch (SQLException e2) {};
+		}
+	}
 
 	/**
 	 * Delete all of the log files.  This is called from the main window by the user
@@ -1,8 +1,5 @@
 package telemetry;
 
-
-import gui.MainWindow;
-
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -10,7 +7,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import javax.swing.JOptionPane;
 
 import common.Config;
 import common.Log;
@@ -69,19 +65,15 @@ public class SatPayloadStore {
 		try {
 			initPayloadFiles();
 		} catch (FileNotFoundException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
+			Log.errorDialog("FATAL! Cannot find the Stored Payload data",
 					 "You may need to reset FoxTelem.properties or re-install FoxTelem\n"
-								+ "Was the data directory moved?\n" + e.toString(),
-					"FATAL! Cannot find the Stored Payload data",
-					JOptionPane.ERROR_MESSAGE) ;
+								+ "Was the data directory moved?\n" + e.toString());
 			e.printStackTrace(Log.getWriter());
 			System.exit(1);
 		} catch (IOException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
+			Log.errorDialog("FATAL! Cannot Load the Stored Payload data",
 					 "You may need to reset FoxTelem.properties or re-install FoxTelem\n"
-								+ "Was the data directory moved?\n" + e.toString(),
-					"FATAL! Cannot Load the Stored Payload data",
-					JOptionPane.ERROR_MESSAGE) ;
+								+ "Was the data directory moved?\n" + e.toString());
 			e.printStackTrace(Log.getWriter());
 			System.exit(1);
 		}
@@ -89,8 +81,10 @@ public class SatPayloadStore {
 	
 	private void initPayloadFiles() throws IOException {
 		records = new SatPayloadTable[fox.numberOfLayouts];
-		for (int i=0; i<fox.numberOfLayouts; i++)
+		for (int i=0; i<fox.numberOfLayouts; i++) {
 			records[i] = new SatPayloadTable(INIT_SIZE, fox.series+foxId+fox.layout[i].name);
+			records[i].setOwner(foxId, fox.layout[i].name);
+		}
 	}
 	
 	public void setUpdatedAll() {
@@ -333,6 +327,18 @@ public class SatPayloadStore {
 		return null;
 	}
 
+	/**
+	 * Return up to period records for this attribute that follow the record at afterReset, afterUptime
+	 * @return the records, or null if the graph should fetch all of its data again
+	 * @throws IOException
+	 */
+	public double[][] getGraphDataAfter(String name, int period, Spacecraft id, int afterReset, long afterUptime, String layout, boolean positionData) throws IOException {
+		int i = fox.getLayoutIdxByName(layout);
+		if (i != Spacecraft.ERROR_IDX)
+			return records[i].getGraphDataAfter(name, period, id, afterReset, afterUptime, positionData);
+		return null;
+	}
+
 	public double[][] getRtGraphData(String name, int period, Spacecraft id, int fromReset, long fromUptime, boolean positionData, boolean reverse) throws IOException {
 		return getGraphData(name, period, id, fromReset, fromUptime, Spacecraft.REAL_TIME_LAYOUT, positionData, reverse);
 	}
@@ -501,10 +507,7 @@ public class SatPayloadStore {
 			initPayloadFiles();
 			setUpdatedAll();
 		} catch (IOException ex) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					ex.toString(),
-					"Error Deleting Payload Files for FoxId:"+foxId+", check permissions",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("Error Deleting Payload Files for FoxId:"+foxId+", check permissions", ex.toString());
 		}
 
 	}
@@ -565,10 +568,7 @@ public class SatPayloadStore {
 	        		throw new IOException("Could not delete file " + file.getName() + " Check the file system and remove it manually.");
 	        	}
 		} catch (Exception ex) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					ex.toString(),
-					"Error Deleting File",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("Error Deleting File", ex.toString());
 		}
 	}
 
@@ -12,12 +12,9 @@ import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
-import javax.swing.JOptionPane;
-
 import common.Config;
 import common.Log;
 import common.Spacecraft;
-import gui.MainWindow;
 import telemetry.uw.CanPacket;
 
 /**
@@ -51,8 +48,10 @@ public class SatPayloadTable {
 	private static final int INITIAL_SIZE = 2; // inital number of table parts
 	private String fileName; // this is the path and filename for this table
 	private String baseFileName; // this is the base filename for this table
-	private SortedFramePartArrayList rtRecords; // this is the rtRecords that are loaded into memory
+	private CompactRecordList rtRecords; // this is the rtRecords that are loaded into memory
 	private boolean updated = false;
+	private int foxId = UpdateBus.ANY_SPACECRAFT; // who owns this table, so that updates can be published
+	private String layout;
 
 	public SatPayloadTable(int size, String name) throws IOException {
 		tableIdx = new SortedArrayList<TableSeg>(INITIAL_SIZE);
@@ -60,12 +59,26 @@ public class SatPayloadTable {
 		String dir = getDir();
         fileName = dir + PayloadStore.DB_NAME+File.separator + name;
       
-		rtRecords = new SortedFramePartArrayList(size);
+		rtRecords = new CompactRecordList(size);
 		loadIdx();
 		updated = true;
 	}
 	
-	public void setUpdated(boolean t) { updated = t; }
+	/**
+	 * Set the spacecraft and layout that this table holds.  Once set, each update is published on the UpdateBus
+	 * @param id
+	 * @param layout
+	 */
+	public void setOwner(int id, String layout) {
+		foxId = id;
+		this.layout = layout;
+	}
+
+	public void setUpdated(boolean t) {
+		updated = t;
+		if (t)
+			UpdateBus.publish(foxId, layout);
+	}
 	public boolean getUpdated() { return updated; }
 	
 	public static String getDir() {
@@ -191,11 +204,11 @@ public class SatPayloadTable {
 		int j = results.length-1;
 		for (int i=end-1; i>= start; i--) {
 			//System.out.println(rtRecords.size());
-			results[j] = rtRecords.get(i).getFieldValues();
+			results[j] = rtRecords.getFieldValues(i);
 			if (returnType)
-				type[j] = ""+rtRecords.get(i).type; // get type returns a different type for some payloads, e.g. HerciPackets.  Reference directly
-			upTime[j] = ""+rtRecords.get(i).getUptime();
-			resets[j--] = ""+rtRecords.get(i).getResets();
+				type[j] = ""+rtRecords.getType(i); // get type returns a different type for some payloads, e.g. HerciPackets.  Reference directly
+			upTime[j] = ""+rtRecords.getUptime(i);
+			resets[j--] = ""+rtRecords.getResets(i);
 		}
 		
 		// Create a results set, with reset, uptime and the data on the same line
@@ -231,12 +244,6 @@ public class SatPayloadTable {
 		int start = 0;
 		int end = 0;
 		
-		int COLUMNS = 3;
-		double[] lat = null;
-		double[] lon = null;
-		if (positionData)
-			COLUMNS = 5;
-		
 		if (reverse) { // then we take records nearest the end
 			start = rtRecords.size()-period;
 			end = rtRecords.size();
@@ -250,6 +257,45 @@ public class SatPayloadTable {
 		if (end < start) end = start;
 		if (start < 0) start = 0;
 		if (start > rtRecords.size()) start = rtRecords.size();
+		return buildGraphData(name, id, start, end, positionData);
+	}
+
+	/**
+	 * Return the records that follow the record at afterReset, afterUptime, in order, so that a graph that already
+	 * holds the data up to that record only needs to fetch what is new.  Returns at most period records.
+	 * @param name
+	 * @param period
+	 * @param id
+	 * @param afterReset
+	 * @param afterUptime
+	 * @param positionData
+	 * @return the new records, or null if the record was not found, in which case the caller should fetch all of
+	 * the data again
+	 * @throws IOException
+	 */
+	double[][] getGraphDataAfter(String name, int period, Spacecraft id, int afterReset, long afterUptime, boolean positionData) throws IOException {
+		loadSegments(afterReset, afterUptime, period, false);
+		// New records are almost always at the end, so search back from there
+		int i = rtRecords.size()-1;
+		while (i >= 0) {
+			int r = rtRecords.getResets(i);
+			if (r < afterReset || (r == afterReset && rtRecords.getUptime(i) <= afterUptime))
+				break;
+			i--;
+		}
+		if (i < 0 || rtRecords.getResets(i) != afterReset || rtRecords.getUptime(i) != afterUptime)
+			return null;
+		int start = i+1;
+		int end = Math.min(rtRecords.size(), start + period);
+		return buildGraphData(name, id, start, end, positionData);
+	}
+
+	private double[][] buildGraphData(String name, Spacecraft id, int start, int end, boolean positionData) {
+		int COLUMNS = 3;
+		double[] lat = null;
+		double[] lon = null;
+		if (positionData)
+			COLUMNS = 5;
 		double[] results = new double[end-start];
 		double[] upTime = new double[end-start];
 		double[] resets = new double[end-start];
@@ -257,19 +303,34 @@ public class SatPayloadTable {
 			lat = new double[end-start];
 			lon = new double[end-start];
 		}
+		// Gather the raw values and then convert them as a set, so that lookup table conversions are run once
+		int[] raw = new int[end-start];
+		int pos = BitArrayLayout.ERROR_POSITION;
+		FramePart first = null;
+		if (end > start) {
+			first = rtRecords.get(start);
+			pos = first.layout.getPositionByName(name);
+		}
 		int j = results.length-1;
 		for (int i=end-1; i>= start; i--) {
 			//System.out.println(rtRecords.size());
-			if (Config.displayRawValues)
-				results[j] = rtRecords.get(i).getRawValue(name);
-			else
-				results[j] = rtRecords.get(i).getDoubleValue(name, id);
+			if (pos != BitArrayLayout.ERROR_POSITION)
+				raw[j] = rtRecords.getRawValue(i, pos);
 			if (positionData) {
-				lat[j] = rtRecords.get(i).satLatitude;
-				lon[j] = rtRecords.get(i).satLongitude;
+				lat[j] = rtRecords.getSatLatitude(i);
+				lon[j] = rtRecords.getSatLongitude(i);
 			}
-			upTime[j] = rtRecords.get(i).getUptime();
-			resets[j--] = rtRecords.get(i).getResets();
+			upTime[j] = rtRecords.getUptime(i);
+			resets[j--] = rtRecords.getResets(i);
+		}
+		if (pos == BitArrayLayout.ERROR_POSITION) {
+			for (int i=0; i < results.length; i++)
+				results[i] = Config.displayRawValues ? -1 : FramePart.ERROR_VALUE;
+		} else if (Config.displayRawValues) {
+			for (int i=0; i < results.length; i++)
+				results[i] = raw[i];
+		} else {
+			ConversionPlan.getPlan(first, id).convert(pos, raw, results);
 		}
 		
 		double[][] resultSet = new double[COLUMNS][end-start];
@@ -346,7 +407,7 @@ public class SatPayloadTable {
 				load(tableIdx.get(i));
 			i++;
 		}
-		int id = rtRecords.get(0).id; // id is the same for all records in this table
+		int id = rtRecords.getId(0); // id is the same for all records in this table
 		// Now all the segments are loaded that contain the data we want, so find the nearest records and count the distance between
 		int start = rtRecords.getNearestFrameIndex(id, uptime, reset);
 		int end = rtRecords.getNearestFrameIndex(id, toUptime, toReset);
@@ -505,7 +566,7 @@ public class SatPayloadTable {
 		TableSeg seg = loadSeg(f.resets, f.uptime, false);
 		if (rtRecords.add(f)) {
 		//if (!rtRecords.hasFrame(f.id, f.uptime, f.resets)) {
-			updated = true;
+			setUpdated(true);
 			if (seg.records == MAX_SEGMENT_SIZE) {
 				// We need to add a new segment with this as the first record
 				seg = new TableSeg(f.resets, f.uptime, baseFileName);
@@ -535,11 +596,15 @@ public class SatPayloadTable {
         createNewFile(log);
  
         BufferedReader dis = new BufferedReader(new FileReader(log));
+        // Parse the whole segment and then add it to the records in one sorted merge
+        ArrayList<FramePart> batch = new ArrayList<FramePart>(MAX_SEGMENT_SIZE);
 
         try {
         	while ((line = dis.readLine()) != null) {
         		if (line != null) {
-        			addLine(line);
+        			FoxFramePart rt = parseLine(line);
+        			if (rt != null)
+        				batch.add(rt);
         		}
         	}
         	seg.setLoaded(true);
@@ -551,12 +616,24 @@ public class SatPayloadTable {
         	n.printStackTrace(Log.getWriter());
         	Log.println(n.getMessage());
         } finally {
+        	// Anything read before an error is kept, as it was when the records were added one at a time
+        	if (rtRecords != null)
+        		rtRecords.addAllSorted(batch);
         	dis.close();
         }
 
 	}
 
 	private FoxFramePart addLine(String line) {
+		FoxFramePart rt = parseLine(line);
+		// Check the the record set is actuall loaded.  Sometimes at start up the GUI is querying for records before they are loaded
+		if (rtRecords != null && rt != null) {
+			rtRecords.add(rt);
+		}
+		return rt;
+	}
+
+	private FoxFramePart parseLine(String line) {
 		if (line.length() == 0) return null;
 		String date = null;
 		int id = 0;
@@ -682,10 +759,6 @@ public class SatPayloadTable {
 				rt.type = type; // make sure we get the right type
 			}
 
-			// Check the the record set is actuall loaded.  Sometimes at start up the GUI is querying for records before they are loaded
-			if (rtRecords != null && rt != null) {
-				rtRecords.add(rt);
-			}
 			return rt;
 		} catch (NoSuchElementException e) {
 			Log.errorDialog("ERROR: Corrupted record",  
@@ -736,7 +809,7 @@ public class SatPayloadTable {
 						}
 					}
 				}
-				updated = true;
+				setUpdated(true);
 				
 				dis.close();
 			} catch (IOException e) {
@@ -757,10 +830,7 @@ public class SatPayloadTable {
 				return true;
 
 			} catch (IOException e) {
-				JOptionPane.showMessageDialog(MainWindow.frame,
-						e.toString(),
-						"ERROR creating file " + log,
-						JOptionPane.ERROR_MESSAGE) ;
+				Log.errorDialog("ERROR creating file " + log, e.toString());
 				e.printStackTrace(Log.getWriter());
 				return false;
 			} 
@@ -870,12 +940,10 @@ public class SatPayloadTable {
     		//System.out.println("POINT: "+point);
 
     		if (Config.getVersionMajor() < maj) { // fatal
-    			JOptionPane.showMessageDialog(MainWindow.frame,
+    			Log.errorDialog("FATAL! Data file version incompatible ",
    					 "You may need to reset FoxTelem.properties or re-install FoxTelem\n"
     					+"Payload log "+fileName + " Version: "+availableVersion+ " is incompatible with this version of FoxTelem\n"
-   								+ "Was the data directory moved or new files copied in?\n",
-   					"FATAL! Data file version incompatible ",
-   					JOptionPane.ERROR_MESSAGE) ;
+   								+ "Was the data directory moved or new files copied in?\n");
    			
    			System.exit(1);
     		}
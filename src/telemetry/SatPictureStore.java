@@ -1,8 +1,6 @@
 
 package telemetry;
 
-import gui.MainWindow;
-
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -11,11 +9,11 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
-import javax.swing.JOptionPane;
-
 import common.Config;
 import common.Log;
 import common.FoxSpacecraft;
@@ -43,17 +41,23 @@ import common.FoxSpacecraft;
  *
  * A store of picture lines for a single satellite.
  * 
+ * Each line is added to the JPEG with the same id, reset and picture counter and a close uptime.  The JPEGs are
+ * found through a hash of id, reset and picture counter rather than by checking every picture we have received,
+ * and the files that lines are arriving for are kept open until the picture is complete or no more lines arrive.
  *
  */
 public class SatPictureStore {
 
 	private static final int INIT_SIZE = 100;
+	public static final int MAX_OPEN_FILES = 8; // JPEGs held open for new lines
 	private FoxSpacecraft fox;
 	public int foxId;
 	public static String JPG_INDEX_NAME = "jpg_index.dat";
 	private String fileName = JPG_INDEX_NAME;
 	boolean updatedCamera = false;		
 	SortedJpegList jpegIndex;
+	private HashMap<Long, ArrayList<CameraJpeg>> pictures; // the jpegIndex by id, reset and picture counter
+	private ArrayList<CameraJpeg> openFiles = new ArrayList<CameraJpeg>(); // oldest first
 	
 	/**
 	 * Create the payload store this this fox id
@@ -82,15 +86,14 @@ public class SatPictureStore {
 					"\nAny decoded pictures will not be saved to disk. Downloaded picture lines\n"
 					+ "can still be decoded and uploaded to the server.");
 		}
+		closeFiles();
 		jpegIndex = new SortedJpegList(INIT_SIZE);
+		pictures = new HashMap<Long, ArrayList<CameraJpeg>>();
 		fileName = CameraJpeg.IMAGES_DIR + File.separator + "Fox"+foxId+JPG_INDEX_NAME;
 		try {
 			load(fileName);
 		} catch (FileNotFoundException e) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					e.toString(),
-					"ERROR Loading Stored Jpeg Index data",
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("ERROR Loading Stored Jpeg Index data", e.toString());
 			e.printStackTrace(Log.getWriter());
 		}
 		
@@ -107,12 +110,14 @@ public class SatPictureStore {
 		
 	}
 	public void setUpdatedAll() {
-		updatedCamera = true;
+		setUpdatedCamera(true);
 	}
 
 	public boolean getUpdatedCamera() { return updatedCamera; }
 	public void setUpdatedCamera(boolean u) {
 		updatedCamera = u;
+		if (u)
+			UpdateBus.publish(foxId, UpdateBus.CAMERA);
 	}
 
 //	public int getNumberOfPictureLines() { return cameraRecords.size(); }
@@ -126,20 +131,82 @@ public class SatPictureStore {
 	 * @throws IOException 
 	 */
 	public boolean add(int id, int resets, long uptime,  PictureScanLine line) throws IOException {
-		for (CameraJpeg jpg : jpegIndex) {
-			if (jpg.isSameFile(id, resets, uptime, line.pictureCounter)) {
-				jpg.addLine(line);
-				updatedCamera = true;
-				return true;
-			}
+		closeIdleFiles();
+		CameraJpeg jpg = findJpeg(id, resets, uptime, line.pictureCounter);
+		if (jpg != null) {
+			jpg.addLine(line);
+			fileOpened(jpg);
+			setUpdatedCamera(true);
+			return true;
 		}
 		// We did not find it, so create a new Jpeg on disk.  This will also copy the header and add the first line
-		CameraJpeg jpg = new CameraJpeg(id, resets, uptime, uptime, line.pictureCounter, line);
+		jpg = new CameraJpeg(id, resets, uptime, uptime, line.pictureCounter, line);
 		jpegIndex.add(jpg);
-		updatedCamera = true;
+		index(jpg);
+		fileOpened(jpg);
+		setUpdatedCamera(true);
 		save(jpg, fileName, true);
 		return true;
 	}
+
+	private static Long pictureKey(int id, int resets, int pc) {
+		return ((long)id << 48) ^ ((long)resets << 16) ^ (pc & 0xFFFFL);
+	}
+
+	private void index(CameraJpeg jpg) {
+		Long key = pictureKey(jpg.id, jpg.resets, jpg.pictureCounter);
+		ArrayList<CameraJpeg> list = pictures.get(key);
+		if (list == null) {
+			list = new ArrayList<CameraJpeg>(1);
+			pictures.put(key, list);
+		}
+		list.add(jpg);
+	}
+
+	/**
+	 * Find the JPEG that this line belongs to.  The picture counter wraps, so there can be several pictures with the
+	 * same key.  If more than one is close in uptime we take the earliest, which is the one we found when we searched
+	 * the sorted index from the start.
+	 * @return the JPEG or null if this line starts a new picture
+	 */
+	private CameraJpeg findJpeg(int id, int resets, long uptime, int pc) {
+		ArrayList<CameraJpeg> list = pictures.get(pictureKey(id, resets, pc));
+		if (list == null) return null;
+		CameraJpeg found = null;
+		for (CameraJpeg jpg : list)
+			if (jpg.isSameFile(id, resets, uptime, pc))
+				if (found == null || jpg.compareTo(found) < 0)
+					found = jpg;
+		return found;
+	}
+
+	/**
+	 * Keep track of the open files, so we can close them.  If too many are open then the one that has been open longest
+	 * is closed, as its picture is probably not going to get any more lines.
+	 */
+	private void fileOpened(CameraJpeg jpg) {
+		if (!jpg.isOpen()) {
+			openFiles.remove(jpg); // complete
+			return;
+		}
+		if (!openFiles.contains(jpg))
+			openFiles.add(jpg);
+		while (openFiles.size() > MAX_OPEN_FILES)
+			openFiles.remove(0).close();
+	}
+
+	private void closeIdleFiles() {
+		long now = System.currentTimeMillis();
+		for (int i=openFiles.size()-1; i >= 0; i--)
+			if (openFiles.get(i).isIdle(now))
+				openFiles.remove(i).close();
+	}
+
+	private void closeFiles() {
+		for (CameraJpeg jpg : openFiles)
+			jpg.close();
+		openFiles.clear();
+	}
 	
 	public SortedJpegList getJpegIndex(int id, int period, int fromReset, long fromUptime) {
 		
@@ -186,10 +253,7 @@ public class SatPictureStore {
 			try {
 				aFile.createNewFile();
 			} catch (IOException e) {
-				JOptionPane.showMessageDialog(MainWindow.frame,
-						e.toString(),
-						"ERROR creating jpeg index file " + log,
-						JOptionPane.ERROR_MESSAGE) ;
+				Log.errorDialog("ERROR creating jpeg index file " + log, e.toString());
 				e.printStackTrace(Log.getWriter());
 			}
 		}
@@ -219,7 +283,8 @@ public class SatPictureStore {
 					// Confirm this file is still on disk
 					if (jpg.fileExists()) {
 						jpegIndex.add(jpg);
-						updatedCamera = true;
+						index(jpg);
+						setUpdatedCamera(true);
 					} else {
 						deleted = true;
 					}
@@ -288,6 +353,7 @@ public class SatPictureStore {
 			log = Config.logFileDirectory + File.separator + log;
 			//Log.println("Rremoving: " + log);
 		}
+		closeFiles();
 		try {
 			for (int i=0; i<jpegIndex.size(); i++) {	
 				if (jpegIndex.get(i).fileExists()) {
@@ -299,10 +365,7 @@ public class SatPictureStore {
 			initPayloadFiles();
 			setUpdatedAll();
 		} catch (IOException ex) {
-			JOptionPane.showMessageDialog(MainWindow.frame,
-					ex.toString(),
-					"Error Deleting JPeg Index Files for FoxId:"+foxId+", check permissions on file: \n" + log,
-					JOptionPane.ERROR_MESSAGE) ;
+			Log.errorDialog("Error Deleting JPeg Index Files for FoxId:"+foxId+", check permissions on file: \n" + log, ex.toString());
 		}
 
 	}
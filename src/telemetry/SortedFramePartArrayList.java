@@ -1,5 +1,10 @@
 package telemetry;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 
  * FOX 1 Telemetry Decoder
@@ -23,14 +28,146 @@ package telemetry;
  *
  * Sorted Array List to store telemetry records
  *
+ * The records are sorted by reset, uptime and type.  Alongside the list we keep the reset, uptime and type of each
+ * record in primitive arrays.  Inserts and searches are a binary search on those arrays, rather than a compareTo() or
+ * a walk through the list that reads the fields of each FramePart.  The reset and uptime are not packed into one long,
+ * because for spacecraft that are not Fox the uptime is a time in milliseconds.
+ *
+ * The index is updated by add().  Anything else that changes the list, such as remove() or addToEnd() on the
+ * payload queue, is seen through the ArrayList modCount and the index is rebuilt when it is next needed.
+ *
  */
 @SuppressWarnings("serial")
 public class SortedFramePartArrayList extends SortedArrayList<FramePart> {
 
+	private int[] resets = new int[0];
+	private long[] uptimes = new long[0];
+	private int[] types = new int[0];
+	private int indexModCount = -1; // the modCount when the index matched the list
+
     public SortedFramePartArrayList(int i) {
 		super(i);
 	}
 
+	private void ensureIndex() {
+		if (indexModCount == modCount) return;
+		int n = size();
+		if (resets.length < n)
+			grow(n + n/2, 0);
+		for (int i=0; i < n; i++) {
+			FramePart f = get(i);
+			resets[i] = f.resets;
+			uptimes[i] = f.uptime;
+			types[i] = f.type;
+		}
+		indexModCount = modCount;
+	}
+
+	private void grow(int room, int keep) {
+		int[] r = new int[room];
+		long[] u = new long[room];
+		int[] t = new int[room];
+		System.arraycopy(resets, 0, r, 0, keep);
+		System.arraycopy(uptimes, 0, u, 0, keep);
+		System.arraycopy(types, 0, t, 0, keep);
+		resets = r;
+		uptimes = u;
+		types = t;
+	}
+
+	/**
+	 * Compare the record at position i with this reset, uptime and type, in the same order as FramePart.compareTo()
+	 */
+	private int compare(int i, int reset, long uptime, int type) {
+		if (resets[i] != reset) return resets[i] < reset ? -1 : 1;
+		if (uptimes[i] != uptime) return uptimes[i] < uptime ? -1 : 1;
+		if (types[i] != type) return types[i] < type ? -1 : 1;
+		return 0;
+	}
+
+	/**
+	 * @return the position of the first record that is at or after this reset, uptime and type, or size() if there
+	 * is none
+	 */
+	private int lowerBound(int reset, long uptime, int type) {
+		int lo = 0;
+		int hi = size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(mid, reset, uptime, type) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Insert the record in order.  Returns false if we already hold a record with the same reset, uptime and type.
+	 */
+	@Override
+	public synchronized boolean add(FramePart f) {
+		if (f == null) return false;
+		ensureIndex();
+		int n = size();
+		int pos;
+		if (n == 0 || compare(n-1, f.resets, f.uptime, f.type) < 0)
+			pos = n; // the usual case, a new record at the end
+		else
+			pos = lowerBound(f.resets, f.uptime, f.type);
+		if (pos < n && compare(pos, f.resets, f.uptime, f.type) == 0)
+			return false; // this was already in the list and would be a duplicate
+		super.add(pos, f);
+		if (resets.length <= n)
+			grow(Math.max(16, n * 2), n);
+		System.arraycopy(resets, pos, resets, pos+1, n-pos);
+		System.arraycopy(uptimes, pos, uptimes, pos+1, n-pos);
+		System.arraycopy(types, pos, types, pos+1, n-pos);
+		resets[pos] = f.resets;
+		uptimes[pos] = f.uptime;
+		types[pos] = f.type;
+		indexModCount = modCount;
+		return true;
+	}
+
+	/**
+	 * Add a batch of records, e.g. all of the records in a file.  The batch is sorted once and merged with the records
+	 * we already hold, rather than inserted one at a time.  As with add(), a record that duplicates one we already
+	 * hold, or an earlier one in the batch, is not added.
+	 * @param list
+	 */
+	public synchronized void addAllSorted(List<FramePart> list) {
+		ArrayList<FramePart> batch = new ArrayList<FramePart>(list.size());
+		for (FramePart f : list)
+			if (f != null) batch.add(f);
+		if (batch.isEmpty()) return;
+		Collections.sort(batch); // stable, so the first of any duplicates stays first
+		ArrayList<FramePart> merged = new ArrayList<FramePart>(size() + batch.size());
+		int i = 0;
+		int j = 0;
+		FramePart last = null;
+		while (i < size() || j < batch.size()) {
+			FramePart next;
+			if (j >= batch.size() || (i < size() && get(i).compareTo(batch.get(j)) <= 0))
+				next = get(i++);
+			else
+				next = batch.get(j++);
+			if (last != null && last.compareTo(next) == 0)
+				continue;
+			merged.add(next);
+			last = next;
+		}
+		super.clear();
+		super.addAll((Collection<FramePart>)merged);
+		ensureIndex();
+	}
+
+	@Override
+	public synchronized FramePart set(int index, FramePart f) {
+		indexModCount = -1; // set() does not change the modCount
+		return super.set(index, f);
+	}
+
 	public boolean hasFrame(int id, long uptime, int resets) {
     	if (getFrameIndex(id, uptime, resets) != -1)
             	return true;
@@ -44,8 +181,9 @@ public class SortedFramePartArrayList extends SortedArrayList<FramePart> {
         return false;
     }
     
-    public int getFrameIndex(int id, long uptime, int resets) {
-    	for (int i=0; i<this.size(); i++) { 
+    public synchronized int getFrameIndex(int id, long uptime, int resets) {
+    	ensureIndex();
+    	for (int i=lowerBound(resets, uptime, Integer.MIN_VALUE); i<this.size() && this.resets[i] == resets && uptimes[i] == uptime; i++) { 
     		FramePart f = this.get(i);
             if (f.id == id && f.uptime == uptime && f.resets == resets)
             	return i;
@@ -53,8 +191,9 @@ public class SortedFramePartArrayList extends SortedArrayList<FramePart> {
         return -1;
     }
 
-    public int getFrameIndex(int id, long uptime, int resets, int type) {
-    	for (int i=0; i<this.size(); i++) { 
+    public synchronized int getFrameIndex(int id, long uptime, int resets, int type) {
+    	ensureIndex();
+    	for (int i=lowerBound(resets, uptime, type); i<this.size() && compare(i, resets, uptime, type) == 0; i++) { 
     		FramePart f = this.get(i);
             if (f.id == id && f.uptime == uptime && f.resets == resets && f.type == type)
             	return i;
@@ -81,19 +220,19 @@ public class SortedFramePartArrayList extends SortedArrayList<FramePart> {
     	return getNearestFrameIndex(id, uptime, resets, get(0).type);
     }
     
-    public int getNearestFrameIndex(int id, long uptime, int resets, int type) {
-    	// start searching from the beginning where reset and uptime should be the lowest
-    	// could probablly optimize this with binary search aglo but needs to be implement from scatch as not an exact match
+    /**
+     * Return the first record at or after this reset, uptime and type, or the last record if they are all before it
+     */
+    public synchronized int getNearestFrameIndex(int id, long uptime, int resets, int type) {
     	// First check special case where we have value off the end
     	if (this.size() == 0) return -1;
     	if (resets > this.get(size()-1).resets) return size()-1;
     	if (resets == this.get(size()-1).resets && uptime > this.get(size()-1).uptime) return size()-1;
     	
-    	for (int i=0; i<this.size(); i++) { 
-    		FramePart f = this.get(i);
-    		if (compare(f, id, uptime, resets, type) <= 0)
-            	return i;
-    	}
+    	ensureIndex();
+    	int i = lowerBound(resets, uptime, type);
+    	if (i < size())
+    		return i;
         return -1;
     }
 
@@ -101,43 +240,19 @@ public class SortedFramePartArrayList extends SortedArrayList<FramePart> {
     	return getNearestPrevFrameIndex(id, uptime, resets, get(0).type);
     }
 
-    public int getNearestPrevFrameIndex(int id, long uptime, int resets, int type) {
-    	// start searching from the beginning where reset and uptime should be the lowest\
+    /**
+     * Return the record at this reset, uptime and type, or the one before it if there is no exact match
+     */
+    public synchronized int getNearestPrevFrameIndex(int id, long uptime, int resets, int type) {
     	if (this.size() == 0) return -1;
     	// First check special case where we have value off the end, we return the last value
     	if (resets > this.get(size()-1).resets) return size()-1;
     	if (resets == this.get(size()-1).resets && uptime > this.get(size()-1).uptime) return size()-1;
     	
-    	// Otherwise we search
-    	for (int i=0; i<this.size(); i++) { 
-    		FramePart f = this.get(i);
-    		if (compare(f, id, uptime, resets, type) == 0) {
-            	return i;
-    		} else if (compare(f, id, uptime, resets, type) < 0) {
-            	return i-1;
-    		}
-    	}
-        return -1;
-    }
-    
-    private int compare(FramePart p, int id, long uptime, int resets, int type) {
-    	if (resets == p.resets && uptime == p.uptime && type == p.type) 
-    		return 0;
-    	else if (resets < p.resets)
-    		return -1;
-    	else if (resets > p.resets)
-    		return +1;
-    	else if (resets == p.resets && uptime == p.uptime) {
-    		if (type < p.type)
-    			return -1;
-    		if (type > p.type)
-    			return +1;
-    	} else if (resets == p.resets) {	
-    		if (uptime < p.uptime)
-    			return -1;
-    		if (uptime > p.uptime)
-    			return +1;
-    	} 
-    	return +1;
+    	ensureIndex();
+    	int i = lowerBound(resets, uptime, type);
+    	if (i >= size()) return -1;
+    	if (compare(i, resets, uptime, type) == 0) return i;
+    	return i-1;
     }
 }
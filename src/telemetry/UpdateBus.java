@@ -0,0 +1,118 @@
+package telemetry;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Tells the GUI when new data has been stored.  The stores publish the foxId and layout name each time they
+ * flag a table as updated, and each tab subscribes to the layouts it displays.  A tab thread then waits on
+ * its subscription rather than waking up every 500ms to poll the stores for changes.
+ *
+ * A subscription only records that something changed, not what changed, so many updates while the tab is
+ * busy result in one refresh.  The tab still checks the store's updated flags to decide what to redraw.
+ *
+ * Pictures and measurements are not payload layouts, so they use the names defined here.
+ *
+ */
+public class UpdateBus {
+	public static final String CAMERA = "CAMERA";
+	public static final String MEASUREMENT = "MEASUREMENT";
+	public static final String PASS_MEASUREMENT = "PASS_MEASUREMENT";
+	public static final int ANY_SPACECRAFT = -1;
+
+	private static CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+	public static class Subscription {
+		final int foxId;
+		final String[] layouts;
+		// Start pending so the first wait returns at once and the tab draws what is already in the store
+		private boolean pending = true;
+
+		Subscription(int foxId, String[] layouts) {
+			this.foxId = foxId;
+			this.layouts = layouts;
+		}
+
+		boolean matches(int id, String layout) {
+			if (foxId != ANY_SPACECRAFT && id != foxId) return false;
+			for (String l : layouts)
+				if (l.equalsIgnoreCase(layout)) return true;
+			return false;
+		}
+
+		/**
+		 * Wait until something this subscription is interested in has been published, or until wake() is called.
+		 * @param timeout - in ms, or 0 to wait with no timeout
+		 * @return true if there was an update
+		 * @throws InterruptedException
+		 */
+		public synchronized boolean await(long timeout) throws InterruptedException {
+			if (!pending)
+				wait(timeout);
+			boolean p = pending;
+			pending = false;
+			return p;
+		}
+
+		/**
+		 * Flag an update and wake the waiting thread, e.g. when a display option changes or the tab is closing
+		 */
+		public synchronized void wake() {
+			pending = true;
+			notifyAll();
+		}
+
+		/**
+		 * Stop receiving updates.  Call when the thread that waits on this subscription exits.
+		 */
+		public void close() {
+			subscriptions.remove(this);
+		}
+	}
+
+	/**
+	 * Subscribe to updates for these layouts on this spacecraft
+	 * @param foxId - or ANY_SPACECRAFT
+	 * @param layouts - layout names, or CAMERA, MEASUREMENT, PASS_MEASUREMENT
+	 * @return
+	 */
+	public static Subscription subscribe(int foxId, String... layouts) {
+		Subscription s = new Subscription(foxId, layouts);
+		subscriptions.add(s);
+		return s;
+	}
+
+	/**
+	 * Called by the stores when records for this spacecraft and layout have been added or changed
+	 * @param foxId
+	 * @param layout
+	 */
+	public static void publish(int foxId, String layout) {
+		if (layout == null) return;
+		for (Subscription s : subscriptions)
+			if (s.matches(foxId, layout))
+				s.wake();
+	}
+
+	/**
+	 * Wake every subscriber, for example when an option changes how all of the data is displayed
+	 */
+	public static void publishAll() {
+		for (Subscription s : subscriptions)
+			s.wake();
+	}
+}
@@ -0,0 +1,180 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import common.Config;
+import decoder.ChannelSource;
+import decoder.Channelizer;
+import decoder.SourceAudio;
+import decoder.SourceUSB;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Split two tones into channels and check that each channel gives its tone at the residual frequency with the right
+ * amplitude, that the phase carries on from one block to the next, and that a channel next to a tone does not pick it
+ * up.  With I and Q swapped, the channel must hold the same tone once the SourceIQ swaps them back.  The channelizer
+ * is run on the test thread from a source that makes the tones in pull mode, so it stops at the end of the data.
+ *
+ */
+public class ChannelizerTest {
+	static final int RATE = 192000;
+	static final int SECONDS = 1;
+	static final double AMPLITUDE = 0.3;
+	static final double TONE_A = 20010; // Hz from the center, between two bins
+	static final double TONE_B = -50000;
+	static final double NEXT_TO_A = TONE_A + 30000; // A is outside this channel, but not by much
+
+	@Test
+	public void testChannels() {
+		int afRate = Config.afSampleRate;
+		boolean swap = Config.swapIQ;
+		try {
+			Config.afSampleRate = 48000;
+			Config.swapIQ = false;
+			ToneSource source = new ToneSource(false);
+			Channelizer channelizer = new Channelizer(source, 0, 48000);
+			int channelRate = channelizer.getChannelSampleRate();
+			assertEquals(48000, channelRate);
+			int size = 2 * channelRate * (SECONDS + 1);
+			ChannelSource a = channelizer.addChannel(TONE_A, size);
+			ChannelSource b = channelizer.addChannel(TONE_B, size);
+			ChannelSource next = channelizer.addChannel(NEXT_TO_A, size);
+			channelizer.run();
+
+			checkTone(a, read(a), channelRate);
+			checkTone(b, read(b), channelRate);
+
+			double[] data = read(next);
+			double power = 0;
+			for (int i=skip(); i < data.length; i++)
+				power += data[i] * data[i];
+			power = power / ((data.length - skip()) / 2);
+			double leakage = 10 * Math.log10(power / (AMPLITUDE * AMPLITUDE));
+			System.out.println("Channel 30 kHz from a tone: " + leakage + " dB");
+			assertTrue("leakage " + leakage + " dB", leakage < -80);
+		} finally {
+			Config.afSampleRate = afRate;
+			Config.swapIQ = swap;
+		}
+	}
+
+	@Test
+	public void testSwappedIQ() {
+		int afRate = Config.afSampleRate;
+		boolean swap = Config.swapIQ;
+		try {
+			Config.afSampleRate = 48000;
+			Config.swapIQ = true;
+			Channelizer channelizer = new Channelizer(new ToneSource(true), 0, 48000);
+			ChannelSource a = channelizer.addChannel(TONE_A, 2 * channelizer.getChannelSampleRate() * (SECONDS + 1));
+			channelizer.run();
+			double[] data = read(a);
+			for (int i=0; i < data.length; i+=2) {
+				double t = data[i];
+				data[i] = data[i+1];
+				data[i+1] = t;
+			}
+			checkTone(a, data, channelizer.getChannelSampleRate());
+		} finally {
+			Config.afSampleRate = afRate;
+			Config.swapIQ = swap;
+		}
+	}
+
+	/**
+	 * The channel should hold a tone at the residual frequency.  Take the tone out of each sample and the phase and
+	 * amplitude that are left should be the same for every sample, across all of the blocks.
+	 */
+	private void checkTone(ChannelSource c, double[] data, int channelRate) {
+		double w = 2 * Math.PI * c.getResidualFrequency() / channelRate;
+		int first = skip() / 2;
+		double refI = 0, refQ = 0;
+		double maxError = 0;
+		for (int n=first; n < data.length / 2; n++) {
+			double cos = Math.cos(w * (n - first));
+			double sin = Math.sin(w * (n - first));
+			double i = data[2*n] * cos + data[2*n+1] * sin;
+			double q = data[2*n+1] * cos - data[2*n] * sin;
+			if (n == first) {
+				refI = i;
+				refQ = q;
+				assertEquals("amplitude of channel " + c.getOffsetFrequency(), AMPLITUDE, Math.sqrt(i*i + q*q), 0.001);
+			}
+			maxError = Math.max(maxError, Math.sqrt((i - refI) * (i - refI) + (q - refQ) * (q - refQ)));
+		}
+		System.out.println("Channel " + c.getOffsetFrequency() + " Hz: tone at " + c.getResidualFrequency()
+				+ " Hz, largest change in amplitude and phase " + maxError);
+		assertTrue("channel " + c.getOffsetFrequency() + " changed by " + maxError, maxError < 0.001 * AMPLITUDE);
+	}
+
+	/**
+	 * The first blocks include the zeros that the channelizer starts with
+	 */
+	private int skip() {
+		return 4096;
+	}
+
+	private double[] read(ChannelSource c) {
+		double[] data = new double[2 * RATE * SECONDS / 4];
+		assertEquals(data.length, c.read(data, 0));
+		return data;
+	}
+
+	/**
+	 * Makes the two tones in pull mode, a block at a time, with I and Q swapped if the source is wired that way
+	 */
+	class ToneSource extends SourceAudio {
+		static final int BLOCK = 4096;
+		long n = 0;
+		double[] block = new double[BLOCK];
+		int iPos, qPos;
+
+		ToneSource(boolean swapped) {
+			super("Tones", 4 * BLOCK, 0, true);
+			iPos = swapped ? 1 : 0;
+			qPos = 1 - iPos;
+			audioFormat = SourceUSB.makeAudioFormat(RATE);
+			pullMode = true;
+		}
+
+		@Override
+		protected boolean fill() {
+			// a little more than we read from the channels, as the channelizer holds back half a block
+			if (n >= (long)RATE * SECONDS + RATE / 10) return false;
+			for (int j=0; j < BLOCK; j+=2) {
+				double pa = 2 * Math.PI * TONE_A * n / RATE;
+				double pb = 2 * Math.PI * TONE_B * n / RATE;
+				block[j+iPos] = AMPLITUDE * (Math.cos(pa) + Math.cos(pb));
+				block[j+qPos] = AMPLITUDE * (Math.sin(pa) + Math.sin(pb));
+				n++;
+			}
+			write(0, block, 0, BLOCK);
+			return true;
+		}
+
+		@Override
+		public void run() { }
+
+		@Override
+		public void stop() {
+			running = false;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+import org.junit.Test;
+
+import telemetry.BitArrayLayout;
+import telemetry.CompactRecordList;
+import telemetry.FramePart;
+import telemetry.HerciHighspeedHeader;
+import telemetry.PayloadMaxValues;
+import telemetry.PayloadMinValues;
+import telemetry.PayloadRtValues;
+import telemetry.PayloadWOD;
+import telemetry.RadiationTelemetry;
+import telemetry.WodRadiationTelemetry;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Pack records of each payload layout into a CompactRecordList and check that they read back with the same header,
+ * field values and order as the FramePart objects they were made from.  The records are loaded as two segments, the
+ * later one first as a graph scrolling back in time would load them, so the list has to merge a batch in front of the
+ * records it already holds.  New records are then added out of order.  Run from the FoxTelem directory, as the layouts
+ * are read from the spacecraft directory.
+ *
+ */
+public class CompactRecordListTest {
+	static final int RECORDS = 400;
+	static final int ADDED = 40;
+	static final String DATE = "20180312101112";
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		roundTrip("FOX1A_rttelemetry.csv", PayloadRtValues.class);
+		roundTrip("FOX1A_maxtelemetry.csv", PayloadMaxValues.class);
+		roundTrip("FOX1A_mintelemetry.csv", PayloadMinValues.class);
+		roundTrip("FOX1E_wodtelemetry.csv", PayloadWOD.class);
+		roundTrip("FOX1A_radtelemetry.csv", RadiationTelemetry.class);
+		roundTrip("FOX1E_wodradtelemetry.csv", WodRadiationTelemetry.class);
+		roundTrip("FOX1D_herciScienceTelemHeader.csv", HerciHighspeedHeader.class); // has a 32 bit field
+	}
+
+	private void roundTrip(String file, Class<?> c) throws Exception {
+		BitArrayLayout layout = new BitArrayLayout(file);
+		Random random = new Random(file.hashCode());
+
+		// Unique reset and uptime for every record, in a random order
+		ArrayList<FramePart> all = new ArrayList<FramePart>();
+		HashSet<Long> keys = new HashSet<Long>();
+		while (all.size() < RECORDS + ADDED) {
+			int reset = random.nextInt(3);
+			long uptime = random.nextInt(100000);
+			if (!keys.add(reset * 1000000L + uptime)) continue;
+			// A few dates can not be held as a number, so those records are held as they are
+			String date = random.nextInt(20) == 0 ? "2018-03-12 10:11:12" : DATE;
+			all.add(makeRecord(c, layout, reset, uptime, date, random));
+		}
+		ArrayList<FramePart> loaded = new ArrayList<FramePart>(all.subList(0, RECORDS));
+		ArrayList<FramePart> added = new ArrayList<FramePart>(all.subList(RECORDS, all.size()));
+
+		// Split the loaded records into two segments at a reset and uptime boundary
+		ArrayList<FramePart> sorted = new ArrayList<FramePart>(loaded);
+		Collections.sort(sorted);
+		FramePart boundary = sorted.get(RECORDS/2);
+		ArrayList<FramePart> earlier = new ArrayList<FramePart>();
+		ArrayList<FramePart> later = new ArrayList<FramePart>();
+		for (FramePart f : loaded)
+			if (f.compareTo(boundary) < 0)
+				earlier.add(f);
+			else
+				later.add(f);
+
+		CompactRecordList list = new CompactRecordList(16);
+		list.addAllSorted(later);
+		list.addAllSorted(earlier);
+		// Loading a segment again adds nothing
+		list.addAllSorted(later);
+		// Records from the decoder arrive in any order and a repeat is refused
+		for (FramePart f : added)
+			assertTrue(list.add(f));
+		assertFalse(list.add(makeRecord(c, layout, boundary.resets, boundary.uptime, DATE, random)));
+
+		ArrayList<FramePart> expected = new ArrayList<FramePart>(all);
+		Collections.sort(expected);
+		assertEquals(file, expected.size(), list.size());
+		for (int i=0; i < expected.size(); i++) {
+			FramePart f = expected.get(i);
+			String where = file + " record " + i;
+			assertEquals(where, f.resets, list.getResets(i));
+			assertEquals(where, f.uptime, list.getUptime(i));
+			assertEquals(where, f.getType(), list.getType(i));
+			assertEquals(where, f.id, list.getId(i));
+			assertEquals(where, i, list.getFrameIndex(f.id, f.uptime, f.resets));
+			int[] values = list.getFieldValues(i);
+			assertEquals(where, f.getFieldValues().length, values.length);
+			for (int k=0; k < values.length; k++) {
+				assertEquals(where + " " + layout.fieldName[k], f.getFieldValues()[k], values[k]);
+				assertEquals(where + " " + layout.fieldName[k], f.getFieldValues()[k], list.getRawValue(i, k));
+			}
+
+			FramePart g = list.get(i);
+			if (added.contains(f))
+				assertSame(where, f, g); // new records are held as they are
+			else if (f.getCaptureDate().equals(DATE))
+				assertTrue(where + " was not packed", f != g);
+			assertEquals(where, f.getClass(), g.getClass());
+			assertEquals(where, 0, f.compareTo(g));
+			assertEquals(where, f.id, g.id);
+			assertEquals(where, f.getCaptureDate(), g.getCaptureDate());
+			for (int k=0; k < values.length; k++)
+				assertEquals(where + " " + layout.fieldName[k], f.getFieldValues()[k], g.getFieldValues()[k]);
+		}
+	}
+
+	/**
+	 * Make a record the way it is loaded from disk, with random values that fit the number of bits of each field
+	 */
+	private FramePart makeRecord(Class<?> c, BitArrayLayout layout, int reset, long uptime, String date, Random random) {
+		StringBuilder line = new StringBuilder();
+		for (int k=0; k < layout.NUMBER_OF_FIELDS; k++) {
+			int bits = layout.fieldBitLength[k];
+			int v = bits >= 31 ? random.nextInt() : random.nextInt(1 << bits);
+			line.append(v).append(',');
+		}
+		StringTokenizer st = new StringTokenizer(line.toString(), ",");
+		int id = 1;
+		if (c == PayloadRtValues.class) return new PayloadRtValues(id, reset, uptime, date, st, layout);
+		if (c == PayloadMaxValues.class) return new PayloadMaxValues(id, reset, uptime, date, st, layout);
+		if (c == PayloadMinValues.class) return new PayloadMinValues(id, reset, uptime, date, st, layout);
+		if (c == PayloadWOD.class) return new PayloadWOD(id, reset, uptime, date, st, layout);
+		if (c == RadiationTelemetry.class) return new RadiationTelemetry(id, reset, uptime, date, st, layout);
+		if (c == WodRadiationTelemetry.class) return new WodRadiationTelemetry(id, reset, uptime, date, st, layout);
+		return new HerciHighspeedHeader(id, reset, uptime, date, st, layout);
+	}
+}
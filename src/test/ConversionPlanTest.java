@@ -0,0 +1,86 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import telemetry.BitArrayLayout;
+import telemetry.ConversionPlan;
+import telemetry.PayloadRtValues;
+
+/**
+ * 
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Check that the compiled conversions give exactly the same values as convertRawValue() and print how long each
+ * takes to convert a column.  Run from the FoxTelem directory so that the spacecraft files can be found.
+ *
+ */
+public class ConversionPlanTest {
+	static final int COLUMN = 4096; // every value of a 12 bit field
+	static final int RUNS = 200;
+
+	BitArrayLayout layout;
+	PayloadRtValues rt;
+	ConversionPlan plan;
+	int[] raw;
+
+	@Before
+	public void setUp() throws Exception {
+		layout = new BitArrayLayout("FOX1A_rttelemetry.csv");
+		rt = new PayloadRtValues(layout);
+		plan = ConversionPlan.getPlan(rt, null);
+		raw = new int[COLUMN];
+		for (int i=0; i < COLUMN; i++)
+			raw[i] = i;
+	}
+
+	@Test
+	public void testSameValues() {
+		double[] out = new double[COLUMN];
+		for (int f=0; f < layout.fieldName.length; f++) {
+			if (!plan.isCompiled(f)) continue;
+			plan.convert(f, raw, out);
+			for (int i=0; i < COLUMN; i++) {
+				double expected = rt.convertRawValue(layout.fieldName[f], raw[i], layout.conversion[f], null);
+				assertEquals(layout.fieldName[f] + " " + raw[i], Double.doubleToLongBits(expected), Double.doubleToLongBits(out[i]));
+				assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(plan.convert(f, raw[i])));
+			}
+		}
+	}
+
+	@Test
+	public void testTime() {
+		double[] out = new double[COLUMN];
+		long planTime = 0;
+		long switchTime = 0;
+		for (int r=0; r < RUNS; r++) {
+			long start = System.nanoTime();
+			for (int f=0; f < layout.fieldName.length; f++)
+				if (plan.isCompiled(f))
+					plan.convert(f, raw, out);
+			planTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int f=0; f < layout.fieldName.length; f++)
+				if (plan.isCompiled(f))
+					for (int i=0; i < COLUMN; i++)
+						out[i] = rt.convertRawValue(layout.fieldName[f], raw[i], layout.conversion[f], null);
+			switchTime += System.nanoTime() - start;
+		}
+		System.out.println("Conversion plan: " + planTime/1000000 + "ms convertRawValue: " + switchTime/1000000 + "ms");
+	}
+}
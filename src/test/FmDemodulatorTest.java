@@ -0,0 +1,145 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import common.Config;
+import decoder.FmDemodulator;
+import filter.FastAtan2;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Check the polynomial atan2 against Math.atan2, and that atanDemodulate() gives the same angles as the atan with
+ * quadrant correction that it replaced.  The block demodulate() must give exactly the same audio as demodulating one
+ * sample at a time.  Print how long each atan2 takes.
+ *
+ */
+public class FmDemodulatorTest {
+	static final int BLOCK = 4096;
+	static final int RUNS = 500;
+
+	@Test
+	public void testAtan2() {
+		double maxError = 0;
+		for (int a=-2000; a <= 2000; a++) {
+			double angle = Math.PI * a / 2000;
+			for (double mag : new double[] {1E-9, 0.3, 1, 1E6}) {
+				double y = mag * Math.sin(angle);
+				double x = mag * Math.cos(angle);
+				maxError = Math.max(maxError, Math.abs(FastAtan2.atan2(y, x) - Math.atan2(y, x)));
+			}
+		}
+		System.out.println("FastAtan2 max error: " + maxError);
+		assertTrue("max error " + maxError, maxError <= FastAtan2.MAX_ERROR);
+		assertEquals(0, FastAtan2.atan2(0, 0), 0);
+		assertEquals(Math.PI/2, FastAtan2.atan2(1, 0), FastAtan2.MAX_ERROR);
+		assertEquals(-Math.PI/2, FastAtan2.atan2(-1, 0), FastAtan2.MAX_ERROR);
+		assertEquals(Math.PI, FastAtan2.atan2(0, -1), FastAtan2.MAX_ERROR);
+	}
+
+	@Test
+	public void testAtanDemodulate() {
+		FmDemodulator fm = new FmDemodulator();
+		double prevI = 0.1;
+		double prevQ = 0.1;
+		double phase = 0;
+		for (int n=0; n < 100000; n++) {
+			phase += 3 * Math.sin(n * 0.001); // sweep through all of the phase steps
+			double in = 0.3 * Math.cos(phase);
+			double qn = 0.3 * Math.sin(phase);
+			double expected = oldAtanDemodulate(in, qn, prevI, prevQ);
+			prevI = in;
+			prevQ = qn;
+			assertEquals("" + n, expected, fm.atanDemodulate(in, qn), 2 * FastAtan2.MAX_ERROR);
+		}
+	}
+
+	/**
+	 * The atan demodulation as it was before FastAtan2
+	 */
+	private double oldAtanDemodulate(double in, double qn, double prevI, double prevQ) {
+		double I = in * prevI - qn * -prevQ;
+		double Q = qn * prevI + in * -prevQ;
+		if (I == 0)
+			I=1E-20f;
+		double angle = Math.atan(Q * (1.0f / I));
+		if (I < 0 && Q < 0)
+			angle = angle - Math.PI;
+		if (I < 0 && Q >= 0)
+			angle = angle + Math.PI;
+		return angle * 0.5;
+	}
+
+	@Test
+	public void testBlockDemodulate() {
+		boolean limiter = Config.useLimiter;
+		try {
+			for (boolean useLimiter : new boolean[] {false, true}) {
+				Config.useLimiter = useLimiter;
+				FmDemodulator single = new FmDemodulator();
+				FmDemodulator block = new FmDemodulator();
+				double[] in = new double[BLOCK];
+				double[] qn = new double[BLOCK];
+				double[] out = new double[BLOCK];
+				double phase = 0;
+				int n = 0;
+				// blocks of different lengths, including 0 and 1, to check the state carries over
+				for (int len : new int[] {BLOCK, 1, 0, 7, BLOCK, 2, BLOCK}) {
+					for (int k=0; k < len; k++) {
+						phase += 0.5 * Math.sin(n++ * 0.003);
+						double mag = (n % 500 == 0) ? 0 : 0.3; // include some zero samples
+						in[k] = mag * Math.cos(phase);
+						qn[k] = mag * Math.sin(phase);
+					}
+					block.demodulate(in, qn, out, len);
+					for (int k=0; k < len; k++)
+						assertEquals(useLimiter + " " + n + " " + k, Double.doubleToLongBits(single.demodulate(in[k], qn[k])), Double.doubleToLongBits(out[k]));
+				}
+			}
+		} finally {
+			Config.useLimiter = limiter;
+		}
+	}
+
+	@Test
+	public void testTime() {
+		double[] y = new double[BLOCK];
+		double[] x = new double[BLOCK];
+		for (int i=0; i < BLOCK; i++) {
+			y[i] = Math.sin(i * 0.01);
+			x[i] = Math.cos(i * 0.013);
+		}
+		double sum = 0;
+		long fastTime = 0;
+		long mathTime = 0;
+		for (int r=0; r < RUNS; r++) {
+			long start = System.nanoTime();
+			for (int i=0; i < BLOCK; i++)
+				sum += FastAtan2.atan2(y[i], x[i]);
+			fastTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i=0; i < BLOCK; i++)
+				sum += Math.atan2(y[i], x[i]);
+			mathTime += System.nanoTime() - start;
+		}
+		assertFalse(Double.isNaN(sum));
+		System.out.println("FastAtan2: " + fastTime/1000000 + "ms Math.atan2: " + mathTime/1000000 + "ms for " + RUNS + " blocks of " + BLOCK);
+	}
+}
@@ -0,0 +1,134 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import filter.Complex;
+import filter.ComplexOscillator;
+import filter.CosOscillator;
+import filter.NCO;
+import filter.SinOscillator;
+
+/**
+ *
+ * FOX 1 Telemetry Decoder
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Check that the NCO gives exactly the same values as a CosOscillator and a SinOscillator stepped together, and the
+ * same as the normalized ComplexOscillator to within the float rounding in Complex.normalize().  Print how long each
+ * takes to mix a block.
+ *
+ */
+public class NCOTest {
+	static final int RATE = 192000;
+	static final int BLOCK = 4096;
+	static final int RUNS = 2000;
+	static final double[] FREQS = {0, 1200, -1200, 2000.5, 12345, -47999, 96000};
+
+	@Test
+	public void testSameAsOscillators() {
+		double[] cos = new double[BLOCK];
+		double[] sin = new double[BLOCK];
+		for (double f : FREQS) {
+			double inc = 2 * Math.PI * f / RATE;
+			NCO nco = new NCO(RATE, inc);
+			CosOscillator c = new CosOscillator(RATE, inc);
+			SinOscillator s = new SinOscillator(RATE, inc);
+			for (int b=0; b < 3; b++) {
+				nco.nextSamples(cos, sin, BLOCK);
+				for (int i=0; i < BLOCK; i++) {
+					assertEquals(f + " " + i, Double.doubleToLongBits(c.nextSample()), Double.doubleToLongBits(cos[i]));
+					assertEquals(f + " " + i, Double.doubleToLongBits(s.nextSample()), Double.doubleToLongBits(sin[i]));
+				}
+				// move the phase between blocks, as the PSK decoders do
+				nco.setPhase(b + 0.3);
+				c.setPhase(b + 0.3);
+				s.setPhase(b + 0.3);
+				nco.changePhase(0.1);
+				c.changePhase(0.1);
+				s.changePhase(0.1);
+			}
+		}
+	}
+
+	@Test
+	public void testMixReal() {
+		double[] in = new double[BLOCK];
+		double[] outI = new double[BLOCK];
+		double[] outQ = new double[BLOCK];
+		for (int i=0; i < BLOCK; i++)
+			in[i] = Math.sin(i * 0.01) + 0.1 * Math.cos(i * 0.37);
+		NCO nco = new NCO(48000, 1200);
+		CosOscillator c = new CosOscillator(48000, 1200);
+		SinOscillator s = new SinOscillator(48000, 1200);
+		nco.mixReal(in, outI, outQ, BLOCK);
+		for (int i=0; i < BLOCK; i++) {
+			assertEquals(Double.doubleToLongBits(in[i] * c.nextSample()), Double.doubleToLongBits(outI[i]));
+			assertEquals(Double.doubleToLongBits(in[i] * s.nextSample()), Double.doubleToLongBits(outQ[i]));
+		}
+	}
+
+	@Test
+	public void testSameAsComplexOscillator() {
+		// A Costas loop changes the frequency and the phase on every sample
+		NCO nco = new NCO(48000, 1200);
+		ComplexOscillator osc = new ComplexOscillator(48000, 1200);
+		for (int i=0; i < 100000; i++) {
+			double freq = 1200 + 300 * Math.sin(i * 0.001);
+			double error = 0.01 * Math.cos(i * 0.07);
+			nco.setFrequency(freq);
+			osc.setFrequency(freq);
+			nco.step();
+			Complex c = osc.nextSample();
+			c.normalize();
+			assertEquals(c.geti(), nco.geti(), 1E-6);
+			assertEquals(c.getq(), nco.getq(), 1E-6);
+			nco.changePhase(error);
+			osc.changePhase(error);
+			assertEquals(Double.doubleToLongBits(osc.getPhase()), Double.doubleToLongBits(nco.getPhase()));
+		}
+	}
+
+	@Test
+	public void testTime() {
+		double[] iq = new double[BLOCK*2];
+		for (int i=0; i < iq.length; i++)
+			iq[i] = Math.sin(i * 0.01);
+		double[] cos = new double[BLOCK];
+		double[] sin = new double[BLOCK];
+		NCO nco = new NCO(RATE, 12345);
+		ComplexOscillator osc = new ComplexOscillator(RATE, 12345);
+		double sum = 0;
+		long ncoTime = 0;
+		long oscTime = 0;
+		for (int r=0; r < RUNS; r++) {
+			long start = System.nanoTime();
+			nco.nextSamples(cos, sin, BLOCK);
+			for (int j=0; j < iq.length; j+=2)
+				sum += iq[j] * cos[j/2] + iq[j+1] * sin[j/2];
+			ncoTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int j=0; j < iq.length; j+=2) {
+				Complex c = osc.nextSample();
+				c.normalize();
+				sum += iq[j] * c.geti() + iq[j+1] * c.getq();
+			}
+			oscTime += System.nanoTime() - start;
+		}
+		assertFalse(Double.isNaN(sum));
+		System.out.println("NCO: " + ncoTime/1000000 + "ms ComplexOscillator: " + oscTime/1000000 + "ms for " + RUNS + " blocks of " + BLOCK);
+	}
+}